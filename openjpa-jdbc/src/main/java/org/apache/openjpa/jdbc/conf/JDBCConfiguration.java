@@ -18,11 +18,14 @@
  */
 package org.apache.openjpa.jdbc.conf;
 
+import java.util.concurrent.ExecutorService;
+
 import javax.sql.DataSource;
 
 import org.apache.openjpa.conf.OpenJPAConfiguration;
 import org.apache.openjpa.jdbc.identifier.DBIdentifierUtil;
 import org.apache.openjpa.jdbc.kernel.EagerFetchModes;
+import org.apache.openjpa.jdbc.kernel.FetchSizeAdvisor;
 import org.apache.openjpa.jdbc.kernel.LRSSizes;
 import org.apache.openjpa.jdbc.kernel.UpdateManager;
 import org.apache.openjpa.jdbc.meta.MappingDefaults;
@@ -374,6 +377,53 @@ public interface JDBCConfiguration
      */
     void setLRSSize(int size);
 
+    /**
+     * The number of eager parallel selects of a select that may run at the
+     * same time, each on a connection of its own. Defaults to 1, which runs
+     * them one after another on the connection of the broker.
+     *
+     * @since 4.1.1
+     */
+    int getEagerParallelism();
+
+    /**
+     * The number of eager parallel selects of a select that may run at the
+     * same time, each on a connection of its own. Defaults to 1, which runs
+     * them one after another on the connection of the broker.
+     *
+     * @since 4.1.1
+     */
+    void setEagerParallelism(int parallelism);
+
+    /**
+     * The executor that runs the eager parallel selects of this
+     * configuration. Its threads are started on first use and stopped when
+     * the configuration is closed.
+     *
+     * @since 4.1.1
+     */
+    ExecutorService getEagerSelectExecutor();
+
+    /**
+     * The number of instances of the same type whose unloaded to-one
+     * relation is loaded by a single select when the relation of one of
+     * them is first accessed. Defaults to 1, which loads the relation of
+     * each instance with a select of its own.
+     *
+     * @since 4.1.1
+     */
+    int getRelationBatchSize();
+
+    /**
+     * The number of instances of the same type whose unloaded to-one
+     * relation is loaded by a single select when the relation of one of
+     * them is first accessed. Defaults to 1, which loads the relation of
+     * each instance with a select of its own.
+     *
+     * @since 4.1.1
+     */
+    void setRelationBatchSize(int size);
+
     /**
      * Whether OpenJPA should try to automatically refresh O/R mapping
      * information and the database schema.
@@ -470,6 +520,35 @@ public interface JDBCConfiguration
      */
     void setUpdateManager(UpdateManager updateManager);
 
+    /**
+     * The {@link FetchSizeAdvisor} that chooses the fetch size of selects.
+     *
+     * @since 4.1.1
+     */
+    String getFetchSizeAdvisor();
+
+    /**
+     * The {@link FetchSizeAdvisor} that chooses the fetch size of selects.
+     *
+     * @since 4.1.1
+     */
+    void setFetchSizeAdvisor(String advisor);
+
+    /**
+     * The {@link FetchSizeAdvisor} that chooses the fetch size of selects,
+     * or null if the fetch size is not adapted.
+     *
+     * @since 4.1.1
+     */
+    FetchSizeAdvisor getFetchSizeAdvisorInstance();
+
+    /**
+     * The {@link FetchSizeAdvisor} that chooses the fetch size of selects.
+     *
+     * @since 4.1.1
+     */
+    void setFetchSizeAdvisor(FetchSizeAdvisor advisor);
+
     /**
      * The {@link DriverDataSource} to use for creating a {@link DataSource}
      * from a JDBC {@link Driver}.
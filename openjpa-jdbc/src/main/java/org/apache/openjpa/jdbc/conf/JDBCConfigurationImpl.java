@@ -21,6 +21,9 @@ package org.apache.openjpa.jdbc.conf;
 import java.sql.Connection;
 import java.sql.ResultSet;
 import java.util.Locale;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import javax.sql.DataSource;
 
@@ -29,6 +32,7 @@ import org.apache.openjpa.jdbc.identifier.DBIdentifierUtil;
 import org.apache.openjpa.jdbc.kernel.BatchingConstraintUpdateManager;
 import org.apache.openjpa.jdbc.kernel.BatchingOperationOrderUpdateManager;
 import org.apache.openjpa.jdbc.kernel.EagerFetchModes;
+import org.apache.openjpa.jdbc.kernel.FetchSizeAdvisor;
 import org.apache.openjpa.jdbc.kernel.JDBCBrokerFactory;
 import org.apache.openjpa.jdbc.kernel.LRSSizes;
 import org.apache.openjpa.jdbc.kernel.PessimisticLockManager;
@@ -77,11 +81,14 @@ public class JDBCConfigurationImpl
     public FetchModeValue eagerFetchMode;
     public FetchModeValue subclassFetchMode;
     public IntValue lrsSize;
+    public IntValue eagerParallelism;
+    public IntValue relationBatchSize;
     public StringValue synchronizeMappings;
     public ObjectValue jdbcListenerPlugins;
     public ObjectValue connectionDecoratorPlugins;
     public PluginValue dbdictionaryPlugin;
     public ObjectValue updateManagerPlugin;
+    public ObjectValue fetchSizeAdvisorPlugin;
     public ObjectValue schemaFactoryPlugin;
     public ObjectValue sqlFactoryPlugin;
     public ObjectValue mappingDefaultsPlugin;
@@ -94,6 +101,7 @@ public class JDBCConfigurationImpl
     private String firstPass = null;
     private DecoratingDataSource dataSource = null;
     private DecoratingDataSource dataSource2 = null;
+    private ExecutorService eagerSelectExecutor = null;
 
     private static final Localizer _loc = Localizer.forPackage(JDBCConfigurationImpl.class);
 
@@ -188,6 +196,14 @@ public class JDBCConfigurationImpl
         lrsSize.set(LRSSizes.SIZE_QUERY);
         lrsSize.setAliasListComprehensive(true);
 
+        eagerParallelism = addInt("jdbc.EagerParallelism");
+        eagerParallelism.setDefault("1");
+        eagerParallelism.set(1);
+
+        relationBatchSize = addInt("jdbc.RelationBatchSize");
+        relationBatchSize.setDefault("1");
+        relationBatchSize.set(1);
+
         synchronizeMappings = addString("jdbc.SynchronizeMappings");
         aliases = new String[]{ "false", null };
         synchronizeMappings.setAliases(aliases);
@@ -245,6 +261,13 @@ public class JDBCConfigurationImpl
         updateManagerPlugin.setString(aliases[0]);
         updateManagerPlugin.setInstantiatingGetter("getUpdateManagerInstance");
 
+        fetchSizeAdvisorPlugin = addPlugin("jdbc.FetchSizeAdvisor", true);
+        aliases = new String[]{
+            "adaptive", "org.apache.openjpa.jdbc.kernel.AdaptiveFetchSizeAdvisor",
+        };
+        fetchSizeAdvisorPlugin.setAliases(aliases);
+        fetchSizeAdvisorPlugin.setInstantiatingGetter("getFetchSizeAdvisorInstance");
+
         driverDataSourcePlugin = addPlugin("jdbc.DriverDataSource", false);
         aliases = new String[]{
             "auto", "org.apache.openjpa.jdbc.schema.AutoDriverDataSource",
@@ -523,6 +546,42 @@ public class JDBCConfigurationImpl
         return lrsSize.get();
     }
 
+    @Override
+    public void setEagerParallelism(int parallelism) {
+        eagerParallelism.set(parallelism);
+    }
+
+    @Override
+    public int getEagerParallelism() {
+        return eagerParallelism.get();
+    }
+
+    @Override
+    public synchronized ExecutorService getEagerSelectExecutor() {
+        if (eagerSelectExecutor == null) {
+            // the number of threads a select uses is bounded by its fetch
+            // configuration
+            final AtomicInteger count = new AtomicInteger();
+            eagerSelectExecutor = Executors.newCachedThreadPool(r -> {
+                Thread thread = new Thread(r, "openjpa-eager-select-"
+                    + count.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        return eagerSelectExecutor;
+    }
+
+    @Override
+    public void setRelationBatchSize(int size) {
+        relationBatchSize.set(size);
+    }
+
+    @Override
+    public int getRelationBatchSize() {
+        return relationBatchSize.get();
+    }
+
     @Override
     public void setSynchronizeMappings(String synchronizeMappings) {
         this.synchronizeMappings.set(synchronizeMappings);
@@ -665,6 +724,28 @@ public class JDBCConfigurationImpl
         return (UpdateManager) updateManagerPlugin.get();
     }
 
+    @Override
+    public void setFetchSizeAdvisor(String advisor) {
+        fetchSizeAdvisorPlugin.setString(advisor);
+    }
+
+    @Override
+    public String getFetchSizeAdvisor() {
+        return fetchSizeAdvisorPlugin.getString();
+    }
+
+    @Override
+    public void setFetchSizeAdvisor(FetchSizeAdvisor advisor) {
+        fetchSizeAdvisorPlugin.set(advisor);
+    }
+
+    @Override
+    public FetchSizeAdvisor getFetchSizeAdvisorInstance() {
+        if (fetchSizeAdvisorPlugin.get() == null)
+            fetchSizeAdvisorPlugin.instantiate(FetchSizeAdvisor.class, this);
+        return (FetchSizeAdvisor) fetchSizeAdvisorPlugin.get();
+    }
+
     @Override
     public void setDriverDataSource(String driverDataSource) {
         driverDataSourcePlugin.setString(driverDataSource);
@@ -1027,10 +1108,15 @@ public class JDBCConfigurationImpl
     }
 
     /**
-     * Free the data sources.
+     * Free the data sources and stop the threads of eager parallel selects.
      */
     @Override
     protected void preClose() {
+        synchronized (this) {
+            if (eagerSelectExecutor != null)
+                eagerSelectExecutor.shutdown();
+            eagerSelectExecutor = null;
+        }
         if (dataSource != null) {
             getDBDictionaryInstance().closeDataSource(dataSource);
             connectionFactory.set(null, true); // so super doesn't close it
@@ -0,0 +1,154 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.openjpa.jdbc.instrumentation.jmx;
+
+import java.util.Set;
+
+import javax.management.ObjectName;
+
+import org.apache.openjpa.instrumentation.jmx.JMXInstrument;
+import org.apache.openjpa.instrumentation.jmx.JMXProvider;
+import org.apache.openjpa.jdbc.conf.JDBCConfiguration;
+import org.apache.openjpa.jdbc.kernel.FetchSizeAdvisor;
+import org.apache.openjpa.lib.instrumentation.AbstractInstrument;
+import org.apache.openjpa.lib.instrumentation.InstrumentationLevel;
+import org.apache.openjpa.lib.util.Localizer;
+import org.apache.openjpa.util.UserException;
+
+/**
+ * A JMX-specific instrument for the fetch sizes learned by the
+ * {@link FetchSizeAdvisor}.
+ *
+ * @since 4.1.1
+ */
+public class FetchSizeJMXInstrument extends AbstractInstrument
+    implements JMXInstrument, FetchSizeJMXInstrumentMBean {
+
+    private static Localizer _loc = Localizer.forPackage(FetchSizeJMXInstrument.class);
+
+    private static final String MBEAN_TYPE = "FetchSize";
+
+    private FetchSizeAdvisor _advisor = null;
+    private String _configID = null;
+    private String _configRef = null;
+    private ObjectName _objName = null;
+
+    @Override
+    public String getName() {
+        return MBEAN_TYPE;
+    }
+
+    @Override
+    public InstrumentationLevel getLevel() {
+        return InstrumentationLevel.FACTORY;
+    }
+
+    @Override
+    public void initialize() {
+        JDBCConfiguration conf = (JDBCConfiguration) getProvider().getConfiguration();
+        FetchSizeAdvisor advisor = conf.getFetchSizeAdvisorInstance();
+
+        if (advisor == null) {
+            throw new UserException(_loc.get("fetch-size-advisor-not-found"));
+        }
+
+        setFetchSizeAdvisor(advisor);
+        setConfigId(conf.getId());
+        setContextRef(Integer.toString(System.identityHashCode(getContext())));
+    }
+
+    public void setFetchSizeAdvisor(FetchSizeAdvisor advisor) {
+        _advisor = advisor;
+    }
+
+    @Override
+    public void setConfigId(String cid) {
+        _configID = cid;
+    }
+
+    @Override
+    public void setContextRef(String cref) {
+        _configRef = cref;
+    }
+
+    @Override
+    public String getConfigId() {
+        return _configID;
+    }
+
+    @Override
+    public String getContextRef() {
+        return _configRef;
+    }
+
+    @Override
+    public Set<String> statements() {
+        return (_advisor == null) ? null : _advisor.getStatements();
+    }
+
+    @Override
+    public int getFetchSize(String sql) {
+        return (_advisor == null) ? 0 : _advisor.getFetchSize(sql);
+    }
+
+    @Override
+    public double getRowCount(String sql) {
+        return (_advisor == null) ? -1 : _advisor.getRowCount(sql);
+    }
+
+    @Override
+    public int getRowWidth(String sql) {
+        return (_advisor == null) ? -1 : _advisor.getRowWidth(sql);
+    }
+
+    @Override
+    public long getExecutionCount(String sql) {
+        return (_advisor == null) ? 0 : _advisor.getExecutionCount(sql);
+    }
+
+    @Override
+    public void reset() {
+        if (_advisor != null)
+            _advisor.clear();
+    }
+
+    @Override
+    public ObjectName getObjectName() {
+        if (_objName != null) {
+            return _objName;
+        }
+
+        try {
+            _objName = JMXProvider.createObjectName(this, null);
+            return _objName;
+        } catch (Throwable t) {
+            throw new UserException(_loc.get("unable-to-create-object-name", getName()), t);
+        }
+    }
+
+    @Override
+    public void start() {
+        getProvider().startInstrument(this);
+    }
+
+    @Override
+    public void stop() {
+        getProvider().stopInstrument(this);
+    }
+}
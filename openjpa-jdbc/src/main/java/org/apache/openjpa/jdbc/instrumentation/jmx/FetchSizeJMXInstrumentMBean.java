@@ -0,0 +1,63 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.openjpa.jdbc.instrumentation.jmx;
+
+import java.util.Set;
+
+/**
+ * Management interface of the fetch sizes learned by the
+ * {@link org.apache.openjpa.jdbc.kernel.FetchSizeAdvisor}.
+ *
+ * @since 4.1.1
+ */
+public interface FetchSizeJMXInstrumentMBean {
+
+    /**
+     * Returns the SQL of the statements the advisor has learned about.
+     */
+    Set<String> statements();
+
+    /**
+     * Returns the fetch size of the next execution of the given SQL, or 0 if
+     * the fetch size of the driver is used.
+     */
+    int getFetchSize(String sql);
+
+    /**
+     * Returns the average number of rows read from the result of the given
+     * SQL, or -1 if unknown.
+     */
+    double getRowCount(String sql);
+
+    /**
+     * Returns the estimated width in bytes of a row of the result of the
+     * given SQL, or -1 if unknown.
+     */
+    int getRowWidth(String sql);
+
+    /**
+     * Returns the number of executions of the given SQL.
+     */
+    long getExecutionCount(String sql);
+
+    /**
+     * Forgets all that the advisor has learned.
+     */
+    void reset();
+}
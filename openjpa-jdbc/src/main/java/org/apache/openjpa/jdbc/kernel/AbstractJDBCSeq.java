@@ -20,6 +20,8 @@ package org.apache.openjpa.jdbc.kernel;
 
 import java.sql.Connection;
 import java.sql.SQLException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 import javax.sql.DataSource;
 
@@ -45,6 +47,7 @@ public abstract class AbstractJDBCSeq
 
     protected int type = TYPE_DEFAULT;
     protected Object current = null;
+    private ExecutorService _executor = null;
 
     /**
      * Records the sequence type.
@@ -106,10 +109,35 @@ public abstract class AbstractJDBCSeq
     }
 
     /**
-     * No-op.
+     * Stops the thread that preallocates sequence values, if any.
      */
     @Override
     public void close() {
+        ExecutorService executor;
+        synchronized (this) {
+            executor = _executor;
+            _executor = null;
+        }
+        if (executor != null)
+            executor.shutdown();
+    }
+
+    /**
+     * Return the executor that allocates sequence values in the background,
+     * which runs a single daemon thread started on first use.
+     *
+     * @since 4.1.1
+     */
+    protected synchronized ExecutorService getPreallocationExecutor() {
+        if (_executor == null) {
+            _executor = Executors.newSingleThreadExecutor(r -> {
+                Thread thread = new Thread(r, "OpenJPA-" + getClass().getSimpleName()
+                    + "-Preallocator");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        return _executor;
     }
 
     /**
@@ -0,0 +1,265 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.openjpa.jdbc.kernel;
+
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.apache.openjpa.lib.util.Localizer;
+import org.apache.openjpa.util.UserException;
+
+/**
+ * A {@link FetchSizeAdvisor} that learns, for each SQL, the largest number of
+ * rows read from its result and the width of its rows, and chooses a fetch
+ * size that brings about <code>TargetBytes</code> bytes per round trip.
+ * A statement that reads few rows gets a fetch size just above the most rows
+ * it has read, so that a single round trip reads the whole result without the
+ * driver reserving room for rows that never come. The fetch size is never
+ * lowered below the one the statement already has. Configured by
+ * <code>openjpa.jdbc.FetchSizeAdvisor=adaptive</code>.
+ *
+ * The width of a row is estimated from the types and declared lengths of the
+ * columns of the result, with character and binary columns counted at their
+ * declared length up to 256 bytes, and large objects at 256 bytes.
+ *
+ * @since 4.1.1
+ */
+public class AdaptiveFetchSizeAdvisor implements FetchSizeAdvisor {
+
+    private static final Localizer _loc = Localizer.forPackage(AdaptiveFetchSizeAdvisor.class);
+
+    // weight of the latest row count in the average
+    private static final double WEIGHT = 0.25;
+    private static final int MAX_COLUMN_WIDTH = 256;
+
+    private int _targetBytes = 64 * 1024;
+    private int _maxFetchSize = 1000;
+    private int _maxStatements = 1000;
+    private final Map<String, Stats> _stats = new ConcurrentHashMap<>();
+
+    /**
+     * The number of bytes to read in a round trip.
+     */
+    public int getTargetBytes() {
+        return _targetBytes;
+    }
+
+    /**
+     * The number of bytes to read in a round trip. Defaults to 64KB.
+     */
+    public void setTargetBytes(int bytes) {
+        if (bytes < 1)
+            throw new UserException(_loc.get("bad-fetch-size-setting", "TargetBytes", bytes));
+        _targetBytes = bytes;
+    }
+
+    /**
+     * The largest fetch size to use.
+     */
+    public int getMaxFetchSize() {
+        return _maxFetchSize;
+    }
+
+    /**
+     * The largest fetch size to use. Defaults to 1000.
+     */
+    public void setMaxFetchSize(int size) {
+        if (size < 1)
+            throw new UserException(_loc.get("bad-fetch-size-setting", "MaxFetchSize", size));
+        _maxFetchSize = size;
+    }
+
+    /**
+     * The largest number of statements to learn about.
+     */
+    public int getMaxStatements() {
+        return _maxStatements;
+    }
+
+    /**
+     * The largest number of statements to learn about. Statements executed
+     * once this many are known keep the fetch size of the driver. Defaults
+     * to 1000.
+     */
+    public void setMaxStatements(int max) {
+        if (max < 1)
+            throw new UserException(_loc.get("bad-fetch-size-setting", "MaxStatements", max));
+        _maxStatements = max;
+    }
+
+    @Override
+    public int getFetchSize(String sql) {
+        Stats stats = _stats.get(sql);
+        if (stats == null)
+            return 0;
+        int width = stats.width;
+        int rows = stats.getMaxRowCount();
+        if (width <= 0 || rows < 0)
+            return 0;
+
+        // one more than the most rows read, so that the end of the result
+        // is found in the same round trip
+        long size = (long) rows + 1;
+        size = Math.min(size, Math.max(1, _targetBytes / width));
+        return (int) Math.min(size, _maxFetchSize);
+    }
+
+    @Override
+    public void executed(String sql, ResultSet rs)
+        throws SQLException {
+        Stats stats = _stats.get(sql);
+        if (stats == null) {
+            if (_stats.size() >= _maxStatements)
+                return;
+            stats = _stats.computeIfAbsent(sql, s -> new Stats());
+        }
+        if (stats.width < 0)
+            stats.width = getRowWidth(rs.getMetaData());
+        stats.executed();
+    }
+
+    @Override
+    public void closed(String sql, int rows) {
+        Stats stats = _stats.get(sql);
+        if (stats != null)
+            stats.closed(rows);
+    }
+
+    @Override
+    public Set<String> getStatements() {
+        return new HashSet<>(_stats.keySet());
+    }
+
+    @Override
+    public double getRowCount(String sql) {
+        Stats stats = _stats.get(sql);
+        return (stats == null) ? -1 : stats.getRowCount();
+    }
+
+    @Override
+    public int getRowWidth(String sql) {
+        Stats stats = _stats.get(sql);
+        return (stats == null) ? -1 : stats.width;
+    }
+
+    @Override
+    public long getExecutionCount(String sql) {
+        Stats stats = _stats.get(sql);
+        return (stats == null) ? 0 : stats.getExecutionCount();
+    }
+
+    @Override
+    public void clear() {
+        _stats.clear();
+    }
+
+    /**
+     * Estimate the width in bytes of a row with the given columns.
+     */
+    protected int getRowWidth(ResultSetMetaData meta)
+        throws SQLException {
+        int width = 0;
+        for (int i = 1; i <= meta.getColumnCount(); i++)
+            width += getColumnWidth(meta, i);
+        return Math.max(1, width);
+    }
+
+    /**
+     * Estimate the width in bytes of a value of the given column.
+     */
+    protected int getColumnWidth(ResultSetMetaData meta, int col)
+        throws SQLException {
+        switch (meta.getColumnType(col)) {
+            case Types.BIT:
+            case Types.BOOLEAN:
+            case Types.TINYINT:
+                return 1;
+            case Types.SMALLINT:
+                return 2;
+            case Types.INTEGER:
+            case Types.REAL:
+            case Types.DATE:
+                return 4;
+            case Types.BIGINT:
+            case Types.DOUBLE:
+            case Types.FLOAT:
+            case Types.TIME:
+            case Types.TIMESTAMP:
+                return 8;
+            case Types.DECIMAL:
+            case Types.NUMERIC:
+                int precision = meta.getPrecision(col);
+                return (precision > 0) ? precision / 2 + 2 : 8;
+            case Types.CHAR:
+            case Types.VARCHAR:
+            case Types.NCHAR:
+            case Types.NVARCHAR:
+            case Types.BINARY:
+            case Types.VARBINARY:
+                int length = meta.getPrecision(col);
+                return (length > 0) ? Math.min(length, MAX_COLUMN_WIDTH) : MAX_COLUMN_WIDTH;
+            case Types.LONGVARCHAR:
+            case Types.LONGNVARCHAR:
+            case Types.LONGVARBINARY:
+            case Types.CLOB:
+            case Types.NCLOB:
+            case Types.BLOB:
+                return MAX_COLUMN_WIDTH;
+            default:
+                return 16;
+        }
+    }
+
+    /**
+     * What is known about a statement.
+     */
+    private static class Stats {
+        volatile int width = -1;
+        private double _rows = -1;
+        private int _maxRows = -1;
+        private long _executions;
+
+        synchronized void executed() {
+            _executions++;
+        }
+
+        synchronized void closed(int rows) {
+            _rows = (_rows < 0) ? rows : _rows + (rows - _rows) * WEIGHT;
+            _maxRows = Math.max(_maxRows, rows);
+        }
+
+        synchronized double getRowCount() {
+            return _rows;
+        }
+
+        synchronized int getMaxRowCount() {
+            return _maxRows;
+        }
+
+        synchronized long getExecutionCount() {
+            return _executions;
+        }
+    }
+}
@@ -45,12 +45,37 @@ import org.apache.openjpa.util.OpenJPAException;
 public class BatchingOperationOrderUpdateManager extends
     OperationOrderUpdateManager {
 
+    private boolean _multiRowInsert = false;
+
+    /**
+     * Whether batches of inserts into the same table are sent as statements
+     * that list the values of several rows, where the database supports it.
+     * Defaults to false.
+     *
+     * @since 4.1.1
+     */
+    public boolean isMultiRowInsert() {
+        return _multiRowInsert;
+    }
+
+    /**
+     * Whether batches of inserts into the same table are sent as statements
+     * that list the values of several rows, where the database supports it.
+     *
+     * @since 4.1.1
+     */
+    public void setMultiRowInsert(boolean multiRowInsert) {
+        _multiRowInsert = multiRowInsert;
+    }
+
     @Override
     protected PreparedStatementManager newPreparedStatementManager(
         JDBCStore store, Connection conn) {
         int batchLimit = dict.getBatchLimit();
-        return new BatchingPreparedStatementManagerImpl(store, conn,
-            batchLimit);
+        BatchingPreparedStatementManagerImpl psMgr =
+            new BatchingPreparedStatementManagerImpl(store, conn, batchLimit);
+        psMgr.setMultiRowInsert(_multiRowInsert);
+        return psMgr;
     }
 
     /*
@@ -28,6 +28,7 @@ import java.util.List;
 
 import org.apache.openjpa.jdbc.meta.ClassMapping;
 import org.apache.openjpa.jdbc.schema.Column;
+import org.apache.openjpa.jdbc.sql.BulkInsert;
 import org.apache.openjpa.jdbc.sql.Row;
 import org.apache.openjpa.jdbc.sql.RowImpl;
 import org.apache.openjpa.jdbc.sql.SQLExceptions;
@@ -54,6 +55,7 @@ public class BatchingPreparedStatementManagerImpl extends
     private List<RowImpl> _batchedRows = new ArrayList<>();
     private int _batchLimit;
     private boolean _disableBatch = false;
+    private boolean _multiRowInsert = false;
 
     /**
      * Constructor. Supply connection.
@@ -147,6 +149,23 @@ public class BatchingPreparedStatementManagerImpl extends
             return;
 
         int batchSize = batchedRows.size();
+        if (batchedSql != null && isBulkInsert(batchedRows)) {
+            BulkInsert bulk = BulkInsert.newInstance(batchedRows, _dict, _store);
+            if (bulk != null && flushBulkInsert(bulk, batchedRows)) {
+                _batchedSql = null;
+                batchedRows.clear();
+                return;
+            }
+        }
+        if (batchedSql != null && batchSize > 1 && isMultiRowInsert(batchedRows.get(0))) {
+            try {
+                flushMultiRowInsert(batchedSql, batchedRows);
+            } finally {
+                _batchedSql = null;
+                batchedRows.clear();
+            }
+            return;
+        }
         if (batchedSql != null &&  batchSize > 0) {
             PreparedStatement ps = null;
             try {
@@ -245,6 +264,138 @@ public class BatchingPreparedStatementManagerImpl extends
         }
     }
 
+    /*
+     * Affirms if the batch of the given row can be inserted by statements
+     * that list the values of several rows.
+     */
+    private boolean isMultiRowInsert(RowImpl row) {
+        return _multiRowInsert && _dict.supportsMultiRowInsert
+            && row.getAction() == Row.ACTION_INSERT
+            && row.getTable().getAutoAssignedColumns().length == 0;
+    }
+
+    /**
+     * Insert the given rows, which share the given SQL, with statements that
+     * list the values of as many rows as the batch limit and the parameter
+     * limit of the database allow.
+     */
+    protected void flushMultiRowInsert(String sql, List<RowImpl> rows)
+        throws SQLException {
+        int params = rows.get(0).getFlushParameterCount();
+        int max = rows.size();
+        if (_batchLimit > 0)
+            max = Math.min(max, _batchLimit);
+        if (params > 0 && _dict.maxParametersPerStatement > 0)
+            max = Math.max(1, Math.min(max, _dict.maxParametersPerStatement / params));
+        String values = sql.substring(sql.indexOf(") VALUES (") + ") VALUES ".length());
+
+        PreparedStatement ps = null;
+        String multiSql = null;
+        int psRows = 0;
+        int start = 0;
+        try {
+            for (; start < rows.size(); start += max) {
+                int size = Math.min(max, rows.size() - start);
+                if (size != psRows) {
+                    if (ps != null)
+                        ps.close();
+                    multiSql = getMultiRowSQL(sql, values, size);
+                    ps = prepareStatement(multiSql);
+                    psRows = size;
+                }
+                int idx = 1;
+                for (int i = 0; i < size; i++) {
+                    if (ps != null)
+                        rows.get(start + i).flush(ps, idx, _dict, _store);
+                    idx += params;
+                }
+                int count = executeUpdate(ps, multiSql, rows.get(start));
+                if (count != size && count != Statement.SUCCESS_NO_INFO) {
+                    logSQLWarnings(ps);
+                    checkInsertCount(count, rows.subList(start, start + size), multiSql);
+                }
+            }
+        } catch (SQLException se) {
+            // the row that failed is not known unless there was only one
+            Object failed = (psRows == 1 && start < rows.size()) ? rows.get(start).getFailedObject() : null;
+            throw SQLExceptions.getStore(se, (failed != null) ? failed : ps, _dict);
+        } finally {
+            if (ps != null) {
+                try {
+                    ps.close();
+                } catch (SQLException sqex) {
+                    throw SQLExceptions.getStore(sqex, ps, _dict);
+                }
+            }
+        }
+    }
+
+    /*
+     * Report the rows of an insert statement that did not insert as many rows
+     * as it was given.
+     */
+    private void checkInsertCount(long count, List<RowImpl> rows, String sql)
+        throws SQLException {
+        boolean reported = false;
+        for (RowImpl row : rows) {
+            Object failed = row.getFailedObject();
+            if (failed != null) {
+                _exceptions.add(new OptimisticException(failed));
+                reported = true;
+            }
+        }
+        if (!reported)
+            throw new SQLException(_loc.get("update-failed-no-failed-obj",
+                String.valueOf(count), sql).getMessage());
+    }
+
+    /*
+     * Affirms if the given batch of rows is large enough to be bulk-loaded.
+     */
+    private boolean isBulkInsert(List<RowImpl> rows) {
+        return _dict.bulkInsertThreshold > 0 && rows.size() >= _dict.bulkInsertThreshold
+            && rows.get(0).getAction() == Row.ACTION_INSERT;
+    }
+
+    /**
+     * Insert the given rows through the bulk-load protocol of the database.
+     * Returns false if the dictionary can not bulk-load the rows, in which
+     * case none have been inserted.
+     *
+     * @since 4.1.1
+     */
+    protected boolean flushBulkInsert(BulkInsert bulk, List<RowImpl> rows)
+        throws SQLException {
+        if (_log.isTraceEnabled())
+            _log.trace(_loc.get("bulk-insert", String.valueOf(bulk.size()),
+                bulk.getTable()));
+        long count;
+        try {
+            count = _dict.bulkInsert(_conn, bulk);
+        } catch (SQLException se) {
+            throw SQLExceptions.getStore(se, _dict);
+        }
+        if (count < 0)
+            return false;
+        if (count != bulk.size())
+            checkInsertCount(count, rows, bulk.getSQL());
+        return true;
+    }
+
+    /*
+     * The given insert SQL with the given values clause repeated for the
+     * given number of rows.
+     */
+    private static String getMultiRowSQL(String sql, String values, int rows) {
+        if (rows == 1)
+            return sql;
+        StringBuilder buf = new StringBuilder(sql.length() + (values.length() + 2) * (rows - 1));
+        buf.append(sql);
+        for (int i = 1; i < rows; i++)
+            buf.append(", ").append(values);
+        return buf.toString();
+    }
+
     /*
      * Execute an update of a single row.
      */
@@ -339,6 +490,26 @@ public class BatchingPreparedStatementManagerImpl extends
         _disableBatch = disableBatch;
     }
 
+    /**
+     * Affirms if batches of inserts are sent as statements that list the
+     * values of several rows, where the database supports it.
+     *
+     * @since 4.1.1
+     */
+    public boolean isMultiRowInsert() {
+        return _multiRowInsert;
+    }
+
+    /**
+     * Whether batches of inserts are sent as statements that list the values
+     * of several rows, where the database supports it.
+     *
+     * @since 4.1.1
+     */
+    public void setMultiRowInsert(boolean multiRowInsert) {
+        _multiRowInsert = multiRowInsert;
+    }
+
     public int getBatchLimit() {
         return _batchLimit;
     }
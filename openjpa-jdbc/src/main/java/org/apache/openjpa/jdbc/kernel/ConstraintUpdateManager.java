@@ -20,8 +20,11 @@ package org.apache.openjpa.jdbc.kernel;
 
 import java.sql.Connection;
 import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
@@ -56,6 +59,32 @@ public class ConstraintUpdateManager
     private static final Localizer _loc = Localizer.forPackage
         (ConstraintUpdateManager.class);
 
+    private boolean _groupRowsByTable = false;
+
+    /**
+     * Whether rows that do not depend on each other are reordered so that
+     * the rows of each table are flushed together. Defaults to false.
+     *
+     * @since 4.1.1
+     */
+    public boolean isGroupRowsByTable() {
+        return _groupRowsByTable;
+    }
+
+    /**
+     * Whether rows that do not depend on each other are reordered so that
+     * the rows of each table are flushed together. Rows are still flushed
+     * after the rows they depend on through foreign keys, but rows of
+     * unrelated objects and tables no longer break each other's statement
+     * batches. This only changes the order of the rows; their statements
+     * are still executed one batch at a time on the connection of the flush.
+     *
+     * @since 4.1.1
+     */
+    public void setGroupRowsByTable(boolean group) {
+        _groupRowsByTable = group;
+    }
+
     @Override
     public boolean orderDirty() {
         return true;
@@ -106,8 +135,8 @@ public class ConstraintUpdateManager
 
         // flush the rest of the inserts and updates; inserts before updates
         // because some update fks might reference pks that have to be inserted
-        flush(inserts, psMgr);
-        flush(updates, psMgr);
+        flush(groupRowsByTable(inserts), psMgr);
+        flush(groupRowsByTable(updates), psMgr);
 
         // flush the delete graph, if any
         try {
@@ -120,7 +149,7 @@ public class ConstraintUpdateManager
 
         // put the remainder of the deletes after updates because some updates
         // may be nulling fks to rows that are going to be deleted
-        flush(deletes, psMgr);
+        flush(groupRowsByTable(deletes), psMgr);
 
         // take care of all secondary table inserts and updates last, since
         // they may rely on previous inserts or updates, but nothing relies
@@ -349,10 +378,74 @@ public class ConstraintUpdateManager
         // flush delete updates to null fks, then all rows in order, then
         // the insert updates to set circular fk values
         Collection nodes = dfa.getSortedNodes();
+        if (_groupRowsByTable)
+            nodes = groupRowsByTable(graph, nodes);
         flush(deleteUpdates, nodes, psMgr);
         flush(insertUpdates, psMgr);
     }
 
+    /**
+     * Reorder the given rows of a dependency graph, sorted in flush order, so
+     * that the rows of the same table and action are flushed together. Each
+     * row is placed one level after the deepest row it depends on, and the
+     * rows of a level, which can not depend on each other, are grouped by
+     * table and action in the order each table and action first appears.
+     * Returns the given rows if they are not in flush order.
+     *
+     * @since 4.1.1
+     */
+    protected Collection groupRowsByTable(Graph graph, Collection nodes) {
+        Map<Object, Integer> levels = new HashMap<>((int) (nodes.size() * 1.33 + 1));
+        List<Map<Object, List<RowImpl>>> grouped = new ArrayList<>();
+        for (Object node : nodes) {
+            int level = 0;
+            for (Edge edge : graph.getEdgesFrom(node)) {
+                Integer dependency = levels.get(edge.getTo());
+                if (dependency == null)
+                    return nodes;
+                level = Math.max(level, dependency + 1);
+            }
+            levels.put(node, level);
+            while (grouped.size() <= level)
+                grouped.add(new LinkedHashMap<>());
+            addToGroup(grouped.get(level), (RowImpl) node);
+        }
+
+        List<RowImpl> sorted = new ArrayList<>(nodes.size());
+        for (Map<Object, List<RowImpl>> level : grouped)
+            for (List<RowImpl> rows : level.values())
+                sorted.addAll(rows);
+        return sorted;
+    }
+
+    /**
+     * Group the given rows, none of which depend on each other, by table and
+     * action if rows are grouped, else return them as they are.
+     */
+    private Collection groupRowsByTable(Collection rows) {
+        if (!_groupRowsByTable || rows.size() < 3)
+            return rows;
+        Map<Object, List<RowImpl>> groups = new LinkedHashMap<>();
+        for (Object row : rows)
+            addToGroup(groups, (RowImpl) row);
+        if (groups.size() == 1)
+            return rows;
+        List<RowImpl> sorted = new ArrayList<>(rows.size());
+        for (List<RowImpl> group : groups.values())
+            sorted.addAll(group);
+        return sorted;
+    }
+
+    private static void addToGroup(Map<Object, List<RowImpl>> groups, RowImpl row) {
+        Object key = Arrays.asList(row.getTable(), row.getAction());
+        List<RowImpl> group = groups.get(key);
+        if (group == null) {
+            group = new ArrayList<>();
+            groups.put(key, group);
+        }
+        group.add(row);
+    }
+
     protected void flush(Collection deleteUpdates, Collection nodes, PreparedStatementManager psMgr) {
         flush(deleteUpdates, psMgr);
         for (Object node : nodes) {
@@ -171,6 +171,44 @@ public class DelegatingJDBCFetchConfiguration
         }
     }
 
+    @Override
+    public int getEagerParallelism() {
+        try {
+            return getJDBCDelegate().getEagerParallelism();
+        } catch (RuntimeException re) {
+            throw translate(re);
+        }
+    }
+
+    @Override
+    public JDBCFetchConfiguration setEagerParallelism(int parallelism) {
+        try {
+            getJDBCDelegate().setEagerParallelism(parallelism);
+            return this;
+        } catch (RuntimeException re) {
+            throw translate(re);
+        }
+    }
+
+    @Override
+    public int getRelationBatchSize() {
+        try {
+            return getJDBCDelegate().getRelationBatchSize();
+        } catch (RuntimeException re) {
+            throw translate(re);
+        }
+    }
+
+    @Override
+    public JDBCFetchConfiguration setRelationBatchSize(int size) {
+        try {
+            getJDBCDelegate().setRelationBatchSize(size);
+            return this;
+        } catch (RuntimeException re) {
+            throw translate(re);
+        }
+    }
+
     @Override
     public int getJoinSyntax() {
         try {
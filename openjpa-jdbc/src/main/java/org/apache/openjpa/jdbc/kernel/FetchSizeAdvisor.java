@@ -0,0 +1,78 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.openjpa.jdbc.kernel;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Set;
+
+/**
+ * Chooses the JDBC fetch size of select statements whose fetch batch size
+ * is not set by the user, from what it has learned about earlier executions
+ * of the same SQL.
+ *
+ * @since 4.1.1
+ */
+public interface FetchSizeAdvisor {
+
+    /**
+     * The fetch size for the next execution of the given SQL, or 0 to leave
+     * the fetch size of the driver.
+     */
+    int getFetchSize(String sql);
+
+    /**
+     * Notification that the given SQL has been executed.
+     */
+    void executed(String sql, ResultSet rs)
+        throws SQLException;
+
+    /**
+     * Notification that the result of the given SQL has been closed after
+     * the given number of rows was read.
+     */
+    void closed(String sql, int rows);
+
+    /**
+     * The SQL of the statements the advisor has learned about.
+     */
+    Set<String> getStatements();
+
+    /**
+     * The average number of rows read from the result of the given SQL, or
+     * -1 if unknown.
+     */
+    double getRowCount(String sql);
+
+    /**
+     * The estimated width in bytes of a row of the result of the given SQL,
+     * or -1 if unknown.
+     */
+    int getRowWidth(String sql);
+
+    /**
+     * The number of executions of the given SQL.
+     */
+    long getExecutionCount(String sql);
+
+    /**
+     * Forget all that has been learned.
+     */
+    void clear();
+}
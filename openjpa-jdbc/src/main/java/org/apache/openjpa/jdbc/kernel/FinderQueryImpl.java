@@ -155,6 +155,8 @@ public class FinderQueryImpl
         DBDictionary dict = jstore.getDBDictionary();
         PreparedStatement stmnt = null;
         ResultSet rs = null;
+        FetchSizeAdvisor advisor = _select.getFetchSizeAdvisor(
+            (JDBCFetchConfiguration) fetch);
         try {
             stmnt = _select.prepareStatement(conn, _sql);
             Object[] params = getPKValues(sm, jstore);
@@ -162,12 +164,17 @@ public class FinderQueryImpl
                 for (int i = 0; i <params.length; i++) {
                     dict.setUnknown(stmnt, i+1, params[i], _pkCols[i]);
                 }
+                if (advisor != null)
+                    SelectImpl.adviseFetchSize(advisor, stmnt, _sql);
             }
             dict.setTimeouts(stmnt, (JDBCFetchConfiguration)fetch, forUpdate);
             rs = _select.executeQuery(conn, stmnt, getQueryString(), jstore,
                 params, _pkCols);
-            return _select.getEagerResult(conn, stmnt, rs, jstore,
+            Result res = _select.getEagerResult(conn, stmnt, rs, jstore,
                 (JDBCFetchConfiguration)fetch, forUpdate, _buffer);
+            if (advisor != null && rs != null)
+                SelectImpl.learnFetchSize(advisor, _sql, rs, res);
+            return res;
         } catch (SQLException se) {
             if (stmnt != null)
                 try { stmnt.close(); } catch (SQLException se2) {}
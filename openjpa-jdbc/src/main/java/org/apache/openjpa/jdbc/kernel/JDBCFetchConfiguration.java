@@ -112,6 +112,48 @@ public interface JDBCFetchConfiguration
      */
     JDBCFetchConfiguration setJoinSyntax(int syntax);
 
+    /**
+     * The number of eager parallel selects of a select that may run at the
+     * same time, each on a connection of its own. 1 runs them one after
+     * another on the connection of the store. Defaults to the
+     * <code>openjpa.jdbc.EagerParallelism</code> setting.
+     *
+     * @since 4.1.1
+     */
+    int getEagerParallelism();
+
+    /**
+     * The number of eager parallel selects of a select that may run at the
+     * same time, each on a connection of its own. 1 runs them one after
+     * another on the connection of the store. Defaults to the
+     * <code>openjpa.jdbc.EagerParallelism</code> setting.
+     *
+     * @since 4.1.1
+     */
+    JDBCFetchConfiguration setEagerParallelism(int parallelism);
+
+    /**
+     * The number of instances of the same type whose unloaded to-one
+     * relation is loaded by a single select when the relation of one of
+     * them is first accessed. 1 loads the relation of each instance with a
+     * select of its own. Defaults to the
+     * <code>openjpa.jdbc.RelationBatchSize</code> setting.
+     *
+     * @since 4.1.1
+     */
+    int getRelationBatchSize();
+
+    /**
+     * The number of instances of the same type whose unloaded to-one
+     * relation is loaded by a single select when the relation of one of
+     * them is first accessed. 1 loads the relation of each instance with a
+     * select of its own. Defaults to the
+     * <code>openjpa.jdbc.RelationBatchSize</code> setting.
+     *
+     * @since 4.1.1
+     */
+    JDBCFetchConfiguration setRelationBatchSize(int size);
+
     /**
      * Returns the names of the joins that this component will use
      * when loading objects. Defaults to the empty set.  This set is not
@@ -75,6 +75,8 @@ public class JDBCFetchConfigurationImpl
         populateHintSetter(target, "LRSSize", int.class, prefixes);
         populateHintSetter(target, "setLRSSize", "LRSSizeAlgorithm", int.class, prefixes);
         populateHintSetter(target, "ResultSetType", int.class, prefixes);
+        populateHintSetter(target, "EagerParallelism", int.class, prefixes);
+        populateHintSetter(target, "RelationBatchSize", int.class, prefixes);
     }
 
     /**
@@ -89,6 +91,8 @@ public class JDBCFetchConfigurationImpl
         public int direction = 0;
         public int size = 0;
         public int syntax = 0;
+        public int parallelism = 1;
+        public int relationBatchSize = 1;
         public Set<String> joins = null;
         public Set<String> fetchInnerJoins = null;
         public int isolationLevel = -1;
@@ -126,6 +130,8 @@ public class JDBCFetchConfigurationImpl
         setFetchDirection(conf.getFetchDirectionConstant());
         setLRSSize(conf.getLRSSizeConstant());
         setJoinSyntax(conf.getDBDictionaryInstance().joinSyntax);
+        setEagerParallelism(conf.getEagerParallelism());
+        setRelationBatchSize(conf.getRelationBatchSize());
     }
 
     @Override
@@ -138,6 +144,8 @@ public class JDBCFetchConfigurationImpl
         setFetchDirection(jf.getFetchDirection());
         setLRSSize(jf.getLRSSize());
         setJoinSyntax(jf.getJoinSyntax());
+        setEagerParallelism(jf.getEagerParallelism());
+        setRelationBatchSize(jf.getRelationBatchSize());
         addJoins(jf.getJoins());
         setIgnoreDfgForFkSelect(jf.getIgnoreDfgForFkSelect());
     }
@@ -297,6 +305,46 @@ public class JDBCFetchConfigurationImpl
         return this;
     }
 
+    @Override
+    public int getEagerParallelism() {
+        return _state.parallelism;
+    }
+
+    @Override
+    public JDBCFetchConfiguration setEagerParallelism(int parallelism) {
+        if (parallelism != DEFAULT && parallelism < 1)
+            throw new IllegalArgumentException(_loc.get("bad-eager-parallelism",
+                parallelism).getMessage());
+
+        if (parallelism == DEFAULT) {
+            JDBCConfiguration conf = getJDBCConfiguration();
+            if (conf != null)
+                _state.parallelism = conf.getEagerParallelism();
+        } else
+            _state.parallelism = parallelism;
+        return this;
+    }
+
+    @Override
+    public int getRelationBatchSize() {
+        return _state.relationBatchSize;
+    }
+
+    @Override
+    public JDBCFetchConfiguration setRelationBatchSize(int size) {
+        if (size != DEFAULT && size < 1)
+            throw new IllegalArgumentException(_loc.get(
+                "bad-relation-batch-size", size).getMessage());
+
+        if (size == DEFAULT) {
+            JDBCConfiguration conf = getJDBCConfiguration();
+            if (conf != null)
+                _state.relationBatchSize = conf.getRelationBatchSize();
+        } else
+            _state.relationBatchSize = size;
+        return this;
+    }
+
     @Override
     public ResultList<?> newResultList(ResultObjectProvider rop) {
         // if built around a list, just use a simple wrapper
@@ -309,6 +357,11 @@ public class JDBCFetchConfigurationImpl
             return new WindowResultList(rop, ((PagingResultObjectProvider)
                 rop).getPageSize());
 
+        // if paging by keyset, keep a window of a page of results
+        if (rop instanceof KeysetResultObjectProvider)
+            return new WindowResultList(rop, ((KeysetResultObjectProvider)
+                rop).getPageSize());
+
         // if fetch size < 0 just read in all results immediately
         if (getFetchBatchSize() < 0)
             return new EagerResultList(rop);
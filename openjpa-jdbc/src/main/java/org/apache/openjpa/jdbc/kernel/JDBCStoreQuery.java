@@ -31,10 +31,12 @@ import java.util.Map;
 
 import org.apache.openjpa.event.LifecycleEventManager;
 import org.apache.openjpa.jdbc.kernel.exps.ExpContext;
+import org.apache.openjpa.jdbc.kernel.exps.ExpState;
 import org.apache.openjpa.jdbc.kernel.exps.GetColumn;
 import org.apache.openjpa.jdbc.kernel.exps.JDBCExpressionFactory;
 import org.apache.openjpa.jdbc.kernel.exps.JDBCStringContains;
 import org.apache.openjpa.jdbc.kernel.exps.JDBCWildcardMatch;
+import org.apache.openjpa.jdbc.kernel.exps.Lit;
 import org.apache.openjpa.jdbc.kernel.exps.PCPath;
 import org.apache.openjpa.jdbc.kernel.exps.QueryExpressionsState;
 import org.apache.openjpa.jdbc.kernel.exps.SQLEmbed;
@@ -90,6 +92,9 @@ public class JDBCStoreQuery
     
     private static final long serialVersionUID = 1L;
 
+    private static final Localizer _loc = Localizer.forPackage
+        (JDBCStoreQuery.class);
+
     private static final Table INVALID = new Table();
 
     // add all standard filter and aggregate listeners to these maps
@@ -159,10 +164,43 @@ public class JDBCStoreQuery
     }
 
     @Override
-    protected ResultObjectProvider executeQuery(Executor ex,
+    protected ResultObjectProvider executeQuery(final Executor ex,
+        final ClassMetaData base, final ClassMetaData[] metas,
+        final boolean subclasses, final ExpressionFactory[] facts,
+        final QueryExpressions[] exps, final Object[] params, Range range) {
+        Object[] after = getKeyset(exps[0]);
+        int pageSize = getKeysetPageSize(exps[0]);
+        if (pageSize == 0)
+            return executeQuery(ex, base, metas, subclasses, facts, exps,
+                params, range, after);
+
+        return new KeysetResultObjectProvider(new KeysetResultObjectProvider.Pager() {
+            @Override
+            public ResultObjectProvider execute(Object[] key, long start,
+                long end) {
+                return executeQuery(ex, base, metas, subclasses, facts, exps,
+                    params, new Range(start, end), key);
+            }
+
+            @Override
+            public Object[] getKey(Object result) {
+                Object[] key = new Object[exps[0].ordering.length];
+                for (int i = 0; i < key.length; i++)
+                    key[i] = ex.getOrderingValue(JDBCStoreQuery.this, params,
+                        result, i);
+                return key;
+            }
+        }, after, range.start, range.end, pageSize);
+    }
+
+    /**
+     * Execute the query for the given range of the results that follow the
+     * given ordering values, or of all results if the values are null.
+     */
+    private ResultObjectProvider executeQuery(Executor ex,
         ClassMetaData base, ClassMetaData[] metas, boolean subclasses,
         ExpressionFactory[] facts, QueryExpressions[] exps, Object[] params,
-        Range range) {
+        Range range, Object[] keyset) {
         Context[] ctxs = new Context[exps.length];
         for (int i = 0; i < exps.length; i++)
             ctxs[i] = exps[i].ctx();
@@ -202,7 +240,7 @@ public class JDBCStoreQuery
         BitSet nextBits = new BitSet();
         boolean unionable = createWhereSelects(sels, mappings, selMappings,
             subclasses, subclassBits, nextBits, facts, exps, states, ctx,
-            subclassMode)
+            subclassMode, keyset)
             && subclassMode == EagerFetchModes.EAGER_JOIN
             && start == 0
             && end == Long.MAX_VALUE;
@@ -344,12 +382,14 @@ public class JDBCStoreQuery
 
     /**
      * Generate the selects with WHERE conditions needed to execute the query
-     * for the given mappings.
+     * for the given mappings, limited to the results that follow the given
+     * ordering values if they are not null.
      */
     private boolean createWhereSelects(List sels, ClassMapping[] mappings,
         List selMappings, boolean subclasses, BitSet subclassBits,
         BitSet nextBits, ExpressionFactory[] facts, QueryExpressions[] exps,
-        QueryExpressionsState[] states, ExpContext ctx, int subclassMode) {
+        QueryExpressionsState[] states, ExpContext ctx, int subclassMode,
+        Object[] keyset) {
         Number optHint = (Number) ctx.fetch.getHint
             (QueryHints.HINT_RESULT_COUNT);
         ClassMapping[] verts;
@@ -370,6 +410,9 @@ public class JDBCStoreQuery
             // create criteria select and clone for each vert mapping
             sel = ((JDBCExpressionFactory) facts[i]).getSelectConstructor().
                 evaluate(ctx, null, null, exps[i], states[i]);
+            if (keyset != null)
+                whereAfter(sel, (JDBCExpressionFactory) facts[i], exps[i],
+                    states[i], ctx, keyset);
             if (optHint != null)
                sel.setExpectedResultCount(optHint.intValue(), true);
             else if (this.ctx.isUnique())
@@ -411,6 +454,136 @@ public class JDBCStoreQuery
         return unionable;
     }
 
+    /**
+     * Add the condition that selects the results that come after the given
+     * ordering values in the ordering of the query. The condition compares
+     * the lists of ordering columns and values if the database supports it
+     * and all orderings have the same direction, and otherwise expands into
+     * <code>o1 &gt; ? OR (o1 = ? AND o2 &gt; ?) ...</code>, with
+     * <code>&lt;</code> for descending orderings.
+     */
+    private void whereAfter(Select sel, JDBCExpressionFactory fact,
+        QueryExpressions exps, QueryExpressionsState state, ExpContext ctx,
+        Object[] keyset) {
+        // the ordering is initialized on the inner select if present
+        Select inner = sel.getFromSelect();
+        if (inner != null)
+            sel = inner;
+
+        Val[] vals = new Val[keyset.length];
+        Lit[] lits = new Lit[keyset.length];
+        ExpState[] litStates = new ExpState[keyset.length];
+        boolean sameDirection = true;
+        for (int i = 0; i < keyset.length; i++) {
+            vals[i] = (Val) exps.ordering[i];
+            lits[i] = (Lit) fact.newLiteral(keyset[i], Literal.TYPE_UNKNOWN);
+            litStates[i] = lits[i].initialize(sel, ctx, 0);
+            vals[i].calculateValue(sel, ctx, state.ordering[i], lits[i],
+                litStates[i]);
+            lits[i].calculateValue(sel, ctx, litStates[i], vals[i],
+                state.ordering[i]);
+            if (vals[i].length(sel, ctx, state.ordering[i]) != 1)
+                throw new UserException(_loc.get("keyset-multi-column",
+                    this.ctx.getQueryString(), exps.orderingClauses[i]));
+            sameDirection &= exps.ascending[i] == exps.ascending[0];
+        }
+
+        DBDictionary dict = _store.getDBDictionary();
+        SQLBuffer buf = new SQLBuffer(dict);
+        buf.append("(");
+        if (keyset.length > 1 && sameDirection
+            && dict.supportsRowValueComparison) {
+            buf.append("(");
+            for (int i = 0; i < vals.length; i++) {
+                if (i > 0)
+                    buf.append(", ");
+                vals[i].appendTo(sel, ctx, state.ordering[i], buf, 0);
+            }
+            buf.append((exps.ascending[0]) ? ") > (" : ") < (");
+            for (int i = 0; i < lits.length; i++) {
+                if (i > 0)
+                    buf.append(", ");
+                lits[i].appendTo(sel, ctx, litStates[i], buf, 0);
+            }
+            buf.append(")");
+        } else {
+            for (int i = 0; i < vals.length; i++) {
+                if (i > 0)
+                    buf.append(" OR ");
+                buf.append("(");
+                for (int j = 0; j < i; j++) {
+                    vals[j].appendTo(sel, ctx, state.ordering[j], buf, 0);
+                    buf.append(" = ");
+                    lits[j].appendTo(sel, ctx, litStates[j], buf, 0);
+                    buf.append(" AND ");
+                }
+                vals[i].appendTo(sel, ctx, state.ordering[i], buf, 0);
+                buf.append((exps.ascending[i]) ? " > " : " < ");
+                lits[i].appendTo(sel, ctx, litStates[i], buf, 0);
+                buf.append(")");
+            }
+        }
+        buf.append(")");
+        sel.where(buf);
+    }
+
+    /**
+     * Return the ordering values given by the query hint that the results
+     * follow, or null if not paging by keyset.
+     */
+    private Object[] getKeyset(QueryExpressions exps) {
+        Object hint = ctx.getFetchConfiguration().getHint
+            (QueryHints.HINT_KEYSET_AFTER);
+        if (hint == null)
+            return null;
+        Object[] keyset;
+        if (hint instanceof Object[])
+            keyset = (Object[]) hint;
+        else if (hint instanceof Collection)
+            keyset = ((Collection) hint).toArray();
+        else
+            keyset = new Object[]{ hint };
+
+        assertKeyset(exps);
+        if (keyset.length != exps.ordering.length)
+            throw new UserException(_loc.get("keyset-bad-key",
+                ctx.getQueryString(), Arrays.asList(keyset),
+                exps.ordering.length));
+        for (Object val : keyset)
+            if (val == null)
+                throw new UserException(_loc.get("keyset-null-key",
+                    ctx.getQueryString(), Arrays.asList(keyset)));
+        return keyset;
+    }
+
+    /**
+     * Return the size of the pages to read the results in by keyset, or 0
+     * if not paging by keyset.
+     */
+    private int getKeysetPageSize(QueryExpressions exps) {
+        Object hint = ctx.getFetchConfiguration().getHint
+            (QueryHints.HINT_KEYSET_PAGE_SIZE);
+        if (hint == null)
+            return 0;
+        int size = ((Number) Filters.convert(hint, Integer.class)).intValue();
+        if (size < 1)
+            throw new UserException(_loc.get("keyset-page-size", hint));
+        assertKeyset(exps);
+        return size;
+    }
+
+    /**
+     * Assert that the results of the given query can be paged by keyset.
+     */
+    private void assertKeyset(QueryExpressions exps) {
+        if (exps.ordering.length == 0)
+            throw new UserException(_loc.get("keyset-no-ordering",
+                ctx.getQueryString()));
+        if (exps.isAggregate() || exps.grouping.length > 0)
+            throw new UserException(_loc.get("keyset-aggregate",
+                ctx.getQueryString()));
+    }
+
     private List getJoinedTableMeta(Select sel) {
         List selectFrom = sel.getJoinedTableClassMeta();
         List exSelectFrom = sel.getExcludedJoinedTableClassMeta();
@@ -728,7 +901,8 @@ public class JDBCStoreQuery
         BitSet nextBits = new BitSet();
         boolean unionable = createWhereSelects(sels, mappings, selMappings,
             subclasses, subclassBits, nextBits, facts, exps, states, ctx,
-            subclassMode) && subclassMode == EagerFetchModes.EAGER_JOIN;
+            subclassMode, getKeyset(exps[0]))
+            && subclassMode == EagerFetchModes.EAGER_JOIN;
         if (sels.size() > 1)
             start = 0L;
 
@@ -0,0 +1,214 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.openjpa.jdbc.kernel;
+
+import java.util.NoSuchElementException;
+
+import org.apache.openjpa.lib.rop.ResultObjectProvider;
+import org.apache.openjpa.util.StoreException;
+
+/**
+ * Reads the results of a query in pages, each page selecting the results
+ * that follow the ordering values of the last result of the page before it
+ * rather than skipping rows. Every page is found through the ordering
+ * columns, so reading a page costs the same however far into the results it
+ * is. Only one page is open at a time.
+ *
+ * The first result of the range is skipped by the first page only, and no
+ * more results than the range allows are read.
+ *
+ * @since 4.1.1
+ */
+public class KeysetResultObjectProvider
+    implements ResultObjectProvider {
+
+    /**
+     * Executes the pages of a query.
+     */
+    public interface Pager {
+
+        /**
+         * Execute the page of the query with the given range of the results
+         * that follow the given ordering values, or of all results if the
+         * values are null.
+         */
+        ResultObjectProvider execute(Object[] after, long start, long end);
+
+        /**
+         * Return the ordering values of the given result.
+         */
+        Object[] getKey(Object result);
+    }
+
+    private final Pager _pager;
+    private final Object[] _after;
+    private final long _start;
+    private final long _end;
+    private final int _pageSize;
+
+    private ResultObjectProvider _page = null;
+    private ResultObjectProvider _last = null;
+    private Object[] _key = null;
+    private Object _result = null;
+    private long _read = 0;
+    private long _pageCount = 0;
+    private long _pageRead = 0;
+    private boolean _done = false;
+
+    /**
+     * Constructor.
+     *
+     * @param pager executes the pages
+     * @param after the ordering values the results follow, or null
+     * @param start 0-based inclusive start index of the results
+     * @param end 0-based exclusive end index of the results, or
+     * Long.MAX_VALUE for no limit
+     * @param pageSize the number of results to read in a page
+     */
+    public KeysetResultObjectProvider(Pager pager, Object[] after,
+        long start, long end, int pageSize) {
+        _pager = pager;
+        _after = after;
+        _start = start;
+        _end = end;
+        _pageSize = pageSize;
+    }
+
+    /**
+     * The number of results read in a page.
+     */
+    public int getPageSize() {
+        return _pageSize;
+    }
+
+    @Override
+    public boolean supportsRandomAccess() {
+        return false;
+    }
+
+    @Override
+    public void open()
+        throws Exception {
+        _key = _after;
+        _result = null;
+        _read = 0;
+        _pageCount = 0;
+        _pageRead = 0;
+        _done = false;
+    }
+
+    @Override
+    public Object getResultObject()
+        throws Exception {
+        if (_pageRead == 0)
+            throw new NoSuchElementException();
+        return _result;
+    }
+
+    @Override
+    public boolean next()
+        throws Exception {
+        while (!_done) {
+            if (_page == null && !openPage())
+                break;
+            if (_page.next()) {
+                _result = _page.getResultObject();
+                _pageRead++;
+                _read++;
+                return true;
+            }
+
+            // a short page is the last; otherwise the next page follows
+            // the last result of this one
+            closePage();
+            if (_pageRead < _pageCount)
+                _done = true;
+            else
+                _key = _pager.getKey(_result);
+        }
+        return false;
+    }
+
+    /**
+     * Execute the next page, returning false if the range has been read.
+     */
+    private boolean openPage()
+        throws Exception {
+        long remaining = (_end == Long.MAX_VALUE) ? Long.MAX_VALUE
+            : _end - _start - _read;
+        if (remaining <= 0) {
+            _done = true;
+            return false;
+        }
+
+        long start = (_read == 0) ? _start : 0;
+        _pageCount = Math.min(_pageSize, remaining);
+        _pageRead = 0;
+        _page = _pager.execute(_key, start, start + _pageCount);
+        _last = _page;
+        try {
+            _page.open();
+        } catch (Exception e) {
+            _page = null;
+            throw e;
+        }
+        return true;
+    }
+
+    private void closePage()
+        throws Exception {
+        ResultObjectProvider page = _page;
+        _page = null;
+        if (page != null)
+            page.close();
+    }
+
+    @Override
+    public boolean absolute(int pos)
+        throws Exception {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public int size()
+        throws Exception {
+        return Integer.MAX_VALUE;
+    }
+
+    @Override
+    public void reset()
+        throws Exception {
+        close();
+        open();
+    }
+
+    @Override
+    public void close()
+        throws Exception {
+        _done = true;
+        closePage();
+    }
+
+    @Override
+    public void handleCheckedException(Exception e) {
+        if (_last != null)
+            _last.handleCheckedException(e);
+        throw new StoreException(e);
+    }
+}
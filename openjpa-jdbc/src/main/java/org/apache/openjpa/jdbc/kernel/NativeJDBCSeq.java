@@ -23,6 +23,9 @@ import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.text.MessageFormat;
+import java.util.concurrent.Callable;
+
+import javax.sql.DataSource;
 
 import org.apache.openjpa.conf.OpenJPAConfiguration;
 import org.apache.openjpa.jdbc.conf.JDBCConfiguration;
@@ -78,6 +81,9 @@ public class NativeJDBCSeq
     private String _select = null;
     private long _nextValue = 0;
     private long _maxValue = -1;
+    private boolean _preallocate = false;
+    private int _lowWater = 50;
+    private volatile PreallocatedBlocks _blocks = null;
 
     private DBIdentifier _schema = DBIdentifier.NULL;
 
@@ -142,6 +148,51 @@ public class NativeJDBCSeq
         _increment = increment;
     }
 
+    /**
+     * Whether to fetch the next block of sequence values in the background.
+     *
+     * @since 4.1.1
+     */
+    public boolean getPreallocate() {
+        return _preallocate;
+    }
+
+    /**
+     * Whether to fetch the next block of sequence values in the background
+     * when the values left in the current block fall below the low-water
+     * mark, and hand out the values of the current block without locking.
+     * The block is fetched on a connection of its own, so it does not apply
+     * in a managed transaction without a second connection factory.
+     * Defaults to false.
+     *
+     * @since 4.1.1
+     */
+    public void setPreallocate(boolean preallocate) {
+        _preallocate = preallocate;
+    }
+
+    /**
+     * The percentage of the values of a block that are left when the next
+     * block is fetched.
+     *
+     * @since 4.1.1
+     */
+    public int getLowWaterMark() {
+        return _lowWater;
+    }
+
+    /**
+     * The percentage of the values of a block that are left when the next
+     * block is fetched. Defaults to 50.
+     *
+     * @since 4.1.1
+     */
+    public void setLowWaterMark(int lowWater) {
+        if (lowWater < 1 || lowWater > 99)
+            throw new UserException(_loc.get("bad-seq-low-water", lowWater));
+        _lowWater = lowWater;
+    }
+
     @Override
     public void addSchema(ClassMapping mapping, SchemaGroup group) {
         // sequence already exists?
@@ -196,18 +247,48 @@ public class NativeJDBCSeq
     }
 
     @Override
-    protected synchronized Object nextInternal(JDBCStore store, ClassMapping mapping)
+    protected Object nextInternal(JDBCStore store, ClassMapping mapping)
         throws SQLException {
-        if (!alterIncrementBy) {
-            allocateInternal(0, store, mapping);
-            alterIncrementBy = true;
+        if (_preallocate && !suspendInJTA())
+            return getBlocks(store).next(new BlockAllocator(store),
+                getPreallocationExecutor());
+
+        synchronized (this) {
+            if (!alterIncrementBy) {
+                allocateInternal(0, store, mapping);
+                alterIncrementBy = true;
+            }
+            if (_nextValue >= _maxValue) {
+                allocateInternal(0, store, mapping);
+            }
+            long result = _nextValue;
+            _nextValue += _increment;
+            return result;
         }
-        if (_nextValue >= _maxValue) {
-            allocateInternal(0, store, mapping);
+    }
+
+    /**
+     * Return the preallocated blocks, altering the increment of the database
+     * sequence first if needed. The size of a block is fixed by the increment
+     * of the database sequence.
+     */
+    private PreallocatedBlocks getBlocks(JDBCStore store)
+        throws SQLException {
+        PreallocatedBlocks blocks = _blocks;
+        if (blocks == null) {
+            synchronized (this) {
+                if (_blocks == null) {
+                    if (!alterIncrementBy) {
+                        alterIncrementBy(store);
+                        alterIncrementBy = true;
+                    }
+                    _blocks = new PreallocatedBlocks(_increment, _allocate, 0,
+                        _lowWater, _conf.getLog(OpenJPAConfiguration.LOG_RUNTIME));
+                }
+                blocks = _blocks;
+            }
         }
-        long result = _nextValue;
-        _nextValue += _increment;
-        return result;
+        return blocks;
     }
 
     /**
@@ -221,43 +302,50 @@ public class NativeJDBCSeq
         throws SQLException {
         Connection conn = getConnection(store);
         try {
-            if (!alterIncrementBy) {
-                DBDictionary dict = _conf.getDBDictionaryInstance();
-                if (!dict.disableAlterSeqenceIncrementBy) {
-                    // If this fails, we will warn the user at most one time and set _allocated and _increment to 1 so
-                    // as to not potentially insert records ahead of what the database thinks is the next sequence
-                    // value.
-
-                    // first we have to allocate a new connection as some databases do an implicit commit
-                    // if a DDL gets changed. Others do blow up on a DDL change
-                    try (Connection newConn = getConnection(store, true)) {
-                        if (updateSql(newConn, dict.getAlterSequenceSQL(_seq)) == -1) {
-                            newConn.commit(); // new connection has autoCommit=false
-                            if (!alreadyLoggedAlterSeqFailure) {
-                                Log log = _conf.getLog(OpenJPAConfiguration.LOG_RUNTIME);
-                                if (log.isWarnEnabled()) {
-                                    log.warn(_loc.get("fallback-no-seq-cache", _seqName));
-                                }
-                            }
-                            alreadyLoggedAlterSeqFailure = true;
-                            _allocate = 1;
-                        }
-                    }
-                } else {
-                    if (!alreadyLoggedAlterSeqDisabled) {
+            if (!alterIncrementBy)
+                alterIncrementBy(store);
+            _nextValue = getSequence(conn);
+            _maxValue = _nextValue + _allocate * _increment;
+        } finally {
+            closeConnection(conn);
+        }
+    }
+
+    /**
+     * Alter the increment of the database sequence to the allocation size.
+     */
+    private void alterIncrementBy(JDBCStore store)
+        throws SQLException {
+        DBDictionary dict = _conf.getDBDictionaryInstance();
+        if (!dict.disableAlterSeqenceIncrementBy) {
+            // If this fails, we will warn the user at most one time and set _allocated and _increment to 1 so
+            // as to not potentially insert records ahead of what the database thinks is the next sequence
+            // value.
+
+            // first we have to allocate a new connection as some databases do an implicit commit
+            // if a DDL gets changed. Others do blow up on a DDL change
+            try (Connection newConn = getConnection(store, true)) {
+                if (updateSql(newConn, dict.getAlterSequenceSQL(_seq)) == -1) {
+                    newConn.commit(); // new connection has autoCommit=false
+                    if (!alreadyLoggedAlterSeqFailure) {
                         Log log = _conf.getLog(OpenJPAConfiguration.LOG_RUNTIME);
                         if (log.isWarnEnabled()) {
-                            log.warn(_loc.get("alter-seq-disabled", _seqName));
+                            log.warn(_loc.get("fallback-no-seq-cache", _seqName));
                         }
                     }
-
-                    alreadyLoggedAlterSeqDisabled = true;
+                    alreadyLoggedAlterSeqFailure = true;
+                    _allocate = 1;
                 }
             }
-            _nextValue = getSequence(conn);
-            _maxValue = _nextValue + _allocate * _increment;
-        } finally {
-            closeConnection(conn);
+        } else {
+            if (!alreadyLoggedAlterSeqDisabled) {
+                Log log = _conf.getLog(OpenJPAConfiguration.LOG_RUNTIME);
+                if (log.isWarnEnabled()) {
+                    log.warn(_loc.get("alter-seq-disabled", _seqName));
+                }
+            }
+
+            alreadyLoggedAlterSeqDisabled = true;
         }
     }
 
@@ -458,6 +546,45 @@ public class NativeJDBCSeq
         return true;
     }
 
+    /**
+     * Fetches blocks of sequence values, in the calling thread or in the
+     * background.
+     */
+    private class BlockAllocator implements PreallocatedBlocks.Allocator {
+        private final JDBCStore _store;
+
+        BlockAllocator(JDBCStore store) {
+            _store = store;
+        }
+
+        @Override
+        public long[] allocate(int size)
+            throws SQLException {
+            Connection conn = getConnection(_store);
+            try {
+                long first = getSequence(conn);
+                return new long[]{ first, first + (long) size * _increment };
+            } finally {
+                closeConnection(conn);
+            }
+        }
+
+        @Override
+        public Callable<long[]> background(final int size) {
+            // the data source of the context is looked up in the calling
+            // thread, as the context may be closed by the time the task runs
+            final DataSource ds = _conf.getDataSource2(_store.getContext());
+            return () -> {
+                try (Connection conn = ds.getConnection()) {
+                    long first = getSequence(conn);
+                    if (!conn.getAutoCommit())
+                        conn.commit();
+                    return new long[]{ first, first + (long) size * _increment };
+                }
+            };
+        }
+    }
+
     /**
      * @deprecated
      */
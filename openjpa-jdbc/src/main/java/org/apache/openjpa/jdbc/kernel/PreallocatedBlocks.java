@@ -0,0 +1,213 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.openjpa.jdbc.kernel;
+
+import java.sql.SQLException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.openjpa.lib.log.Log;
+import org.apache.openjpa.lib.util.Localizer;
+
+/**
+ * Hands out the values of blocks allocated from a sequence without locking,
+ * and allocates the next block in the background once the values left in
+ * the current block fall below a low-water mark. A thread only waits for the
+ * database when the current block runs out before the next block arrives.
+ *
+ * The size of the blocks may be tuned to the rate at which values are used,
+ * so that a block lasts about a second, within the given bounds.
+ *
+ * @since 4.1.1
+ */
+class PreallocatedBlocks {
+
+    private static final Localizer _loc = Localizer.forPackage(PreallocatedBlocks.class);
+
+    // a tuned block lasts about this long at the observed rate of use
+    private static final long TARGET_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+    /**
+     * Allocates blocks of values from the database.
+     */
+    interface Allocator {
+
+        /**
+         * Allocate a block of the given number of values in the calling
+         * thread. Returns the first value and the end of the block, exclusive.
+         */
+        long[] allocate(int size)
+            throws SQLException;
+
+        /**
+         * A task that allocates a block of the given number of values in
+         * another thread, or null if blocks can not be allocated in the
+         * background. The task returns the first value and the end of the
+         * block, or null if it could not allocate.
+         */
+        Callable<long[]> background(int size);
+    }
+
+    private final int _step;
+    private final int _lowWater;
+    private final int _minSize;
+    private final int _maxSize;
+    private final Log _log;
+    private volatile int _size;
+    private volatile Block _block = null;
+    private Future<long[]> _pending = null;
+
+    /**
+     * Constructor.
+     *
+     * @param step the difference between consecutive values
+     * @param size the number of values in a block
+     * @param maxSize the largest number of values in a tuned block; blocks
+     * are not tuned unless it is larger than <code>size</code>
+     * @param lowWater the percentage of the values of a block that are left
+     * when the next block is allocated
+     */
+    PreallocatedBlocks(int step, int size, int maxSize, int lowWater, Log log) {
+        _step = Math.max(step, 1);
+        _size = Math.max(size, 1);
+        _minSize = _size;
+        _maxSize = Math.max(maxSize, _size);
+        _lowWater = lowWater;
+        _log = log;
+    }
+
+    /**
+     * Return the next value.
+     */
+    long next(Allocator allocator, ExecutorService executor)
+        throws SQLException {
+        while (true) {
+            Block block = _block;
+            if (block != null) {
+                long val = block.next.getAndAdd(_step);
+                if (val < block.end) {
+                    // only one thread is handed the low-water value
+                    if (val == block.lowWater)
+                        preallocate(block, allocator, executor);
+                    return val;
+                }
+            }
+            synchronized (this) {
+                if (_block == block)
+                    _block = nextBlock(allocator);
+            }
+        }
+    }
+
+    /**
+     * Make sure that the current block has at least the given number of
+     * values left.
+     */
+    synchronized void ensureAvailable(int count, Allocator allocator)
+        throws SQLException {
+        Block block = _block;
+        if (block != null && (block.end - block.next.get()) / _step >= count)
+            return;
+        _block = new Block(allocator.allocate(Math.max(count, _size)));
+    }
+
+    /**
+     * Take the block allocated in the background, or allocate one in the
+     * calling thread if there is none.
+     */
+    private Block nextBlock(Allocator allocator)
+        throws SQLException {
+        Future<long[]> pending = _pending;
+        _pending = null;
+        long[] range = null;
+        if (pending != null) {
+            try {
+                range = pending.get();
+            } catch (ExecutionException ee) {
+                if (_log.isWarnEnabled())
+                    _log.warn(_loc.get("seq-preallocate-failed"), ee.getCause());
+            } catch (InterruptedException ie) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        if (range == null)
+            range = allocator.allocate(_size);
+        return new Block(range);
+    }
+
+    /**
+     * Start allocating the block that follows the given block.
+     */
+    private void preallocate(Block block, Allocator allocator,
+        ExecutorService executor) {
+        Callable<long[]> task = allocator.background(tune(block));
+        if (task == null)
+            return;
+        synchronized (this) {
+            if (_block != block || _pending != null)
+                return;
+            try {
+                _pending = executor.submit(task);
+            } catch (RejectedExecutionException ree) {
+                // closed; the next block is allocated when it is needed
+            }
+        }
+    }
+
+    /**
+     * Size the next block from the rate at which the values of the given
+     * block have been used.
+     */
+    private int tune(Block block) {
+        if (_maxSize == _minSize)
+            return _size;
+        long used = (block.lowWater - block.first) / _step + 1;
+        long elapsed = Math.max(System.nanoTime() - block.created, 1);
+        long wanted = (long) ((double) used * TARGET_NANOS / elapsed);
+        // move halfway to the wanted size, so that bursts do not swing it
+        long size = (_size + wanted) / 2;
+        _size = (int) Math.max(_minSize, Math.min(_maxSize, size));
+        return _size;
+    }
+
+    /**
+     * A block of values.
+     */
+    private class Block {
+        final AtomicLong next;
+        final long first;
+        final long end;
+        final long lowWater;
+        final long created = System.nanoTime();
+
+        Block(long[] range) {
+            first = range[0];
+            end = range[1];
+            next = new AtomicLong(first);
+            long count = Math.max((end - first) / _step, 1);
+            long left = Math.max(count * _lowWater / 100, 1);
+            lowWater = first + Math.max(count - left, 0) * _step;
+        }
+    }
+}
@@ -82,7 +82,8 @@ public class PreparedQueryCacheImpl implements PreparedQueryCache {
             || QueryLanguages.LANG_SQL.equals(query.getLanguage())
             || QueryLanguages.LANG_METHODQL.equals(query.getLanguage())
             || isHinted(hints, QueryHints.HINT_IGNORE_PREPARED_QUERY)
-            || isHinted(hints, QueryHints.HINT_INVALIDATE_PREPARED_QUERY))
+            || isHinted(hints, QueryHints.HINT_INVALIDATE_PREPARED_QUERY)
+            || isKeyset(hints))
             return Boolean.FALSE;
         if (Boolean.FALSE.equals(isCachable(id)))
             return Boolean.FALSE;
@@ -364,6 +365,15 @@ public class PreparedQueryCacheImpl implements PreparedQueryCache {
         return result != null && "true".equalsIgnoreCase(result.toString());
     }
 
+    /**
+     * Affirms if the given fetch configuration pages by ordering values,
+     * which adds a condition to the SQL of the query.
+     */
+    boolean isKeyset(FetchConfiguration fetch) {
+        return fetch != null && (fetch.getHint(QueryHints.HINT_KEYSET_AFTER) != null
+            || fetch.getHint(QueryHints.HINT_KEYSET_PAGE_SIZE) != null);
+    }
+
     @Override
     public void clear() {
         _delegate.clear();
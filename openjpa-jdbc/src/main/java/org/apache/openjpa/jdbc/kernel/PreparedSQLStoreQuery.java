@@ -108,22 +108,31 @@ public class PreparedSQLStoreQuery extends SQLStoreQuery {
             SQLBuffer buf = new SQLBuffer(dict).append(pq.getTargetQuery());
             Connection conn = store.getConnection();
             JDBCFetchConfiguration fetch = (JDBCFetchConfiguration)q.getContext().getFetchConfiguration();
+            boolean streaming = range.lrs && SelectImpl.isStreaming(fetch);
 
             ResultObjectProvider rop;
             PreparedStatement stmnt = null;
+            SelectImpl cachedSelect = pq.getSelect();
+            FetchSizeAdvisor advisor = cachedSelect.getFetchSizeAdvisor(fetch);
             try {
-                stmnt = !range.lrs ? buf.prepareStatement(conn) : buf.prepareStatement(conn, fetch, -1, -1);
+                if (streaming)
+                    conn = dict.getStreamingConnection(store, conn);
+                stmnt = !range.lrs ? buf.prepareStatement(conn) : buf.prepareStatement(conn, fetch,
+                    streaming ? ResultSet.TYPE_FORWARD_ONLY : -1, -1);
 
                 int index = 0;
                 for (Object param : params) {
                     dict.setUnknown(stmnt, ++index, param, null);
                 }
                 dict.setTimeouts(stmnt, fetch, false);
+                if (advisor != null)
+                    SelectImpl.adviseFetchSize(advisor, stmnt, pq.getTargetQuery());
 
                 ResultSet rs = stmnt.executeQuery();
 
-                SelectImpl cachedSelect = pq.getSelect();
                 Result res = cachedSelect.getEagerResult(conn, stmnt, rs, store, fetch, false, null);
+                if (advisor != null)
+                    SelectImpl.learnFetchSize(advisor, pq.getTargetQuery(), rs, res);
 
                 if (getQueryExpressions()[0].projections.length > 0) {
                     ExpContext ctx = new ExpContext(store, params, fetch);
@@ -24,8 +24,11 @@ import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Types;
+import java.util.concurrent.Callable;
 import java.util.concurrent.ConcurrentHashMap;
 
+import javax.sql.DataSource;
+
 import jakarta.transaction.NotSupportedException;
 
 import org.apache.openjpa.conf.OpenJPAConfiguration;
@@ -86,6 +89,9 @@ public class TableJDBCSeq extends AbstractJDBCSeq implements Configurable {
     private transient JDBCConfiguration _conf = null;
     private transient Log _log = null;
     private int _alloc = 50;
+    private int _maxAlloc = 0;
+    private boolean _preallocate = false;
+    private int _lowWater = 50;
     private int _intValue = 1;
     private final ConcurrentHashMap<ClassMapping, Status> _stat = new ConcurrentHashMap<>();
 
@@ -190,6 +196,74 @@ public class TableJDBCSeq extends AbstractJDBCSeq implements Configurable {
         _alloc = alloc;
     }
 
+    /**
+     * The largest number of sequence values to allocate at a time when
+     * values are preallocated.
+     *
+     * @since 4.1.1
+     */
+    public int getMaxAllocate() {
+        return _maxAlloc;
+    }
+
+    /**
+     * The largest number of sequence values to allocate at a time when
+     * values are preallocated. If larger than the <code>Allocate</code>
+     * value, the number of values allocated at a time is tuned to the rate
+     * at which they are used, so that a block of values lasts about a second.
+     * Defaults to 0, which allocates <code>Allocate</code> values at a time.
+     *
+     * @since 4.1.1
+     */
+    public void setMaxAllocate(int maxAlloc) {
+        _maxAlloc = maxAlloc;
+    }
+
+    /**
+     * Whether to allocate the next block of sequence values in the background.
+     *
+     * @since 4.1.1
+     */
+    public boolean getPreallocate() {
+        return _preallocate;
+    }
+
+    /**
+     * Whether to allocate the next block of sequence values in the background
+     * when the values left in the current block fall below the low-water
+     * mark, and hand out the values of the current block without locking.
+     * Only applies to sequences that are not transactional and do not run
+     * in a managed transaction without a second connection factory.
+     * Defaults to false.
+     *
+     * @since 4.1.1
+     */
+    public void setPreallocate(boolean preallocate) {
+        _preallocate = preallocate;
+    }
+
+    /**
+     * The percentage of the values of a block that are left when the next
+     * block is preallocated.
+     *
+     * @since 4.1.1
+     */
+    public int getLowWaterMark() {
+        return _lowWater;
+    }
+
+    /**
+     * The percentage of the values of a block that are left when the next
+     * block is preallocated. Defaults to 50.
+     *
+     * @since 4.1.1
+     */
+    public void setLowWaterMark(int lowWater) {
+        if (lowWater < 1 || lowWater > 99)
+            throw new UserException(_loc.get("bad-seq-low-water", lowWater));
+        _lowWater = lowWater;
+    }
+
     /**
      * Return the number as the initial number for the
      * GeneratedValue.TABLE strategy to start with.
@@ -298,6 +372,9 @@ public class TableJDBCSeq extends AbstractJDBCSeq implements Configurable {
         if (stat == null)
             throw new InvalidStateException(_loc.get("bad-seq-type",
                 getClass(), mapping));
+        if (isPreallocating())
+            return getBlocks(stat).next(new BlockAllocator(store, mapping),
+                getPreallocationExecutor());
 
         while (true) {
             synchronized (stat) {
@@ -340,6 +417,11 @@ public class TableJDBCSeq extends AbstractJDBCSeq implements Configurable {
         Status stat = getStatus(mapping);
         if (stat == null)
             return;
+        if (isPreallocating()) {
+            getBlocks(stat).ensureAvailable(count,
+                new BlockAllocator(store, mapping));
+            return;
+        }
 
         while (true) {
             int available;
@@ -370,6 +452,33 @@ public class TableJDBCSeq extends AbstractJDBCSeq implements Configurable {
         return status;
     }
 
+    /**
+     * Whether sequence values are allocated in the background. Values of
+     * transactional sequences must be allocated in the transaction of the
+     * store, and values of managed transactions in the thread that suspends
+     * the transaction.
+     */
+    private boolean isPreallocating() {
+        return _preallocate && type != TYPE_TRANSACTIONAL
+            && type != TYPE_CONTIGUOUS && !suspendInJTA();
+    }
+
+    /**
+     * Return the preallocated blocks of the given status.
+     */
+    private PreallocatedBlocks getBlocks(Status stat) {
+        PreallocatedBlocks blocks = stat.blocks;
+        if (blocks == null) {
+            synchronized (stat) {
+                if (stat.blocks == null)
+                    stat.blocks = new PreallocatedBlocks(1, _alloc, _maxAlloc,
+                        _lowWater, _log);
+                blocks = stat.blocks;
+            }
+        }
+        return blocks;
+    }
+
     /**
      * Add the primary key column to the given table and return it.
      */
@@ -820,6 +929,8 @@ public class TableJDBCSeq extends AbstractJDBCSeq implements Configurable {
         private static final long serialVersionUID = 1L;
         public long seq = 1L;
         public long max = 0L;
+        // blocks of values handed out when values are preallocated
+        transient volatile PreallocatedBlocks blocks = null;
     }
 
     /**
@@ -956,6 +1067,51 @@ public class TableJDBCSeq extends AbstractJDBCSeq implements Configurable {
         }
     }
 
+    /**
+     * Allocates blocks of sequence values for the given mapping, in the
+     * calling thread or in the background.
+     */
+    private class BlockAllocator implements PreallocatedBlocks.Allocator {
+        private final JDBCStore _store;
+        private final ClassMapping _mapping;
+
+        BlockAllocator(JDBCStore store, ClassMapping mapping) {
+            _store = store;
+            _mapping = mapping;
+        }
+
+        @Override
+        public long[] allocate(int size)
+            throws SQLException {
+            Status stat = new Status();
+            allocateSequence(_store, _mapping, stat, size, true);
+            // make sure seq is at least 1, since autoassigned ids of 0 can
+            // conflict with uninitialized values
+            return new long[]{ Math.max(stat.seq, 1), stat.max };
+        }
+
+        @Override
+        public Callable<long[]> background(final int size) {
+            // the data source of the context is looked up in the calling
+            // thread, as the context may be closed by the time the task runs
+            final DataSource ds = _conf.getDataSource2(_store.getContext());
+            return () -> {
+                Status stat = new Status();
+                try (Connection conn = ds.getConnection()) {
+                    if (conn.getAutoCommit())
+                        conn.setAutoCommit(false);
+                    // the sequence row is inserted by the first allocation,
+                    // which is never made in the background
+                    boolean set = setSequence(_mapping, stat, size, true, conn);
+                    conn.commit();
+                    if (!set)
+                        return null;
+                }
+                return new long[]{ Math.max(stat.seq, 1), stat.max };
+            };
+        }
+    }
+
     /**
      * CurentSequenceRunnable is a runnable wrapper which obtains the current
      * sequence value from the database.
@@ -33,6 +33,7 @@ import org.apache.openjpa.enhance.Reflection;
 import org.apache.openjpa.jdbc.kernel.JDBCFetchConfiguration;
 import org.apache.openjpa.jdbc.kernel.JDBCStore;
 import org.apache.openjpa.jdbc.meta.strats.NoneClassStrategy;
+import org.apache.openjpa.jdbc.meta.strats.PrimitiveFieldStrategy;
 import org.apache.openjpa.jdbc.meta.strats.VerticalClassStrategy;
 import org.apache.openjpa.jdbc.schema.Column;
 import org.apache.openjpa.jdbc.schema.ColumnIO;
@@ -50,10 +51,13 @@ import org.apache.openjpa.lib.log.Log;
 import org.apache.openjpa.lib.rop.ResultObjectProvider;
 import org.apache.openjpa.lib.util.Localizer;
 import org.apache.openjpa.meta.ClassMetaData;
+import org.apache.openjpa.meta.JavaTypes;
 import org.apache.openjpa.meta.ValueMetaData;
 import org.apache.openjpa.util.ApplicationIds;
 import org.apache.openjpa.util.ImplHelper;
+import org.apache.openjpa.util.IntId;
 import org.apache.openjpa.util.InternalException;
+import org.apache.openjpa.util.LongId;
 import org.apache.openjpa.util.MetaDataException;
 import org.apache.openjpa.util.OpenJPAId;
 
@@ -91,6 +95,10 @@ public class ClassMapping
     // maps columns to joinables
     private final Map _joinables = new ConcurrentHashMap();
 
+    // the type code of a single int or long primary key field whose oid is
+    // created from its column without boxing, -1 if none, -2 if not known yet
+    private int _primitivePKType = -2;
+
     /**
      * Constructor. Supply described type and owning repository.
      */
@@ -170,6 +178,11 @@ public class ClassMapping
         }
 
         // application identity
+        int pkType = getPrimitivePrimaryKeyType();
+        if (pkType != -1)
+            return getPrimitiveObjectId(cls, pkType, store, res, fk, subs,
+                joins);
+
         Object[] vals = new Object[getPrimaryKeyFields().length];
         FieldMapping fm;
         Joinable join;
@@ -206,18 +219,8 @@ public class ClassMapping
         // value
 
         ClassMapping dcls = cls;
-        if (subs && canReadDiscriminator) {
-            res.startDataRequest(cls.getDiscriminator());
-            try {
-                Class dtype = cls.getDiscriminator().getClass(store, cls, res);
-                if (dtype != cls.getDescribedType())
-                  dcls = cls.getMappingRepository().getMapping(dtype,
-                    store.getContext().getClassLoader(), true);
-            } catch (Exception e) {
-                // intentionally ignored
-            }
-            res.endDataRequest();
-        }
+        if (subs && canReadDiscriminator)
+            dcls = getDiscriminatedMapping(cls, store, res);
         Object oid = ApplicationIds.fromPKValues(vals, dcls);
         if (oid instanceof OpenJPAId) {
             ((OpenJPAId) oid).setManagedInstanceType(dcls.getDescribedType(),
@@ -226,6 +229,81 @@ public class ClassMapping
         return oid;
     }
 
+    /**
+     * Return the mapping of the type the discriminator in the given result
+     * names, or the given mapping if it can not be read.
+     */
+    private static ClassMapping getDiscriminatedMapping(ClassMapping cls,
+        JDBCStore store, Result res) {
+        ClassMapping dcls = cls;
+        res.startDataRequest(cls.getDiscriminator());
+        try {
+            Class dtype = cls.getDiscriminator().getClass(store, cls, res);
+            if (dtype != cls.getDescribedType())
+              dcls = cls.getMappingRepository().getMapping(dtype,
+                store.getContext().getClassLoader(), true);
+        } catch (Exception e) {
+            // intentionally ignored
+        }
+        res.endDataRequest();
+        return dcls;
+    }
+
+    /**
+     * Return the type code of the primary key field if this mapping uses
+     * a single int or long primary key field mapped to an int or long
+     * column, whose oid can be created from the column value without
+     * boxing it; -1 otherwise.
+     */
+    private int getPrimitivePrimaryKeyType() {
+        int type = _primitivePKType;
+        if (type != -2)
+            return type;
+
+        type = -1;
+        FieldMapping[] fms = getPrimaryKeyFieldMappings();
+        Column[] pks = getPrimaryKeyColumns();
+        if (isOpenJPAIdentity() && fms.length == 1 && pks.length == 1
+            && fms[0].getStrategy() instanceof PrimitiveFieldStrategy) {
+            int code = fms[0].getObjectIdFieldTypeCode();
+            int colType = pks[0].getJavaType();
+            if ((code == JavaTypes.INT || code == JavaTypes.LONG)
+                && fms[0].getTypeCode() == code
+                && (colType == JavaTypes.INT || colType == JavaTypes.LONG))
+                type = code;
+        }
+        _primitivePKType = type;
+        return type;
+    }
+
+    /**
+     * Create the oid of a single int or long primary key field from the
+     * value of its column.
+     */
+    private Object getPrimitiveObjectId(ClassMapping cls, int pkType,
+        JDBCStore store, Result res, ForeignKey fk, boolean subs, Joins joins)
+        throws SQLException {
+        FieldMapping fm = getPrimaryKeyFieldMappings()[0];
+        Column pk = getPrimaryKeyColumns()[0];
+        Column col = (fk == null) ? pk : fk.getColumn(pk);
+        res.startDataRequest(fm);
+        long id = (pkType == JavaTypes.INT) ? res.getInt(col, joins)
+            : res.getLong(col, joins);
+        boolean isNull = id == 0 && res.wasNull();
+        res.endDataRequest();
+        if (isNull)
+            return null;
+
+        ClassMapping dcls = cls;
+        if (subs && isSelfReference(fk, fm.getColumns()))
+            dcls = getDiscriminatedMapping(cls, store, res);
+        OpenJPAId oid = (pkType == JavaTypes.INT)
+            ? new IntId(dcls.getDescribedType(), (int) id)
+            : new LongId(dcls.getDescribedType(), id);
+        oid.setManagedInstanceType(dcls.getDescribedType(), subs);
+        return oid;
+    }
+
     boolean isSelfReference(ForeignKey fk, Column[] cols) {
     	if (fk == null)
     		return true;
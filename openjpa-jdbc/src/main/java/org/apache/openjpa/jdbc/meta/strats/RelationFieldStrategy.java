@@ -20,8 +20,10 @@ package org.apache.openjpa.jdbc.meta.strats;
 
 import java.sql.SQLException;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -31,6 +33,7 @@ import org.apache.openjpa.enhance.ReflectingPersistenceCapable;
 import org.apache.openjpa.jdbc.identifier.DBIdentifier;
 import org.apache.openjpa.jdbc.kernel.EagerFetchModes;
 import org.apache.openjpa.jdbc.kernel.JDBCFetchConfiguration;
+import org.apache.openjpa.jdbc.kernel.JDBCLockManager;
 import org.apache.openjpa.jdbc.kernel.JDBCStore;
 import org.apache.openjpa.jdbc.meta.ClassMapping;
 import org.apache.openjpa.jdbc.meta.Embeddable;
@@ -57,6 +60,7 @@ import org.apache.openjpa.jdbc.sql.SelectExecutor;
 import org.apache.openjpa.jdbc.sql.Union;
 import org.apache.openjpa.kernel.OpenJPAStateManager;
 import org.apache.openjpa.kernel.StateManagerImpl;
+import org.apache.openjpa.kernel.StoreContext;
 import org.apache.openjpa.lib.log.Log;
 import org.apache.openjpa.lib.util.Localizer;
 import org.apache.openjpa.meta.ClassMetaData;
@@ -64,6 +68,7 @@ import org.apache.openjpa.meta.FieldMetaData;
 import org.apache.openjpa.meta.JavaTypes;
 import org.apache.openjpa.meta.MetaDataModes;
 import org.apache.openjpa.util.ApplicationIds;
+import org.apache.openjpa.util.Id;
 import org.apache.openjpa.util.ImplHelper;
 import org.apache.openjpa.util.InternalException;
 import org.apache.openjpa.util.MetaDataException;
@@ -813,6 +818,7 @@ public class RelationFieldStrategy
         if (Boolean.TRUE.equals(_fkOid)) {
             Object oid = sm.getIntermediate(field.getIndex());
             if (oid != null) {
+                loadBatch(sm, oid, store, fetch);
                 Object val = store.find(oid, field, fetch);
                 sm.storeObject(field.getIndex(), val);
                 return;
@@ -822,6 +828,9 @@ public class RelationFieldStrategy
         final ClassMapping[] rels = field.getIndependentTypeMappings();
         final int subs = field.getSelectSubclasses();
         final Joins[] resJoins = new Joins[rels.length];
+        if (field.getJoinDirection() == ValueMapping.JOIN_INVERSE
+            && loadInverseBatch(sm, rels, store, fetch))
+            return;
 
         // select related mapping columns; joining from the related type
         // back to our fk table if not an inverse mapping (in which case we
@@ -868,6 +877,184 @@ public class RelationFieldStrategy
         }
     }
 
+    /**
+     * Load the related instances of other instances of the owning type that
+     * have not loaded this relation together with the related instance of
+     * the given oid, so that accessing their relations does not select them
+     * one by one. Related instances that are already cached are skipped.
+     * The related instances are stored into the other instances, so that
+     * they are not batched again.
+     */
+    private void loadBatch(OpenJPAStateManager sm, Object oid,
+        JDBCStore store, JDBCFetchConfiguration fetch)
+        throws SQLException {
+        StoreContext ctx = store.getContext();
+        ClassMapping[] rels = field.getIndependentTypeMappings();
+        if (rels.length != 1 || !rels[0].isPrimaryKeyObjectId(false)
+            || rels[0].getPrimaryKeyColumns().length != 1)
+            return;
+
+        List<OpenJPAStateManager> batch = getBatch(sm, store, fetch, true);
+        if (batch.isEmpty())
+            return;
+        Set<Object> oids = new LinkedHashSet<>();
+        if (!ctx.isCached(Collections.singletonList(oid)))
+            oids.add(oid);
+        Object other;
+        for (OpenJPAStateManager sib : batch) {
+            other = sib.getIntermediate(field.getIndex());
+            if (!oids.contains(other)
+                && !ctx.isCached(Collections.singletonList(other)))
+                oids.add(other);
+        }
+
+        if (!oids.isEmpty()) {
+            Select sel = store.getSQLFactory().newSelect();
+            sel.select(rels[0], field.getSelectSubclasses(), store, fetch,
+                EagerFetchModes.EAGER_JOIN, null);
+            if (isLocking(sel, store, fetch))
+                return;
+            Column pk = rels[0].getPrimaryKeyColumns()[0];
+            sel.where(whereIn(sel, rels[0], pk, pk, oids, store));
+
+            Result res = sel.execute(store, fetch);
+            try {
+                while (res.next())
+                    res.load(rels[0], store, fetch);
+            } finally {
+                res.close();
+            }
+        }
+        for (OpenJPAStateManager sib : batch)
+            sib.storeObject(field.getIndex(), store.find(
+                sib.getIntermediate(field.getIndex()), field, fetch));
+    }
+
+    /**
+     * Load this inverse relation of the given instance together with that of
+     * other instances of its type that have not loaded it. Return false if
+     * the relation can not be loaded in a batch.
+     */
+    private boolean loadInverseBatch(OpenJPAStateManager sm,
+        ClassMapping[] rels, JDBCStore store, JDBCFetchConfiguration fetch)
+        throws SQLException {
+        if (rels.length != 1)
+            return false;
+        ClassMapping owner = field.getDefiningMapping();
+        ForeignKey fk = field.getForeignKey(rels[0]);
+        Column[] pks = owner.getPrimaryKeyColumns();
+        if (fk.getColumns().length != 1 || fk.getConstantColumns().length > 0
+            || !owner.isPrimaryKeyObjectId(false) || pks.length != 1
+            || fk.getPrimaryKeyColumns()[0] != pks[0])
+            return false;
+
+        List<OpenJPAStateManager> batch = getBatch(sm, store, fetch, false);
+        if (batch.isEmpty())
+            return false;
+        Map<Object, OpenJPAStateManager> owners = new HashMap<>();
+        owners.put(sm.getObjectId(), sm);
+        for (OpenJPAStateManager sib : batch)
+            owners.put(sib.getObjectId(), sib);
+
+        Select sel = store.getSQLFactory().newSelect();
+        sel.select(rels[0], field.getSelectSubclasses(), store, fetch,
+            EagerFetchModes.EAGER_JOIN, null);
+        if (isLocking(sel, store, fetch))
+            return false;
+        sel.select(fk.getColumns());
+        sel.where(whereIn(sel, owner, pks[0], fk.getColumns()[0],
+            owners.keySet(), store));
+
+        Result res = sel.execute(store, fetch);
+        try {
+            OpenJPAStateManager loaded;
+            while (res.next()) {
+                // like a single load, keep the first related row of an owner
+                loaded = owners.remove(owner.getObjectId(store, res, fk, true,
+                    null));
+                if (loaded != null)
+                    loaded.storeObject(field.getIndex(), res.load(rels[0],
+                        store, fetch));
+            }
+        } finally {
+            res.close();
+        }
+        for (OpenJPAStateManager unrelated : owners.values())
+            unrelated.storeObject(field.getIndex(), null);
+        return true;
+    }
+
+    /**
+     * Return other clean instances of the type of the given instance that
+     * have not loaded this relation, up to one less than the relation batch
+     * size of the fetch configuration bounded by the IN clause limit of the
+     * dictionary. If the oids of the related instances are required, only
+     * instances that hold the oid of their related instance are returned;
+     * the others are not returned by later calls of the same walk either,
+     * so they do not take the place of instances that can be batched.
+     */
+    private List<OpenJPAStateManager> getBatch(OpenJPAStateManager sm,
+        JDBCStore store, JDBCFetchConfiguration fetch, boolean fkOids) {
+        int size = fetch.getRelationBatchSize();
+        int limit = store.getDBDictionary().inClauseLimit;
+        if (limit > 0)
+            size = Math.min(size, limit);
+        if (size <= 1)
+            return Collections.emptyList();
+
+        StoreContext ctx = store.getContext();
+        int idx = field.getIndex();
+        if (!fkOids)
+            return ctx.getUnloadedStates(sm, idx, size - 1);
+
+        List<OpenJPAStateManager> batch = new ArrayList<>();
+        List<OpenJPAStateManager> next;
+        do {
+            next = ctx.getUnloadedStates(sm, idx, size - 1 - batch.size());
+            for (OpenJPAStateManager sib : next)
+                if (sib.getIntermediate(idx) != null)
+                    batch.add(sib);
+        } while (!next.isEmpty() && batch.size() < size - 1);
+        return batch;
+    }
+
+    /**
+     * Whether the given select would lock the rows it reads, in which case
+     * rows that are not yet accessed must not be loaded.
+     */
+    private static boolean isLocking(Select sel, JDBCStore store,
+        JDBCFetchConfiguration fetch) {
+        JDBCLockManager lm = store.getLockManager();
+        return lm != null && lm.selectForUpdate(sel, fetch.getReadLockLevel());
+    }
+
+    /**
+     * Return a condition limiting the given column to the values that the
+     * given oids of the given mapping hold for its given primary key column.
+     */
+    private static SQLBuffer whereIn(Select sel, ClassMapping mapping,
+        Column pk, Column col, Collection<Object> oids, JDBCStore store) {
+        SQLBuffer buf = new SQLBuffer(store.getDBDictionary());
+        buf.append(sel.getColumnAlias(col)).append(" IN (");
+        boolean appId = mapping.getIdentityType()
+            == ClassMetaData.ID_APPLICATION;
+        Joinable join = (appId) ? mapping.assertJoinable(pk) : null;
+        Object val;
+        int i = 0;
+        for (Object oid : oids) {
+            if (i++ > 0)
+                buf.append(", ");
+            if (appId) {
+                val = ApplicationIds.toPKValues(oid, mapping)[mapping.
+                    getField(join.getFieldIndex()).getPrimaryKeyIndex()];
+                val = join.getJoinValue(val, pk, store);
+            } else
+                val = ((Id) oid).getId();
+            buf.appendValue(val, col);
+        }
+        return buf.append(")");
+    }
+
     @Override
     public Object toDataStoreValue(Object val, JDBCStore store) {
         return RelationStrategies.toDataStoreValue(field, val, store);
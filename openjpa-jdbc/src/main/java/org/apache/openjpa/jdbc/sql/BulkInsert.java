@@ -0,0 +1,312 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.openjpa.jdbc.sql;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.apache.openjpa.jdbc.kernel.JDBCStore;
+import org.apache.openjpa.jdbc.schema.Column;
+import org.apache.openjpa.jdbc.schema.Table;
+
+/**
+ * The values of a batch of inserts into one table, for dictionaries that
+ * insert rows through the bulk-load protocol of the database. The values are
+ * those the dictionary would bind to the insert statement, so they can be
+ * written in the text format of the protocol without knowing the mapping of
+ * the rows.
+ *
+ * The text format written by {@link #writeText} is the default format of both
+ * the PostgreSQL <code>COPY</code> and the MySQL <code>LOAD DATA</code>
+ * statements: one line per row, values separated by tabs, <code>\N</code> for
+ * null, and backslash escapes for backslashes, tabs and line breaks.
+ *
+ * @since 4.1.1
+ */
+public class BulkInsert {
+
+    /**
+     * Text of a null value.
+     */
+    public static final String NULL = "\\N";
+
+    private final String _sql;
+    private final Table _table;
+    private final Column[] _cols;
+    private final List<Object[]> _rows;
+
+    private BulkInsert(String sql, Table table, Column[] cols, List<Object[]> rows) {
+        _sql = sql;
+        _table = table;
+        _cols = cols;
+        _rows = rows;
+    }
+
+    /**
+     * Collect the values of the given insert rows, which must share the same
+     * SQL. Returns null if the rows can not be bulk-loaded, because their
+     * table has columns assigned by the database, a value is given as SQL,
+     * or a value is bound as a stream, a large object or another type that
+     * has no text form.
+     */
+    public static BulkInsert newInstance(List<? extends RowImpl> rows, DBDictionary dict,
+        JDBCStore store)
+        throws SQLException {
+        if (rows.isEmpty())
+            return null;
+        RowImpl first = rows.get(0);
+        Table table = first.getTable();
+        if (first.getAction() != Row.ACTION_INSERT
+            || table.getAutoAssignedColumns().length > 0)
+            return null;
+
+        List<Column> cols = new ArrayList<>();
+        for (Column col : first.getColumns())
+            if (first.getSet(col) != null)
+                cols.add(col);
+        // raw SQL values are part of the statement rather than parameters
+        if (cols.isEmpty() || cols.size() != first.getFlushParameterCount())
+            return null;
+
+        Recorder recorder = new Recorder();
+        PreparedStatement stmnt = (PreparedStatement) Proxy.newProxyInstance
+            (BulkInsert.class.getClassLoader(), new Class<?>[]{ PreparedStatement.class },
+            recorder);
+        List<Object[]> values = new ArrayList<>(rows.size());
+        for (RowImpl row : rows) {
+            recorder._vals = new Object[cols.size()];
+            try {
+                row.flush(stmnt, 1, dict, store);
+            } catch (UnsupportedOperationException uoe) {
+                return null;
+            }
+            values.add(recorder._vals);
+        }
+        return new BulkInsert(first.getSQL(dict), table,
+            cols.toArray(new Column[cols.size()]), Collections.unmodifiableList(values));
+    }
+
+    /**
+     * The insert statement of a single row.
+     */
+    public String getSQL() {
+        return _sql;
+    }
+
+    /**
+     * The table the rows are inserted into.
+     */
+    public Table getTable() {
+        return _table;
+    }
+
+    /**
+     * The columns that are given values, in the order of the values of a row.
+     */
+    public Column[] getColumns() {
+        return _cols;
+    }
+
+    /**
+     * The values of each row.
+     */
+    public List<Object[]> getRows() {
+        return _rows;
+    }
+
+    /**
+     * The number of rows.
+     */
+    public int size() {
+        return _rows.size();
+    }
+
+    /**
+     * Write the rows in the text format, with each value converted by
+     * {@link DBDictionary#toBulkInsertText}.
+     */
+    public void writeText(Writer out, DBDictionary dict)
+        throws IOException {
+        for (Object[] row : _rows) {
+            for (int i = 0; i < row.length; i++) {
+                if (i > 0)
+                    out.write('\t');
+                if (row[i] == null)
+                    out.write(NULL);
+                else
+                    writeEscaped(out, dict.toBulkInsertText(row[i], _cols[i]));
+            }
+            out.write('\n');
+        }
+    }
+
+    private static void writeEscaped(Writer out, String str)
+        throws IOException {
+        for (int i = 0; i < str.length(); i++) {
+            char c = str.charAt(i);
+            switch (c) {
+                case '\\':
+                    out.write("\\\\");
+                    break;
+                case '\t':
+                    out.write("\\t");
+                    break;
+                case '\n':
+                    out.write("\\n");
+                    break;
+                case '\r':
+                    out.write("\\r");
+                    break;
+                default:
+                    out.write(c);
+            }
+        }
+    }
+
+    /**
+     * Read rows in the text format. Each row has the given number of values,
+     * null for null values.
+     */
+    public static List<String[]> readText(Reader in, int columns)
+        throws IOException {
+        BufferedReader reader = (in instanceof BufferedReader) ? (BufferedReader) in
+            : new BufferedReader(in);
+        List<String[]> rows = new ArrayList<>();
+        String line;
+        while ((line = reader.readLine()) != null) {
+            // tabs in values are escaped, so every tab separates values
+            String[] vals = new String[columns];
+            int start = 0;
+            for (int col = 0; col < columns; col++) {
+                int end = line.indexOf('\t', start);
+                if (end == -1)
+                    end = line.length();
+                String val = line.substring(Math.min(start, end), end);
+                vals[col] = NULL.equals(val) ? null : unescape(val);
+                start = end + 1;
+            }
+            rows.add(vals);
+        }
+        return rows;
+    }
+
+    private static String unescape(String val) {
+        if (val.indexOf('\\') == -1)
+            return val;
+        StringBuilder buf = new StringBuilder(val.length());
+        for (int i = 0; i < val.length(); i++) {
+            char c = val.charAt(i);
+            if (c != '\\' || i == val.length() - 1) {
+                buf.append(c);
+                continue;
+            }
+            c = val.charAt(++i);
+            switch (c) {
+                case 't':
+                    buf.append('\t');
+                    break;
+                case 'n':
+                    buf.append('\n');
+                    break;
+                case 'r':
+                    buf.append('\r');
+                    break;
+                default:
+                    buf.append(c);
+            }
+        }
+        return buf.toString();
+    }
+
+    /**
+     * Default text form of a value bound to an insert statement.
+     */
+    static String toText(Object val) {
+        if (val instanceof Boolean)
+            return ((Boolean) val) ? "1" : "0";
+        if (val instanceof BigDecimal)
+            return ((BigDecimal) val).toPlainString();
+        if (val instanceof java.util.Date && !(val instanceof java.sql.Date
+            || val instanceof java.sql.Time || val instanceof java.sql.Timestamp))
+            return new java.sql.Timestamp(((java.util.Date) val).getTime()).toString();
+        return val.toString();
+    }
+
+    /**
+     * Records the values bound to a prepared statement. Values of types
+     * that have no text form are refused.
+     */
+    private static class Recorder implements InvocationHandler {
+
+        private Object[] _vals;
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) {
+            String name = method.getName();
+            switch (name) {
+                case "setNull":
+                    _vals[(Integer) args[0] - 1] = null;
+                    return null;
+                case "setString":
+                case "setInt":
+                case "setLong":
+                case "setShort":
+                case "setByte":
+                case "setDouble":
+                case "setFloat":
+                case "setBigDecimal":
+                case "setBoolean":
+                case "setDate":
+                case "setTime":
+                case "setTimestamp":
+                case "setObject":
+                    // a calendar changes the value the database stores
+                    if (args.length == 3 && !(args[2] instanceof Integer) && args[2] != null)
+                        break;
+                    if (args[1] != null && !isText(args[1]))
+                        break;
+                    _vals[(Integer) args[0] - 1] = args[1];
+                    return null;
+                default:
+                    break;
+            }
+            throw new UnsupportedOperationException(name);
+        }
+
+        private static boolean isText(Object val) {
+            return val instanceof String || val instanceof Character || val instanceof Boolean
+                || val instanceof Integer || val instanceof Long || val instanceof Short
+                || val instanceof Byte || val instanceof Double || val instanceof Float
+                || val instanceof BigDecimal || val instanceof BigInteger
+                || val instanceof java.util.Date;
+        }
+    }
+}
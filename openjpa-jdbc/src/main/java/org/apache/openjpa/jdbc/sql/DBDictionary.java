@@ -27,6 +27,7 @@ import java.io.InputStreamReader;
 import java.io.OutputStream;
 import java.io.Reader;
 import java.io.StringReader;
+import java.io.StringWriter;
 import java.io.Writer;
 import java.math.BigDecimal;
 import java.math.BigInteger;
@@ -518,6 +519,22 @@ public class DBDictionary
     // any positive number = batch limit
     public int batchLimit = NO_BATCH;
 
+    // whether a single INSERT may list the values of several rows, and the
+    // largest number of parameters a statement may bind; 0 is no limit
+    public boolean supportsMultiRowInsert = false;
+    public int maxParametersPerStatement = 0;
+
+    // the number of rows a batch of inserts into one table must reach to be
+    // loaded through the bulk-load protocol of the database; 0 is never
+    public int bulkInsertThreshold = 0;
+
+    // whether lists of values may be compared, as in (a, b) > (?, ?)
+    public boolean supportsRowValueComparison = false;
+
+    // the number of select shapes whose rendered SQL is kept; 0 is none
+    public int selectTemplateCacheSize = 1000;
+    private volatile SelectTemplateCache _selectTemplates = null;
+
     public final Map<Integer,Set<String>> sqlStateCodes =
         new HashMap<>();
 
@@ -2600,6 +2617,30 @@ public class DBDictionary
             sel.getStartIndex(), sel.getEndIndex(), sel);
     }
 
+    /**
+     * Return the cache of the SQL rendered for selects of the same shape, or
+     * null if selects are always rendered.
+     *
+     * @see #selectTemplateCacheSize
+     * @since 4.1.1
+     */
+    SelectTemplateCache getSelectTemplateCache() {
+        if (selectTemplateCacheSize <= 0)
+            return null;
+        SelectTemplateCache cache = _selectTemplates;
+        if (cache == null) {
+            synchronized (this) {
+                cache = _selectTemplates;
+                if (cache == null) {
+                    cache = new SelectTemplateCache(this,
+                        selectTemplateCacheSize);
+                    _selectTemplates = cache;
+                }
+            }
+        }
+        return cache;
+    }
+
     /**
      * Return the portion of the select statement between the FROM keyword
      * and the WHERE keyword.
@@ -3781,6 +3822,23 @@ public class DBDictionary
         return batchFetchSize;
     }
 
+    /**
+     * Return the connection on which to read the result of a select that is
+     * streamed through a forward-only cursor, a fetch batch of rows at a
+     * time, given the connection of the store. The returned connection is
+     * closed with the result, and must undo any change to the connection
+     * of the store when it is. Dictionaries whose drivers only read results
+     * in batches under certain connection settings override this method;
+     * this implementation returns the given connection.
+     *
+     * @see org.apache.openjpa.kernel.QueryHints#HINT_STREAM_RESULTS
+     * @since 4.1.1
+     */
+    public Connection getStreamingConnection(JDBCStore store, Connection conn)
+        throws SQLException {
+        return conn;
+    }
+
     protected StringBuilder comment(StringBuilder buf, String comment) {
         return buf.append("-- ").append(comment);
     }
@@ -5629,6 +5687,88 @@ public class DBDictionary
         return disableBatch;
     }
 
+    /**
+     * Insert the given rows through the bulk-load protocol of the database,
+     * within the current transaction of the given connection. Returns the
+     * number of rows the database inserted, or -1 if these rows can not be
+     * bulk-loaded, in which case none have been inserted. Dictionaries that
+     * support bulk loads override this method; this implementation
+     * returns -1.
+     *
+     * @see #bulkInsertThreshold
+     * @since 4.1.1
+     */
+    public long bulkInsert(Connection conn, BulkInsert rows)
+        throws SQLException {
+        return -1;
+    }
+
+    /**
+     * Return the text form of the given value of the given column, as read by
+     * the bulk-load protocol of the database. Booleans are written as 1 or 0.
+     *
+     * @since 4.1.1
+     */
+    protected String toBulkInsertText(Object val, Column col) {
+        return BulkInsert.toText(val);
+    }
+
+    /**
+     * Insert the given rows by writing them in the text format of
+     * {@link BulkInsert}, reading them back, and binding the text values to
+     * a batch of the insert statement. For databases with no bulk-load
+     * protocol that runs within a transaction, so that bulk loads can be
+     * tried against them.
+     *
+     * @since 4.1.1
+     */
+    protected long bulkInsertAsText(Connection conn, BulkInsert rows)
+        throws SQLException {
+        List<String[]> text;
+        try {
+            StringWriter out = new StringWriter();
+            rows.writeText(out, this);
+            text = BulkInsert.readText(new StringReader(out.toString()),
+                rows.getColumns().length);
+        } catch (IOException ioe) {
+            throw new SQLException(ioe);
+        }
+
+        Column[] cols = rows.getColumns();
+        int limit = (batchLimit > 0) ? batchLimit : text.size();
+        long count = 0;
+        int batched = 0;
+        PreparedStatement stmnt = conn.prepareStatement(rows.getSQL());
+        try {
+            for (String[] vals : text) {
+                for (int i = 0; i < vals.length; i++) {
+                    if (vals[i] == null)
+                        stmnt.setNull(i + 1, cols[i].getType());
+                    else
+                        stmnt.setString(i + 1, vals[i]);
+                }
+                stmnt.addBatch();
+                if (++batched == limit) {
+                    count += executeBulkInsertBatch(stmnt);
+                    batched = 0;
+                }
+            }
+            if (batched > 0)
+                count += executeBulkInsertBatch(stmnt);
+        } finally {
+            stmnt.close();
+        }
+        return count;
+    }
+
+    private static long executeBulkInsertBatch(PreparedStatement stmnt)
+        throws SQLException {
+        long count = 0;
+        for (int rows : stmnt.executeBatch())
+            count += (rows == Statement.SUCCESS_NO_INFO) ? 1 : rows;
+        return count;
+    }
+
     /**
      * This method is to provide override for non-JDBC or JDBC-like
      * implementation of executing query.
@@ -67,6 +67,9 @@ public class DerbyDictionary
         requiresCastForComparisons = true;
         supportsSimpleCaseExpression = false;
         supportsNullUniqueColumn = false;
+        supportsMultiRowInsert = true;
+        // large statements exceed the size of the classes Derby compiles
+        maxParametersPerStatement = 2000;
 
         supportsComments = true;
 
@@ -233,4 +236,15 @@ public class DerbyDictionary
                 return type;
         }
     }
+
+    /**
+     * The database has no bulk-load protocol that runs within a transaction,
+     * so the rows are written and read back in the text format of bulk loads
+     * and inserted as a batch.
+     */
+    @Override
+    public long bulkInsert(Connection conn, BulkInsert rows)
+        throws SQLException {
+        return bulkInsertAsText(conn, rows);
+    }
 }
@@ -173,6 +173,8 @@ public class H2Dictionary extends DBDictionary {
         supportsSelectStartIndex = true;
         supportsSelectEndIndex = true;
         rangePosition = RANGE_POST_LOCK;
+        supportsMultiRowInsert = true;
+        supportsRowValueComparison = true;
         supportsDeferredConstraints = false;
 
         supportsNullTableForGetPrimaryKeys = true;
@@ -482,4 +484,15 @@ public class H2Dictionary extends DBDictionary {
         }
         return super.isFatalException(subtype, ex);
     }
+
+    /**
+     * The database has no bulk-load protocol that runs within a transaction,
+     * so the rows are written and read back in the text format of bulk loads
+     * and inserted as a batch.
+     */
+    @Override
+    public long bulkInsert(Connection conn, BulkInsert rows)
+        throws SQLException {
+        return bulkInsertAsText(conn, rows);
+    }
 }
@@ -101,6 +101,9 @@ public class MariaDBDictionary extends DBDictionary {
         requiresTargetForDelete = true;
         supportsSelectStartIndex = true;
         supportsSelectEndIndex = true;
+        supportsMultiRowInsert = true;
+        supportsRowValueComparison = true;
+        maxParametersPerStatement = 65535;
 
         datePrecision = MICRO;
 
@@ -548,4 +551,15 @@ public class MariaDBDictionary extends DBDictionary {
 
         super.setTime(stmnt, idx, val, cal, col);
     }
+
+    /**
+     * Load the rows with <code>LOAD DATA LOCAL INFILE</code> from a stream.
+     * The driver must allow local files, as with the
+     * <code>allowLocalInfile</code> property of MariaDB Connector/J.
+     */
+    @Override
+    public long bulkInsert(Connection conn, BulkInsert rows)
+        throws SQLException {
+        return MySQLDictionary.loadDataLocalInfile(this, conn, rows);
+    }
 }
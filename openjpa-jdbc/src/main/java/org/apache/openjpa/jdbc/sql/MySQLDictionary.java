@@ -18,10 +18,19 @@
  */
 package org.apache.openjpa.jdbc.sql;
 
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.StringWriter;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.nio.charset.StandardCharsets;
 import java.sql.Connection;
 import java.sql.DatabaseMetaData;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.sql.SQLWarning;
+import java.sql.Statement;
 import java.sql.Types;
 import java.util.Arrays;
 import java.util.Collection;
@@ -40,6 +49,8 @@ import org.apache.openjpa.jdbc.schema.ForeignKey;
 import org.apache.openjpa.jdbc.schema.Index;
 import org.apache.openjpa.jdbc.schema.PrimaryKey;
 import org.apache.openjpa.jdbc.schema.Table;
+import org.apache.openjpa.lib.jdbc.DelegatingStatement;
+import org.apache.openjpa.lib.util.Localizer;
 import org.apache.openjpa.lib.util.StringUtil;
 import org.apache.openjpa.util.ExceptionInfo;
 import org.apache.openjpa.util.StoreException;
@@ -50,6 +61,8 @@ import org.apache.openjpa.util.StoreException;
 public class MySQLDictionary
     extends DBDictionary {
 
+    private static final Localizer _loc = Localizer.forPackage(MySQLDictionary.class);
+
     public static final String SELECT_HINT = "openjpa.hint.MySQLSelectHint";
 
     public static final String DELIMITER_BACK_TICK = "`";
@@ -98,6 +111,9 @@ public class MySQLDictionary
         requiresTargetForDelete = true;
         supportsSelectStartIndex = true;
         supportsSelectEndIndex = true;
+        supportsMultiRowInsert = true;
+        supportsRowValueComparison = true;
+        maxParametersPerStatement = 65535;
 
         datePrecision = MICRO;
 
@@ -536,5 +552,78 @@ public class MySQLDictionary
         }
         buf.append(")");
     }
-}
 
+    /**
+     * Load the rows with <code>LOAD DATA LOCAL INFILE</code> from a stream.
+     * The driver must allow local files, as with the
+     * <code>allowLoadLocalInfile</code> property of MySQL Connector/J.
+     */
+    @Override
+    public long bulkInsert(Connection conn, BulkInsert rows)
+        throws SQLException {
+        return loadDataLocalInfile(this, conn, rows);
+    }
+
+    /**
+     * Load the given rows from a stream with
+     * <code>LOAD DATA LOCAL INFILE</code>, through the
+     * <code>setLocalInfileInputStream</code> method that the MySQL and
+     * MariaDB drivers add to their statements. Returns -1 if the driver does
+     * not have the method or a column is a <code>BIT</code> column, which
+     * does not read the text form of its values. The statement only warns of
+     * values it truncates or converts, so any warning fails the load.
+     */
+    static long loadDataLocalInfile(DBDictionary dict, Connection conn,
+        BulkInsert rows)
+        throws SQLException {
+        StringBuilder sql = new StringBuilder("LOAD DATA LOCAL INFILE 'openjpa' INTO TABLE ");
+        sql.append(dict.getFullName(rows.getTable(), false));
+        sql.append(" CHARACTER SET utf8mb4 (");
+        Column[] cols = rows.getColumns();
+        for (int i = 0; i < cols.length; i++) {
+            if (cols[i].getType() == Types.BIT)
+                return -1;
+            if (i > 0)
+                sql.append(", ");
+            sql.append(dict.getColumnDBName(cols[i]));
+        }
+        sql.append(")");
+
+        StringWriter out = new StringWriter();
+        try {
+            rows.writeText(out, dict);
+        } catch (IOException ioe) {
+            throw new SQLException(ioe);
+        }
+        InputStream in = new ByteArrayInputStream(out.toString().getBytes(StandardCharsets.UTF_8));
+
+        Statement stmnt = conn.createStatement();
+        try {
+            Statement inner = (stmnt instanceof DelegatingStatement)
+                ? ((DelegatingStatement) stmnt).getInnermostDelegate() : stmnt;
+            try {
+                Method setter = inner.getClass().getMethod("setLocalInfileInputStream",
+                    InputStream.class);
+                setter.invoke(inner, in);
+            } catch (NoSuchMethodException | IllegalAccessException e) {
+                return -1;
+            } catch (InvocationTargetException ite) {
+                if (ite.getCause() instanceof SQLException)
+                    throw (SQLException) ite.getCause();
+                return -1;
+            }
+            int count = stmnt.executeUpdate(sql.toString());
+            SQLWarning warn = stmnt.getWarnings();
+            if (warn != null) {
+                SQLException se = new SQLException(_loc.get("bulk-insert-warnings",
+                    String.valueOf(rows.size()), rows.getTable(), warn.getMessage())
+                    .getMessage(), warn.getSQLState(), warn.getErrorCode());
+                se.setNextException(warn);
+                throw se;
+            }
+            return count;
+        } finally {
+            stmnt.close();
+        }
+    }
+}
@@ -0,0 +1,232 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.openjpa.jdbc.sql;
+
+import java.sql.SQLException;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+import org.apache.openjpa.jdbc.kernel.JDBCFetchConfiguration;
+import org.apache.openjpa.jdbc.kernel.JDBCLockManager;
+import org.apache.openjpa.jdbc.kernel.JDBCStore;
+import org.apache.openjpa.jdbc.kernel.MixedLockManager;
+import org.apache.openjpa.kernel.LockLevels;
+import org.apache.openjpa.kernel.MixedLockLevels;
+import org.apache.openjpa.kernel.StoreContext;
+import org.apache.openjpa.util.GeneralException;
+
+/**
+ * Runs the eager selects of a select at the same time, each on a connection
+ * of its own, when the fetch configuration allows more than one eager select
+ * to run at once.
+ *
+ * The eager selects only run in parallel when they can not see different
+ * data than they would on the connection of the store: no data store
+ * transaction is active, so no changes have been flushed and no locks are
+ * held, and the eager selects do not lock. Each eager select then reads the
+ * data committed when it runs, as it would when the eager selects run one
+ * after another outside of a transaction. An eager select that has eager
+ * selects of its own, or that is a union, runs in the calling thread on the
+ * connection of the store.
+ *
+ * The calling thread runs one of the eager selects itself, and the others
+ * are divided among at most <code>EagerParallelism - 1</code> tasks that run
+ * their selects one after another. Each select that runs in a task keeps its
+ * connection until its result is closed. The tasks run on the executor of
+ * the configuration, which stops its threads when the configuration is
+ * closed.
+ *
+ * @since 4.1.1
+ */
+class ParallelEagerSelects {
+
+    private final Set<Object> _keys = new HashSet<>();
+    private final List<List<Map.Entry<Object, SelectImpl>>> _lanes = new ArrayList<>();
+    private final List<Future<Result[]>> _futures = new ArrayList<>();
+
+    private ParallelEagerSelects() {
+    }
+
+    /**
+     * Start the given eager selects of the given select that can run in
+     * parallel. Returns null if they all run in the calling thread.
+     */
+    static ParallelEagerSelects start(SelectImpl sel, Map<?, ?> eager,
+        JDBCStore store, JDBCFetchConfiguration fetch) {
+        int parallelism = fetch.getEagerParallelism();
+        if (parallelism < 2)
+            return null;
+
+        List<Map.Entry<Object, SelectImpl>> candidates = new ArrayList<>();
+        int separate = 0;
+        for (Map.Entry<?, ?> entry : eager.entrySet()) {
+            Object val = entry.getValue();
+            if (val == sel)
+                continue;
+            separate++;
+            if (val instanceof SelectImpl
+                && !((SelectImpl) val).hasMultipleSelects())
+                candidates.add(new AbstractMap.SimpleImmutableEntry<>
+                    (entry.getKey(), (SelectImpl) val));
+        }
+        if (separate < 2 || candidates.isEmpty() || !isParallel(store, fetch))
+            return null;
+
+        // leave one select to the calling thread if it has none of its own
+        if (separate == candidates.size())
+            candidates.remove(0);
+        int lanes = Math.min(parallelism - 1, candidates.size());
+        ParallelEagerSelects parallel = new ParallelEagerSelects();
+        for (int i = 0; i < lanes; i++)
+            parallel._lanes.add(new ArrayList<>());
+        for (int i = 0; i < candidates.size(); i++) {
+            parallel._lanes.get(i % lanes).add(candidates.get(i));
+            parallel._keys.add(candidates.get(i).getKey());
+        }
+        ExecutorService pool = store.getConfiguration().getEagerSelectExecutor();
+        for (List<Map.Entry<Object, SelectImpl>> lane : parallel._lanes)
+            parallel._futures.add(pool.submit(() -> execute(lane, store, fetch)));
+        return parallel;
+    }
+
+    /**
+     * Whether the eager selects of the given fetch configuration may run on
+     * connections other than that of the store.
+     */
+    private static boolean isParallel(JDBCStore store,
+        JDBCFetchConfiguration fetch) {
+        StoreContext ctx = store.getContext();
+        if (ctx != null && ctx.isStoreActive())
+            return false;
+        JDBCLockManager lm = store.getLockManager();
+        if (lm == null)
+            return true;
+        int level = fetch.getReadLockLevel();
+        if (lm instanceof MixedLockManager)
+            return level < MixedLockLevels.LOCK_PESSIMISTIC_READ;
+        return level == LockLevels.LOCK_NONE;
+    }
+
+    /**
+     * Whether the eager select with the given key has been started.
+     */
+    boolean isStarted(Object key) {
+        return _keys.contains(key);
+    }
+
+    /**
+     * Wait for the started selects and add their results to the given map
+     * under their keys. If a select fails, the results of the others are
+     * closed and its exception is thrown.
+     */
+    void join(Map eager)
+        throws SQLException {
+        Throwable failure = null;
+        List<Result> results = new ArrayList<>();
+        for (int i = 0; i < _futures.size(); i++) {
+            try {
+                Result[] res = waitFor(_futures.get(i));
+                for (int j = 0; j < res.length; j++) {
+                    results.add(res[j]);
+                    eager.put(_lanes.get(i).get(j).getKey(), res[j]);
+                }
+            } catch (ExecutionException ee) {
+                if (failure == null)
+                    failure = ee.getCause();
+            }
+        }
+        if (failure == null)
+            return;
+
+        for (Result res : results)
+            res.close();
+        for (List<Map.Entry<Object, SelectImpl>> lane : _lanes)
+            for (Map.Entry<Object, SelectImpl> entry : lane)
+                eager.remove(entry.getKey());
+        if (failure instanceof SQLException)
+            throw (SQLException) failure;
+        if (failure instanceof RuntimeException)
+            throw (RuntimeException) failure;
+        if (failure instanceof Error)
+            throw (Error) failure;
+        throw new GeneralException(failure);
+    }
+
+    /**
+     * Wait for the started selects and close their results.
+     */
+    void close() {
+        for (Future<Result[]> future : _futures) {
+            try {
+                for (Result res : waitFor(future))
+                    res.close();
+            } catch (ExecutionException ee) {
+                // the failed task closed its results
+            }
+        }
+    }
+
+    /**
+     * Execute the given selects one after another, each on a new connection.
+     */
+    private static Result[] execute(List<Map.Entry<Object, SelectImpl>> lane,
+        JDBCStore store, JDBCFetchConfiguration fetch)
+        throws SQLException {
+        Result[] res = new Result[lane.size()];
+        try {
+            for (int i = 0; i < res.length; i++)
+                res[i] = lane.get(i).getValue().execute(store, fetch,
+                    store.getNewConnection());
+            return res;
+        } catch (SQLException | RuntimeException e) {
+            for (Result r : res)
+                if (r != null)
+                    r.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Wait for the given task without giving up its results on interrupt,
+     * as they hold connections.
+     */
+    private static Result[] waitFor(Future<Result[]> future)
+        throws ExecutionException {
+        boolean interrupted = false;
+        try {
+            while (true) {
+                try {
+                    return future.get();
+                } catch (InterruptedException ie) {
+                    interrupted = true;
+                }
+            }
+        } finally {
+            if (interrupted)
+                Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -18,12 +18,16 @@
  */
 package org.apache.openjpa.jdbc.sql;
 
+import java.io.BufferedWriter;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
 import java.lang.reflect.Field;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
+import java.nio.charset.StandardCharsets;
 import java.security.AccessController;
 import java.sql.Connection;
 import java.sql.DatabaseMetaData;
@@ -63,6 +67,7 @@ import org.apache.openjpa.meta.JavaTypes;
 import org.apache.openjpa.util.InternalException;
 import org.apache.openjpa.util.StoreException;
 import org.postgresql.PGConnection;
+import org.postgresql.copy.PGCopyOutputStream;
 import org.postgresql.largeobject.LargeObject;
 import org.postgresql.largeobject.LargeObjectManager;
 
@@ -134,6 +139,9 @@ public class PostgresDictionary extends DBDictionary {
         supportsDeferredConstraints = true;
         supportsSelectStartIndex = true;
         supportsSelectEndIndex = true;
+        supportsMultiRowInsert = true;
+        supportsRowValueComparison = true;
+        maxParametersPerStatement = 32767;
 
         maxTableNameLength = 63;
         maxColumnNameLength = 63;
@@ -1053,6 +1061,86 @@ public class PostgresDictionary extends DBDictionary {
         }
     }
 
+    /**
+     * Stream the rows to a <code>COPY ... FROM STDIN</code> statement.
+     */
+    @Override
+    public long bulkInsert(Connection conn, BulkInsert rows)
+        throws SQLException {
+        StringBuilder sql = new StringBuilder("COPY ");
+        sql.append(getFullName(rows.getTable(), false)).append(" (");
+        Column[] cols = rows.getColumns();
+        for (int i = 0; i < cols.length; i++) {
+            if (i > 0)
+                sql.append(", ");
+            sql.append(getColumnDBName(cols[i]));
+        }
+        sql.append(") FROM STDIN");
+
+        PGConnection pgConn = (conn instanceof DelegatingConnection)
+            ? getPGConnection((DelegatingConnection) conn)
+            : (PGConnection) unwrapConnection(conn, PGConnection.class);
+        PGCopyOutputStream out = new PGCopyOutputStream(pgConn, sql.toString());
+        try {
+            Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+            rows.writeText(writer, this);
+            writer.flush();
+            return out.endCopy();
+        } catch (IOException ioe) {
+            if (ioe.getCause() instanceof SQLException)
+                throw (SQLException) ioe.getCause();
+            throw new SQLException(ioe);
+        } finally {
+            if (out.isActive())
+                out.cancelCopy();
+        }
+    }
+
+    /**
+     * The driver only reads a result in batches of the fetch size while
+     * auto-commit is off. Outside a transaction, stream on a connection of
+     * its own whose transaction ends when the result is closed, so that the
+     * connection of the store keeps its auto-commit.
+     */
+    @Override
+    public Connection getStreamingConnection(JDBCStore store, Connection conn)
+        throws SQLException {
+        if (!conn.getAutoCommit())
+            return conn;
+
+        Connection cursor = store.getNewConnection();
+        try {
+            cursor.setAutoCommit(false);
+        } catch (SQLException se) {
+            cursor.close();
+            throw se;
+        }
+        conn.close();
+        return new CursorConnection(cursor);
+    }
+
+    /**
+     * Connection that ends the transaction of a streamed result and
+     * restores auto-commit when closed.
+     */
+    private static class CursorConnection extends DelegatingConnection {
+
+        public CursorConnection(Connection conn) {
+            super(conn);
+        }
+
+        @Override
+        public void close()
+            throws SQLException {
+            try {
+                rollback();
+                setAutoCommit(true);
+            } finally {
+                super.close();
+            }
+        }
+    }
+
     /**
      * Connection wrapper to work around the postgres empty result set bug.
      */
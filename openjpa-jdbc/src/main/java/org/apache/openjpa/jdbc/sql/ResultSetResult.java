@@ -60,6 +60,14 @@ import org.apache.openjpa.meta.JavaTypes;
 public class ResultSetResult
     extends AbstractResult {
 
+    // boxed column indexes, so that reading a column of a wide result does
+    // not allocate its index on every row
+    private static final Integer[] INDEXES = new Integer[1024];
+    static {
+        for (int i = 0; i < INDEXES.length; i++)
+            INDEXES[i] = i;
+    }
+
     private final Connection _conn;
     private final Statement _stmnt;
     private final ResultSet _rs;
@@ -580,7 +588,8 @@ public class ResultSetResult
         throws SQLException {
         if (obj instanceof Number)
             return obj;
-        return findObject(obj, joins);
+        int idx = findObject(obj, joins);
+        return (idx >= 0 && idx < INDEXES.length) ? INDEXES[idx] : idx;
     }
 
     /**
@@ -953,6 +953,25 @@ public class RowImpl
         return _vals.length;
     }
 
+    /**
+     * The number of parameters that {@link #flush} sets for this row.
+     *
+     * @since 4.1.1
+     */
+    public int getFlushParameterCount() {
+        int count = 0;
+        int half = _vals.length / 2;
+        for (int i = (getAction() == ACTION_DELETE) ? _cols.length : 0; i < _vals.length; i++) {
+            if (_vals[i] == null)
+                continue;
+            if (_vals[i] == NULL && getAction() != ACTION_INSERT && i >= half)
+                continue;
+            if (_vals[i] == NULL || _types[i] != RAW)
+                count++;
+        }
+        return count;
+    }
+
     /**
      * Flush the row's values to the given prepared statement.
      */
@@ -454,6 +454,23 @@ public final class SQLBuffer
         return buf.toString();
     }
 
+    /**
+     * Whether this buffer has subselects that are not yet resolved.
+     */
+    boolean hasSubselects() {
+        return _subsels != null && !_subsels.isEmpty();
+    }
+
+    /**
+     * Replace the parameter at the given index with the given value for the
+     * given column.
+     */
+    void setParameter(int index, Object val, Column col) {
+        _params.set(index, val);
+        if (_cols != null)
+            _cols.set(index, col);
+    }
+
     /**
      * Resolve our delayed subselects.
      */
@@ -40,6 +40,7 @@ import java.util.TreeMap;
 
 import org.apache.openjpa.jdbc.conf.JDBCConfiguration;
 import org.apache.openjpa.jdbc.kernel.EagerFetchModes;
+import org.apache.openjpa.jdbc.kernel.FetchSizeAdvisor;
 import org.apache.openjpa.jdbc.kernel.JDBCFetchConfiguration;
 import org.apache.openjpa.jdbc.kernel.JDBCLockManager;
 import org.apache.openjpa.jdbc.kernel.JDBCStore;
@@ -52,6 +53,7 @@ import org.apache.openjpa.jdbc.meta.strats.RelationStrategies;
 import org.apache.openjpa.jdbc.schema.Column;
 import org.apache.openjpa.jdbc.schema.ForeignKey;
 import org.apache.openjpa.jdbc.schema.Table;
+import org.apache.openjpa.kernel.QueryHints;
 import org.apache.openjpa.kernel.StoreContext;
 import org.apache.openjpa.kernel.exps.Context;
 import org.apache.openjpa.kernel.exps.Value;
@@ -266,7 +268,11 @@ public class SelectImpl
 
     @Override
     public SQLBuffer toSelect(boolean forUpdate, JDBCFetchConfiguration fetch) {
-        _full = _dict.toSelect(this, forUpdate, fetch);
+        SelectTemplateCache templates = _dict.getSelectTemplateCache();
+        if (templates == null)
+            _full = _dict.toSelect(this, forUpdate, fetch);
+        else
+            _full = templates.toSelect(this, forUpdate, fetch);
         return _full;
     }
 
@@ -437,12 +443,46 @@ public class SelectImpl
                 forUpdate = lm.selectForUpdate(this, lockLevel);
         }
 
+        Connection conn = store.getConnection();
+        if (!forUpdate && isLRS() && isStreaming(fetch))
+            conn = _dict.getStreamingConnection(store, conn);
+        return execute(store, fetch, forUpdate, conn);
+    }
+
+    /**
+     * Whether the results of selects executed with the given fetch
+     * configuration are streamed through a forward-only cursor when they
+     * are loaded on demand.
+     *
+     * @see QueryHints#HINT_STREAM_RESULTS
+     * @since 4.1.1
+     */
+    public static boolean isStreaming(JDBCFetchConfiguration fetch) {
+        return fetch != null && Boolean.parseBoolean(String.valueOf
+            (fetch.getHint(QueryHints.HINT_STREAM_RESULTS)));
+    }
+
+    /**
+     * Execute this select without locking on the given connection, which
+     * is closed with the result. Used to run eager selects in parallel.
+     */
+    Result execute(JDBCStore store, JDBCFetchConfiguration fetch,
+        Connection conn)
+        throws SQLException {
+        return execute(store, fetch, false, conn);
+    }
+
+    private Result execute(JDBCStore store, JDBCFetchConfiguration fetch,
+        boolean forUpdate, Connection conn)
+        throws SQLException {
         logEagerRelations();
         SQLBuffer sql = toSelect(forUpdate, fetch);
         boolean isLRS = isLRS();
-        int rsType = (isLRS && supportsRandomAccess(forUpdate))
+        int rsType = (isLRS && !isStreaming(fetch)
+            && supportsRandomAccess(forUpdate))
             ? -1 : ResultSet.TYPE_FORWARD_ONLY;
-        Connection conn = store.getConnection();
+        FetchSizeAdvisor advisor = getFetchSizeAdvisor(fetch);
+        String sqlStr = (advisor == null) ? null : sql.getSQL();
         PreparedStatement stmnt = null;
         ResultSet rs = null;
         try {
@@ -452,8 +492,14 @@ public class SelectImpl
                 stmnt = prepareStatement(conn, sql, null, rsType, -1, false);
 
             _dict.setTimeouts(stmnt, fetch, forUpdate);
+            if (advisor != null)
+                adviseFetchSize(advisor, stmnt, sqlStr);
 
             rs = executeQuery(conn, stmnt, sql, isLRS, store);
+            Result res = getEagerResult(conn, stmnt, rs, store, fetch, forUpdate, sql);
+            if (advisor != null)
+                learnFetchSize(advisor, sqlStr, rs, res);
+            return res;
         } catch (SQLException se) {
             // clean up statement
             if (stmnt != null)
@@ -461,7 +507,48 @@ public class SelectImpl
             try { conn.close(); } catch (SQLException se2) {}
             throw se;
         }
-        return getEagerResult(conn, stmnt, rs, store, fetch, forUpdate, sql);
+    }
+
+    /**
+     * The advisor that chooses the fetch size of selects executed with the
+     * given fetch configuration, or null if the fetch size is not adapted.
+     * A fetch batch size set by the user takes precedence over the advisor.
+     *
+     * @since 4.1.1
+     */
+    public FetchSizeAdvisor getFetchSizeAdvisor(JDBCFetchConfiguration fetch) {
+        if (fetch != null && fetch.getFetchBatchSize() > 0)
+            return null;
+        return _conf.getFetchSizeAdvisorInstance();
+    }
+
+    /**
+     * Set the fetch size the given advisor chooses for the given SQL on the
+     * given statement, unless it is smaller than the fetch size the
+     * statement already has from the driver or the configuration.
+     *
+     * @since 4.1.1
+     */
+    public static void adviseFetchSize(FetchSizeAdvisor advisor,
+        PreparedStatement stmnt, String sql)
+        throws SQLException {
+        int size = advisor.getFetchSize(sql);
+        if (size > stmnt.getFetchSize())
+            stmnt.setFetchSize(size);
+    }
+
+    /**
+     * Let the given advisor learn from the execution of the given SQL and
+     * from the number of rows read from its result.
+     *
+     * @since 4.1.1
+     */
+    public static void learnFetchSize(FetchSizeAdvisor advisor, String sql,
+        ResultSet rs, Result res)
+        throws SQLException {
+        advisor.executed(sql, rs);
+        if (res instanceof SelectResult)
+            ((SelectResult) res).setFetchSizeAdvisor(advisor, sql);
     }
 
     /**
@@ -474,29 +561,41 @@ public class SelectImpl
         if (sel._eager == null)
             return;
 
+        // start the eager selects that run on their own connections
+        ParallelEagerSelects parallel = ParallelEagerSelects.start(sel,
+            sel._eager, store, fetch);
+
         // execute eager selects
         Map.Entry entry;
         Result eres;
-        Map eager;
-        for (Object o : sel._eager.entrySet()) {
-            entry = (Map.Entry) o;
-
-            // simulated batched selects for inner/outer joins; for separate
-            // selects, don't pass on lock level, because they're probably
-            // for relations and therefore should use default level
-            if (entry.getValue() == sel)
-                eres = res;
-            else
-                eres = ((SelectExecutor) entry.getValue()).execute(store,
+        Map eager = res.getEagerMap(false);
+        if (eager == null) {
+            eager = new HashMap();
+            res.setEagerMap(eager);
+        }
+        try {
+            for (Object o : sel._eager.entrySet()) {
+                entry = (Map.Entry) o;
+
+                // simulated batched selects for inner/outer joins; for
+                // separate selects, don't pass on lock level, because they're
+                // probably for relations and therefore should use default level
+                if (entry.getValue() == sel)
+                    eres = res;
+                else if (parallel != null && parallel.isStarted(entry.getKey()))
+                    continue;
+                else
+                    eres = ((SelectExecutor) entry.getValue()).execute(store,
                         fetch);
-
-            eager = res.getEagerMap(false);
-            if (eager == null) {
-                eager = new HashMap();
-                res.setEagerMap(eager);
+                eager.put(entry.getKey(), eres);
             }
-            eager.put(entry.getKey(), eres);
+        } catch (SQLException | RuntimeException e) {
+            if (parallel != null)
+                parallel.close();
+            throw e;
         }
+        if (parallel != null)
+            parallel.join(eager);
     }
 
 
@@ -2471,12 +2570,22 @@ public class SelectImpl
         implements PathJoins {
 
         private SelectImpl _sel = null;
-        private Map<CachedColumnAliasKey, Object> cachedColumnAlias_ = null;
+
+        // 1-based indexes of the columns read through joins, which are the
+        // same on every row; 0 if the column has no alias and -1 if it is
+        // not selected
+        private Map<ColumnPathKey, Integer> _pathIndexes = null;
+        private final ColumnPathKey _probe = new ColumnPathKey();
 
         // position in selected columns list where we expect the next load
         private int _pos = 0;
         private Stack _preJoins = null;
 
+        // rows read, reported to the fetch size advisor on close
+        private FetchSizeAdvisor _advisor = null;
+        private String _sql = null;
+        private int _rows = 0;
+
         /**
          * Constructor.
          */
@@ -2500,6 +2609,26 @@ public class SelectImpl
             _sel = sel;
         }
 
+        /**
+         * Report the number of rows read from this result to the given
+         * advisor when this result is closed.
+         *
+         * @since 4.1.1
+         */
+        public void setFetchSizeAdvisor(FetchSizeAdvisor advisor, String sql) {
+            _advisor = advisor;
+            _sql = sql;
+        }
+
+        @Override
+        public void close() {
+            super.close();
+            if (_advisor != null) {
+                _advisor.closed(_sql, _rows);
+                _advisor = null;
+            }
+        }
+
         @Override
         public Object getEager(FieldMapping key) {
             // don't bother creating key if we know we don't have any
@@ -2558,16 +2687,8 @@ public class SelectImpl
             // we key directly on objs and join-less cols, or on the alias
             // for cols with joins
             PathJoins pj = getJoins(joins);
-            if (pj != null && pj.path() != null) {
-                Object columnAlias = getColumnAlias((Column) obj, pj);
-                if (joins == null) {
-                    if (cachedColumnAlias_ == null) {
-                        cachedColumnAlias_ = new HashMap<>();
-                    }
-                    cachedColumnAlias_.put(new CachedColumnAliasKey((Column) obj, pj), columnAlias);
-                }
-                return columnAlias != null && _sel._selects.contains(columnAlias);
-            }
+            if (pj != null && pj.path() != null)
+                return getPathIndex((Column) obj, pj) > 0;
             return obj != null && _sel._selects.contains(obj);
         }
 
@@ -2598,14 +2719,20 @@ public class SelectImpl
         protected boolean absoluteInternal(int row)
             throws SQLException {
             _pos = 0;
-            return super.absoluteInternal(row);
+            boolean found = super.absoluteInternal(row);
+            if (found && row >= _rows)
+                _rows = row + 1;
+            return found;
         }
 
         @Override
         protected boolean nextInternal()
             throws SQLException {
             _pos = 0;
-            return super.nextInternal();
+            boolean found = super.nextInternal();
+            if (found)
+                _rows++;
+            return found;
         }
 
         @Override
@@ -2618,21 +2745,19 @@ public class SelectImpl
             // we key directly on objs and join-less cols, or on the alias
             // for cols with joins
             PathJoins pj = getJoins(joins);
-            Boolean pk = null;
             if (pj != null && pj.path() != null) {
                 Column col = (Column) obj;
-                pk = (col.isPrimaryKey()) ? Boolean.TRUE : Boolean.FALSE;
-                if (joins == null && cachedColumnAlias_ != null) {
-                    obj = cachedColumnAlias_.get(new CachedColumnAliasKey((Column) obj, pj));
-                    if (obj == null) {
-                        obj = getColumnAlias(col, pj);
-                    }
-                } else {
-                    obj = getColumnAlias(col, pj);
-                }
-                if (obj == null)
+                int idx = getPathIndex(col, pj);
+                if (idx == 0)
                     throw new SQLException(col.getTable() + ": "
                         + pj.path() + " (" + _sel._aliases + ")");
+                if (idx < 0)
+                    throw new SQLException(getColumnAlias(col, pj));
+
+                // the same as a search from the position marker would find
+                if (idx > _pos)
+                    _pos = idx;
+                return idx;
             }
 
             // we load in the same order we select, more or less...
@@ -2642,10 +2767,7 @@ public class SelectImpl
             // if we're looking for a primary key, try back a couple places,
             // since pks might be selected in a slightly different order than
             // they are loaded back; don't change the marker position
-            if (pk == null)
-                pk = (obj instanceof Column && ((Column) obj).isPrimaryKey())
-                    ? Boolean.TRUE : Boolean.FALSE;
-            if (pk) {
+            if (obj instanceof Column && ((Column) obj).isPrimaryKey()) {
                 for (int i = _pos - 1; i >= 0 && i >= _pos - 3; i--)
                     if (_sel._selects.get(i).equals(obj))
                         return i + 1;
@@ -2673,6 +2795,42 @@ public class SelectImpl
             throw new SQLException(obj.toString());
         }
 
+        /**
+         * Return the 1-based index of the given column read through the
+         * given joins, 0 if the column has no alias in the select, or -1 if
+         * it is not selected. The index is found once for each column and
+         * join path and reused for later rows, which read the same columns
+         * through new joins of the same path.
+         */
+        private int getPathIndex(Column col, PathJoins pj) {
+            // aliases of queries with subselects also depend on the context
+            // of the joins
+            boolean cache = _sel._ctx == null || (_sel._parent == null
+                && _sel._subsels == null && !_sel._hasSub);
+            if (cache && _pathIndexes != null) {
+                Integer idx = _pathIndexes.get(_probe.set(col,
+                    pj.getPathStr()));
+                if (idx != null)
+                    return idx;
+            }
+
+            String alias = getColumnAlias(col, pj);
+            int idx;
+            if (alias == null)
+                idx = 0;
+            else if (!_sel._selects.contains(alias))
+                idx = -1;
+            else
+                idx = _sel._selects.indexOf(alias) + 1;
+            if (cache) {
+                if (_pathIndexes == null)
+                    _pathIndexes = new HashMap<>();
+                _pathIndexes.put(new ColumnPathKey().set(col,
+                    pj.getPathStr()), idx);
+            }
+            return idx;
+        }
+
         /**
          * Return the joins to use to find column data.
          */
@@ -2826,46 +2984,34 @@ public class SelectImpl
         public void moveJoinsToParent() {
         }
 
-        private static final class CachedColumnAliasKey {
-            private final Column col;
-            private final PathJoins pjs;
+        /**
+         * Key of a column read through a join path. Columns are compared by
+         * identity.
+         */
+        private static final class ColumnPathKey {
+            private Column _col;
+            private String _path;
 
-            public CachedColumnAliasKey(Column c, PathJoins p) {
-                col = c;
-                pjs = p;
+            ColumnPathKey set(Column col, String path) {
+                _col = col;
+                _path = path;
+                return this;
             }
 
             @Override
             public int hashCode() {
-                final int prime = 31;
-                int result = 1;
-                result = prime * result + ((col == null) ? 0 : col.hashCode());
-                result = prime * result + ((pjs == null) ? 0 : pjs.hashCode());
-                return result;
+                return System.identityHashCode(_col) * 31 + _path.hashCode();
             }
 
             @Override
-            public boolean equals(Object obj) {
-                if (this == obj)
+            public boolean equals(Object other) {
+                if (other == this)
                     return true;
-                if (obj == null)
-                    return false;
-                if (getClass() != obj.getClass())
+                if (!(other instanceof ColumnPathKey))
                     return false;
-                CachedColumnAliasKey other = (CachedColumnAliasKey) obj;
-                if (col == null) {
-                    if (other.col != null)
-                        return false;
-                } else if (!col.equals(other.col))
-                    return false;
-                if (pjs == null) {
-                    if (other.pjs != null)
-                        return false;
-                } else if (!pjs.equals(other.pjs))
-                    return false;
-                return true;
+                ColumnPathKey key = (ColumnPathKey) other;
+                return _col == key._col && _path.equals(key._path);
             }
-
         }
     }
 
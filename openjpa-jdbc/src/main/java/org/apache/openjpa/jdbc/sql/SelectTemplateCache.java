@@ -0,0 +1,319 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.openjpa.jdbc.sql;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+
+import org.apache.openjpa.jdbc.kernel.JDBCFetchConfiguration;
+import org.apache.openjpa.jdbc.schema.Column;
+import org.apache.openjpa.util.SegmentedCacheMap;
+
+/**
+ * Keeps the SQL the dictionary renders for selects of the same shape, so
+ * that selects built again and again with different parameter values, such
+ * as those that load an instance or a relation, do not render their SQL
+ * each time they execute.
+ *
+ * The shape of a select is made of everything the dictionary reads to
+ * render it: the selected column aliases, the tables and joins, the SQL of
+ * its clauses, its range, whether it is distinct or locks, and the select
+ * operation and locking clause of the fetch configuration. Selects that
+ * select anything but columns, or that have subselects or user parameters,
+ * are always rendered.
+ *
+ * The template of a shape records where the parameters of the WHERE, GROUP
+ * BY, HAVING and ORDER BY clauses of the select fall in the parameters of
+ * the statement. Other parameters, such as the constants of joins and range
+ * values, are part of the shape. A select whose clause parameters can not be
+ * told apart from the other parameters is not cached.
+ *
+ * The cache keeps up to a maximum number of templates. Once it is full, the
+ * templates of the shapes used least recently make room for new ones.
+ *
+ * @since 4.1.1
+ */
+class SelectTemplateCache {
+
+    private static final int WHERE = 0;
+    private static final int GROUPING = 1;
+    private static final int HAVING = 2;
+    private static final int ORDERING = 3;
+
+    private final DBDictionary _dict;
+    private final SegmentedCacheMap _templates;
+
+    SelectTemplateCache(DBDictionary dict, int maxSize) {
+        _dict = dict;
+        _templates = new SegmentedCacheMap(true, maxSize);
+        // evicted templates are dropped rather than kept softly
+        _templates.setSoftReferenceSize(0);
+    }
+
+    /**
+     * The number of cached templates.
+     */
+    int size() {
+        return _templates.size();
+    }
+
+    /**
+     * Create the SELECT statement for the given select, reusing the SQL of a
+     * select of the same shape if there is one.
+     */
+    SQLBuffer toSelect(SelectImpl sel, boolean forUpdate,
+        JDBCFetchConfiguration fetch) {
+        if (!isCacheable(sel))
+            return _dict.toSelect(sel, forUpdate, fetch);
+
+        // class conditions of joins are added to the where clause
+        sel.addJoinClassConditions();
+        List<Object> shape = getShape(sel, forUpdate, fetch);
+        if (shape == null)
+            return _dict.toSelect(sel, forUpdate, fetch);
+
+        Template template = (Template) _templates.get(shape);
+        if (template != null) {
+            SQLBuffer sql = template.bind(sel);
+            if (sql != null)
+                return sql;
+        }
+
+        SQLBuffer sql = _dict.toSelect(sel, forUpdate, fetch);
+        if (template == null) {
+            template = Template.newInstance(sql, getClauses(sel));
+            if (template != null)
+                _templates.put(shape, template);
+        }
+        return sql;
+    }
+
+    /**
+     * Whether the SQL of the given select only depends on its shape.
+     */
+    private static boolean isCacheable(SelectImpl sel) {
+        return sel.getParent() == null && sel.getFromSelect() == null
+            && sel.getSubselects().isEmpty() && !sel.getHasSubselect();
+    }
+
+    /**
+     * Return the shape of the given select, or null if it can not be
+     * cached.
+     */
+    private List<Object> getShape(SelectImpl sel, boolean forUpdate,
+        JDBCFetchConfiguration fetch) {
+        SQLBuffer[] clauses = getClauses(sel);
+        for (SQLBuffer clause : clauses)
+            if (clause != null && (clause.hasSubselects()
+                || !clause.getUserParameters().isEmpty()))
+                return null;
+
+        List<Object> shape = new ArrayList<>();
+        shape.add(_dict.getSelectOperation(fetch));
+        shape.add(_dict.getForUpdateClause(fetch, forUpdate, sel));
+        shape.add(forUpdate);
+        shape.add(sel.isDistinct());
+        shape.add(sel.isAggregate());
+        shape.add(sel.getJoinSyntax());
+        shape.add(sel.getStartIndex());
+        shape.add(sel.getEndIndex());
+
+        List aliases = sel.getSelectAliases();
+        shape.add(aliases.size());
+        for (Object alias : aliases) {
+            if (!(alias instanceof String))
+                return null;
+            shape.add(alias);
+        }
+
+        Collection tables = sel.getTableAliases();
+        shape.add(tables.size());
+        shape.addAll(tables);
+
+        Join join;
+        for (Iterator itr = sel.getJoinIterator(); itr.hasNext();) {
+            join = (Join) itr.next();
+            if (join.isCorrelated())
+                return null;
+            shape.add(new JoinShape(join));
+        }
+
+        for (SQLBuffer clause : clauses)
+            shape.add((clause == null) ? null : clause.getSQL());
+        return shape;
+    }
+
+    /**
+     * Return the clauses of the given select whose parameters change from
+     * one select of a shape to another, in the order of the statement.
+     */
+    private static SQLBuffer[] getClauses(SelectImpl sel) {
+        SQLBuffer[] clauses = new SQLBuffer[ORDERING + 1];
+        clauses[WHERE] = sel.getWhere();
+        clauses[GROUPING] = sel.getGrouping();
+        clauses[HAVING] = sel.getHaving();
+        if (!sel.isAggregate() || sel.getGrouping() != null)
+            clauses[ORDERING] = sel.getOrdering();
+        return clauses;
+    }
+
+    /**
+     * The shape of a join. Tables and foreign keys are compared by identity,
+     * as the mappings of a configuration share them.
+     */
+    private static class JoinShape {
+
+        private final int _type;
+        private final int _index1;
+        private final int _index2;
+        private final Object _table1;
+        private final Object _table2;
+        private final Object _fk;
+        private final boolean _inverse;
+
+        JoinShape(Join join) {
+            _type = join.getType();
+            _index1 = join.getIndex1();
+            _index2 = join.getIndex2();
+            _table1 = join.getTable1();
+            _table2 = join.getTable2();
+            _fk = join.getForeignKey();
+            _inverse = join.isForeignKeyInversed();
+        }
+
+        @Override
+        public int hashCode() {
+            return (_index1 << 16) ^ _index2 ^ System.identityHashCode(_fk);
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            if (other == this)
+                return true;
+            if (!(other instanceof JoinShape))
+                return false;
+            JoinShape js = (JoinShape) other;
+            return _type == js._type && _index1 == js._index1
+                && _index2 == js._index2 && _inverse == js._inverse
+                && _table1 == js._table1 && _table2 == js._table2
+                && _fk == js._fk;
+        }
+    }
+
+    /**
+     * The SQL of a shape, and where the parameters of each clause of a
+     * select fall in it.
+     */
+    private static class Template {
+
+        private final SQLBuffer _sql;
+        private final int[] _offsets;
+        private final int[] _sizes;
+
+        private Template(SQLBuffer sql, int[] offsets, int[] sizes) {
+            _sql = sql;
+            _offsets = offsets;
+            _sizes = sizes;
+        }
+
+        /**
+         * Create a template of the given statement rendered from the given
+         * clauses, or return null if the parameters of the clauses can not
+         * be found in the statement.
+         */
+        static Template newInstance(SQLBuffer sql, SQLBuffer[] clauses) {
+            if (sql.hasSubselects() || !sql.getUserParameters().isEmpty())
+                return null;
+
+            List params = sql.getParameters();
+            boolean[] bound = new boolean[params.size()];
+            int[] offsets = new int[clauses.length];
+            int[] sizes = new int[clauses.length];
+            int pos = 0;
+            for (int i = 0; i < clauses.length; i++) {
+                List vals = (clauses[i] == null) ? null
+                    : clauses[i].getParameters();
+                if (vals == null || vals.isEmpty())
+                    continue;
+                int idx = indexOf(params, vals, pos);
+                if (idx == -1)
+                    return null;
+                offsets[i] = idx;
+                sizes[i] = vals.size();
+                for (int j = 0; j < vals.size(); j++)
+                    bound[idx + j] = true;
+                pos = idx + vals.size();
+            }
+
+            // a parameter that is not bound to a clause must not be one of
+            // the clause values, or it could have been bound in its place
+            for (int i = 0; i < bound.length; i++) {
+                if (bound[i])
+                    continue;
+                for (int j = 0; j < bound.length; j++)
+                    if (bound[j] && params.get(i) == params.get(j))
+                        return null;
+            }
+            return new Template(new SQLBuffer(sql), offsets, sizes);
+        }
+
+        /**
+         * Return the first index from the given position at which the given
+         * values are found in the given parameters by identity, or -1.
+         */
+        private static int indexOf(List params, List vals, int pos) {
+            for (int i = pos; i <= params.size() - vals.size(); i++) {
+                int j = 0;
+                while (j < vals.size() && params.get(i + j) == vals.get(j))
+                    j++;
+                if (j == vals.size())
+                    return i;
+            }
+            return -1;
+        }
+
+        /**
+         * Return the statement of the given select, or null if its clauses
+         * do not have the parameters of the template.
+         */
+        SQLBuffer bind(SelectImpl sel) {
+            SQLBuffer[] clauses = getClauses(sel);
+            for (int i = 0; i < clauses.length; i++) {
+                int size = (clauses[i] == null) ? 0
+                    : clauses[i].getParameters().size();
+                if (size != _sizes[i])
+                    return null;
+            }
+
+            SQLBuffer sql = new SQLBuffer(_sql);
+            for (int i = 0; i < clauses.length; i++) {
+                if (_sizes[i] == 0)
+                    continue;
+                List vals = clauses[i].getParameters();
+                List cols = clauses[i].getColumns();
+                for (int j = 0; j < vals.size(); j++)
+                    sql.setParameter(_offsets[i] + j, vals.get(j),
+                        (cols == null) ? null : (Column) cols.get(j));
+            }
+            return sql;
+        }
+    }
+}
@@ -0,0 +1,194 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.openjpa.jdbc.kernel;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+import org.apache.openjpa.util.UserException;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+public class AdaptiveFetchSizeAdvisorTest {
+
+    private static final String URL =
+        "jdbc:derby:memory:AdaptiveFetchSizeAdvisorTest;create=true";
+    // INTEGER (4) + VARCHAR(100) (100)
+    private static final String NARROW = "SELECT ID, NAME FROM AFTEST";
+    private static final int NARROW_WIDTH = 104;
+    // INTEGER (4) + VARCHAR(1000) (256) + BLOB (256)
+    private static final String WIDE = "SELECT ID, CODE, DATA FROM AFTEST";
+    private static final int WIDE_WIDTH = 516;
+
+    private Connection _conn;
+    private Statement _stmnt;
+    private AdaptiveFetchSizeAdvisor _advisor;
+
+    @Before
+    public void setUp() throws SQLException {
+        _conn = DriverManager.getConnection(URL);
+        _stmnt = _conn.createStatement();
+        try {
+            _stmnt.execute("DROP TABLE AFTEST");
+        } catch (SQLException se) {
+            // does not exist yet
+        }
+        _stmnt.execute("CREATE TABLE AFTEST (ID INTEGER, NAME VARCHAR(100), "
+            + "CODE VARCHAR(1000), DATA BLOB)");
+        _advisor = new AdaptiveFetchSizeAdvisor();
+    }
+
+    @After
+    public void tearDown() throws SQLException {
+        _stmnt.close();
+        _conn.close();
+    }
+
+    /**
+     * Execute the given SQL through the advisor and report the given number
+     * of rows read on close.
+     */
+    private void run(String sql, int rows) throws SQLException {
+        try (ResultSet rs = _stmnt.executeQuery(sql)) {
+            _advisor.executed(sql, rs);
+        }
+        _advisor.closed(sql, rows);
+    }
+
+    @Test
+    public void testUnknownStatementKeepsDriverFetchSize() throws SQLException {
+        Assert.assertEquals(0, _advisor.getFetchSize(NARROW));
+        Assert.assertEquals(-1, _advisor.getRowWidth(NARROW));
+        Assert.assertEquals(-1, _advisor.getRowCount(NARROW), 0);
+        Assert.assertEquals(0, _advisor.getExecutionCount(NARROW));
+
+        // executed but not yet closed: no row count to go on
+        try (ResultSet rs = _stmnt.executeQuery(NARROW)) {
+            _advisor.executed(NARROW, rs);
+        }
+        Assert.assertEquals(0, _advisor.getFetchSize(NARROW));
+        Assert.assertEquals(1, _advisor.getExecutionCount(NARROW));
+    }
+
+    @Test
+    public void testRowWidthFromColumnTypes() throws SQLException {
+        run(NARROW, 0);
+        run(WIDE, 0);
+        Assert.assertEquals(NARROW_WIDTH, _advisor.getRowWidth(NARROW));
+        Assert.assertEquals(WIDE_WIDTH, _advisor.getRowWidth(WIDE));
+    }
+
+    @Test
+    public void testFetchSizeFollowsMostRowsRead() throws SQLException {
+        run(NARROW, 10);
+        Assert.assertEquals(11, _advisor.getFetchSize(NARROW));
+        Assert.assertEquals(10, _advisor.getRowCount(NARROW), 0);
+
+        // fewer rows move the average but not the fetch size
+        run(NARROW, 2);
+        Assert.assertEquals(11, _advisor.getFetchSize(NARROW));
+        Assert.assertEquals(8, _advisor.getRowCount(NARROW), 0);
+
+        // more rows raise it
+        run(NARROW, 40);
+        Assert.assertEquals(41, _advisor.getFetchSize(NARROW));
+        Assert.assertEquals(16, _advisor.getRowCount(NARROW), 0);
+        Assert.assertEquals(3, _advisor.getExecutionCount(NARROW));
+
+        // an empty result still reads its end in one round trip
+        run(WIDE, 0);
+        Assert.assertEquals(1, _advisor.getFetchSize(WIDE));
+    }
+
+    @Test
+    public void testFetchSizeBoundedByTargetBytes() throws SQLException {
+        _advisor.setTargetBytes(NARROW_WIDTH * 10);
+        run(NARROW, 500);
+        Assert.assertEquals(10, _advisor.getFetchSize(NARROW));
+
+        // rows wider than the target are still fetched one at a time
+        run(WIDE, 500);
+        Assert.assertEquals(2, _advisor.getFetchSize(WIDE));
+        _advisor.setTargetBytes(1);
+        Assert.assertEquals(1, _advisor.getFetchSize(WIDE));
+    }
+
+    @Test
+    public void testFetchSizeBoundedByMaxFetchSize() throws SQLException {
+        run(NARROW, 5000);
+        Assert.assertEquals(_advisor.getTargetBytes() / NARROW_WIDTH,
+            _advisor.getFetchSize(NARROW));
+
+        _advisor.setMaxFetchSize(50);
+        Assert.assertEquals(50, _advisor.getFetchSize(NARROW));
+        run(WIDE, 20);
+        Assert.assertEquals(21, _advisor.getFetchSize(WIDE));
+    }
+
+    @Test
+    public void testMaxStatements() throws SQLException {
+        _advisor.setMaxStatements(1);
+        run(NARROW, 10);
+        run(WIDE, 10);
+        Assert.assertEquals(11, _advisor.getFetchSize(NARROW));
+        Assert.assertEquals(0, _advisor.getFetchSize(WIDE));
+        Assert.assertEquals(1, _advisor.getStatements().size());
+        Assert.assertTrue(_advisor.getStatements().contains(NARROW));
+
+        // known statements keep learning
+        run(NARROW, 20);
+        Assert.assertEquals(21, _advisor.getFetchSize(NARROW));
+
+        _advisor.clear();
+        Assert.assertTrue(_advisor.getStatements().isEmpty());
+        Assert.assertEquals(0, _advisor.getFetchSize(NARROW));
+        run(WIDE, 10);
+        Assert.assertEquals(11, _advisor.getFetchSize(WIDE));
+    }
+
+    @Test
+    public void testBadSettings() {
+        try {
+            _advisor.setTargetBytes(0);
+            Assert.fail();
+        } catch (UserException ue) {
+            // expected
+        }
+        try {
+            _advisor.setMaxFetchSize(0);
+            Assert.fail();
+        } catch (UserException ue) {
+            // expected
+        }
+        try {
+            _advisor.setMaxStatements(-1);
+            Assert.fail();
+        } catch (UserException ue) {
+            // expected
+        }
+        Assert.assertEquals(64 * 1024, _advisor.getTargetBytes());
+        Assert.assertEquals(1000, _advisor.getMaxFetchSize());
+        Assert.assertEquals(1000, _advisor.getMaxStatements());
+    }
+}
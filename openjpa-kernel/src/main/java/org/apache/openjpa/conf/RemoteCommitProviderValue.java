@@ -40,10 +40,14 @@ public class RemoteCommitProviderValue
         "sjvm", "org.apache.openjpa.event.SingleJVMRemoteCommitProvider",
         "jms", "org.apache.openjpa.event.JMSRemoteCommitProvider",
         "tcp", "org.apache.openjpa.event.TCPRemoteCommitProvider",
+        "niotcp", "org.apache.openjpa.event.NIOTCPRemoteCommitProvider",
     };
 
     private Options _opts = null;
     private Boolean _transmitPersIds = null;
+    private Integer _coalesceWindow = null;
+    private Integer _coalesceMaxEvents = null;
+    private Integer _extentThreshold = null;
 
     public RemoteCommitProviderValue() {
         super("RemoteCommitProvider", true);
@@ -55,6 +59,9 @@ public class RemoteCommitProviderValue
         super.setProperties(props);
         _opts = null;
         _transmitPersIds = null;
+        _coalesceWindow = null;
+        _coalesceMaxEvents = null;
+        _extentThreshold = null;
     }
 
     @Override
@@ -62,6 +69,9 @@ public class RemoteCommitProviderValue
         super.setString(str);
         _opts = null;
         _transmitPersIds = null;
+        _coalesceWindow = null;
+        _coalesceMaxEvents = null;
+        _extentThreshold = null;
     }
 
     /**
@@ -115,6 +125,12 @@ public class RemoteCommitProviderValue
         parseOptions();
         if (_transmitPersIds != null)
             mgr.setTransmitPersistedObjectIds(_transmitPersIds);
+        if (_coalesceWindow != null)
+            mgr.setCoalesceWindowMillis(_coalesceWindow);
+        if (_coalesceMaxEvents != null)
+            mgr.setCoalesceMaxEvents(_coalesceMaxEvents);
+        if (_extentThreshold != null)
+            mgr.setExtentThreshold(_extentThreshold);
     }
 
     /**
@@ -138,5 +154,16 @@ public class RemoteCommitProviderValue
             ("transmitPersistedObjectIds", "TransmitPersistedObjectIds", null));
         if (transmit != null)
             _transmitPersIds = Boolean.valueOf (transmit);
+        _coalesceWindow = removeInt("coalesceWindowMillis", "CoalesceWindowMillis");
+        _coalesceMaxEvents = removeInt("coalesceMaxEvents", "CoalesceMaxEvents");
+        _extentThreshold = removeInt("extentThreshold", "ExtentThreshold");
 	}
+
+    /**
+     * Remove an integer event manager option from the provider options.
+     */
+    private Integer removeInt(String key, String key2) {
+        String val = StringUtil.trimToNull(_opts.removeProperty(key, key2, null));
+        return (val == null) ? null : Integer.valueOf(val);
+    }
 }
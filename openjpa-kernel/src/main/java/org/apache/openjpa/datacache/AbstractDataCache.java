@@ -42,6 +42,7 @@ import org.apache.openjpa.lib.util.Localizer;
 import org.apache.openjpa.lib.util.StringUtil;
 import org.apache.openjpa.lib.util.concurrent.AbstractConcurrentEventManager;
 import org.apache.openjpa.util.GeneralException;
+import org.apache.openjpa.util.OpenJPAId;
 
 
 /**
@@ -402,6 +403,9 @@ public abstract class AbstractDataCache extends AbstractConcurrentEventManager
         if (hasListeners())
             fireEvent(new ExpirationEvent(this, key, expired));
 
+        if (expired && _stats.isEnabled() && key instanceof OpenJPAId)
+            _stats.newEviction(((OpenJPAId) key).getType());
+
         if (expired && log.isTraceEnabled())
             log.trace(s_loc.get("cache-expired", key));
     }
@@ -455,7 +459,9 @@ public abstract class AbstractDataCache extends AbstractConcurrentEventManager
     }
 
     /**
-     * Remove all objects of the given class names from the cache.
+     * Remove all objects of the given class names and their subclasses from
+     * the cache. The sender of an event names the type recorded in its
+     * object ids, which may be a superclass of the type of the cached ids.
      */
     protected void removeAllTypeNamesInternal(Collection<String> classNames) {
         Collection<Class<?>> classes = Caches.addTypesByName(conf, classNames, null);
@@ -465,7 +471,7 @@ public abstract class AbstractDataCache extends AbstractConcurrentEventManager
         for (Class<?> cls : classes) {
             if (log.isTraceEnabled())
                 log.trace(s_loc.get("cache-removeclass", cls.getName()));
-            removeAllInternal(cls, false);
+            removeAllInternal(cls, true);
         }
     }
 
@@ -69,6 +69,65 @@ public interface CacheStatistics extends Serializable {
 	 */
 	long getTotalWriteCount();
 
+    /**
+     * Gets number of total read requests that were not found in cache since
+     * last reset.
+     *
+     * @since 4.1.1
+     */
+    default long getMissCount() {
+        return 0;
+    }
+
+    /**
+     * Gets number of total read requests that were not found in cache since
+     * start.
+     *
+     * @since 4.1.1
+     */
+    default long getTotalMissCount() {
+        return 0;
+    }
+
+    /**
+     * Gets number of entries the cache dropped to stay within its size
+     * limits since last reset. Explicit removals are not counted.
+     *
+     * @since 4.1.1
+     */
+    default long getEvictionCount() {
+        return 0;
+    }
+
+    /**
+     * Gets number of entries the cache dropped to stay within its size
+     * limits since start.
+     *
+     * @since 4.1.1
+     */
+    default long getTotalEvictionCount() {
+        return 0;
+    }
+
+    /**
+     * Gets number of evicted entries of the given class since last reset.
+     *
+     * @since 4.1.1
+     */
+    default long getEvictionCount(String c) {
+        return 0;
+    }
+
+    /**
+     * Gets number of bytes the cache keeps outside of the Java heap, or
+     * <code>0</code> if the cache keeps all of its data on the heap.
+     *
+     * @since 4.1.1
+     */
+    default long getOffHeapBytes() {
+        return 0;
+    }
+
     /**
      * Gets number of total read requests for the given class since last reset.
      *
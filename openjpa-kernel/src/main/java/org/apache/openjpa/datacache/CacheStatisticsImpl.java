@@ -31,7 +31,7 @@ import org.apache.openjpa.util.OpenJPAId;
  */
 public class CacheStatisticsImpl implements CacheStatisticsSPI {
     private static final long serialVersionUID = 9014495759588003166L;
-    private static final int ARRAY_SIZE = 3;
+    private static final int ARRAY_SIZE = 4;
     private long[] totalStat = new long[ARRAY_SIZE];
     private long[] stat = new long[ARRAY_SIZE];
     private Map<String, long[]> stats = new HashMap<>();
@@ -44,6 +44,7 @@ public class CacheStatisticsImpl implements CacheStatisticsSPI {
     private static final int READ = 0;
     private static final int HIT = 1;
     private static final int WRITE = 2;
+    private static final int EVICT = 3;
 
     @Override
     public long getReadCount() {
@@ -75,6 +76,31 @@ public class CacheStatisticsImpl implements CacheStatisticsSPI {
         return totalStat[WRITE];
     }
 
+    @Override
+    public long getMissCount() {
+        return stat[READ] - stat[HIT];
+    }
+
+    @Override
+    public long getTotalMissCount() {
+        return totalStat[READ] - totalStat[HIT];
+    }
+
+    @Override
+    public long getEvictionCount() {
+        return stat[EVICT];
+    }
+
+    @Override
+    public long getTotalEvictionCount() {
+        return totalStat[EVICT];
+    }
+
+    @Override
+    public long getEvictionCount(String str) {
+        return getCount(stats, str, EVICT);
+    }
+
     @Override
     public long getReadCount(Class<?> c) {
         return getReadCount(c.getName());
@@ -223,6 +249,15 @@ public class CacheStatisticsImpl implements CacheStatisticsSPI {
         }
     }
 
+    @Override
+    public void newEviction(Class<?> cls) {
+        if (!enabled) {
+            return;
+        }
+        cls = (cls == null) ? Object.class : cls;
+        addSample(cls.getName(), EVICT);
+    }
+
     /**
      *  Private worker methods.
      */
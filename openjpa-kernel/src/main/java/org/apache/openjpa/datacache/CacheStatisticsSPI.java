@@ -41,6 +41,16 @@ public interface CacheStatisticsSPI extends CacheStatistics {
      */
     void newPut(Class<?> cls);
 
+    /**
+     * Record an entry dropped to stay within the cache size limits.
+     *
+     * @param cls
+     *            - The class describing the type that is contained in the cache.
+     * @since 4.1.1
+     */
+    default void newEviction(Class<?> cls) {
+    }
+
 
     /**
      * Enable statistics collection.
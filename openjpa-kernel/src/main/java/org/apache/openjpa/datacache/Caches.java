@@ -23,9 +23,28 @@ import java.util.HashSet;
 import java.util.Set;
 
 import org.apache.openjpa.conf.OpenJPAConfiguration;
+import org.apache.openjpa.lib.util.Localizer;
+import org.apache.openjpa.util.SegmentedCacheMap.EvictionPolicy;
+import org.apache.openjpa.util.UserException;
 
 class Caches {
 
+    private static final Localizer _loc = Localizer.forPackage(Caches.class);
+
+    /**
+     * Parse the <code>EvictionPolicy</code> property of a cache plugin.
+     * A null name selects LRU or random eviction based on the given
+     * <code>Lru</code> property.
+     */
+    static EvictionPolicy toEvictionPolicy(String name, boolean lru) {
+        if (name == null || name.length() == 0)
+            return lru ? EvictionPolicy.LRU : EvictionPolicy.RANDOM;
+        for (EvictionPolicy policy : EvictionPolicy.values())
+            if (policy.name().equalsIgnoreCase(name))
+                return policy;
+        throw new UserException(_loc.get("bad-eviction-policy", name)).setFatal(true);
+    }
+
     /**
      * Utility to build up a set of classes from their class names
      * when operating outside the context of a persistence manager.
@@ -18,9 +18,13 @@
  */
 package org.apache.openjpa.datacache;
 
+import java.util.Collection;
+
 import org.apache.openjpa.event.RemoteCommitListener;
 import org.apache.openjpa.lib.util.Localizer;
 import org.apache.openjpa.util.CacheMap;
+import org.apache.openjpa.util.SegmentedCacheMap;
+import org.apache.openjpa.util.SegmentedCacheMap.EvictionPolicy;
 
 /**
  * A {@link DataCache} implementation that is optimized for concurrent
@@ -45,6 +49,8 @@ public class ConcurrentDataCache
     private int _cacheSize = Integer.MIN_VALUE;
     private int _softRefs = Integer.MIN_VALUE;
     protected boolean _lru = false;
+    protected int _segments = 0;
+    protected String _evictionPolicy = null;
 
     /**
      * Returns the underlying {@link CacheMap} that this cache is using.
@@ -129,7 +135,18 @@ public class ConcurrentDataCache
      * invoke {@link AbstractDataCache#keyRemoved}.
      */
     protected CacheMap newCacheMap() {
-        CacheMap res = new CacheMap(_lru) {
+        EvictionPolicy policy = Caches.toEvictionPolicy(_evictionPolicy, _lru);
+        if (_segments > 0 || policy == EvictionPolicy.TINYLFU) {
+            int segments = (_segments > 0) ? _segments : SegmentedCacheMap.DEFAULT_SEGMENTS;
+            return new SegmentedCacheMap(policy, 1000, segments) {
+                @Override
+                protected void entryRemoved(Object key, Object value, boolean expired) {
+                    keyRemoved(key, expired);
+                }
+            };
+        }
+
+        CacheMap res = new CacheMap(policy == EvictionPolicy.LRU) {
             @Override
             protected void entryRemoved(Object key, Object value, boolean expired) {
                 keyRemoved(key, expired);
@@ -154,6 +171,23 @@ public class ConcurrentDataCache
         return (DataCachePCData) _cache.remove(key);
     }
 
+    @Override
+    protected void removeAllInternal(Collection<Object> oids) {
+        // evict a batch of oids, such as those of a remote commit event,
+        // under a single acquisition of the map's lock; the segmented map
+        // locks its segments individually instead
+        if (_cache instanceof SegmentedCacheMap || oids.size() < 2) {
+            super.removeAllInternal(oids);
+            return;
+        }
+        _cache.writeLock();
+        try {
+            super.removeAllInternal(oids);
+        } finally {
+            _cache.writeUnlock();
+        }
+    }
+
     @Override
     protected void removeAllInternal(Class<?> cls, boolean subs) {
         // The performance in this area can be improved upon, however it seems
@@ -190,4 +224,50 @@ public class ConcurrentDataCache
     public boolean getLru() {
         return _lru;
     }
+
+    /**
+     * Sets the number of lock stripes of the internal cache map. A positive
+     * value replaces the default {@link CacheMap} with a
+     * {@link SegmentedCacheMap} whose reads do not lock. Defaults to
+     * <code>0</code>.
+     *
+     * @since 4.1.1
+     */
+    public void setSegments(int segments) {
+        _segments = segments;
+    }
+
+    /**
+     * Returns the number of lock stripes of the internal cache map, or
+     * <code>0</code> if the map is not segmented.
+     *
+     * @since 4.1.1
+     */
+    public int getSegments() {
+        return _segments;
+    }
+
+    /**
+     * Sets how entries are chosen for eviction when the cache is full:
+     * <code>random</code>, <code>lru</code> or <code>tinylfu</code>. The
+     * <code>tinylfu</code> policy admits new entries based on their
+     * estimated access frequency, which keeps frequently used entries
+     * cached through scans, and always uses a segmented cache map.
+     * Defaults to <code>lru</code> if {@link #setLru} is set and
+     * <code>random</code> otherwise.
+     *
+     * @since 4.1.1
+     */
+    public void setEvictionPolicy(String policy) {
+        _evictionPolicy = policy;
+    }
+
+    /**
+     * Returns the eviction policy of this cache.
+     *
+     * @since 4.1.1
+     */
+    public String getEvictionPolicy() {
+        return Caches.toEvictionPolicy(_evictionPolicy, _lru).name().toLowerCase();
+    }
 }
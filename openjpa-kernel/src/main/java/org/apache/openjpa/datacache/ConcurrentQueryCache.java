@@ -22,6 +22,8 @@ import java.util.Collection;
 
 import org.apache.openjpa.event.RemoteCommitListener;
 import org.apache.openjpa.util.CacheMap;
+import org.apache.openjpa.util.SegmentedCacheMap;
+import org.apache.openjpa.util.SegmentedCacheMap.EvictionPolicy;
 
 /**
  * A {@link QueryCache} implementation that is optimized for concurrent
@@ -40,6 +42,8 @@ public class ConcurrentQueryCache
     private static final long serialVersionUID = 1L;
     private CacheMap _cache;
     protected boolean _lru = false;
+    protected int _segments = 0;
+    protected String _evictionPolicy = null;
     private int _cacheSize = Integer.MIN_VALUE;
     private int _softRefs = Integer.MIN_VALUE;
 
@@ -122,7 +126,13 @@ public class ConcurrentQueryCache
      * Return the map to use as an internal cache.
      */
     protected CacheMap newCacheMap() {
-        CacheMap res = new CacheMap(_lru);
+        EvictionPolicy policy = Caches.toEvictionPolicy(_evictionPolicy, _lru);
+        if (_segments > 0 || policy == EvictionPolicy.TINYLFU) {
+            int segments = (_segments > 0) ? _segments : SegmentedCacheMap.DEFAULT_SEGMENTS;
+            return new SegmentedCacheMap(policy, 1000, segments);
+        }
+
+        CacheMap res = new CacheMap(policy == EvictionPolicy.LRU);
 
         return res;
     }
@@ -177,4 +187,50 @@ public class ConcurrentQueryCache
     public boolean getLru() {
         return _lru;
     }
+
+    /**
+     * Sets the number of lock stripes of the internal cache map. A positive
+     * value replaces the default {@link CacheMap} with a
+     * {@link SegmentedCacheMap} whose reads do not lock. Defaults to
+     * <code>0</code>.
+     *
+     * @since 4.1.1
+     */
+    public void setSegments(int segments) {
+        _segments = segments;
+    }
+
+    /**
+     * Returns the number of lock stripes of the internal cache map, or
+     * <code>0</code> if the map is not segmented.
+     *
+     * @since 4.1.1
+     */
+    public int getSegments() {
+        return _segments;
+    }
+
+    /**
+     * Sets how entries are chosen for eviction when the cache is full:
+     * <code>random</code>, <code>lru</code> or <code>tinylfu</code>. The
+     * <code>tinylfu</code> policy admits new entries based on their
+     * estimated access frequency, which keeps frequently used entries
+     * cached through scans, and always uses a segmented cache map.
+     * Defaults to <code>lru</code> if {@link #setLru} is set and
+     * <code>random</code> otherwise.
+     *
+     * @since 4.1.1
+     */
+    public void setEvictionPolicy(String policy) {
+        _evictionPolicy = policy;
+    }
+
+    /**
+     * Returns the eviction policy of this cache.
+     *
+     * @since 4.1.1
+     */
+    public String getEvictionPolicy() {
+        return Caches.toEvictionPolicy(_evictionPolicy, _lru).name().toLowerCase();
+    }
 }
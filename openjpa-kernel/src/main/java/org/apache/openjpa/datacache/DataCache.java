@@ -149,6 +149,17 @@ public interface DataCache
      */
     void update(DataCachePCData value);
 
+    /**
+     * Put back a value retrieved from {@link #get} and changed since, unless
+     * the cache no longer holds an entry for its oid. Caches that return
+     * live objects from {@link #get} already hold the change, so by default
+     * this method does nothing. Caches that return copies override it.
+     *
+     * @since 4.1.1
+     */
+    default void updateIfCached(DataCachePCData value) {
+    }
+
     /**
      * Remove the value stored under the given oid. This does
      * <em>not</em> result in an update of other caches. Rather, it
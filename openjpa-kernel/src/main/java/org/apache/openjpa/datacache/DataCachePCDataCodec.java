@@ -0,0 +1,322 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.openjpa.datacache;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.sql.Timestamp;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.openjpa.kernel.AbstractPCData;
+import org.apache.openjpa.lib.util.Localizer;
+import org.apache.openjpa.meta.ClassMetaData;
+import org.apache.openjpa.meta.MetaDataRepository;
+import org.apache.openjpa.util.BinaryDecoder;
+import org.apache.openjpa.util.BinaryEncoder;
+import org.apache.openjpa.util.IntId;
+import org.apache.openjpa.util.LongId;
+import org.apache.openjpa.util.StoreException;
+import org.apache.openjpa.util.StringId;
+
+/**
+ * Compact binary form of {@link DataCachePCData}, used by caches that keep
+ * their data outside of the Java heap. Wrappers, strings, dates, numbers,
+ * datastore identities and the collection and map data built by
+ * {@link AbstractPCData} are written with dedicated encodings; any other
+ * value falls back to Java serialization.
+ *
+ * Instances are thread safe.
+ *
+ * @since 4.1.1
+ */
+public class DataCachePCDataCodec {
+
+    private static final Localizer _loc = Localizer.forPackage(DataCachePCDataCodec.class);
+
+    private static final byte FORMAT = 1;
+
+    private static final byte FIELD_LOADED = 1;
+    private static final byte FIELD_INTERMEDIATE = 2;
+    private static final byte FIELD_IMPL = 4;
+
+    private static final byte NULL = 0;
+    private static final byte PCDATA_NULL = 1;
+    private static final byte TRUE = 2;
+    private static final byte FALSE = 3;
+    private static final byte BYTE = 4;
+    private static final byte SHORT = 5;
+    private static final byte CHAR = 6;
+    private static final byte INT = 7;
+    private static final byte LONG = 8;
+    private static final byte FLOAT = 9;
+    private static final byte DOUBLE = 10;
+    private static final byte STRING = 11;
+    private static final byte BIG_DECIMAL = 12;
+    private static final byte BIG_INTEGER = 13;
+    private static final byte DATE = 14;
+    private static final byte TIMESTAMP = 15;
+    private static final byte OID = 16;
+    private static final byte BYTES = 17;
+    private static final byte COLLECTION = 18;
+    private static final byte MAP = 19;
+    private static final byte EMPTY_MAP = 20;
+    private static final byte OBJECT_ARRAY = 21;
+    private static final byte SERIALIZED = 22;
+
+    private final MetaDataRepository _repos;
+    private final ClassLoader _loader;
+
+    /**
+     * Constructor; supply the repository used to look up the metadata of
+     * decoded types and the loader for class names.
+     */
+    public DataCachePCDataCodec(MetaDataRepository repos, ClassLoader loader) {
+        _repos = repos;
+        _loader = loader;
+    }
+
+    /**
+     * Write the given data to the encoder. Values that cannot be written
+     * result in a {@link StoreException}.
+     */
+    public void encode(DataCachePCDataImpl data, BinaryEncoder out) {
+        ClassMetaData meta = _repos.getMetaData(data.getType(), _loader, true);
+        out.writeByte(FORMAT);
+        out.writeClass(data.getType());
+        out.writeObjectId(data.getId());
+        out.writeString(data.getCache());
+        out.writeSignedVarLong(data.getTimeOut());
+        writeValue(out, data.getVersion());
+        writeValue(out, data.getImplData());
+
+        int fields = meta.getFields().length;
+        out.writeVarInt(fields);
+        Object val;
+        Object impl;
+        for (int i = 0; i < fields; i++) {
+            impl = data.getImplData(i);
+            if (data.isLoaded(i)) {
+                out.writeByte(FIELD_LOADED | (impl == null ? 0 : FIELD_IMPL));
+                writeValue(out, data.getData(i));
+            } else {
+                val = data.getIntermediate(i);
+                out.writeByte((val == null ? 0 : FIELD_INTERMEDIATE) | (impl == null ? 0 : FIELD_IMPL));
+                if (val != null)
+                    writeValue(out, val);
+            }
+            if (impl != null)
+                writeValue(out, impl);
+        }
+    }
+
+    /**
+     * Read data written by {@link #encode}.
+     */
+    public DataCachePCData decode(BinaryDecoder in) {
+        byte format = in.readByte();
+        if (format != FORMAT)
+            throw new StoreException(_loc.get("bad-pcdata-format", format));
+
+        Class<?> type = in.readClass();
+        ClassMetaData meta = _repos.getMetaData(type, _loader, true);
+        Object oid = in.readObjectId();
+        String cache = in.readString();
+        long exp = in.readSignedVarLong();
+
+        DataCachePCDataImpl data = new DataCachePCDataImpl(oid, meta, cache, exp);
+        data.setVersion(readValue(in));
+        data.setImplData(readValue(in));
+
+        int fields = in.readVarInt();
+        if (fields != meta.getFields().length)
+            throw new StoreException(_loc.get("bad-pcdata-fields", type, fields));
+        byte flags;
+        for (int i = 0; i < fields; i++) {
+            flags = in.readByte();
+            if ((flags & FIELD_LOADED) != 0)
+                data.setData(i, readValue(in));
+            else if ((flags & FIELD_INTERMEDIATE) != 0)
+                data.setIntermediate(i, readValue(in));
+            if ((flags & FIELD_IMPL) != 0)
+                data.setImplData(i, readValue(in));
+        }
+        return data;
+    }
+
+    private void writeValue(BinaryEncoder out, Object val) {
+        if (val == null) {
+            out.writeByte(NULL);
+            return;
+        }
+        if (val == AbstractPCData.NULL) {
+            out.writeByte(PCDATA_NULL);
+            return;
+        }
+
+        Class<?> cls = val.getClass();
+        if (cls == String.class) {
+            out.writeByte(STRING);
+            out.writeString((String) val);
+        } else if (cls == Integer.class) {
+            out.writeByte(INT);
+            out.writeSignedVarInt((Integer) val);
+        } else if (cls == Long.class) {
+            out.writeByte(LONG);
+            out.writeSignedVarLong((Long) val);
+        } else if (cls == Boolean.class) {
+            out.writeByte((Boolean) val ? TRUE : FALSE);
+        } else if (cls == Double.class) {
+            out.writeByte(DOUBLE);
+            out.writeLong(Double.doubleToRawLongBits((Double) val));
+        } else if (cls == Float.class) {
+            out.writeByte(FLOAT);
+            out.writeInt(Float.floatToRawIntBits((Float) val));
+        } else if (cls == Short.class) {
+            out.writeByte(SHORT);
+            out.writeSignedVarInt((Short) val);
+        } else if (cls == Byte.class) {
+            out.writeByte(BYTE);
+            out.writeByte((Byte) val);
+        } else if (cls == Character.class) {
+            out.writeByte(CHAR);
+            out.writeVarInt((Character) val);
+        } else if (cls == BigDecimal.class) {
+            out.writeByte(BIG_DECIMAL);
+            out.writeSignedVarInt(((BigDecimal) val).scale());
+            out.writeByteArray(((BigDecimal) val).unscaledValue().toByteArray());
+        } else if (cls == BigInteger.class) {
+            out.writeByte(BIG_INTEGER);
+            out.writeByteArray(((BigInteger) val).toByteArray());
+        } else if (cls == Date.class) {
+            out.writeByte(DATE);
+            out.writeSignedVarLong(((Date) val).getTime());
+        } else if (cls == Timestamp.class) {
+            out.writeByte(TIMESTAMP);
+            out.writeSignedVarLong(((Timestamp) val).getTime());
+            out.writeVarInt(((Timestamp) val).getNanos());
+        } else if (cls == LongId.class || cls == IntId.class || cls == StringId.class) {
+            out.writeByte(OID);
+            out.writeObjectId(val);
+        } else if (cls == byte[].class) {
+            out.writeByte(BYTES);
+            out.writeByteArray((byte[]) val);
+        } else if (cls == Object[].class) {
+            Object[] arr = (Object[]) val;
+            out.writeByte(OBJECT_ARRAY);
+            out.writeVarInt(arr.length);
+            for (Object o : arr)
+                writeValue(out, o);
+        } else if (val == Collections.EMPTY_MAP) {
+            out.writeByte(EMPTY_MAP);
+        } else if (cls == HashMap.class) {
+            Map<?, ?> map = (Map<?, ?>) val;
+            out.writeByte(MAP);
+            out.writeVarInt(map.size());
+            for (Map.Entry<?, ?> e : map.entrySet()) {
+                writeValue(out, e.getKey());
+                writeValue(out, e.getValue());
+            }
+        } else {
+            int seq = AbstractPCData.getCollectionDataSequence(val);
+            if (seq >= 0) {
+                List<?> list = (List<?>) val;
+                out.writeByte(COLLECTION);
+                out.writeVarInt(list.size());
+                out.writeSignedVarInt(seq);
+                for (Object o : list)
+                    writeValue(out, o);
+            } else {
+                out.writeByte(SERIALIZED);
+                out.writeSerialized(val);
+            }
+        }
+    }
+
+    private Object readValue(BinaryDecoder in) {
+        byte tag = in.readByte();
+        switch (tag) {
+            case NULL:
+                return null;
+            case PCDATA_NULL:
+                return AbstractPCData.NULL;
+            case TRUE:
+                return Boolean.TRUE;
+            case FALSE:
+                return Boolean.FALSE;
+            case BYTE:
+                return in.readByte();
+            case SHORT:
+                return (short) in.readSignedVarInt();
+            case CHAR:
+                return (char) in.readVarInt();
+            case INT:
+                return in.readSignedVarInt();
+            case LONG:
+                return in.readSignedVarLong();
+            case FLOAT:
+                return Float.intBitsToFloat(in.readInt());
+            case DOUBLE:
+                return Double.longBitsToDouble(in.readLong());
+            case STRING:
+                return in.readString();
+            case BIG_DECIMAL:
+                int scale = in.readSignedVarInt();
+                return new BigDecimal(new BigInteger(in.readByteArray()), scale);
+            case BIG_INTEGER:
+                return new BigInteger(in.readByteArray());
+            case DATE:
+                return new Date(in.readSignedVarLong());
+            case TIMESTAMP:
+                Timestamp ts = new Timestamp(in.readSignedVarLong());
+                ts.setNanos(in.readVarInt());
+                return ts;
+            case OID:
+                return in.readObjectId();
+            case BYTES:
+                return in.readByteArray();
+            case OBJECT_ARRAY:
+                Object[] arr = new Object[in.readVarInt()];
+                for (int i = 0; i < arr.length; i++)
+                    arr[i] = readValue(in);
+                return arr;
+            case EMPTY_MAP:
+                return Collections.EMPTY_MAP;
+            case MAP:
+                int size = in.readVarInt();
+                Map<Object, Object> map = new HashMap<>(size);
+                for (int i = 0; i < size; i++)
+                    map.put(readValue(in), readValue(in));
+                return map;
+            case COLLECTION:
+                size = in.readVarInt();
+                List<Object> list = AbstractPCData.newCollectionData(size, in.readSignedVarInt());
+                for (int i = 0; i < size; i++)
+                    list.add(readValue(in));
+                return list;
+            case SERIALIZED:
+                return in.readSerialized();
+            default:
+                throw new StoreException(_loc.get("bad-pcdata-tag", tag));
+        }
+    }
+}
@@ -61,6 +61,17 @@ public class DataCachePCDataImpl
             _exp = -1;
     }
 
+    /**
+     * Constructor used to restore data copied out of the heap, keeping
+     * its original expiration time.
+     *
+     * @since 4.1.1
+     */
+    public DataCachePCDataImpl(Object oid, ClassMetaData meta, String name, long exp) {
+        super(oid, meta, name);
+        _exp = exp;
+    }
+
     @Override
     public boolean isTimedOut() {
         return _exp != -1 && _exp < System.currentTimeMillis();
@@ -199,6 +210,9 @@ public class DataCachePCDataImpl
                     DataCachePCData data = cache.get(oid);
                     if (data instanceof DataCachePCDataImpl) {
                         ((DataCachePCDataImpl) data).clearData(inverse.getIndex());
+                        // caches that return copies only see the change
+                        // when it is put back
+                        cache.updateIfCached(data);
                     }
                 }
             }
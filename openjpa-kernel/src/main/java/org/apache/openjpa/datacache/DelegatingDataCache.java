@@ -197,6 +197,17 @@ public class DelegatingDataCache
         }
     }
 
+    @Override
+    public void updateIfCached(DataCachePCData value) {
+        if (_cache == null)
+            return;
+        try {
+            _cache.updateIfCached(value);
+        } catch (RuntimeException re) {
+            throw translate(re);
+        }
+    }
+
     @Override
     public DataCachePCData remove(Object oid) {
         if (_cache == null)
@@ -0,0 +1,605 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.openjpa.datacache;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.StampedLock;
+
+import org.apache.openjpa.event.RemoteCommitListener;
+import org.apache.openjpa.lib.util.Localizer;
+import org.apache.openjpa.util.BinaryDecoder;
+import org.apache.openjpa.util.BinaryEncoder;
+import org.apache.openjpa.util.GeneralException;
+import org.apache.openjpa.util.OpenJPAId;
+import org.apache.openjpa.util.UserException;
+
+/**
+ * A {@link DataCache} implementation that keeps cached data outside of the
+ * Java heap, so that a large cache does not add to garbage collection work.
+ * Each entry is written with a {@link DataCachePCDataCodec} into fixed-size
+ * slabs of direct memory, or of a memory-mapped file if a
+ * {@link #setFile File} is given. Only an index from object id to slab
+ * position stays on the heap.
+ *
+ * Slabs are filled in order. When all of the {@link #setMaxMemory MaxMemory}
+ * is in use, the oldest slab is evicted as a whole and reused. Reads do not
+ * lock; they copy the entry out of its slab and decode it into a new
+ * {@link DataCachePCDataImpl}, so changes to returned data are only cached
+ * when the data is put back. Pinned entries are kept on the heap.
+ *
+ * @since 4.1.1
+ */
+public class OffHeapDataCache
+    extends AbstractDataCache
+    implements RemoteCommitListener {
+
+    private static final long serialVersionUID = 1L;
+
+    private static final Localizer _loc = Localizer.forPackage
+        (OffHeapDataCache.class);
+
+    /**
+     * Default size of a single slab: 1 MB.
+     */
+    public static final int DEFAULT_SLAB_SIZE = 1024 * 1024;
+
+    /**
+     * Default total size of all slabs: 64 MB.
+     */
+    public static final long DEFAULT_MAX_MEMORY = 64L * 1024 * 1024;
+
+    // value of a pinned key that has no data
+    private static final Object PINNED = new Object();
+
+    // each entry is prefixed with its length
+    private static final int HEADER = 4;
+
+    private long _maxMemory = DEFAULT_MAX_MEMORY;
+    private int _slabSize = DEFAULT_SLAB_SIZE;
+    private String _file = null;
+
+    private final Map<Object, Long> _index = new ConcurrentHashMap<>();
+    private final Map<Object, Object> _pinned = new ConcurrentHashMap<>();
+    private final StampedLock _lock = new StampedLock();
+    private final ReentrantLock _writeLock = new ReentrantLock();
+
+    private transient DataCachePCDataCodec _codec;
+    private transient ClassLoader _loader;
+    private transient FileChannel _channel;
+    private transient ByteBuffer[] _slabs;
+    private transient List<Object>[] _slabKeys;
+    private transient int[] _slabLive;
+    private final Deque<Integer> _filled = new ArrayDeque<>();
+    private final Deque<Integer> _free = new ArrayDeque<>();
+    private int _allocated = 0;
+    private int _current = -1;
+    private int _position = 0;
+    private volatile long _liveBytes = 0;
+
+    public OffHeapDataCache() {
+        _stats = new OffHeapStatistics(this);
+    }
+
+    /**
+     * Sets the total number of bytes of all slabs. Defaults to 64 MB.
+     */
+    public void setMaxMemory(long bytes) {
+        _maxMemory = bytes;
+    }
+
+    public long getMaxMemory() {
+        return _maxMemory;
+    }
+
+    /**
+     * Sets the number of bytes of a single slab. Entries larger than a slab
+     * are not cached. Defaults to 1 MB.
+     */
+    public void setSlabSize(int bytes) {
+        _slabSize = bytes;
+    }
+
+    public int getSlabSize() {
+        return _slabSize;
+    }
+
+    /**
+     * Sets the file to map the slabs to. By default, slabs are allocated
+     * as direct buffers.
+     */
+    public void setFile(String file) {
+        _file = file;
+    }
+
+    public String getFile() {
+        return _file;
+    }
+
+    /**
+     * Returns the number of bytes used by cached entries.
+     */
+    public long getOffHeapBytes() {
+        return _liveBytes;
+    }
+
+    /**
+     * Returns the number of bytes of the slabs allocated so far.
+     */
+    public long getAllocatedBytes() {
+        return (long) _allocated * _slabSize;
+    }
+
+    /**
+     * Returns the number of entries in the cache, including pinned entries.
+     */
+    public int getEntryCount() {
+        int pinned = 0;
+        for (Object val : _pinned.values())
+            if (val != PINNED)
+                pinned++;
+        return _index.size() + pinned;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public void initialize(DataCacheManager mgr) {
+        super.initialize(mgr);
+        if (_slabSize <= HEADER || _maxMemory < _slabSize)
+            throw new UserException(_loc.get("offheap-bad-size", _maxMemory, _slabSize));
+        conf.getRemoteCommitEventManager().addInternalListener(this);
+
+        _loader = conf.getClassResolverInstance().getClassLoader(getClass(), null);
+        _codec = new DataCachePCDataCodec(conf.getMetaDataRepositoryInstance(), _loader);
+        int slabs = (int) Math.min(Integer.MAX_VALUE, _maxMemory / _slabSize);
+        _slabs = new ByteBuffer[slabs];
+        _slabKeys = new List[slabs];
+        _slabLive = new int[slabs];
+        if (_file != null) {
+            if (log.isInfoEnabled())
+                log.info(_loc.get("offheap-file", _file));
+            try {
+                _channel = new RandomAccessFile(_file, "rw").getChannel();
+            } catch (IOException ioe) {
+                throw new GeneralException(ioe);
+            }
+        }
+    }
+
+    @Override
+    protected void close(boolean clear) {
+        super.close(clear);
+        if (_slabs == null)
+            return;
+        long stamp = _lock.writeLock();
+        try {
+            Arrays.fill(_slabs, null);
+            _index.clear();
+            _filled.clear();
+            _free.clear();
+            _allocated = 0;
+            _current = -1;
+            _liveBytes = 0;
+            if (_channel != null)
+                _channel.close();
+        } catch (IOException ioe) {
+            if (log.isWarnEnabled())
+                log.warn(ioe);
+        } finally {
+            _lock.unlockWrite(stamp);
+        }
+    }
+
+    @Override
+    public void unpinAll(Class<?> cls, boolean subs) {
+        if (log.isWarnEnabled())
+            log.warn(_loc.get("cache-class-unpin-all", getName()));
+        unpinAll(new ArrayList<>(_pinned.keySet()));
+    }
+
+    @Override
+    public void writeLock() {
+        _writeLock.lock();
+    }
+
+    @Override
+    public void writeUnlock() {
+        _writeLock.unlock();
+    }
+
+    @Override
+    protected boolean recacheUpdates() {
+        return true;
+    }
+
+    @Override
+    protected DataCachePCData getInternal(Object key) {
+        Object pinned = _pinned.get(key);
+        if (pinned != null)
+            return (pinned == PINNED) ? null : (DataCachePCData) pinned;
+
+        byte[] bytes = read(key);
+        if (bytes == null)
+            return null;
+        DataCachePCData data = decode(key, bytes);
+        if (data == null) {
+            long stamp = _lock.writeLock();
+            try {
+                // the entry may have been replaced since we read it
+                Long addr = _index.get(key);
+                if (addr != null && Arrays.equals(copy(addr), bytes))
+                    free(key, false);
+            } finally {
+                _lock.unlockWrite(stamp);
+            }
+        }
+        return data;
+    }
+
+    @Override
+    protected DataCachePCData putInternal(Object key, DataCachePCData pc) {
+        return put(key, pc, false);
+    }
+
+    /**
+     * Reads return copies, so changes to them are lost unless they are put
+     * back. Unlike {@link #update}, the data is not cached if its entry has
+     * been removed since it was read, so that stale data does not come back.
+     */
+    @Override
+    public void updateIfCached(DataCachePCData data) {
+        put(data.getId(), data, true);
+    }
+
+    private DataCachePCData put(Object key, DataCachePCData pc, boolean cached) {
+        byte[] bytes = null;
+        if (!_pinned.containsKey(key))
+            bytes = encode(key, pc);
+
+        List<Object> evicted = new ArrayList<>();
+        byte[] old;
+        long stamp = _lock.writeLock();
+        try {
+            Object pinned = _pinned.get(key);
+            if (pinned != null) {
+                if (cached && pinned == PINNED)
+                    return null;
+                _pinned.put(key, pc);
+                return (pinned == PINNED) ? null : (DataCachePCData) pinned;
+            }
+            if (cached && !_index.containsKey(key))
+                return null;
+            old = free(key, true);
+            if (bytes != null)
+                store(key, bytes, evicted);
+        } finally {
+            _lock.unlockWrite(stamp);
+        }
+
+        for (Object k : evicted)
+            keyRemoved(k, true);
+        return (old == null) ? null : decode(key, old);
+    }
+
+    @Override
+    protected DataCachePCData removeInternal(Object key) {
+        Object pinned;
+        byte[] old = null;
+        long stamp = _lock.writeLock();
+        try {
+            // removing a pinned entry keeps the pin
+            pinned = _pinned.get(key);
+            if (pinned != null)
+                _pinned.put(key, PINNED);
+            else
+                old = free(key, true);
+        } finally {
+            _lock.unlockWrite(stamp);
+        }
+
+        if (pinned != null)
+            return (pinned == PINNED) ? null : (DataCachePCData) pinned;
+        return (old == null) ? null : decode(key, old);
+    }
+
+    @Override
+    protected void removeAllInternal(Class<?> cls, boolean subs) {
+        long stamp = _lock.writeLock();
+        try {
+            for (Object key : _index.keySet())
+                if (isInstance(key, cls, subs))
+                    free(key, false);
+            for (Map.Entry<Object, Object> entry : _pinned.entrySet())
+                if (isInstance(entry.getKey(), cls, subs))
+                    entry.setValue(PINNED);
+        } finally {
+            _lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Whether the given key may be an id of the given class. Application
+     * identities do not record their class, so they always match.
+     */
+    private static boolean isInstance(Object key, Class<?> cls, boolean subs) {
+        if (!(key instanceof OpenJPAId))
+            return true;
+        Class<?> type = ((OpenJPAId) key).getType();
+        return type == cls || (subs && cls.isAssignableFrom(type));
+    }
+
+    @Override
+    protected void clearInternal() {
+        Collection<Object> removed = new ArrayList<>();
+        long stamp = _lock.writeLock();
+        try {
+            removed.addAll(_index.keySet());
+            for (Map.Entry<Object, Object> entry : _pinned.entrySet())
+                if (entry.getValue() != PINNED)
+                    removed.add(entry.getKey());
+            _index.clear();
+            _pinned.clear();
+            _filled.clear();
+            _free.clear();
+            for (int i = 0; i < _allocated; i++) {
+                _slabKeys[i].clear();
+                _slabLive[i] = 0;
+                _free.add(i);
+            }
+            _current = -1;
+            _liveBytes = 0;
+        } finally {
+            _lock.unlockWrite(stamp);
+        }
+
+        for (Object key : removed)
+            keyRemoved(key, false);
+    }
+
+    @Override
+    protected boolean pinInternal(Object key) {
+        long stamp = _lock.writeLock();
+        try {
+            Object pinned = _pinned.get(key);
+            if (pinned != null)
+                return pinned != PINNED;
+
+            byte[] bytes = free(key, true);
+            DataCachePCData data = (bytes == null) ? null : decode(key, bytes);
+            _pinned.put(key, (data == null) ? PINNED : data);
+            return data != null;
+        } finally {
+            _lock.unlockWrite(stamp);
+        }
+    }
+
+    @Override
+    protected boolean unpinInternal(Object key) {
+        List<Object> evicted = new ArrayList<>();
+        long stamp = _lock.writeLock();
+        try {
+            Object pinned = _pinned.remove(key);
+            if (pinned == null || pinned == PINNED)
+                return false;
+
+            byte[] bytes = encode(key, (DataCachePCData) pinned);
+            if (bytes != null)
+                store(key, bytes, evicted);
+        } finally {
+            _lock.unlockWrite(stamp);
+        }
+
+        for (Object k : evicted)
+            keyRemoved(k, true);
+        return true;
+    }
+
+    private byte[] encode(Object key, DataCachePCData data) {
+        if (!(data instanceof DataCachePCDataImpl))
+            return null;
+        BinaryEncoder out = new BinaryEncoder(512);
+        try {
+            _codec.encode((DataCachePCDataImpl) data, out);
+        } catch (RuntimeException re) {
+            if (log.isTraceEnabled())
+                log.trace(_loc.get("offheap-encode-failed", key, re.toString()));
+            return null;
+        }
+        if (out.size() + HEADER > _slabSize) {
+            if (log.isTraceEnabled())
+                log.trace(_loc.get("offheap-too-large", key, out.size(), _slabSize));
+            return null;
+        }
+        return out.toByteArray();
+    }
+
+    private DataCachePCData decode(Object key, byte[] bytes) {
+        try {
+            return _codec.decode(new BinaryDecoder(bytes, _loader));
+        } catch (RuntimeException re) {
+            if (log.isWarnEnabled())
+                log.warn(_loc.get("offheap-decode-failed", key, re.toString()));
+            return null;
+        }
+    }
+
+    /**
+     * Copy the bytes of the entry for the given key out of its slab.
+     * First try without locking, and lock only if a writer interfered.
+     */
+    private byte[] read(Object key) {
+        long stamp = _lock.tryOptimisticRead();
+        if (stamp != 0) {
+            try {
+                Long addr = _index.get(key);
+                if (addr == null)
+                    return null;
+                byte[] bytes = copy(addr);
+                if (_lock.validate(stamp))
+                    return bytes;
+            } catch (RuntimeException re) {
+                // the slab was reused while we read it
+            }
+        }
+
+        stamp = _lock.readLock();
+        try {
+            Long addr = _index.get(key);
+            return (addr == null) ? null : copy(addr);
+        } finally {
+            _lock.unlockRead(stamp);
+        }
+    }
+
+    private byte[] copy(long addr) {
+        int slab = (int) (addr >>> 32);
+        int off = (int) addr;
+        ByteBuffer buf = _slabs[slab].duplicate();
+        int len = buf.getInt(off);
+        if (len < 0 || len > _slabSize - off - HEADER)
+            throw new IllegalStateException();
+        byte[] bytes = new byte[len];
+        buf.position(off + HEADER);
+        buf.get(bytes);
+        return bytes;
+    }
+
+    /**
+     * Append the given entry to the current slab. Must hold the write lock.
+     */
+    private void store(Object key, byte[] bytes, List<Object> evicted) {
+        int len = bytes.length + HEADER;
+        if (_current == -1 || _position + len > _slabSize) {
+            if (_current != -1)
+                _filled.addLast(_current);
+            _current = nextSlab(evicted);
+            _position = 0;
+        }
+
+        ByteBuffer buf = _slabs[_current].duplicate();
+        buf.putInt(_position, bytes.length);
+        buf.position(_position + HEADER);
+        buf.put(bytes);
+
+        _index.put(key, ((long) _current << 32) | _position);
+        _slabKeys[_current].add(key);
+        _slabLive[_current] += len;
+        _liveBytes += len;
+        _position += len;
+    }
+
+    /**
+     * Return an empty slab, allocating a new one or evicting the oldest
+     * slab if all memory is in use. Must hold the write lock.
+     */
+    private int nextSlab(List<Object> evicted) {
+        Integer free = _free.pollFirst();
+        if (free != null)
+            return free;
+
+        if (_allocated < _slabs.length) {
+            int slab = _allocated;
+            _slabs[slab] = newSlab(slab);
+            _slabKeys[slab] = new ArrayList<>();
+            _allocated++;
+            return slab;
+        }
+
+        int slab = _filled.pollFirst();
+        for (Object key : _slabKeys[slab]) {
+            Long addr = _index.get(key);
+            if (addr != null && (int) (addr >>> 32) == slab) {
+                _index.remove(key);
+                evicted.add(key);
+            }
+        }
+        _slabKeys[slab].clear();
+        _liveBytes -= _slabLive[slab];
+        _slabLive[slab] = 0;
+        return slab;
+    }
+
+    private ByteBuffer newSlab(int slab) {
+        if (_channel == null)
+            return ByteBuffer.allocateDirect(_slabSize);
+        try {
+            return _channel.map(FileChannel.MapMode.READ_WRITE, (long) slab * _slabSize, _slabSize);
+        } catch (IOException ioe) {
+            throw new GeneralException(ioe);
+        }
+    }
+
+    /**
+     * Remove the entry for the given key from the index and release its
+     * space, optionally returning a copy of its bytes. Must hold the write
+     * lock.
+     */
+    private byte[] free(Object key, boolean copy) {
+        Long addr = _index.remove(key);
+        if (addr == null)
+            return null;
+
+        byte[] bytes = (copy) ? copy(addr) : null;
+        int slab = (int) (addr >>> 32);
+        int len = _slabs[slab].getInt((int) (long) addr) + HEADER;
+        _slabLive[slab] -= len;
+        _liveBytes -= len;
+        if (_slabLive[slab] == 0) {
+            _slabKeys[slab].clear();
+            if (slab == _current)
+                _position = 0;
+            else {
+                _filled.remove(slab);
+                _free.addLast(slab);
+            }
+        }
+        return bytes;
+    }
+
+    /**
+     * Statistics that also report the bytes used by the cache.
+     */
+    private static class OffHeapStatistics
+        extends CacheStatisticsImpl {
+
+        private static final long serialVersionUID = 1L;
+
+        private final transient OffHeapDataCache _cache;
+
+        OffHeapStatistics(OffHeapDataCache cache) {
+            _cache = cache;
+        }
+
+        @Override
+        public long getOffHeapBytes() {
+            return (_cache == null) ? 0 : _cache.getOffHeapBytes();
+        }
+    }
+}
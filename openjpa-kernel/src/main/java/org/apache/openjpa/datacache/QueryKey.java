@@ -38,8 +38,10 @@ import java.util.SortedSet;
 import java.util.TreeSet;
 
 import org.apache.openjpa.enhance.PCRegistry;
+import org.apache.openjpa.kernel.FetchConfiguration;
 import org.apache.openjpa.kernel.Query;
 import org.apache.openjpa.kernel.QueryContext;
+import org.apache.openjpa.kernel.QueryHints;
 import org.apache.openjpa.kernel.StoreContext;
 import org.apache.openjpa.meta.ClassMetaData;
 import org.apache.openjpa.meta.JavaTypes;
@@ -171,6 +173,14 @@ public class QueryKey
         if (q.getResultType() != null && packed)
             return null;
 
+        // the results of a keyset page depend on the key of the page, and
+        // streamed results are too many to cache
+        FetchConfiguration fetch = q.getFetchConfiguration();
+        if (fetch != null && (fetch.getHint(QueryHints.HINT_KEYSET_AFTER) != null
+            || fetch.getHint(QueryHints.HINT_KEYSET_PAGE_SIZE) != null
+            || Boolean.parseBoolean(String.valueOf(fetch.getHint(QueryHints.HINT_STREAM_RESULTS)))))
+            return null;
+
         // can't cache non-serializable non-managed complex types
         Class<?>[] types = q.getProjectionTypes();
         for (Class<?> type : types) {
@@ -25,6 +25,7 @@ import org.apache.openjpa.lib.conf.Configurable;
 import org.apache.openjpa.lib.conf.Configuration;
 import org.apache.openjpa.lib.log.Log;
 import org.apache.openjpa.lib.util.Localizer;
+import org.apache.openjpa.util.UserException;
 
 /**
  * Abstract implementation of {@link RemoteCommitProvider}. Obtains handles
@@ -39,8 +40,81 @@ public abstract class AbstractRemoteCommitProvider
     private static final Localizer _loc = Localizer.forPackage
         (AbstractRemoteCommitProvider.class);
 
+    /**
+     * Wire format that uses Java serialization.
+     */
+    public static final String WIRE_FORMAT_SERIALIZED = "serialized";
+
+    /**
+     * Wire format that uses {@link RemoteCommitEventCodec}.
+     */
+    public static final String WIRE_FORMAT_BINARY = "binary";
+
     protected RemoteCommitEventManager eventManager;
     protected Log log;
+    private boolean _binary = false;
+    private boolean _compress = false;
+
+    /**
+     * The format used to send events: <code>serialized</code> or
+     * <code>binary</code>. The binary format is smaller and faster to write
+     * and read, but can only be read by nodes running OpenJPA 4.1.1 or
+     * later. Providers always accept both formats, so a cluster can be
+     * switched to the binary format once all nodes are upgraded. Defaults
+     * to <code>serialized</code>.
+     *
+     * @since 4.1.1
+     */
+    public void setWireFormat(String format) {
+        if (WIRE_FORMAT_BINARY.equalsIgnoreCase(format))
+            _binary = true;
+        else if (format == null || WIRE_FORMAT_SERIALIZED.equalsIgnoreCase(format))
+            _binary = false;
+        else
+            throw new UserException(_loc.get("bad-wire-format", format));
+    }
+
+    /**
+     * @since 4.1.1
+     */
+    public String getWireFormat() {
+        return (_binary) ? WIRE_FORMAT_BINARY : WIRE_FORMAT_SERIALIZED;
+    }
+
+    /**
+     * Whether to compress large events sent in the <code>binary</code>
+     * wire format. Defaults to <code>false</code>.
+     *
+     * @since 4.1.1
+     */
+    public void setCompress(boolean compress) {
+        _compress = compress;
+    }
+
+    /**
+     * @since 4.1.1
+     */
+    public boolean getCompress() {
+        return _compress;
+    }
+
+    /**
+     * Whether events are sent in the <code>binary</code> wire format.
+     *
+     * @since 4.1.1
+     */
+    protected boolean isBinaryWireFormat() {
+        return _binary;
+    }
+
+    /**
+     * Encode the given event in the <code>binary</code> wire format.
+     *
+     * @since 4.1.1
+     */
+    protected byte[] encodeEvent(RemoteCommitEvent event) {
+        return RemoteCommitEventCodec.encode(event, _compress);
+    }
 
     @Override
     public void setConfiguration(Configuration config) {
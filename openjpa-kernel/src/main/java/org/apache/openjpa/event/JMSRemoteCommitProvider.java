@@ -20,6 +20,7 @@ package org.apache.openjpa.event;
 
 import java.util.Properties;
 
+import jakarta.jms.BytesMessage;
 import jakarta.jms.ExceptionListener;
 import jakarta.jms.JMSException;
 import jakarta.jms.Message;
@@ -206,6 +207,10 @@ public class JMSRemoteCommitProvider
         return new MessageListener() {
             @Override
             public void onMessage(Message m) {
+                if (m instanceof BytesMessage) {
+                    onBytesMessage((BytesMessage) m);
+                    return;
+                }
                 if (!(m instanceof ObjectMessage)) {
                     if (log.isWarnEnabled())
                         log.warn(s_loc.get("jms-receive-error-3",
@@ -246,12 +251,42 @@ public class JMSRemoteCommitProvider
         };
     }
 
+    /**
+     * Process a message in the <code>binary</code> wire format.
+     */
+    private void onBytesMessage(BytesMessage m) {
+        RemoteCommitEvent rce;
+        try {
+            byte[] bytes = new byte[(int) m.getBodyLength()];
+            m.readBytes(bytes);
+            rce = RemoteCommitEventCodec.decode(bytes, 0, bytes.length, _appClassLoader);
+        } catch (JMSException jmse) {
+            if (log.isWarnEnabled())
+                log.warn(s_loc.get("jms-receive-error-1"), jmse);
+            return;
+        } catch (RuntimeException re) {
+            if (log.isWarnEnabled())
+                log.warn(s_loc.get("jms-decode-error", _topicName), re);
+            return;
+        }
+
+        if (log.isTraceEnabled())
+            log.trace(s_loc.get("jms-received-update", _topicName));
+        fireEvent(rce);
+    }
+
     /**
      * Returns a new {@link Message} to send to the topic. This
-     * implementation creates an {@link ObjectMessage}.
+     * implementation creates an {@link ObjectMessage}, or a
+     * {@link BytesMessage} in the <code>binary</code> wire format.
      */
     protected Message createMessage(RemoteCommitEvent event)
         throws JMSException {
+        if (isBinaryWireFormat()) {
+            BytesMessage m = _session.createBytesMessage();
+            m.writeBytes(encodeEvent(event));
+            return m;
+        }
         return _session.createObjectMessage(event);
     }
 
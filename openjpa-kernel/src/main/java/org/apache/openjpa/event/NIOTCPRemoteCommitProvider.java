@@ -0,0 +1,935 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.openjpa.event;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.net.UnknownHostException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.security.AccessController;
+import java.security.PrivilegedActionException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.openjpa.lib.log.Log;
+import org.apache.openjpa.lib.util.J2DoPrivHelper;
+import org.apache.openjpa.lib.util.Localizer;
+import org.apache.openjpa.lib.util.StringUtil;
+import org.apache.openjpa.util.BinaryDecoder;
+import org.apache.openjpa.util.GeneralException;
+import org.apache.openjpa.util.UserException;
+
+/**
+ * TCP-based implementation of {@link RemoteCommitProvider} that uses
+ * non-blocking channels. A single I/O thread per listen port accepts
+ * connections from peers, reads their events and writes to all peers,
+ * instead of a thread per inbound connection and a pool of sockets per peer.
+ *
+ * Each peer has a bounded queue of outbound packets, so that a slow peer
+ * does not hold up the others. When the queue of a peer is full, the
+ * committing thread waits up to <code>BlockTimeoutMillis</code> for it to
+ * drain. If it is still full, the queued events are coalesced into a single
+ * event or, if that is not possible, the oldest event is dropped.
+ *
+ * Events are always sent in the <code>binary</code> wire format. This
+ * provider can be mixed with {@link TCPRemoteCommitProvider} nodes that use
+ * the <code>binary</code> wire format.
+ *
+ * @since 4.1.1
+ */
+public class NIOTCPRemoteCommitProvider
+    extends AbstractRemoteCommitProvider {
+
+    private static final int DEFAULT_PORT = 5636;
+    private static final int CLOSE_TIMEOUT_MILLIS = 5000;
+    private static final int MAX_GATHER = 16;
+    private static final int MAX_PENDING_EVENTS = 10000;
+
+    private static final Localizer s_loc = Localizer.forPackage(NIOTCPRemoteCommitProvider.class);
+    private static long s_idSequence = System.currentTimeMillis();
+
+    // the reactors in this JVM, by listen port
+    private static final Map<Integer, Reactor> s_reactors = new HashMap<>();
+
+    private final long _id;
+    private final byte[] _localhost;
+    private int _port = DEFAULT_PORT;
+    private int _recoveryTimeMillis = 15000;
+    private int _maxQueueSize = 1000;
+    private int _blockTimeoutMillis = 100;
+    private boolean _coalesce = true;
+    private volatile int _maxFrameSize = TCPRemoteCommitProvider.DEFAULT_MAX_FRAME_SIZE;
+    private Reactor _reactor;
+    private volatile List<Peer> _peers = Collections.emptyList();
+
+    public NIOTCPRemoteCommitProvider() throws UnknownHostException {
+        synchronized (NIOTCPRemoteCommitProvider.class) {
+            _id = s_idSequence++;
+        }
+        _localhost = InetAddress.getLocalHost().getAddress();
+    }
+
+    /**
+     * The port that this provider should listen on.
+     */
+    public int getPort() {
+        return _port;
+    }
+
+    /**
+     * The port that this provider should listen on. Set once only.
+     */
+    public void setPort(int port) {
+        _port = port;
+    }
+
+    /**
+     * The number of milliseconds to wait before retrying to connect to a
+     * peer after it becomes unreachable.
+     */
+    public int getRecoveryTimeMillis() {
+        return _recoveryTimeMillis;
+    }
+
+    /**
+     * The number of milliseconds to wait before retrying to connect to a
+     * peer after it becomes unreachable.
+     */
+    public void setRecoveryTimeMillis(int recoveryTime) {
+        _recoveryTimeMillis = recoveryTime;
+    }
+
+    /**
+     * The maximum number of events queued for each peer.
+     */
+    public int getMaxQueueSize() {
+        return _maxQueueSize;
+    }
+
+    /**
+     * The maximum number of events queued for each peer. Defaults to 1000.
+     */
+    public void setMaxQueueSize(int size) {
+        _maxQueueSize = Math.max(1, size);
+    }
+
+    /**
+     * The number of milliseconds that a committing thread waits for room
+     * in the queue of a slow peer.
+     */
+    public int getBlockTimeoutMillis() {
+        return _blockTimeoutMillis;
+    }
+
+    /**
+     * The number of milliseconds that a committing thread waits for room
+     * in the queue of a slow peer before coalescing or dropping events.
+     * Defaults to 100. Use 0 to never wait.
+     */
+    public void setBlockTimeoutMillis(int millis) {
+        _blockTimeoutMillis = millis;
+    }
+
+    /**
+     * Whether the events queued for a slow peer are coalesced into a single
+     * event when its queue is full.
+     */
+    public boolean getCoalesce() {
+        return _coalesce;
+    }
+
+    /**
+     * Whether the events queued for a slow peer are coalesced into a single
+     * event when its queue is full. Otherwise the oldest queued event is
+     * dropped. Defaults to true.
+     */
+    public void setCoalesce(boolean coalesce) {
+        _coalesce = coalesce;
+    }
+
+    /**
+     * The largest packet that this provider accepts from a peer, in bytes.
+     */
+    public int getMaxFrameSize() {
+        return _maxFrameSize;
+    }
+
+    /**
+     * The largest packet that this provider accepts from a peer, in bytes.
+     * A peer that announces a larger packet is disconnected before the
+     * packet is read. Defaults to 16 MB.
+     */
+    public void setMaxFrameSize(int maxFrameSize) {
+        _maxFrameSize = maxFrameSize;
+    }
+
+    /**
+     * This provider always uses the <code>binary</code> wire format.
+     */
+    @Override
+    public void setWireFormat(String format) {
+        if (format != null && !WIRE_FORMAT_BINARY.equalsIgnoreCase(format))
+            throw new UserException(s_loc.get("niotcp-wire-format", format));
+    }
+
+    @Override
+    public String getWireFormat() {
+        return WIRE_FORMAT_BINARY;
+    }
+
+    /**
+     * The number of events that were not delivered to a peer because its
+     * queue was full or because it could not be reached.
+     */
+    public long getDroppedEventCount() {
+        long count = 0;
+        for (Peer peer : _peers)
+            count += peer.getDroppedCount();
+        return count;
+    }
+
+    /**
+     * The number of events that were merged into other events because the
+     * queue of a peer was full.
+     */
+    public long getCoalescedEventCount() {
+        long count = 0;
+        for (Peer peer : _peers)
+            count += peer.getCoalescedCount();
+        return count;
+    }
+
+    /**
+     * Sets the list of addresses of peers to which this provider will send
+     * events, in the form "myhost1:portA;myhost2:portB".
+     */
+    public void setAddresses(String names) throws UnknownHostException {
+        String[] toks = StringUtil.split(names, ";", 0);
+        List<Peer> peers = new ArrayList<>(toks.length);
+        String localhostName = InetAddress.getLocalHost().getHostName();
+        for (String host : toks) {
+            host = host.trim();
+            if (host.length() == 0)
+                continue;
+
+            String hostname = host;
+            int port = DEFAULT_PORT;
+            int colon = host.indexOf(':');
+            if (colon != -1) {
+                hostname = host.substring(0, colon);
+                port = Integer.parseInt(host.substring(colon + 1));
+            }
+            InetAddress address;
+            try {
+                address = AccessController.doPrivileged(J2DoPrivHelper.getByNameAction(hostname));
+            } catch (PrivilegedActionException pae) {
+                throw (UnknownHostException) pae.getException();
+            }
+
+            // as in TCPRemoteCommitProvider, we don't send ourselves messages
+            if (localhostName.equals(hostname)) {
+                if (log.isTraceEnabled())
+                    log.trace(s_loc.get("tcp-address-asself", hostname + ":" + port));
+            } else {
+                peers.add(new Peer(new InetSocketAddress(address, port)));
+                if (log.isTraceEnabled())
+                    log.trace(s_loc.get("tcp-address-set", address.getHostName() + ":" + port));
+            }
+        }
+
+        List<Peer> old = _peers;
+        _peers = peers;
+        for (Peer peer : old)
+            peer.close(0);
+    }
+
+    // ---------- Configurable implementation ----------
+
+    @Override
+    public void endConfiguration() {
+        super.endConfiguration();
+        synchronized (s_reactors) {
+            _reactor = s_reactors.get(_port);
+            if (_reactor == null) {
+                try {
+                    _reactor = new Reactor(_port, log);
+                } catch (IOException ioe) {
+                    throw new GeneralException(s_loc.get("tcp-init-exception",
+                        String.valueOf(_port)), ioe).setFatal(true);
+                }
+                s_reactors.put(_port, _reactor);
+                _reactor.start();
+            }
+            _reactor._providers.add(this);
+        }
+    }
+
+    // ---------- RemoteCommitProvider implementation ----------
+
+    @Override
+    public void broadcast(RemoteCommitEvent event) {
+        List<Peer> peers = _peers;
+        if (peers.isEmpty())
+            return;
+
+        Packet packet;
+        try {
+            packet = newPacket(event);
+        } catch (RuntimeException re) {
+            if (log.isWarnEnabled())
+                log.warn(s_loc.get("tcp-payload-create-error"), re);
+            return;
+        }
+        for (Peer peer : peers)
+            peer.send(packet);
+    }
+
+    private Packet newPacket(RemoteCommitEvent event) {
+        return new Packet(event, TCPRemoteCommitProvider.newBinaryPacket(_id, _port,
+            _localhost, encodeEvent(event)));
+    }
+
+    @Override
+    public void close() {
+        List<Peer> peers = _peers;
+        _peers = Collections.emptyList();
+        for (Peer peer : peers)
+            peer.close(CLOSE_TIMEOUT_MILLIS);
+
+        if (_reactor == null)
+            return;
+        synchronized (s_reactors) {
+            _reactor._providers.remove(this);
+            if (_reactor._providers.isEmpty()) {
+                s_reactors.remove(_port);
+                _reactor.shutdown();
+            }
+        }
+    }
+
+    /**
+     * An event and its framed encoding, shared by all peers.
+     */
+    private static final class Packet {
+
+        private final RemoteCommitEvent _event;
+        private final byte[] _bytes;
+
+        private Packet(RemoteCommitEvent event, byte[] bytes) {
+            _event = event;
+            _bytes = bytes;
+        }
+    }
+
+    /**
+     * A peer of the cluster, with its queue of outbound packets. The queue
+     * and availability are guarded by the peer's monitor; the channel and
+     * the buffers being written belong to the I/O thread.
+     */
+    private final class Peer {
+
+        private final InetSocketAddress _address;
+        private final ArrayDeque<Packet> _queue = new ArrayDeque<>();
+        private boolean _writePending = false; // I/O thread owns the queue
+        private boolean _closed = false;
+        private boolean _available = true; // is peer thought to be up
+        private boolean _dropWarned = false;
+        private long _timeLastError; // millis
+        private int _infosIssued = 0; // limit log entries
+        private long _dropped = 0;
+        private long _coalesced = 0;
+
+        private SocketChannel _channel;
+        private SelectionKey _key;
+        private final ByteBuffer[] _buffers = new ByteBuffer[MAX_GATHER];
+        private int _offset = 0;
+        private int _count = 0;
+
+        private Peer(InetSocketAddress address) {
+            _address = address;
+        }
+
+        private synchronized long getDroppedCount() {
+            return _dropped;
+        }
+
+        private synchronized long getCoalescedCount() {
+            return _coalesced;
+        }
+
+        /**
+         * Whether we are waiting out the recovery time of an unreachable peer.
+         */
+        private boolean isSuspended() {
+            return !_available && System.currentTimeMillis() - _timeLastError < _recoveryTimeMillis;
+        }
+
+        /**
+         * Queue a packet for this peer, applying backpressure when the
+         * queue is full.
+         */
+        private void send(Packet packet) {
+            boolean schedule;
+            synchronized (this) {
+                if (_closed || isSuspended())
+                    return;
+                // never block the I/O thread, which is the one that drains
+                if (_queue.size() >= _maxQueueSize && _blockTimeoutMillis > 0
+                    && !_reactor.isReactorThread()) {
+                    long deadline = System.currentTimeMillis() + _blockTimeoutMillis;
+                    long wait = _blockTimeoutMillis;
+                    while (_queue.size() >= _maxQueueSize && wait > 0 && !_closed) {
+                        try {
+                            wait(wait);
+                        } catch (InterruptedException ie) {
+                            Thread.currentThread().interrupt();
+                            break;
+                        }
+                        wait = deadline - System.currentTimeMillis();
+                    }
+                    if (_closed || isSuspended())
+                        return;
+                }
+                if (_queue.size() >= _maxQueueSize)
+                    packet = overflow(packet);
+                _queue.addLast(packet);
+                schedule = !_writePending;
+                _writePending = true;
+            }
+            if (schedule)
+                _reactor.submit(this::flush);
+        }
+
+        /**
+         * Make room in the full queue for the given packet.
+         *
+         * @return the packet to queue
+         */
+        private Packet overflow(Packet packet) {
+            if (_coalesce) {
+                RemoteCommitEventMerger merger = new RemoteCommitEventMerger();
+                boolean merged = merger.add(packet._event);
+                for (Iterator<Packet> itr = _queue.iterator(); merged && itr.hasNext();)
+                    merged = merger.add(itr.next()._event);
+                if (merged) {
+                    try {
+                        Packet coalesced = newPacket(merger.toEvent());
+                        _coalesced += merger.getEventCount() - 1;
+                        _queue.clear();
+                        if (log.isTraceEnabled())
+                            log.trace(s_loc.get("niotcp-coalesced", _address,
+                                String.valueOf(merger.getEventCount())));
+                        return coalesced;
+                    } catch (RuntimeException re) {
+                        if (log.isWarnEnabled())
+                            log.warn(s_loc.get("tcp-payload-create-error"), re);
+                    }
+                }
+            }
+
+            _queue.removeFirst();
+            _dropped++;
+            if (!_dropWarned && log.isWarnEnabled())
+                log.warn(s_loc.get("niotcp-dropped", _address, String.valueOf(_maxQueueSize)));
+            _dropWarned = true;
+            return packet;
+        }
+
+        /**
+         * Close this peer, waiting up to the given time for its queue to
+         * drain.
+         */
+        private void close(long timeout) {
+            synchronized (this) {
+                long deadline = System.currentTimeMillis() + timeout;
+                long wait = timeout;
+                while (_writePending && _available && wait > 0) {
+                    try {
+                        wait(wait);
+                    } catch (InterruptedException ie) {
+                        Thread.currentThread().interrupt();
+                        break;
+                    }
+                    wait = deadline - System.currentTimeMillis();
+                }
+                _closed = true;
+                _queue.clear();
+            }
+            if (_reactor != null)
+                _reactor.submit(this::closeChannel);
+        }
+
+        // ---------- I/O thread ----------
+
+        private void flush() {
+            if (_channel == null)
+                connect();
+            else if (_key != null && _key.isValid() && (_key.interestOps() & SelectionKey.OP_CONNECT) == 0) {
+                try {
+                    write();
+                } catch (IOException ioe) {
+                    failed(ioe);
+                }
+            }
+        }
+
+        private void connect() {
+            synchronized (this) {
+                if (_closed)
+                    return;
+            }
+            try {
+                _channel = SocketChannel.open();
+                _channel.configureBlocking(false);
+                _channel.setOption(StandardSocketOptions.TCP_NODELAY, Boolean.TRUE);
+                boolean connected = _channel.connect(_address);
+                _key = _reactor.register(_channel, (connected) ? SelectionKey.OP_READ
+                    : SelectionKey.OP_CONNECT, this);
+                if (connected)
+                    connected();
+            } catch (IOException | RuntimeException e) {
+                failed(e);
+            }
+        }
+
+        private void connected() throws IOException {
+            if (log.isTraceEnabled())
+                log.trace(s_loc.get("tcp-open-connection", _address,
+                    String.valueOf(_channel.socket().getLocalPort())));
+            synchronized (this) {
+                _available = true;
+                _infosIssued = 0;
+            }
+            _key.interestOps(SelectionKey.OP_READ);
+            write();
+        }
+
+        /**
+         * Handle a ready key of this peer's channel.
+         */
+        private void ready(SelectionKey key) throws IOException {
+            if (key.isConnectable()) {
+                if (_channel.finishConnect())
+                    connected();
+                return;
+            }
+            if (key.isReadable()) {
+                // peers never write back; a read means the peer has closed
+                ByteBuffer discard = ByteBuffer.allocate(64);
+                if (_channel.read(discard) < 0) {
+                    if (log.isTraceEnabled())
+                        log.trace(s_loc.get("tcp-close-sending-socket", _address,
+                            String.valueOf(_channel.socket().getLocalPort())));
+                    closeChannel();
+                    boolean pending;
+                    synchronized (this) {
+                        pending = _writePending;
+                    }
+                    if (pending)
+                        connect();
+                    return;
+                }
+            }
+            if (key.isValid() && key.isWritable())
+                write();
+        }
+
+        /**
+         * Write queued packets until the queue is empty or the channel
+         * cannot take more.
+         */
+        private void write() throws IOException {
+            while (true) {
+                if (_offset == _count && !fill()) {
+                    _key.interestOps(SelectionKey.OP_READ);
+                    return;
+                }
+                _channel.write(_buffers, _offset, _count - _offset);
+                while (_offset < _count && !_buffers[_offset].hasRemaining())
+                    _buffers[_offset++] = null;
+                if (_offset < _count) {
+                    _key.interestOps(SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+                    return;
+                }
+            }
+        }
+
+        /**
+         * Move packets from the queue to the write buffers.
+         *
+         * @return false if the queue was empty
+         */
+        private synchronized boolean fill() {
+            _offset = 0;
+            _count = 0;
+            Packet packet;
+            while (_count < _buffers.length && (packet = _queue.pollFirst()) != null)
+                _buffers[_count++] = ByteBuffer.wrap(packet._bytes);
+            // wake up committing threads waiting for room, or for the
+            // queue to drain on close
+            notifyAll();
+            if (_count > 0)
+                return true;
+            _writePending = false;
+            _dropWarned = false;
+            return false;
+        }
+
+        /**
+         * Record a failure to connect or write to this peer. Queued events
+         * are dropped, and the peer is not contacted again until the
+         * recovery time has passed.
+         */
+        private void failed(Exception e) {
+            closeChannel();
+            synchronized (this) {
+                _dropped += _queue.size();
+                _queue.clear();
+                _writePending = false;
+                notifyAll();
+                if (_closed)
+                    return;
+
+                if (_available) {
+                    // Log a warning, the peer was up and has now gone down
+                    if (log.isWarnEnabled())
+                        log.warn(s_loc.get("tcp-send-error", _address), e);
+                    _available = false;
+                } else if (_infosIssued < 5) {
+                    // log at lower severity while the peer stays down
+                    if (log.isInfoEnabled())
+                        log.info(s_loc.get("tcp-send-still-error", _address), e);
+                    _infosIssued++;
+                }
+                _timeLastError = System.currentTimeMillis();
+            }
+        }
+
+        private void closeChannel() {
+            for (int i = _offset; i < _count; i++)
+                _buffers[i] = null;
+            _offset = 0;
+            _count = 0;
+            if (_channel == null)
+                return;
+            if (_key != null)
+                _key.cancel();
+            try {
+                _channel.close();
+            } catch (IOException ioe) {
+                if (log.isWarnEnabled())
+                    log.warn(s_loc.get("tcp-close-socket-error", _address), ioe);
+            }
+            _channel = null;
+            _key = null;
+        }
+    }
+
+    /**
+     * The I/O thread of a listen port. Accepts and reads inbound
+     * connections, and connects and writes to the peers of all providers
+     * listening on the port. Received packets are decoded and handed to
+     * the listeners on a separate thread, so that a slow listener does not
+     * hold up I/O on every connection.
+     */
+    private static final class Reactor
+        implements Runnable {
+
+        private final int _port;
+        private final Log _log;
+        private final byte[] _localhost;
+        private final Selector _selector;
+        private final ServerSocketChannel _server;
+        private final Thread _thread;
+        private final ExecutorService _dispatcher;
+        private final Set<NIOTCPRemoteCommitProvider> _providers = new CopyOnWriteArraySet<>();
+        private final Queue<Runnable> _tasks = new ConcurrentLinkedQueue<>();
+        private volatile boolean _running = true;
+
+        private Reactor(int port, Log log) throws IOException {
+            _port = port;
+            _log = log;
+            _localhost = InetAddress.getLocalHost().getAddress();
+            _selector = Selector.open();
+            _server = ServerSocketChannel.open();
+            try {
+                _server.bind(new InetSocketAddress(port));
+                _server.configureBlocking(false);
+                _server.register(_selector, SelectionKey.OP_ACCEPT);
+            } catch (IOException ioe) {
+                closeAll();
+                throw ioe;
+            }
+            _thread = new Thread(this, "OpenJPA-NIOTCPRemoteCommitProvider-" + port);
+            _thread.setDaemon(true);
+
+            // a single thread keeps the events of a peer in order; when it
+            // falls too far behind, the I/O thread delivers events itself
+            // and stops reading, which pushes back on the peers
+            _dispatcher = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<>(MAX_PENDING_EVENTS), r -> {
+                    Thread t = new Thread(r, "OpenJPA-NIOTCPRemoteCommitProvider-Dispatch-" + port);
+                    t.setDaemon(true);
+                    return t;
+                }, new ThreadPoolExecutor.CallerRunsPolicy());
+        }
+
+        private void start() {
+            _thread.start();
+            if (_log.isTraceEnabled())
+                _log.trace(s_loc.get("tcp-start-listener", String.valueOf(_port)));
+        }
+
+        private void shutdown() {
+            _running = false;
+            _selector.wakeup();
+            if (!isReactorThread()) {
+                try {
+                    _thread.join(CLOSE_TIMEOUT_MILLIS);
+                } catch (InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }
+
+        private boolean isReactorThread() {
+            return Thread.currentThread() == _thread;
+        }
+
+        /**
+         * The largest packet accepted on this port: the largest maximum of
+         * the providers listening on it.
+         */
+        private int getMaxFrameSize() {
+            int max = 0;
+            for (NIOTCPRemoteCommitProvider provider : _providers)
+                max = Math.max(max, provider.getMaxFrameSize());
+            return (max == 0) ? TCPRemoteCommitProvider.DEFAULT_MAX_FRAME_SIZE : max;
+        }
+
+        /**
+         * Run the given task on the I/O thread.
+         */
+        private void submit(Runnable task) {
+            _tasks.add(task);
+            _selector.wakeup();
+        }
+
+        /**
+         * Register a channel. Must be called on the I/O thread.
+         */
+        private SelectionKey register(SocketChannel channel, int ops, Object attachment)
+            throws IOException {
+            return channel.register(_selector, ops, attachment);
+        }
+
+        @Override
+        public void run() {
+            while (_running) {
+                try {
+                    _selector.select();
+                    Runnable task;
+                    while ((task = _tasks.poll()) != null)
+                        task.run();
+                    for (Iterator<SelectionKey> itr = _selector.selectedKeys().iterator(); itr.hasNext();) {
+                        SelectionKey key = itr.next();
+                        itr.remove();
+                        handle(key);
+                    }
+                } catch (Throwable t) {
+                    if (_log.isWarnEnabled())
+                        _log.warn(s_loc.get("tcp-receive-error"), t);
+                }
+            }
+            closeAll();
+            _dispatcher.shutdown();
+            if (_log.isTraceEnabled())
+                _log.trace(s_loc.get("tcp-close-listener", String.valueOf(_port)));
+        }
+
+        private void handle(SelectionKey key) {
+            Object attachment = key.attachment();
+            try {
+                if (!key.isValid())
+                    return;
+                if (key.isAcceptable())
+                    accept();
+                else if (attachment instanceof Inbound)
+                    ((Inbound) attachment).read();
+                else
+                    ((Peer) attachment).ready(key);
+            } catch (IOException | RuntimeException e) {
+                if (attachment instanceof Peer)
+                    ((Peer) attachment).failed(e);
+                else if (attachment instanceof Inbound)
+                    ((Inbound) attachment).close(e);
+                else if (_log.isWarnEnabled())
+                    _log.warn(s_loc.get("tcp-accept-error"), e);
+            }
+        }
+
+        private void accept() throws IOException {
+            SocketChannel channel = _server.accept();
+            if (channel == null)
+                return;
+            channel.configureBlocking(false);
+            channel.setOption(StandardSocketOptions.TCP_NODELAY, Boolean.TRUE);
+            Inbound inbound = new Inbound(channel);
+            inbound._key = channel.register(_selector, SelectionKey.OP_READ, inbound);
+            if (_log.isTraceEnabled())
+                _log.trace(s_loc.get("tcp-received-connection", inbound._remote));
+        }
+
+        private void closeAll() {
+            for (SelectionKey key : _selector.keys()) {
+                try {
+                    key.channel().close();
+                } catch (IOException ioe) {
+                    if (_log.isWarnEnabled())
+                        _log.warn(s_loc.get("tcp-close-error"), ioe);
+                }
+            }
+            try {
+                _server.close();
+                _selector.close();
+            } catch (IOException ioe) {
+                if (_log.isWarnEnabled())
+                    _log.warn(s_loc.get("tcp-close-error"), ioe);
+            }
+        }
+
+        /**
+         * An inbound connection from a peer, which reads packets in the
+         * <code>binary</code> wire format.
+         */
+        private final class Inbound {
+
+            private final SocketChannel _channel;
+            private final String _remote;
+            private final ByteBuffer _header = ByteBuffer.allocate(8);
+            private ByteBuffer _body;
+            private SelectionKey _key;
+
+            private Inbound(SocketChannel channel) throws IOException {
+                _channel = channel;
+                _remote = String.valueOf(channel.getRemoteAddress());
+            }
+
+            private void read() throws IOException {
+                while (true) {
+                    if (_body == null) {
+                        if (_channel.read(_header) < 0) {
+                            close(null);
+                            return;
+                        }
+                        if (_header.hasRemaining())
+                            return;
+                        _header.flip();
+                        int magic = _header.getInt();
+                        int len = _header.getInt();
+                        _header.clear();
+                        if (magic != TCPRemoteCommitProvider.BINARY_MAGIC) {
+                            // serialized packets are not framed, so we
+                            // cannot read them without blocking
+                            if (_log.isWarnEnabled())
+                                _log.warn(s_loc.get((magic >>> 16 == 0xaced)
+                                    ? "niotcp-serialized-packet" : "tcp-wrong-magic-error", _remote));
+                            close(null);
+                            return;
+                        }
+                        TCPRemoteCommitProvider.checkFrameLength(len, getMaxFrameSize(), _remote);
+                        _body = ByteBuffer.allocate(len);
+                    }
+                    if (_body.hasRemaining() && _channel.read(_body) < 0) {
+                        close(null);
+                        return;
+                    }
+                    if (_body.hasRemaining())
+                        return;
+                    final byte[] bytes = _body.array();
+                    _body = null;
+                    _dispatcher.execute(() -> receive(bytes));
+                }
+            }
+
+            private void receive(byte[] bytes) {
+                RemoteCommitEvent rce;
+                long senderId;
+                int senderPort;
+                byte[] senderAddress;
+                try {
+                    BinaryDecoder dec = new BinaryDecoder(bytes, null);
+                    senderId = dec.readLong();
+                    senderPort = dec.readInt();
+                    senderAddress = dec.readByteArray();
+                    rce = RemoteCommitEventCodec.decode(bytes, bytes.length - dec.remaining(),
+                        dec.remaining(), null);
+                } catch (RuntimeException re) {
+                    // the packet is skipped, but the stream is still usable
+                    if (_log.isWarnEnabled())
+                        _log.warn(s_loc.get("tcp-decode-error", _remote), re);
+                    return;
+                }
+                if (_log.isTraceEnabled())
+                    _log.trace(s_loc.get("tcp-received-event", _remote));
+
+                boolean fromSelf = senderPort == _port && Arrays.equals(senderAddress, _localhost);
+                for (NIOTCPRemoteCommitProvider provider : _providers)
+                    if (senderId != provider._id || !fromSelf)
+                        provider.fireEvent(rce);
+            }
+
+            private void close(Exception e) {
+                if (e != null) {
+                    if (_log.isWarnEnabled())
+                        _log.warn(s_loc.get("tcp-receive-error"), e);
+                } else if (_log.isTraceEnabled())
+                    _log.trace(s_loc.get("tcp-close-socket", _remote));
+                if (_key != null)
+                    _key.cancel();
+                try {
+                    _channel.close();
+                } catch (IOException ioe) {
+                    if (_log.isWarnEnabled())
+                        _log.warn(s_loc.get("tcp-close-socket-error", _remote), ioe);
+                }
+            }
+        }
+    }
+}
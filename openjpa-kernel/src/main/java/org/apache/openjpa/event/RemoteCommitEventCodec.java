@@ -0,0 +1,185 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.openjpa.event;
+
+import java.security.AccessController;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+import org.apache.openjpa.lib.util.J2DoPrivHelper;
+import org.apache.openjpa.lib.util.Localizer;
+import org.apache.openjpa.lib.util.MultiClassLoader;
+import org.apache.openjpa.util.BinaryDecoder;
+import org.apache.openjpa.util.BinaryEncoder;
+import org.apache.openjpa.util.LZ4;
+import org.apache.openjpa.util.StoreException;
+
+/**
+ * Compact binary wire format for {@link RemoteCommitEvent}s, used by the
+ * remote commit providers instead of Java serialization when their
+ * <code>WireFormat</code> is <code>binary</code>. Datastore identities are
+ * written as variable-length integers and class names are written once
+ * per event. Large events may be compressed in the LZ4 block format.
+ *
+ * The first byte of an encoded event is the format version, so that
+ * receivers can reject events written by a newer, incompatible format.
+ *
+ * @since 4.1.1
+ */
+public final class RemoteCommitEventCodec {
+
+    private static final Localizer _loc = Localizer.forPackage(RemoteCommitEventCodec.class);
+
+    /**
+     * Version of the format written by this codec.
+     */
+    public static final byte VERSION = 1;
+
+    /**
+     * Events smaller than this many bytes are never compressed.
+     */
+    public static final int COMPRESSION_THRESHOLD = 512;
+
+    private static final byte FLAG_COMPRESSED = 1;
+
+    private RemoteCommitEventCodec() {
+    }
+
+    /**
+     * Encode the given event.
+     *
+     * @param compress whether to compress large events
+     */
+    public static byte[] encode(RemoteCommitEvent event, boolean compress) {
+        BinaryEncoder body = new BinaryEncoder();
+        int payload = event.getPayloadType();
+        body.writeVarInt(payload);
+        writeNames(body, event.getPersistedTypeNames());
+        if (payload == RemoteCommitEvent.PAYLOAD_OIDS_WITH_ADDS)
+            writeIds(body, event.getPersistedObjectIds());
+        if (payload == RemoteCommitEvent.PAYLOAD_EXTENTS) {
+            writeNames(body, event.getUpdatedTypeNames());
+            writeNames(body, event.getDeletedTypeNames());
+        } else {
+            writeIds(body, event.getUpdatedObjectIds());
+            writeIds(body, event.getDeletedObjectIds());
+        }
+
+        byte[] raw = body.toByteArray();
+        if (compress && raw.length >= COMPRESSION_THRESHOLD) {
+            byte[] packed = LZ4.compress(raw, 0, raw.length);
+            if (packed.length < raw.length) {
+                BinaryEncoder out = new BinaryEncoder(packed.length + 8);
+                out.writeByte(VERSION);
+                out.writeByte(FLAG_COMPRESSED);
+                out.writeVarInt(raw.length);
+                out.writeBytes(packed, 0, packed.length);
+                return out.toByteArray();
+            }
+        }
+
+        BinaryEncoder out = new BinaryEncoder(raw.length + 2);
+        out.writeByte(VERSION);
+        out.writeByte(0);
+        out.writeBytes(raw, 0, raw.length);
+        return out.toByteArray();
+    }
+
+    private static void writeNames(BinaryEncoder out, Collection<?> names) {
+        out.writeVarInt(names.size());
+        for (Object name : names)
+            out.writeString((String) name);
+    }
+
+    private static void writeIds(BinaryEncoder out, Collection<?> oids) {
+        out.writeVarInt(oids.size());
+        for (Object oid : oids)
+            out.writeObjectId(oid);
+    }
+
+    /**
+     * Decode an event written by {@link #encode}.
+     *
+     * @param loader the loader for the classes of object ids, or null to
+     * use the current thread's context loader
+     */
+    public static RemoteCommitEvent decode(byte[] bytes, int off, int len, ClassLoader loader) {
+        if (loader == null)
+            loader = newClassLoader();
+
+        BinaryDecoder in = new BinaryDecoder(bytes, off, len, loader);
+        byte version = in.readByte();
+        if (version != VERSION)
+            throw new StoreException(_loc.get("rce-bad-version", version, VERSION));
+        byte flags = in.readByte();
+        if ((flags & FLAG_COMPRESSED) != 0) {
+            int rawLen = in.readVarInt();
+            int start = off + len - in.remaining();
+            byte[] raw = LZ4.decompress(bytes, start, in.remaining(), rawLen);
+            in = new BinaryDecoder(raw, loader);
+        }
+
+        int payload = in.readVarInt();
+        Collection<Object> addClasses = readNames(in);
+        Collection<Object> addIds = null;
+        if (payload == RemoteCommitEvent.PAYLOAD_OIDS_WITH_ADDS)
+            addIds = readIds(in);
+        Collection<Object> updates;
+        Collection<Object> deletes;
+        if (payload == RemoteCommitEvent.PAYLOAD_EXTENTS) {
+            updates = readNames(in);
+            deletes = readNames(in);
+        } else {
+            updates = readIds(in);
+            deletes = readIds(in);
+        }
+        return new RemoteCommitEvent(payload, addIds, addClasses, updates, deletes);
+    }
+
+    private static Collection<Object> readNames(BinaryDecoder in) {
+        int size = in.readVarInt();
+        List<Object> names = new ArrayList<>(Math.min(size, in.remaining()));
+        for (int i = 0; i < size; i++)
+            names.add(in.readString());
+        return names;
+    }
+
+    private static Collection<Object> readIds(BinaryDecoder in) {
+        int size = in.readVarInt();
+        List<Object> oids = new ArrayList<>(Math.min(size, in.remaining()));
+        for (int i = 0; i < size; i++)
+            oids.add(in.readObjectId());
+        return oids;
+    }
+
+    /**
+     * Loader that resolves classes the way serialized events are resolved:
+     * through the context loader, then OpenJPA's own loader.
+     */
+    private static ClassLoader newClassLoader() {
+        MultiClassLoader loader = AccessController
+            .doPrivileged(J2DoPrivHelper.newMultiClassLoaderAction());
+        loader.addClassLoader(AccessController.doPrivileged(
+            J2DoPrivHelper.getContextClassLoaderAction()));
+        loader.addClassLoader(RemoteCommitEventCodec.class.getClassLoader());
+        loader.addClassLoader(MultiClassLoader.SYSTEM_LOADER);
+        return loader;
+    }
+}
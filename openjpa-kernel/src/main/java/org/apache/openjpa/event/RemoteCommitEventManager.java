@@ -23,10 +23,13 @@ import java.util.Collection;
 import java.util.Collections;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Timer;
+import java.util.TimerTask;
 
 import org.apache.openjpa.conf.OpenJPAConfiguration;
 import org.apache.openjpa.kernel.Broker;
 import org.apache.openjpa.kernel.OpenJPAStateManager;
+import org.apache.openjpa.lib.log.Log;
 import org.apache.openjpa.lib.util.Closeable;
 import org.apache.openjpa.lib.util.Localizer;
 import org.apache.openjpa.lib.util.concurrent.AbstractConcurrentEventManager;
@@ -53,12 +56,22 @@ public class RemoteCommitEventManager
         (RemoteCommitEventManager.class);
 
     private final RemoteCommitProvider _provider;
+    private final transient Log _log;
     private boolean _transmitPersIds = false;
+    private int _coalesceWindow = 0;
+    private int _coalesceMaxEvents = 100;
+    private int _extentThreshold = 0;
+
+    // events waiting for the end of the coalescing window
+    private transient RemoteCommitEventMerger _pending = null;
+    private transient Timer _timer = null;
+    private transient boolean _closed = false;
 
     /**
      * Constructor. Supply configuration.
      */
     public RemoteCommitEventManager(OpenJPAConfiguration conf) {
+        _log = conf.getLog(OpenJPAConfiguration.LOG_RUNTIME);
         _provider = conf.newRemoteCommitProviderInstance();
         if (_provider != null) {
             _provider.setRemoteCommitEventManager(this);
@@ -95,6 +108,70 @@ public class RemoteCommitEventManager
         _transmitPersIds = transmit;
     }
 
+    /**
+     * The number of milliseconds during which the events of consecutive
+     * commits are merged into a single event before it is broadcast, or 0
+     * to broadcast the event of each commit right away.
+     *
+     * @since 4.1.1
+     */
+    public int getCoalesceWindowMillis() {
+        return _coalesceWindow;
+    }
+
+    /**
+     * The number of milliseconds during which the events of consecutive
+     * commits are merged into a single event before it is broadcast, or 0
+     * to broadcast the event of each commit right away. Defaults to 0.
+     *
+     * @since 4.1.1
+     */
+    public void setCoalesceWindowMillis(int millis) {
+        _coalesceWindow = millis;
+    }
+
+    /**
+     * The maximum number of commits merged into a single event.
+     *
+     * @since 4.1.1
+     */
+    public int getCoalesceMaxEvents() {
+        return _coalesceMaxEvents;
+    }
+
+    /**
+     * The maximum number of commits merged into a single event. Once
+     * reached, the merged event is broadcast without waiting for the end
+     * of the coalescing window. Defaults to 100.
+     *
+     * @since 4.1.1
+     */
+    public void setCoalesceMaxEvents(int max) {
+        _coalesceMaxEvents = Math.max(1, max);
+    }
+
+    /**
+     * The number of object ids above which an event is sent as the names
+     * of the changed types instead, or 0 for no limit.
+     *
+     * @since 4.1.1
+     */
+    public int getExtentThreshold() {
+        return _extentThreshold;
+    }
+
+    /**
+     * The number of object ids above which an event is sent as the names
+     * of the changed types instead, so that receivers evict whole types.
+     * Only events whose object ids record their type can be converted.
+     * Defaults to 0, for no limit.
+     *
+     * @since 4.1.1
+     */
+    public void setExtentThreshold(int threshold) {
+        _extentThreshold = threshold;
+    }
+
     /**
      * Adds an OpenJPA-internal listener to this RemoteCommitEventManager.
      * Listeners so registered will be fired before any that are registered
@@ -122,6 +199,16 @@ public class RemoteCommitEventManager
     @Override
     public void close() {
         if (_provider != null) {
+            RemoteCommitEvent pending;
+            synchronized (this) {
+                _closed = true;
+                if (_timer != null)
+                    _timer.cancel();
+                _timer = null;
+                pending = takePending();
+            }
+            if (pending != null)
+                _provider.broadcast(pending);
             _provider.close();
             Collection listeners = getListeners();
             for (Object listener : listeners) {
@@ -159,8 +246,109 @@ public class RemoteCommitEventManager
         if (_provider != null) {
             RemoteCommitEvent rce = createRemoteCommitEvent(event);
             if (rce != null)
-                _provider.broadcast(rce);
+                broadcast(rce);
+        }
+    }
+
+    /**
+     * Broadcast the event of a commit, or merge it into the pending event
+     * if coalescing is enabled.
+     */
+    void broadcast(RemoteCommitEvent rce) {
+        if (_coalesceWindow > 0)
+            coalesce(rce);
+        else
+            _provider.broadcast(toExtents(rce));
+    }
+
+    /**
+     * Convert the given event to a {@link RemoteCommitEvent#PAYLOAD_EXTENTS}
+     * event if it has more object ids than the extent threshold.
+     */
+    private RemoteCommitEvent toExtents(RemoteCommitEvent rce) {
+        if (_extentThreshold <= 0 || rce.getPayloadType() == RemoteCommitEvent.PAYLOAD_EXTENTS)
+            return rce;
+        int oids = rce.getUpdatedObjectIds().size() + rce.getDeletedObjectIds().size();
+        if (rce.getPayloadType() == RemoteCommitEvent.PAYLOAD_OIDS_WITH_ADDS)
+            oids += rce.getPersistedObjectIds().size();
+        if (oids <= _extentThreshold)
+            return rce;
+
+        RemoteCommitEventMerger merger = new RemoteCommitEventMerger();
+        merger.add(rce);
+        return (merger.toExtents()) ? merger.toEvent() : rce;
+    }
+
+    /**
+     * Merge the given event into the pending event, broadcasting the
+     * pending event if it is full or cannot take the given event. Once this
+     * manager is closed, the event is broadcast directly so that no new
+     * timer is started.
+     */
+    private void coalesce(RemoteCommitEvent rce) {
+        RemoteCommitEvent previous = null;
+        RemoteCommitEvent full = null;
+        synchronized (this) {
+            if (_closed) {
+                full = toExtents(rce);
+            } else {
+                if (_pending != null && !_pending.add(rce))
+                    previous = takePending();
+                if (_pending == null) {
+                    _pending = new RemoteCommitEventMerger();
+                    _pending.add(rce);
+                    schedule(_pending);
+                }
+                if (_extentThreshold > 0 && _pending.getObjectIdCount() > _extentThreshold)
+                    _pending.toExtents();
+                if (_pending.getEventCount() >= _coalesceMaxEvents)
+                    full = takePending();
+            }
         }
+
+        if (previous != null)
+            _provider.broadcast(previous);
+        if (full != null)
+            _provider.broadcast(full);
+    }
+
+    /**
+     * Broadcast the given pending event at the end of the coalescing window,
+     * unless it has been broadcast already.
+     */
+    private void schedule(final RemoteCommitEventMerger pending) {
+        if (_timer == null)
+            _timer = new Timer(true);
+        _timer.schedule(new TimerTask() {
+            @Override
+            public void run() {
+                RemoteCommitEvent rce;
+                synchronized (RemoteCommitEventManager.this) {
+                    if (_pending != pending)
+                        return;
+                    rce = takePending();
+                }
+                try {
+                    _provider.broadcast(rce);
+                } catch (RuntimeException re) {
+                    // keep the timer thread alive for later windows
+                    if (_log.isWarnEnabled())
+                        _log.warn(_loc.get("coalesce-broadcast-ex"), re);
+                }
+            }
+        }, _coalesceWindow);
+    }
+
+    /**
+     * Return the pending event and start a new window, or return null if
+     * no event is pending.
+     */
+    private RemoteCommitEvent takePending() {
+        if (_pending == null)
+            return null;
+        RemoteCommitEvent rce = _pending.toEvent();
+        _pending = null;
+        return rce;
     }
 
     /**
@@ -0,0 +1,153 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.openjpa.event;
+
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+import org.apache.openjpa.util.OpenJPAId;
+
+/**
+ * Merges several {@link RemoteCommitEvent}s into one event that has the
+ * same effect on remote listeners: every object or type that is stale
+ * after any of the events is stale after the merged event.
+ *
+ * @since 4.1.1
+ */
+final class RemoteCommitEventMerger {
+
+    private final Set<Object> _addClasses = new LinkedHashSet<>();
+    private final Set<Object> _addIds = new LinkedHashSet<>();
+    private final Set<Object> _updates = new LinkedHashSet<>();
+    private final Set<Object> _deletes = new LinkedHashSet<>();
+    private final Set<Object> _updateClasses = new LinkedHashSet<>();
+    private final Set<Object> _deleteClasses = new LinkedHashSet<>();
+    private boolean _adds = false;
+    private boolean _extents = false;
+    private boolean _typeless = false; // some oid does not record its type
+    private int _count = 0;
+
+    /**
+     * The number of events added so far.
+     */
+    public int getEventCount() {
+        return _count;
+    }
+
+    /**
+     * The number of distinct object ids and type names in the merged event.
+     */
+    public int size() {
+        return _addClasses.size() + _addIds.size() + _updates.size()
+            + _deletes.size() + _updateClasses.size() + _deleteClasses.size();
+    }
+
+    /**
+     * The number of distinct object ids in the merged event.
+     */
+    public int getObjectIdCount() {
+        return _addIds.size() + _updates.size() + _deletes.size();
+    }
+
+    /**
+     * Add an event to the merge.
+     *
+     * @return false if the event cannot be merged with the events added so
+     * far, in which case the merge is unchanged
+     */
+    public boolean add(RemoteCommitEvent event) {
+        if (event.getPayloadType() == RemoteCommitEvent.PAYLOAD_EXTENTS) {
+            if (!_extents && !toExtents())
+                return false;
+            _updateClasses.addAll(event.getUpdatedTypeNames());
+            _deleteClasses.addAll(event.getDeletedTypeNames());
+        } else if (_extents) {
+            Set<Object> updateClasses = new LinkedHashSet<>();
+            Set<Object> deleteClasses = new LinkedHashSet<>();
+            if (!addTypeNames(updateClasses, event.getUpdatedObjectIds())
+                || !addTypeNames(deleteClasses, event.getDeletedObjectIds()))
+                return false;
+            _updateClasses.addAll(updateClasses);
+            _deleteClasses.addAll(deleteClasses);
+        } else {
+            _updates.addAll(event.getUpdatedObjectIds());
+            _deletes.addAll(event.getDeletedObjectIds());
+            if (event.getPayloadType() == RemoteCommitEvent.PAYLOAD_OIDS_WITH_ADDS) {
+                _adds = true;
+                _addIds.addAll(event.getPersistedObjectIds());
+            }
+        }
+        _addClasses.addAll(event.getPersistedTypeNames());
+        _count++;
+        return true;
+    }
+
+    /**
+     * Replace the object ids merged so far by the names of their types.
+     *
+     * @return false if some object id does not record its type
+     */
+    public boolean toExtents() {
+        if (_extents)
+            return true;
+        if (_typeless)
+            return false;
+        Set<Object> updateClasses = new LinkedHashSet<>();
+        Set<Object> deleteClasses = new LinkedHashSet<>();
+        if (!addTypeNames(updateClasses, _updates)
+            || !addTypeNames(deleteClasses, _deletes)) {
+            _typeless = true;
+            return false;
+        }
+
+        _updateClasses.addAll(updateClasses);
+        _deleteClasses.addAll(deleteClasses);
+        _updates.clear();
+        _deletes.clear();
+        _addIds.clear();
+        _adds = false;
+        _extents = true;
+        return true;
+    }
+
+    private static boolean addTypeNames(Set<Object> names, Collection<?> oids) {
+        for (Object oid : oids) {
+            if (!(oid instanceof OpenJPAId))
+                return false;
+            names.add(((OpenJPAId) oid).getType().getName());
+        }
+        return true;
+    }
+
+    /**
+     * The merged event. The event is backed by this merge, so no events
+     * should be added once it is created.
+     */
+    public RemoteCommitEvent toEvent() {
+        if (_extents)
+            return new RemoteCommitEvent(RemoteCommitEvent.PAYLOAD_EXTENTS,
+                null, _addClasses, _updateClasses, _deleteClasses);
+        if (_adds)
+            return new RemoteCommitEvent(RemoteCommitEvent.PAYLOAD_OIDS_WITH_ADDS,
+                _addIds, _addClasses, _updates, _deletes);
+        return new RemoteCommitEvent(RemoteCommitEvent.PAYLOAD_OIDS,
+            null, _addClasses, _updates, _deletes);
+    }
+}
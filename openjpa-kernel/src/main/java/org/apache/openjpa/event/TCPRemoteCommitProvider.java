@@ -20,11 +20,13 @@ package org.apache.openjpa.event;
 
 import java.io.BufferedInputStream;
 import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
 import java.io.EOFException;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
+import java.io.ObjectStreamConstants;
 import java.io.OutputStream;
 import java.net.InetAddress;
 import java.net.ServerSocket;
@@ -55,6 +57,8 @@ import org.apache.openjpa.lib.log.Log;
 import org.apache.openjpa.lib.util.J2DoPrivHelper;
 import org.apache.openjpa.lib.util.Localizer;
 import org.apache.openjpa.lib.util.StringUtil;
+import org.apache.openjpa.util.BinaryDecoder;
+import org.apache.openjpa.util.BinaryEncoder;
 import org.apache.openjpa.util.GeneralException;
 import org.apache.openjpa.util.InternalException;
 import org.apache.openjpa.util.Serialization;
@@ -75,6 +79,9 @@ public class TCPRemoteCommitProvider
 
     private static final int DEFAULT_PORT = 5636;
 
+    // largest binary packet accepted from a peer by default
+    static final int DEFAULT_MAX_FRAME_SIZE = 16 * 1024 * 1024;
+
     protected static final Localizer s_loc = Localizer.forPackage(TCPRemoteCommitProvider.class);
     private static long s_idSequence = System.currentTimeMillis();
 
@@ -89,6 +96,7 @@ public class TCPRemoteCommitProvider
     private int _maxTotal = 2;
     private int _maxIdle = 2;
     private int _recoveryTimeMillis = 15000;
+    private volatile int _maxFrameSize = DEFAULT_MAX_FRAME_SIZE;
     private TCPPortListener _listener;
     private final BroadcastQueue _broadcastQueue = new BroadcastQueue();
     private final List<BroadcastWorkerThread> _broadcastThreads = Collections.synchronizedList(new LinkedList<>());
@@ -186,6 +194,23 @@ public class TCPRemoteCommitProvider
         return _maxIdle;
     }
 
+    /**
+     * Set the largest packet in the <code>binary</code> wire format that this provider accepts from a peer, in bytes.
+     * A peer that announces a larger packet is disconnected before the packet is read. Defaults to 16 MB.
+     * 
+     * @param maxFrameSize the largest packet in the <code>binary</code> wire format accepted from a peer
+     */
+    public void setMaxFrameSize(final int maxFrameSize) {
+        _maxFrameSize = maxFrameSize;
+    }
+
+    /**
+     * @return the largest packet in the <code>binary</code> wire format that this provider accepts from a peer.
+     */
+    public int getMaxFrameSize() {
+        return _maxFrameSize;
+    }
+
     /**
      * Set the number of worker threads that are used for transmitting packets to peers in the cluster.
      * 
@@ -333,8 +358,17 @@ public class TCPRemoteCommitProvider
     // 3.4 			= 0x1428acff;
     private static final long PROTOCOL_VERSION = 0x1428acff;
 
+    // first bytes of a packet in the binary wire format; serialized packets
+    // start with the serialization stream magic 0xaced instead
+    static final int BINARY_MAGIC = 0x4f4a5243;
+
     @Override
     public void broadcast(final RemoteCommitEvent event) {
+        if (isBinaryWireFormat()) {
+            broadcastBinary(event);
+            return;
+        }
+
         // build a packet notifying other JVMs of object changes.
         try (ByteArrayOutputStream baos = new ByteArrayOutputStream();
                 ObjectOutputStream oos = new ObjectOutputStream(baos)) {
@@ -360,6 +394,65 @@ public class TCPRemoteCommitProvider
         }
     }
 
+    /**
+     * Build a packet in the binary wire format: the magic number and the
+     * length of the rest of the packet, followed by the sender and the
+     * event encoded by {@link RemoteCommitEventCodec}.
+     */
+    private void broadcastBinary(final RemoteCommitEvent event) {
+        byte[] rce;
+        try {
+            rce = encodeEvent(event);
+        } catch (RuntimeException re) {
+            if (log.isWarnEnabled()) {
+                log.warn(s_loc.get("tcp-payload-create-error"), re);
+            }
+            return;
+        }
+
+        byte[] bytes = newBinaryPacket(_id, _port, _localhost, rce);
+        if (_broadcastThreads.isEmpty()) {
+            sendUpdatePacket(bytes);
+        } else {
+            _broadcastQueue.addPacket(bytes);
+        }
+    }
+
+    /**
+     * Frame an encoded event from the given sender as a packet in the
+     * binary wire format.
+     */
+    static byte[] newBinaryPacket(final long senderId, final int senderPort,
+        final byte[] senderAddress, final byte[] rce) {
+        BinaryEncoder body = new BinaryEncoder(rce.length + 32);
+        body.writeLong(senderId);
+        body.writeInt(senderPort);
+        body.writeByteArray(senderAddress);
+        body.writeBytes(rce, 0, rce.length);
+
+        BinaryEncoder packet = new BinaryEncoder(body.size() + 8);
+        packet.writeInt(BINARY_MAGIC);
+        packet.writeInt(body.size());
+        packet.writeBytes(body.toByteArray(), 0, body.size());
+        return packet.toByteArray();
+    }
+
+    /**
+     * Check the body length read from the header of a packet in the binary
+     * wire format before a buffer is allocated for it.
+     *
+     * @throws IOException if the length is negative or larger than the
+     * given maximum; we can no longer trust the stream, so the connection
+     * must be closed
+     */
+    static void checkFrameLength(final int len, final int maxFrameSize, final String remote)
+        throws IOException {
+        if (len < 0 || len > maxFrameSize) {
+            throw new IOException(s_loc.get("tcp-frame-too-large", remote, String.valueOf(len),
+                String.valueOf(maxFrameSize)).getMessage());
+        }
+    }
+
     /**
      * Sends a change notification packet to other machines in this
      * provider cluster.
@@ -570,6 +663,20 @@ public class TCPRemoteCommitProvider
             }
         }
 
+        /**
+         * The largest packet accepted on this port: the largest maximum of
+         * the providers listening on it.
+         */
+        private int getMaxFrameSize() {
+            synchronized (_providers) {
+                int max = 0;
+                for (TCPRemoteCommitProvider provider : _providers) {
+                    max = Math.max(max, provider.getMaxFrameSize());
+                }
+                return (max == 0) ? DEFAULT_MAX_FRAME_SIZE : max;
+            }
+        }
+
         @Override
         public void run() {
             synchronized (_providers) {
@@ -705,10 +812,66 @@ public class TCPRemoteCommitProvider
 
             /**
              * Process an {@link InputStream} containing objects written
-             * by {@link TCPRemoteCommitProvider#broadcast(RemoteCommitEvent)}.
+             * by {@link TCPRemoteCommitProvider#broadcast(RemoteCommitEvent)}
+             * in either wire format.
              */
             private void handle(final InputStream in) throws IOException, ClassNotFoundException {
-                // This will block waiting for the next
+                // This will block waiting for the next packet
+                in.mark(2);
+                int b1 = in.read();
+                int b2 = in.read();
+                if (b2 == -1) {
+                    throw new EOFException();
+                }
+                in.reset();
+                if (((b1 << 8) | b2) == (ObjectStreamConstants.STREAM_MAGIC & 0xffff)) {
+                    handleSerialized(in);
+                } else {
+                    handleBinary(in);
+                }
+            }
+
+            /**
+             * Process a packet in the binary wire format.
+             */
+            private void handleBinary(final InputStream in) throws IOException {
+                DataInputStream din = new DataInputStream(in);
+                int magic = din.readInt();
+                int len = din.readInt();
+                String remote = _s.getInetAddress().getHostAddress() + ":" + _s.getPort();
+                if (magic != BINARY_MAGIC) {
+                    // we can no longer find the start of the next packet
+                    throw new IOException(s_loc.get("tcp-wrong-magic-error", remote).getMessage());
+                }
+                checkFrameLength(len, getMaxFrameSize(), remote);
+                byte[] bytes = new byte[len];
+                din.readFully(bytes);
+
+                RemoteCommitEvent rce;
+                long senderId;
+                int senderPort;
+                byte[] senderAddress;
+                try {
+                    BinaryDecoder dec = new BinaryDecoder(bytes, null);
+                    senderId = dec.readLong();
+                    senderPort = dec.readInt();
+                    senderAddress = dec.readByteArray();
+                    rce = RemoteCommitEventCodec.decode(bytes, bytes.length - dec.remaining(),
+                        dec.remaining(), null);
+                } catch (RuntimeException re) {
+                    // the packet is skipped, but the stream is still usable
+                    if (_log.isWarnEnabled()) {
+                        _log.warn(s_loc.get("tcp-decode-error", remote), re);
+                    }
+                    return;
+                }
+                fire(senderId, senderPort, senderAddress, rce);
+            }
+
+            /**
+             * Process a packet written with Java serialization.
+             */
+            private void handleSerialized(final InputStream in) throws IOException, ClassNotFoundException {
                 ObjectInputStream ois = new Serialization.ClassResolvingObjectInputStream(in);
 
                 long protocolVersion = ois.readLong();
@@ -724,6 +887,11 @@ public class TCPRemoteCommitProvider
                 int senderPort = ois.readInt();
                 byte[] senderAddress = (byte[]) ois.readObject();
                 RemoteCommitEvent rce = (RemoteCommitEvent) ois.readObject();
+                fire(senderId, senderPort, senderAddress, rce);
+            }
+
+            private void fire(final long senderId, final int senderPort, final byte[] senderAddress,
+                final RemoteCommitEvent rce) {
                 if (_log.isTraceEnabled()) {
                     _log.trace(s_loc.get("tcp-received-event",
                         _s.getInetAddress().getHostAddress() + ":"
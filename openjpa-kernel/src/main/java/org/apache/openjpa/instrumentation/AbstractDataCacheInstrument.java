@@ -100,6 +100,30 @@ public abstract class AbstractDataCacheInstrument extends AbstractInstrument imp
         return NO_STATS;
     }
 
+    @Override
+    public long getMissCount() {
+        CacheStatistics stats = getStatistics();
+        if (stats != null)
+            return stats.getMissCount();
+        return NO_STATS;
+    }
+
+    @Override
+    public long getEvictionCount() {
+        CacheStatistics stats = getStatistics();
+        if (stats != null)
+            return stats.getEvictionCount();
+        return NO_STATS;
+    }
+
+    @Override
+    public long getOffHeapBytes() {
+        CacheStatistics stats = getStatistics();
+        if (stats != null)
+            return stats.getOffHeapBytes();
+        return NO_STATS;
+    }
+
     @Override
     public long getWriteCount() {
         CacheStatistics stats = getStatistics();
@@ -71,6 +71,33 @@ public interface DataCacheInstrument {
      */
     long getReadCount();
 
+    /**
+     * Returns the miss count since cache statistics were last reset
+     *
+     * @since 4.1.1
+     */
+    default long getMissCount() {
+        return 0;
+    }
+
+    /**
+     * Returns the eviction count since cache statistics were last reset
+     *
+     * @since 4.1.1
+     */
+    default long getEvictionCount() {
+        return 0;
+    }
+
+    /**
+     * Returns the number of bytes the cache keeps outside of the heap.
+     *
+     * @since 4.1.1
+     */
+    default long getOffHeapBytes() {
+        return 0;
+    }
+
     /**
      * Returns the total hits since start.
      */
@@ -25,6 +25,7 @@ import java.util.Collection;
 import java.util.Collections;
 import java.util.Date;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Locale;
 import java.util.Map;
 
@@ -406,6 +407,32 @@ public abstract class AbstractPCData
         return pcdata;
     }
 
+    /**
+     * Return the change tracker sequence stored with the given cached
+     * collection data, or -1 if the value is not cached collection data.
+     * Used by caches that copy cached data out of the heap.
+     *
+     * @since 4.1.1
+     */
+    public static int getCollectionDataSequence(Object data) {
+        if (data instanceof ProxyDataList)
+            return ((ProxyDataList) data).nextSequence;
+        return -1;
+    }
+
+    /**
+     * Return new, empty cached collection data with the given change
+     * tracker sequence. Elements are added by the caller.
+     *
+     * @since 4.1.1
+     */
+    @SuppressWarnings("unchecked")
+    public static List<Object> newCollectionData(int size, int nextSequence) {
+        ProxyDataList c = new ProxyDataList(size);
+        c.nextSequence = nextSequence;
+        return c;
+    }
+
     /**
      * Tracks proxy data along with list elements.
      */
@@ -65,9 +65,7 @@ import org.apache.openjpa.lib.instrumentation.InstrumentationLevel;
 import org.apache.openjpa.lib.log.Log;
 import org.apache.openjpa.lib.util.J2DoPrivHelper;
 import org.apache.openjpa.lib.util.Localizer;
-import org.apache.openjpa.lib.util.ReferenceHashMap;
 import org.apache.openjpa.lib.util.ReferenceHashSet;
-import org.apache.openjpa.lib.util.ReferenceMap;
 import org.apache.openjpa.lib.util.StringUtil;
 import org.apache.openjpa.lib.util.collections.AbstractReferenceMap;
 import org.apache.openjpa.lib.util.collections.IteratorChain;
@@ -428,12 +426,12 @@ public class BrokerImpl implements Broker, FindCallbacks, Cloneable, Serializabl
 
     /**
      * Create a {@link Map} to be used for the primary managed object cache.
-     * Maps oids to state managers. By default, this creates a
-     * {@link ReferenceMap} with soft values.
+     * Maps oids to state managers. By default, this creates a map with soft
+     * values that keeps datastore oids and oids of a single long or int
+     * field by their primitive value.
      */
     protected Map<?,?> newManagedObjectCache() {
-        return new ReferenceHashMap(
-                AbstractReferenceMap.ReferenceStrength.HARD, AbstractReferenceMap.ReferenceStrength.SOFT);
+        return new PrimitiveIdMap<StateManagerImpl>();
     }
 
     //////////////////////////////////
@@ -4205,6 +4203,17 @@ public class BrokerImpl implements Broker, FindCallbacks, Cloneable, Serializabl
         }
     }
 
+    @Override
+    public List<OpenJPAStateManager> getUnloadedStates(OpenJPAStateManager sm,
+        int field, int max) {
+        beginOperation(false);
+        try {
+            return _cache.getUnloaded(sm, field, max);
+        } finally {
+            endOperation();
+        }
+    }
+
     @Override
     public Collection getTransactionalObjects() {
         beginOperation(false);
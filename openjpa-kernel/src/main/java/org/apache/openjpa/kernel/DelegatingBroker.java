@@ -353,6 +353,16 @@ public class DelegatingBroker
         }
     }
 
+    @Override
+    public List<OpenJPAStateManager> getUnloadedStates(OpenJPAStateManager sm,
+        int field, int max) {
+        try {
+            return _broker.getUnloadedStates(sm, field, max);
+        } catch (RuntimeException re) {
+            throw translate(re);
+        }
+    }
+
     @Override
     public Collection getTransactionalObjects() {
         try {
@@ -19,6 +19,7 @@
 package org.apache.openjpa.kernel;
 
 import java.io.Serializable;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
@@ -30,6 +31,7 @@ import java.util.Map;
 import org.apache.openjpa.lib.util.Localizer;
 import org.apache.openjpa.lib.util.ReferenceHashSet;
 import org.apache.openjpa.lib.util.collections.AbstractReferenceMap;
+import org.apache.openjpa.meta.ClassMetaData;
 import org.apache.openjpa.util.Exceptions;
 import org.apache.openjpa.util.UserException;
 
@@ -50,6 +52,8 @@ class ManagedCache implements Serializable {
     private Collection<StateManagerImpl> _embeds = null; // embedded/non-persistent sms
     private Collection<StateManagerImpl> _untracked = null; // hard refs to untracked sms
     private BrokerImpl broker;
+    private transient Map<ClassMetaData, Walk[]> _walks = null; // type -> field -> walk
+    private long _loads = 0; // persistent instances added to main cache
 
     /**
      * Constructor; supply primary cache map.
@@ -124,6 +128,7 @@ class ManagedCache implements Serializable {
         }
 
         // initializing persistent instance; put in main cache
+        _loads++;
         StateManagerImpl orig = _main.put(sm.getObjectId(), sm);
         if (orig != null) {
             _main.put(sm.getObjectId(), orig);
@@ -275,11 +280,73 @@ class ManagedCache implements Serializable {
         return copy;
     }
 
+    /**
+     * Return up to the given number of clean instances of the type of the
+     * given instance, other than the given instance, that have not loaded
+     * the given field. Clean instances have permanent oids, so only the
+     * main cache is scanned.
+     *
+     * The instances of a type that have not loaded a field are collected
+     * once and then handed out over successive calls, so that loading the
+     * field of all of them visits each instance once rather than scanning
+     * the whole cache for every batch. The cache is scanned again only when
+     * all collected instances have been handed out and instances have been
+     * loaded since the last scan.
+     */
+    public List<OpenJPAStateManager> getUnloaded(OpenJPAStateManager sm,
+        int field, int max) {
+        if (max <= 0 || _main.isEmpty())
+            return Collections.emptyList();
+
+        Walk walk = getWalk(sm.getMetaData(), field);
+        if (walk.pending.isEmpty() && walk.scanned != _loads) {
+            for (StateManagerImpl other : _main.values())
+                if (isUnloaded(other, sm, field))
+                    walk.pending.add(other);
+            walk.scanned = _loads;
+        }
+
+        List<OpenJPAStateManager> unloaded = new ArrayList<>();
+        StateManagerImpl other;
+        while (unloaded.size() < max
+            && (other = walk.pending.poll()) != null) {
+            // skip instances loaded or evicted since they were collected
+            if (isUnloaded(other, sm, field)
+                && _main.get(other.getObjectId()) == other)
+                unloaded.add(other);
+        }
+        return unloaded;
+    }
+
+    private Walk getWalk(ClassMetaData meta, int field) {
+        if (_walks == null)
+            _walks = new HashMap<>();
+        Walk[] walks = _walks.get(meta);
+        if (walks == null) {
+            walks = new Walk[meta.getFields().length];
+            _walks.put(meta, walks);
+        }
+        if (walks[field] == null)
+            walks[field] = new Walk();
+        return walks[field];
+    }
+
+    private static boolean isUnloaded(StateManagerImpl other,
+        OpenJPAStateManager sm, int field) {
+        if (other == null || other == sm
+            || other.getMetaData() != sm.getMetaData()
+            || other.getLoaded().get(field))
+            return false;
+        PCState state = other.getPCState();
+        return state == PCState.PCLEAN || state == PCState.PNONTRANS;
+    }
+
     /**
      * Clear the cache.
      */
     public void clear() {
         _main = (Map<Object, StateManagerImpl>) broker.newManagedObjectCache();
+        _walks = null;
         if (_conflicts != null)
             _conflicts = null;
         if (_news != null)
@@ -305,4 +372,14 @@ class ManagedCache implements Serializable {
         for (StateManagerImpl sm : _untracked)
         	sm.dirtyCheck();
     }
+
+    /**
+     * The instances of a type that have not yet been handed out to load a
+     * field.
+     */
+    private static class Walk {
+
+        final ArrayDeque<StateManagerImpl> pending = new ArrayDeque<>();
+        long scanned = -1;
+    }
 }
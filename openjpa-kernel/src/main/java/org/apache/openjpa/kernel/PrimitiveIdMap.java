@@ -0,0 +1,397 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.openjpa.kernel;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.SoftReference;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+import org.apache.openjpa.lib.util.ReferenceHashMap;
+import org.apache.openjpa.lib.util.collections.AbstractReferenceMap;
+import org.apache.openjpa.util.Id;
+import org.apache.openjpa.util.IntId;
+import org.apache.openjpa.util.LongId;
+import org.apache.openjpa.util.OpenJPAId;
+
+/**
+ * Map of oids to soft references, used as the primary managed object cache.
+ * Datastore oids and oids of a single long or int field are kept by their
+ * primitive value in open addressing tables, one per hierarchy of identity
+ * types, so that looking them up neither hashes the oid nor walks entry
+ * chains, and an entry takes a single soft reference. Other oids are kept
+ * in a {@link ReferenceHashMap} with soft values.
+ *
+ * Oids of a type and its subtypes can be equal, so all the types that
+ * share a least-derived superclass share a table. Entries of a table that
+ * have the same primitive value are told apart by the equality of their
+ * oids, just as in a hash map.
+ *
+ * @since 4.1.1
+ */
+class PrimitiveIdMap<V> extends AbstractMap<Object, V>
+    implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private static final int INITIAL_CAPACITY = 16;
+
+    private transient Map<Object, V> _others;
+    private transient Map<Class<?>, Table<V>> _tables;
+    private transient List<Table<V>> _tableList;
+    private transient ReferenceQueue<V> _queue;
+
+    PrimitiveIdMap() {
+        init();
+    }
+
+    private void init() {
+        _others = new ReferenceHashMap(
+            AbstractReferenceMap.ReferenceStrength.HARD,
+            AbstractReferenceMap.ReferenceStrength.SOFT);
+        _tables = new HashMap<>();
+        _tableList = new ArrayList<>();
+        _queue = new ReferenceQueue<>();
+    }
+
+    /**
+     * Whether the given key is kept by its primitive value.
+     */
+    private static boolean isPrimitive(Object key) {
+        return key instanceof LongId || key instanceof IntId
+            || key instanceof Id;
+    }
+
+    /**
+     * The primitive value of the given key.
+     */
+    private static long toLong(Object key) {
+        if (key instanceof LongId)
+            return ((LongId) key).getId();
+        if (key instanceof IntId)
+            return ((IntId) key).getId();
+        return ((Id) key).getId();
+    }
+
+    /**
+     * Return the table of the given key, creating it if requested.
+     */
+    private Table<V> getTable(Object key, boolean create) {
+        Class<?> type = ((OpenJPAId) key).getType();
+        Table<V> table = _tables.get(type);
+        if (table != null)
+            return table;
+
+        // ids of a type equal ids of its super and subtypes, whose least
+        // derived superclass is the same
+        Class<?> base = type;
+        while (base.getSuperclass() != null
+            && base.getSuperclass() != Object.class)
+            base = base.getSuperclass();
+        table = _tables.get(base);
+        if (table == null) {
+            if (!create)
+                return null;
+            table = new Table<>();
+            _tables.put(base, table);
+            _tableList.add(table);
+        }
+        _tables.put(type, table);
+        return table;
+    }
+
+    /**
+     * Remove the entries whose values have been collected.
+     */
+    private void purge() {
+        Reference<? extends V> ref;
+        while ((ref = _queue.poll()) != null) {
+            Entry<V> entry = (Entry<V>) ref;
+            Table<V> table = getTable(entry.key, false);
+            if (table != null)
+                table.remove(entry);
+        }
+    }
+
+    @Override
+    public int size() {
+        purge();
+        int size = _others.size();
+        for (Table<V> table : _tableList)
+            size += table.size;
+        return size;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        if (!isPrimitive(key))
+            return _others.containsKey(key);
+        purge();
+        Table<V> table = getTable(key, false);
+        return table != null && table.find(key, toLong(key)) != -1;
+    }
+
+    @Override
+    public V get(Object key) {
+        if (!isPrimitive(key))
+            return _others.get(key);
+        purge();
+        Table<V> table = getTable(key, false);
+        if (table == null)
+            return null;
+        int idx = table.find(key, toLong(key));
+        return (idx == -1) ? null : table.entries[idx].get();
+    }
+
+    @Override
+    public V put(Object key, V value) {
+        if (!isPrimitive(key))
+            return _others.put(key, value);
+        purge();
+        return getTable(key, true).put(key, toLong(key), value, _queue);
+    }
+
+    @Override
+    public V remove(Object key) {
+        if (!isPrimitive(key))
+            return _others.remove(key);
+        purge();
+        Table<V> table = getTable(key, false);
+        if (table == null)
+            return null;
+        int idx = table.find(key, toLong(key));
+        if (idx == -1)
+            return null;
+        V value = table.entries[idx].get();
+        table.delete(idx);
+        return value;
+    }
+
+    @Override
+    public void clear() {
+        _others.clear();
+        _tables.clear();
+        _tableList.clear();
+        _queue = new ReferenceQueue<>();
+    }
+
+    @Override
+    public Set<Map.Entry<Object, V>> entrySet() {
+        return new AbstractSet<Map.Entry<Object, V>>() {
+            @Override
+            public int size() {
+                return PrimitiveIdMap.this.size();
+            }
+
+            @Override
+            public Iterator<Map.Entry<Object, V>> iterator() {
+                purge();
+                return new EntryIterator();
+            }
+        };
+    }
+
+    private void writeObject(ObjectOutputStream out) throws IOException {
+        out.defaultWriteObject();
+        List<Map.Entry<Object, V>> entries = new ArrayList<>(entrySet());
+        out.writeInt(entries.size());
+        for (Map.Entry<Object, V> entry : entries) {
+            out.writeObject(entry.getKey());
+            out.writeObject(entry.getValue());
+        }
+    }
+
+    private void readObject(ObjectInputStream in)
+        throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        init();
+        int size = in.readInt();
+        for (int i = 0; i < size; i++)
+            put(in.readObject(), (V) in.readObject());
+    }
+
+    /**
+     * Iterates the live entries of the tables, then the other entries.
+     */
+    private class EntryIterator implements Iterator<Map.Entry<Object, V>> {
+
+        private final Iterator<Table<V>> _tableItr = _tableList.iterator();
+        private final Iterator<Map.Entry<Object, V>> _otherItr =
+            _others.entrySet().iterator();
+        private Entry<V>[] _entries = null;
+        private int _idx = 0;
+        private Map.Entry<Object, V> _next = null;
+
+        @Override
+        public boolean hasNext() {
+            while (_next == null) {
+                if (_entries != null && _idx < _entries.length) {
+                    Entry<V> entry = _entries[_idx++];
+                    V value = (entry == null) ? null : entry.get();
+                    if (value != null)
+                        _next = new SimpleImmutableEntry<>(entry.key, value);
+                } else if (_tableItr.hasNext()) {
+                    _entries = _tableItr.next().entries;
+                    _idx = 0;
+                } else if (_otherItr.hasNext())
+                    _next = _otherItr.next();
+                else
+                    return false;
+            }
+            return true;
+        }
+
+        @Override
+        public Map.Entry<Object, V> next() {
+            if (!hasNext())
+                throw new NoSuchElementException();
+            Map.Entry<Object, V> next = _next;
+            _next = null;
+            return next;
+        }
+    }
+
+    /**
+     * Entry of a table: a soft reference to the value that also holds the
+     * key and its primitive value.
+     */
+    private static final class Entry<V> extends SoftReference<V> {
+
+        final Object key;
+        final long id;
+
+        Entry(Object key, long id, V value, ReferenceQueue<V> queue) {
+            super(value, queue);
+            this.key = key;
+            this.id = id;
+        }
+    }
+
+    /**
+     * Linear probing table of entries.
+     */
+    private static final class Table<V> {
+
+        Entry<V>[] entries = new Entry[INITIAL_CAPACITY];
+        int size = 0;
+
+        private static int index(long id, int mask) {
+            long h = id * 0x9E3779B97F4A7C15L;
+            return (int) (h ^ (h >>> 32)) & mask;
+        }
+
+        /**
+         * Return the index of the entry for the given key, or -1.
+         */
+        int find(Object key, long id) {
+            int mask = entries.length - 1;
+            Entry<V> entry;
+            for (int i = index(id, mask); (entry = entries[i]) != null;
+                i = (i + 1) & mask)
+                if (entry.id == id && key.equals(entry.key))
+                    return i;
+            return -1;
+        }
+
+        V put(Object key, long id, V value, ReferenceQueue<V> queue) {
+            int mask = entries.length - 1;
+            Entry<V> entry;
+            int i = index(id, mask);
+            for (; (entry = entries[i]) != null; i = (i + 1) & mask) {
+                if (entry.id == id && key.equals(entry.key)) {
+                    // keep the original key, as a hash map does
+                    entries[i] = new Entry<>(entry.key, id, value, queue);
+                    return entry.get();
+                }
+            }
+            entries[i] = new Entry<>(key, id, value, queue);
+            if (++size > entries.length * 3 / 4)
+                resize();
+            return null;
+        }
+
+        /**
+         * Remove the given entry if it is still in the table.
+         */
+        void remove(Entry<V> entry) {
+            int mask = entries.length - 1;
+            Entry<V> cur;
+            for (int i = index(entry.id, mask); (cur = entries[i]) != null;
+                i = (i + 1) & mask) {
+                if (cur == entry) {
+                    delete(i);
+                    return;
+                }
+            }
+        }
+
+        /**
+         * Remove the entry at the given index, moving back the entries
+         * after it that would no longer be found.
+         */
+        void delete(int idx) {
+            int mask = entries.length - 1;
+            int i = idx;
+            Entry<V> entry;
+            for (int j = (i + 1) & mask; (entry = entries[j]) != null;
+                j = (j + 1) & mask) {
+                int home = index(entry.id, mask);
+                boolean stays = (i < j) ? (home > i && home <= j)
+                    : (home > i || home <= j);
+                if (!stays) {
+                    entries[i] = entry;
+                    i = j;
+                }
+            }
+            entries[i] = null;
+            size--;
+        }
+
+        private void resize() {
+            Entry<V>[] old = entries;
+            entries = new Entry[old.length * 2];
+            int mask = entries.length - 1;
+            for (Entry<V> entry : old) {
+                if (entry == null)
+                    continue;
+                int i = index(entry.id, mask);
+                while (entries[i] != null)
+                    i = (i + 1) & mask;
+                entries[i] = entry;
+            }
+        }
+    }
+}
@@ -108,4 +108,48 @@ public interface QueryHints {
      * if possible.
      */
     String HINT_USE_LITERAL_IN_SQL = "openjpa.hint.UseLiteralInSQL";
+
+    /**
+     * The values of the ordering of the last result of the previous page, as
+     * an array or list with a value for each ORDER BY item, or a single value
+     * for a single item. The query then only returns the results that come
+     * after the given values in its ordering, by a condition on the ordering
+     * values rather than by skipping rows. The ordering must be unique.
+     *
+     * @see #HINT_KEYSET_PAGE_SIZE
+     * @since 4.1.1
+     */
+    String HINT_KEYSET_AFTER = "openjpa.hint.KeysetAfter";
+
+    /**
+     * An integer directive to read the results of a query in pages of the
+     * given size, each page selecting the results that come after the last
+     * result of the previous page in the ordering of the query. The ordering
+     * must be unique.
+     *
+     * @see #HINT_KEYSET_AFTER
+     * @since 4.1.1
+     */
+    String HINT_KEYSET_PAGE_SIZE = "openjpa.hint.KeysetPageSize";
+
+    /**
+     * A boolean directive to read the results of a query that are loaded on
+     * demand through a forward-only cursor on the server, a fetch batch of
+     * rows at a time. Results read through the cursor are not kept by the
+     * query, so that memory does not grow with the number of results.
+     *
+     * @since 4.1.1
+     */
+    String HINT_STREAM_RESULTS = "openjpa.hint.StreamResults";
+
+    /**
+     * A boolean directive to detach each result of a query read through a
+     * result stream once the stream has moved past it, unless the result
+     * has been changed or was managed before the query was executed. Only
+     * applies when the results are streamed.
+     *
+     * @see #HINT_STREAM_RESULTS
+     * @since 4.1.1
+     */
+    String HINT_DETACH_STREAMED_RESULTS = "openjpa.hint.DetachStreamedResults";
 }
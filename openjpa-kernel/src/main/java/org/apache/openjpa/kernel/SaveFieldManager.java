@@ -22,6 +22,7 @@ import java.io.IOException;
 import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
 import java.io.Serializable;
+import java.util.Arrays;
 import java.util.BitSet;
 import java.util.Collection;
 import java.util.Date;
@@ -34,6 +35,9 @@ import org.apache.openjpa.util.ProxyManager;
 
 /**
  * FieldManager type used to store information for rollback.
+ * The original values of the first fields saved are kept on their own, and
+ * an image of the instance is only created to hold them once more than an
+ * eighth of the fields are saved, or when the image is asked for.
  *
  * @author Abe White
  */
@@ -44,11 +48,17 @@ public class SaveFieldManager
     
     private static final long serialVersionUID = 1L;
     private final StateManagerImpl _sm;
-    private final BitSet _unloaded;
-    private BitSet _saved = null;
+    private BitSet _unloaded = null;
+    private long[] _saved = null;
     private int[] _copyField = null;
     private transient PersistenceCapable _state = null;
 
+    // original values of the saved fields while there is no image; they
+    // are moved to the image before this manager is serialized
+    private transient int[] _savedFields = null;
+    private transient Object[] _savedValues = null;
+    private transient int _savedCount = 0;
+
     // used to track field value during store/fetch cycle
     private Object _field = null;
 
@@ -64,9 +74,8 @@ public class SaveFieldManager
         // otherwise, we need to record already-dirty persistent fields as
         // ones we won't be able to restore
         FieldMetaData[] fields = _sm.getMetaData().getFields();
-        if (_sm.isNew() || !_sm.isPersistent() || dirty == null)
-            _unloaded = new BitSet(fields.length);
-        else {
+        if (!_sm.isNew() && _sm.isPersistent() && dirty != null
+            && !dirty.isEmpty()) {
             _unloaded = (BitSet) dirty.clone();
             for (int i = 0; i < fields.length; i++)
                 if (fields[i].getManagement() != FieldMetaData.MANAGE_PERSISTENT)
@@ -78,6 +87,8 @@ public class SaveFieldManager
      * Return the persistence capable copy holding the rollback field values.
      */
     public PersistenceCapable getState() {
+        if (_state == null && _savedCount > 0)
+            createState();
         return _state;
     }
 
@@ -85,9 +96,62 @@ public class SaveFieldManager
      * Return the currently-loaded fields that will be unloaded after rollback.
      */
     public BitSet getUnloaded() {
+        if (_unloaded == null)
+            _unloaded = new BitSet(_sm.getMetaData().getFields().length);
         return _unloaded;
     }
 
+    /**
+     * Whether the given field will be unloaded after rollback.
+     */
+    boolean isUnloaded(int field) {
+        return _unloaded != null && _unloaded.get(field);
+    }
+
+    /**
+     * Whether the original value of the given field is saved.
+     */
+    private boolean isSaved(int field) {
+        return _saved != null && (_saved[field >>> 6] & (1L << field)) != 0;
+    }
+
+    private void setSaved(int field, boolean saved) {
+        if (_saved == null)
+            _saved = new long[(_sm.getMetaData().getFields().length + 63)
+                >>> 6];
+        if (saved)
+            _saved[field >>> 6] |= 1L << field;
+        else
+            _saved[field >>> 6] &= ~(1L << field);
+    }
+
+    /**
+     * Return the saved original value of the given field while there is
+     * no image.
+     */
+    private Object getSavedValue(int field) {
+        for (int i = 0; i < _savedCount; i++)
+            if (_savedFields[i] == field)
+                return _savedValues[i];
+        return null;
+    }
+
+    /**
+     * Create the image holding the saved field values, and move the values
+     * saved so far to it.
+     */
+    private void createState() {
+        _state = _sm.getPersistenceCapable().pcNewInstance(_sm, true);
+        for (int i = 0; i < _savedCount; i++) {
+            _field = _savedValues[i];
+            _sm.replaceField(_state, this, _savedFields[i]);
+        }
+        _field = null;
+        _savedFields = null;
+        _savedValues = null;
+        _savedCount = 0;
+    }
+
     /**
      * Save the given field. If this method returns true, then you need
      * to use this field manager to replace the given field in the instance
@@ -96,12 +160,12 @@ public class SaveFieldManager
     public boolean saveField(int field) {
         // if not loaded we can't save orig value; mark as unloaded on rollback
         if (_sm.getLoaded() != null && !_sm.getLoaded().get(field)) {
-            _unloaded.set(field);
+            getUnloaded().set(field);
             return false;
         }
 
         // already saved?
-        if (_saved != null && _saved.get(field))
+        if (isSaved(field))
             return false;
 
         FieldMetaData fmd = _sm.getMetaData().getField(field);
@@ -124,18 +188,38 @@ public class SaveFieldManager
             int restore = _sm.getBroker().getRestoreState();
             if (restore == RestoreState.RESTORE_NONE
                 || (mutable && restore == RestoreState.RESTORE_IMMUTABLE)) {
-                _unloaded.set(field);
+                getUnloaded().set(field);
                 return false;
             }
         }
 
+        setSaved(field, true);
+
+        // keep the value on its own until enough fields are saved to make
+        // an image of the instance the smaller choice
+        if (_state == null && _savedCount
+            < (_sm.getMetaData().getFields().length >>> 3)) {
+            _sm.provideField(_sm.getPersistenceCapable(), this, field);
+            if (isSaved(field)) {
+                if (_savedFields == null) {
+                    _savedFields = new int[2];
+                    _savedValues = new Object[2];
+                } else if (_savedCount == _savedFields.length) {
+                    _savedFields = Arrays.copyOf(_savedFields,
+                        _savedCount * 2);
+                    _savedValues = Arrays.copyOf(_savedValues,
+                        _savedCount * 2);
+                }
+                _savedFields[_savedCount] = field;
+                _savedValues[_savedCount++] = _field;
+            }
+            _field = null;
+            return false;
+        }
+
         // prepare to save the field
         if (_state == null)
-            _state = _sm.getPersistenceCapable().pcNewInstance(_sm, true);
-        if (_saved == null)
-            _saved = new BitSet(_sm.getMetaData().getFields().length);
-
-        _saved.set(field);
+            createState();
 
         // if mutable, return true to indicate that the field needs to be
         // copied by providing and replacing it using this field manager
@@ -158,14 +242,22 @@ public class SaveFieldManager
     public boolean restoreField(int field) {
         // if the given field needs to be unloaded, return true so that it gets
         // replaced with a default value
-        if (_unloaded.get(field))
+        if (isUnloaded(field)) {
+            _field = null;
             return true;
+        }
 
         // if the field was not saved, it must not have gotten dirty; just
         // return false so that the current value is kept
-        if (_saved == null || !_saved.get(field))
+        if (!isSaved(field))
             return false;
 
+        // return true so that the saved value gets replaced from this manager
+        if (_state == null) {
+            _field = getSavedValue(field);
+            return true;
+        }
+
         // copy the saved field over
         if (_copyField == null)
             _copyField = new int[1];
@@ -181,8 +273,12 @@ public class SaveFieldManager
      */
     public boolean isFieldEqual(int field, Object current) {
         // if the field is not available, assume that it has changed.
-        if (_saved == null || !_saved.get(field))
+        if (!isSaved(field))
             return false;
+        if (_state == null) {
+            Object old = getSavedValue(field);
+            return current == old || current != null && current.equals(old);
+        }
         if (!(getState().pcGetStateManager() instanceof StateManagerImpl))
             return false;
 
@@ -229,12 +325,106 @@ public class SaveFieldManager
 
         // if we couldn't get a copy of the sco, act like it wasn't saved
         if (curVal != null && _field == null) {
-            _unloaded.set(field);
-            _saved.clear(field);
+            getUnloaded().set(field);
+            setSaved(field, false);
 		}
 	}
 
+    @Override
+    public boolean fetchBooleanField(int field) {
+        return _field != null && (Boolean) _field;
+    }
+
+    @Override
+    public byte fetchByteField(int field) {
+        return (_field == null) ? 0 : (Byte) _field;
+    }
+
+    @Override
+    public char fetchCharField(int field) {
+        return (_field == null) ? 0 : (Character) _field;
+    }
+
+    @Override
+    public double fetchDoubleField(int field) {
+        return (_field == null) ? 0 : (Double) _field;
+    }
+
+    @Override
+    public float fetchFloatField(int field) {
+        return (_field == null) ? 0 : (Float) _field;
+    }
+
+    @Override
+    public int fetchIntField(int field) {
+        return (_field == null) ? 0 : (Integer) _field;
+    }
+
+    @Override
+    public long fetchLongField(int field) {
+        return (_field == null) ? 0 : (Long) _field;
+    }
+
+    @Override
+    public short fetchShortField(int field) {
+        return (_field == null) ? 0 : (Short) _field;
+    }
+
+    @Override
+    public String fetchStringField(int field) {
+        return (String) _field;
+    }
+
+    @Override
+    public void storeBooleanField(int field, boolean curVal) {
+        _field = curVal;
+    }
+
+    @Override
+    public void storeByteField(int field, byte curVal) {
+        _field = curVal;
+    }
+
+    @Override
+    public void storeCharField(int field, char curVal) {
+        _field = curVal;
+    }
+
+    @Override
+    public void storeDoubleField(int field, double curVal) {
+        _field = curVal;
+    }
+
+    @Override
+    public void storeFloatField(int field, float curVal) {
+        _field = curVal;
+    }
+
+    @Override
+    public void storeIntField(int field, int curVal) {
+        _field = curVal;
+    }
+
+    @Override
+    public void storeLongField(int field, long curVal) {
+        _field = curVal;
+    }
+
+    @Override
+    public void storeShortField(int field, short curVal) {
+        _field = curVal;
+    }
+
+    @Override
+    public void storeStringField(int field, String curVal) {
+        _field = curVal;
+    }
+
     private void writeObject(ObjectOutputStream oos) throws IOException {
+        // write the saved values as part of the image, the same way as
+        // the instance
+        if (_state == null && _savedCount > 0)
+            createState();
         oos.defaultWriteObject();
         _sm.writePC(oos, _state);
     }
@@ -221,10 +221,13 @@ public class StateManagerImpl implements OpenJPAStateManager, Serializable {
         _pc.pcReplaceStateManager(this);
         _state = newState;
 
-        // clone the field bitsets.
-        _dirty=(BitSet)sm.getDirty().clone();
+        // clone the field bitsets, leaving those not created yet to be
+        // created when needed
+        if (sm._dirty != null)
+            _dirty = (BitSet) sm._dirty.clone();
         _loaded = (BitSet)sm.getLoaded().clone();
-        _flush = (BitSet) sm.getFlushed().clone();
+        if (sm._flush != null)
+            _flush = (BitSet) sm._flush.clone();
         _version = sm.getVersion();
 
         _oid = sm.getObjectId();
@@ -1019,7 +1022,7 @@ public class StateManagerImpl implements OpenJPAStateManager, Serializable {
                 return fetchField(field, false);
 
             // if the field is dirty but we never loaded it, we can't restore it
-            if (_saved.getUnloaded().get(field))
+            if (_saved.isUnloaded(field))
                 throw new InvalidStateException(_loc.get("initial-unloaded",
                     fmd));
 
@@ -1132,7 +1135,7 @@ public class StateManagerImpl implements OpenJPAStateManager, Serializable {
 
             // all dirty fields were flushed, we are referencing the _dirty BitSet directly here
             // because we don't want to instantiate it if we don't have to.
-            if (_dirty != null) {
+            if (hasDirtyFields()) {
                 getFlushed().or(_dirty);
             }
 
@@ -3027,7 +3030,7 @@ public class StateManagerImpl implements OpenJPAStateManager, Serializable {
             // record a saved field manager even if no field is currently loaded
             // as existence of a SaveFieldManager is critical for a dirty check
             if (_saved == null)
-                _saved = new SaveFieldManager(this, getPersistenceCapable(), getDirty());
+                _saved = new SaveFieldManager(this, getPersistenceCapable(), _dirty);
         }
     }
 
@@ -3050,7 +3053,7 @@ public class StateManagerImpl implements OpenJPAStateManager, Serializable {
         // save the old field value anyway
         if (_saved == null) {
             if (_loaded.get(field))
-                _saved = new SaveFieldManager(this, null, getDirty());
+                _saved = new SaveFieldManager(this, null, _dirty);
             else
                 return;
         }
@@ -3685,6 +3688,13 @@ public class StateManagerImpl implements OpenJPAStateManager, Serializable {
         return _dirty.get(index);
     }
 
+    /**
+     * Whether any field is dirty, without creating the dirty set.
+     */
+    boolean hasDirtyFields() {
+        return _dirty != null && !_dirty.isEmpty();
+    }
+
     private void setFieldDirty(int index) {
         getDirty().set(index);
     }
@@ -20,6 +20,7 @@ package org.apache.openjpa.kernel;
 
 import java.util.BitSet;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.Iterator;
 import java.util.List;
 
@@ -268,6 +269,21 @@ public interface StoreContext {
      */
     Collection<Object> getManagedObjects();
 
+    /**
+     * Return up to the given number of clean managed instances of the type
+     * of the given instance, other than the given instance, that have not
+     * loaded the given field. Unlike {@link #getManagedObjects}, the managed
+     * instances are not copied. Used to load a field of several instances
+     * at once. Returns an empty list by default, in which case the field
+     * is loaded for the given instance alone.
+     *
+     * @since 4.1.1
+     */
+    default List<OpenJPAStateManager> getUnloadedStates(OpenJPAStateManager sm,
+        int field, int max) {
+        return Collections.emptyList();
+    }
+
     /**
      * Return a list of current transaction instances.
      */
@@ -19,6 +19,8 @@
 package org.apache.openjpa.meta;
 
 import java.io.Serializable;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
 import java.security.AccessController;
 import java.security.PrivilegedActionException;
 import java.util.ArrayList;
@@ -33,7 +35,9 @@ import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
 import java.util.TreeSet;
+import java.util.concurrent.Callable;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
 
 import org.apache.openjpa.conf.OpenJPAConfiguration;
 import org.apache.openjpa.enhance.DynamicPersistenceCapable;
@@ -158,8 +162,22 @@ public class MetaDataRepository implements PCRegistry.RegisterClassListener, Con
     protected boolean _preload = false;
     protected boolean _preloadComplete = false;
     protected boolean _locking = true;
+    protected int _preloadThreads = 0;
     private static final String PRELOAD_STR = "Preload";
 
+    // phases whose time is measured while preloading
+    private static final int PHASE_LOAD = 0;
+    private static final int PHASE_PARSE = 1;
+    private static final int PHASE_RESOLVE = 2;
+    private static final int PHASE_MAPPING = 3;
+    private transient long[] _phaseTimes = null;
+    private transient int _phase = -1;
+    private transient long _phaseStart = 0;
+
+    // persistent types by class loader while preloading, when they cannot
+    // change; mapping each class would otherwise load all of them again
+    private transient Map<ClassLoader, List<Class<?>>> _preloadTypes = null;
+
     // A boolean used to decide whether or not we need to call to PCEnhancer to check whether we have any down level
     // Entities.
     private boolean _logEnhancementLevel = true;
@@ -308,6 +326,28 @@ public class MetaDataRepository implements PCRegistry.RegisterClassListener, Con
         _preload = l;
     }
 
+    /**
+     * The number of threads that load the persistent classes when the
+     * repository is preloaded. Defaults to 0, for the number of available
+     * processors.
+     *
+     * @since 4.1.1
+     */
+    public int getPreloadThreads() {
+        return _preloadThreads;
+    }
+
+    /**
+     * The number of threads that load the persistent classes when the
+     * repository is preloaded. Use 1 to load them on the calling thread
+     * only.
+     *
+     * @since 4.1.1
+     */
+    public void setPreloadThreads(int threads) {
+        _preloadThreads = threads;
+    }
+
 
      /**
      * If the openjpa.MetaDataRepository plugin value Preload=true is set, this method will load all
@@ -345,28 +385,54 @@ public class MetaDataRepository implements PCRegistry.RegisterClassListener, Con
             _log.trace(_loc.get("repos-initializeEager-found", classes));
         }
 
-        List<Class<?>> loaded = new ArrayList<>();
-        for (String c : classes) {
-            try {
-                Class<?> cls = AccessController.doPrivileged((J2DoPrivHelper.getForNameAction(c, true, multi)));
-                loaded.add(cls);
-                // This call may be unnecessary?
-                _factory.load(cls, MODE_ALL, multi);
-            } catch (PrivilegedActionException pae) {
-                throw new MetaDataException(_loc.get("repos-initializeEager-error"), pae);
-            }
-        }
-        resolveAll(multi);
-
-        // Preload XML MetaData
-        for (Class<?> cls : loaded) {
-            ClassMetaData cmd = getCachedMetaData(cls);
-            if (cmd != null) {
-                getXMLMetaData(cls);
-                for (FieldMetaData fmd : cmd.getFields()) {
-                    getXMLMetaData(fmd.getDeclaredType());
+        long start = System.nanoTime();
+        _phaseTimes = new long[PHASE_MAPPING + 1];
+        _preloadTypes = new HashMap<>();
+        try {
+            enterPhase(PHASE_LOAD);
+            int threads = readClasses(classes, multi);
+
+            List<Class<?>> loaded = new ArrayList<>();
+            for (String c : classes) {
+                try {
+                    enterPhase(PHASE_LOAD);
+                    Class<?> cls = AccessController.doPrivileged((J2DoPrivHelper.getForNameAction(c, true, multi)));
+                    loaded.add(cls);
+                    // This call may be unnecessary?
+                    enterPhase(PHASE_PARSE);
+                    _factory.load(cls, MODE_ALL, multi);
+                } catch (PrivilegedActionException pae) {
+                    throw new MetaDataException(_loc.get("repos-initializeEager-error"), pae);
+                }
+            }
+            enterPhase(PHASE_RESOLVE);
+            resolveAll(multi);
+
+            // Preload XML MetaData
+            enterPhase(PHASE_PARSE);
+            for (Class<?> cls : loaded) {
+                ClassMetaData cmd = getCachedMetaData(cls);
+                if (cmd != null) {
+                    getXMLMetaData(cls);
+                    for (FieldMetaData fmd : cmd.getFields()) {
+                        getXMLMetaData(fmd.getDeclaredType());
+                    }
                 }
             }
+            enterPhase(-1);
+
+            if (_log.isInfoEnabled()) {
+                _log.info(_loc.get("repos-preload-times", new Object[] {
+                    loaded.size(), toMillis(System.nanoTime() - start),
+                    toMillis(_phaseTimes[PHASE_LOAD]), threads,
+                    toMillis(_phaseTimes[PHASE_PARSE]),
+                    toMillis(_phaseTimes[PHASE_RESOLVE]),
+                    toMillis(_phaseTimes[PHASE_MAPPING]) }));
+            }
+        } finally {
+            _phaseTimes = null;
+            _phase = -1;
+            _preloadTypes = null;
         }
 
         // Hook in this class as a listener and process registered classes list to populate _aliases
@@ -378,6 +444,75 @@ public class MetaDataRepository implements PCRegistry.RegisterClassListener, Con
     }
 
 
+    /**
+     * Read the given classes and the reflection data that the metadata
+     * parsers use on a pool of threads, so that parsing finds them in the
+     * caches of the JVM. The classes are not initialized, so their static
+     * initializers still run one at a time and in order when the classes
+     * are parsed. Classes that fail to load are left for the parse to
+     * report.
+     *
+     * @return the number of threads used
+     */
+    private int readClasses(Set<String> classes, final ClassLoader loader) {
+        int threads = (_preloadThreads > 0) ? _preloadThreads : Runtime.getRuntime().availableProcessors();
+        threads = Math.min(threads, classes.size());
+        if (threads <= 1) {
+            return 1;
+        }
+
+        List<Callable<Object>> tasks = new ArrayList<>(classes.size());
+        for (final String c : classes) {
+            tasks.add(() -> {
+                try {
+                    Class<?> cls = AccessController.doPrivileged(J2DoPrivHelper.getForNameAction(c, false, loader));
+                    cls.getDeclaredAnnotations();
+                    for (Field f : AccessController.doPrivileged(J2DoPrivHelper.getDeclaredFieldsAction(cls))) {
+                        f.getDeclaredAnnotations();
+                    }
+                    for (Method m : AccessController.doPrivileged(J2DoPrivHelper.getDeclaredMethodsAction(cls))) {
+                        m.getDeclaredAnnotations();
+                    }
+                } catch (PrivilegedActionException | RuntimeException | LinkageError e) {
+                    // reported when the class is parsed
+                }
+                return null;
+            });
+        }
+
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        try {
+            pool.invokeAll(tasks);
+        } finally {
+            pool.shutdown();
+        }
+        return threads;
+    }
+
+    /**
+     * Charge the time since the last phase change to the current preload
+     * phase, and enter the given phase. Does nothing unless preloading.
+     *
+     * @return the phase that was left
+     */
+    private int enterPhase(int phase) {
+        if (_phaseTimes == null) {
+            return phase;
+        }
+        long now = System.nanoTime();
+        if (_phase != -1) {
+            _phaseTimes[_phase] += now - _phaseStart;
+        }
+        int left = _phase;
+        _phase = phase;
+        _phaseStart = now;
+        return left;
+    }
+
+    private static long toMillis(long nanos) {
+        return nanos / 1000000;
+    }
+
     /**
      * Return the metadata for the given class.
      *
@@ -652,25 +787,36 @@ public class MetaDataRepository implements PCRegistry.RegisterClassListener, Con
             return;
 
         // resolve metadata
-        List<ClassMetaData> resolved = resolveMeta(meta);
+        int phase = enterPhase(PHASE_RESOLVE);
+        List<ClassMetaData> resolved;
+        try {
+            resolved = resolveMeta(meta);
+        } finally {
+            enterPhase(phase);
+        }
         if (resolved == null)
             return;
 
-        // load mapping data
-        for (ClassMetaData data : resolved) {
-            loadMapping(data);
-        }
-        for (ClassMetaData metaData : resolved) {
-            preMapping(metaData);
-        }
-
-        // resolve mappings
         boolean err = true;
-        if ((_resMode & MODE_MAPPING) != 0)
-            for (ClassMetaData classMetaData : resolved) {
-                err &= resolveMapping(classMetaData);
+        phase = enterPhase(PHASE_MAPPING);
+        try {
+            // load mapping data
+            for (ClassMetaData data : resolved) {
+                loadMapping(data);
+            }
+            for (ClassMetaData metaData : resolved) {
+                preMapping(metaData);
             }
 
+            // resolve mappings
+            if ((_resMode & MODE_MAPPING) != 0)
+                for (ClassMetaData classMetaData : resolved) {
+                    err &= resolveMapping(classMetaData);
+                }
+        } finally {
+            enterPhase(phase);
+        }
+
         // throw errors encountered
         // OPENJPA-1535 Always throw a MetaDataException because callers
         // of loadRegisteredClassMetaData expect only MetaDataException
@@ -1538,6 +1684,13 @@ public class MetaDataRepository implements PCRegistry.RegisterClassListener, Con
 
     private Collection<Class<?>> loadPersistentTypesInternal(boolean devpath, ClassLoader envLoader,
         boolean mustExist) {
+            boolean cache = _preloadTypes != null && !devpath && !mustExist;
+            if (cache) {
+                List<Class<?>> types = _preloadTypes.get(envLoader);
+                if (types != null)
+                    return new ArrayList<>(types);
+            }
+
             Set<String> names = getPersistentTypeNames(devpath, envLoader);
             if (names == null || names.isEmpty()) {
                 if (!mustExist)
@@ -1570,6 +1723,8 @@ public class MetaDataRepository implements PCRegistry.RegisterClassListener, Con
                     throw new MetaDataException(_loc.get("eager-class-not-found", className));
                 }
             }
+            if (cache)
+                _preloadTypes.put(envLoader, new ArrayList<>(classes));
             return classes;
     }
 
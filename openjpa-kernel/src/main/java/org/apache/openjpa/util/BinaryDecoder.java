@@ -0,0 +1,208 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.openjpa.util;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.openjpa.lib.util.Localizer;
+
+/**
+ * Reads values written by a {@link BinaryEncoder}. Class names are checked
+ * against {@link BlacklistClassResolver#DEFAULT} before they are loaded.
+ *
+ * Instances are not thread safe.
+ *
+ * @since 4.1.1
+ */
+public class BinaryDecoder {
+
+    private static final Localizer _loc = Localizer.forPackage(BinaryDecoder.class);
+
+    private final byte[] _buf;
+    private final int _limit;
+    private final ClassLoader _loader;
+    private int _pos;
+    private List<Class<?>> _classes = null;
+
+    /**
+     * Constructor; supply the bytes to read and the loader for class names.
+     */
+    public BinaryDecoder(byte[] buf, ClassLoader loader) {
+        this(buf, 0, buf.length, loader);
+    }
+
+    public BinaryDecoder(byte[] buf, int off, int len, ClassLoader loader) {
+        _buf = buf;
+        _pos = off;
+        _limit = off + len;
+        _loader = loader;
+    }
+
+    /**
+     * Number of bytes left to read.
+     */
+    public int remaining() {
+        return _limit - _pos;
+    }
+
+    private void require(int len) {
+        if (len < 0 || _pos + len > _limit)
+            throw new StoreException(_loc.get("binary-underflow", len, remaining()));
+    }
+
+    public byte readByte() {
+        require(1);
+        return _buf[_pos++];
+    }
+
+    public boolean readBoolean() {
+        return readByte() != 0;
+    }
+
+    public void readBytes(byte[] bytes, int off, int len) {
+        require(len);
+        System.arraycopy(_buf, _pos, bytes, off, len);
+        _pos += len;
+    }
+
+    /**
+     * Read a length-prefixed byte array.
+     */
+    public byte[] readByteArray() {
+        int len = readVarInt();
+        // check the length before allocating, as it may be forged
+        require(len);
+        byte[] bytes = new byte[len];
+        readBytes(bytes, 0, len);
+        return bytes;
+    }
+
+    public int readVarInt() {
+        int v = 0;
+        for (int shift = 0; shift < 35; shift += 7) {
+            byte b = readByte();
+            v |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0)
+                return v;
+        }
+        throw new StoreException(_loc.get("binary-bad-varint"));
+    }
+
+    public long readVarLong() {
+        long v = 0;
+        for (int shift = 0; shift < 70; shift += 7) {
+            byte b = readByte();
+            v |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0)
+                return v;
+        }
+        throw new StoreException(_loc.get("binary-bad-varint"));
+    }
+
+    public int readSignedVarInt() {
+        int v = readVarInt();
+        return (v >>> 1) ^ -(v & 1);
+    }
+
+    public long readSignedVarLong() {
+        long v = readVarLong();
+        return (v >>> 1) ^ -(v & 1);
+    }
+
+    public long readLong() {
+        require(8);
+        long v = 0;
+        for (int i = 0; i < 8; i++)
+            v = (v << 8) | (_buf[_pos++] & 0xFF);
+        return v;
+    }
+
+    public int readInt() {
+        require(4);
+        int v = 0;
+        for (int i = 0; i < 4; i++)
+            v = (v << 8) | (_buf[_pos++] & 0xFF);
+        return v;
+    }
+
+    public String readString() {
+        int len = readVarInt();
+        if (len == 0)
+            return null;
+        len--;
+        require(len);
+        String s = new String(_buf, _pos, len, StandardCharsets.UTF_8);
+        _pos += len;
+        return s;
+    }
+
+    public Class<?> readClass() {
+        int idx = readVarInt();
+        if (idx == 0)
+            return null;
+        if (_classes == null)
+            _classes = new ArrayList<>();
+        if (idx <= _classes.size())
+            return _classes.get(idx - 1);
+        if (idx != _classes.size() + 1)
+            throw new StoreException(_loc.get("binary-bad-class-ref", idx));
+
+        String name = BlacklistClassResolver.DEFAULT.check(readString());
+        try {
+            Class<?> cls = Class.forName(name, false, _loader);
+            _classes.add(cls);
+            return cls;
+        } catch (ClassNotFoundException cnfe) {
+            throw new StoreException(cnfe);
+        }
+    }
+
+    /**
+     * Read an object id written by {@link BinaryEncoder#writeObjectId}.
+     */
+    public Object readObjectId() {
+        byte type = readByte();
+        boolean subs = (type & BinaryEncoder.ID_SUBCLASSES) != 0;
+        switch (type & ~BinaryEncoder.ID_SUBCLASSES) {
+            case BinaryEncoder.ID_NULL:
+                return null;
+            case BinaryEncoder.ID_LONG:
+                return new LongId(readClass(), readSignedVarLong(), subs);
+            case BinaryEncoder.ID_INT:
+                return new IntId(readClass(), readSignedVarInt(), subs);
+            case BinaryEncoder.ID_STRING:
+                return new StringId(readClass(), readString(), subs);
+            case BinaryEncoder.ID_SERIALIZED:
+                return readSerialized();
+            default:
+                throw new StoreException(_loc.get("binary-bad-tag", type));
+        }
+    }
+
+    /**
+     * Read a value written with Java serialization.
+     */
+    public Object readSerialized() {
+        byte[] bytes = readByteArray();
+        return Serialization.deserialize(new ByteArrayInputStream(bytes), null);
+    }
+}
@@ -0,0 +1,266 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.openjpa.util;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Growable byte buffer with compact encodings for the values OpenJPA
+ * moves between caches and cluster nodes: variable-length integers,
+ * UTF-8 strings, classes and the common {@link OpenJPAId} types.
+ * Classes are interned per encoder: the first occurrence of a class writes
+ * its name, later occurrences only write its index. The output can only be
+ * read by a {@link BinaryDecoder} that reads the same sequence of values.
+ *
+ * Instances are not thread safe.
+ *
+ * @since 4.1.1
+ */
+public class BinaryEncoder {
+
+    /**
+     * Object id type codes.
+     */
+    public static final byte ID_NULL = 0;
+    public static final byte ID_LONG = 1;
+    public static final byte ID_INT = 2;
+    public static final byte ID_STRING = 3;
+    public static final byte ID_SERIALIZED = 4;
+
+    /**
+     * Flag added to the type code of ids that include subclasses.
+     */
+    public static final byte ID_SUBCLASSES = 0x10;
+
+    private byte[] _buf;
+    private int _size = 0;
+    private Map<Class<?>, Integer> _classes = null;
+
+    public BinaryEncoder() {
+        this(256);
+    }
+
+    public BinaryEncoder(int capacity) {
+        _buf = new byte[Math.max(capacity, 16)];
+    }
+
+    /**
+     * Number of bytes written.
+     */
+    public int size() {
+        return _size;
+    }
+
+    /**
+     * Discard all written bytes and interned classes.
+     */
+    public void reset() {
+        _size = 0;
+        if (_classes != null)
+            _classes.clear();
+    }
+
+    /**
+     * Copy of the written bytes.
+     */
+    public byte[] toByteArray() {
+        byte[] bytes = new byte[_size];
+        System.arraycopy(_buf, 0, bytes, 0, _size);
+        return bytes;
+    }
+
+    /**
+     * Write the encoded bytes to the given buffer at its current position.
+     */
+    public void writeTo(ByteBuffer buf) {
+        buf.put(_buf, 0, _size);
+    }
+
+    /**
+     * Write the encoded bytes to the given stream.
+     */
+    public void writeTo(OutputStream out)
+        throws IOException {
+        out.write(_buf, 0, _size);
+    }
+
+    private void ensureCapacity(int extra) {
+        int required = _size + extra;
+        if (required > _buf.length) {
+            byte[] buf = new byte[Math.max(required, _buf.length << 1)];
+            System.arraycopy(_buf, 0, buf, 0, _size);
+            _buf = buf;
+        }
+    }
+
+    public void writeByte(int b) {
+        ensureCapacity(1);
+        _buf[_size++] = (byte) b;
+    }
+
+    public void writeBoolean(boolean b) {
+        writeByte(b ? 1 : 0);
+    }
+
+    public void writeBytes(byte[] bytes, int off, int len) {
+        ensureCapacity(len);
+        System.arraycopy(bytes, off, _buf, _size, len);
+        _size += len;
+    }
+
+    /**
+     * Write a length-prefixed byte array.
+     */
+    public void writeByteArray(byte[] bytes) {
+        writeVarInt(bytes.length);
+        writeBytes(bytes, 0, bytes.length);
+    }
+
+    /**
+     * Write a non-negative int in 1 to 5 bytes.
+     */
+    public void writeVarInt(int v) {
+        ensureCapacity(5);
+        while ((v & ~0x7F) != 0) {
+            _buf[_size++] = (byte) ((v & 0x7F) | 0x80);
+            v >>>= 7;
+        }
+        _buf[_size++] = (byte) v;
+    }
+
+    /**
+     * Write a non-negative long in 1 to 10 bytes.
+     */
+    public void writeVarLong(long v) {
+        ensureCapacity(10);
+        while ((v & ~0x7FL) != 0) {
+            _buf[_size++] = (byte) ((v & 0x7F) | 0x80);
+            v >>>= 7;
+        }
+        _buf[_size++] = (byte) v;
+    }
+
+    /**
+     * Write an int of any sign, using few bytes for small magnitudes.
+     */
+    public void writeSignedVarInt(int v) {
+        writeVarInt((v << 1) ^ (v >> 31));
+    }
+
+    /**
+     * Write a long of any sign, using few bytes for small magnitudes.
+     */
+    public void writeSignedVarLong(long v) {
+        writeVarLong((v << 1) ^ (v >> 63));
+    }
+
+    public void writeLong(long v) {
+        ensureCapacity(8);
+        for (int shift = 56; shift >= 0; shift -= 8)
+            _buf[_size++] = (byte) (v >>> shift);
+    }
+
+    public void writeInt(int v) {
+        ensureCapacity(4);
+        for (int shift = 24; shift >= 0; shift -= 8)
+            _buf[_size++] = (byte) (v >>> shift);
+    }
+
+    /**
+     * Write a possibly null string as UTF-8.
+     */
+    public void writeString(String s) {
+        if (s == null) {
+            writeVarInt(0);
+            return;
+        }
+        byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+        writeVarInt(bytes.length + 1);
+        writeBytes(bytes, 0, bytes.length);
+    }
+
+    /**
+     * Write a possibly null class, interning its name.
+     */
+    public void writeClass(Class<?> cls) {
+        if (cls == null) {
+            writeVarInt(0);
+            return;
+        }
+        if (_classes == null)
+            _classes = new HashMap<>();
+        Integer idx = _classes.get(cls);
+        if (idx != null) {
+            writeVarInt(idx);
+            return;
+        }
+        idx = _classes.size() + 1;
+        _classes.put(cls, idx);
+        writeVarInt(idx);
+        writeString(cls.getName());
+    }
+
+    /**
+     * Write an object id. {@link LongId}, {@link IntId} and
+     * {@link StringId} instances are written compactly; other ids are
+     * serialized.
+     */
+    public void writeObjectId(Object oid) {
+        if (oid == null) {
+            writeByte(ID_NULL);
+        } else if (oid instanceof LongId) {
+            writeIdType(ID_LONG, (OpenJPAId) oid);
+            writeSignedVarLong(((LongId) oid).getId());
+        } else if (oid instanceof IntId) {
+            writeIdType(ID_INT, (OpenJPAId) oid);
+            writeSignedVarInt(((IntId) oid).getId());
+        } else if (oid instanceof StringId) {
+            writeIdType(ID_STRING, (OpenJPAId) oid);
+            writeString(((StringId) oid).getId());
+        } else {
+            writeByte(ID_SERIALIZED);
+            writeSerialized(oid);
+        }
+    }
+
+    private void writeIdType(byte type, OpenJPAId oid) {
+        writeByte(oid.hasSubclasses() ? type | ID_SUBCLASSES : type);
+        writeClass(oid.getType());
+    }
+
+    /**
+     * Write a value using Java serialization.
+     */
+    public void writeSerialized(Object val) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+            out.writeObject(val);
+        } catch (IOException ioe) {
+            throw new StoreException(ioe);
+        }
+        writeByteArray(bytes.toByteArray());
+    }
+}
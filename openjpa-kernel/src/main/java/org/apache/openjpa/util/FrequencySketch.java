@@ -0,0 +1,127 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.openjpa.util;
+
+/**
+ * Count-min sketch of 4-bit counters used to estimate how often a key has
+ * been seen recently. Each key maps to four counters spread over the
+ * table; its estimate is the smallest of them. Once the number of
+ * recorded increments reaches ten times the table capacity, all counters
+ * are halved so that the estimates favor recent history.
+ *
+ * Instances are not thread safe.
+ *
+ * @since 4.1.1
+ */
+public class FrequencySketch {
+
+    private static final long[] SEED = {
+        0xc3a5c85c97cb3127L, 0xb492b66fbe98f273L,
+        0x9ae16a3b2f90404fL, 0xcbf29ce484222325L,
+    };
+    private static final long RESET_MASK = 0x7777777777777777L;
+    private static final long ONE_MASK = 0x1111111111111111L;
+
+    private long[] _table = new long[1];
+    private int _tableMask = 0;
+    private int _sampleSize = 10;
+    private int _size = 0;
+
+    /**
+     * Size the sketch for a cache of the given maximum size. Existing
+     * counts are discarded if the table grows.
+     */
+    public void ensureCapacity(int maximumSize) {
+        int max = Math.min(Math.max(maximumSize, 1), 1 << 30);
+        if (_table.length >= max)
+            return;
+        int length = 1;
+        while (length < max)
+            length <<= 1;
+        _table = new long[length];
+        _tableMask = length - 1;
+        _sampleSize = (max > Integer.MAX_VALUE / 10) ? Integer.MAX_VALUE : 10 * max;
+        _size = 0;
+    }
+
+    /**
+     * Return the estimated number of occurrences of the given key, up to 15.
+     */
+    public int frequency(Object key) {
+        int hash = spread(key.hashCode());
+        int start = (hash & 3) << 2;
+        int frequency = Integer.MAX_VALUE;
+        for (int i = 0; i < 4; i++) {
+            int index = indexOf(hash, i);
+            int count = (int) ((_table[index] >>> ((start + i) << 2)) & 0xfL);
+            frequency = Math.min(frequency, count);
+        }
+        return frequency;
+    }
+
+    /**
+     * Record an occurrence of the given key.
+     */
+    public void increment(Object key) {
+        int hash = spread(key.hashCode());
+        int start = (hash & 3) << 2;
+        boolean added = false;
+        for (int i = 0; i < 4; i++)
+            added |= incrementAt(indexOf(hash, i), start + i);
+        if (added && ++_size >= _sampleSize)
+            reset();
+    }
+
+    /**
+     * Increment the given 4-bit counter of the given table slot unless it
+     * is saturated.
+     */
+    private boolean incrementAt(int index, int counter) {
+        int offset = counter << 2;
+        long mask = 0xfL << offset;
+        if ((_table[index] & mask) == mask)
+            return false;
+        _table[index] += 1L << offset;
+        return true;
+    }
+
+    /**
+     * Halve every counter.
+     */
+    private void reset() {
+        int odd = 0;
+        for (int i = 0; i < _table.length; i++) {
+            odd += Long.bitCount(_table[i] & ONE_MASK);
+            _table[i] = (_table[i] >>> 1) & RESET_MASK;
+        }
+        _size = (_size >>> 1) - (odd >>> 2);
+    }
+
+    private int indexOf(int item, int i) {
+        long hash = (item + SEED[i]) * SEED[i];
+        hash += hash >>> 32;
+        return ((int) hash) & _tableMask;
+    }
+
+    private static int spread(int x) {
+        x = ((x >>> 16) ^ x) * 0x45d9f3b;
+        x = ((x >>> 16) ^ x) * 0x45d9f3b;
+        return (x >>> 16) ^ x;
+    }
+}
@@ -0,0 +1,210 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.openjpa.util;
+
+import org.apache.openjpa.lib.util.Localizer;
+
+/**
+ * Fast compression in the LZ4 block format. The compressor uses a single
+ * hash probe per position, which favors speed over ratio; its output can be
+ * read by any LZ4 block decompressor. Neither the raw length nor a checksum
+ * is recorded, so callers must store the raw length themselves.
+ *
+ * @since 4.1.1
+ */
+public final class LZ4 {
+
+    private static final Localizer _loc = Localizer.forPackage(LZ4.class);
+
+    private static final int MIN_MATCH = 4;
+    private static final int LAST_LITERALS = 5;
+    private static final int MF_LIMIT = 12;
+    private static final int MAX_DISTANCE = 65535;
+    private static final int HASH_BITS = 12;
+
+    private LZ4() {
+    }
+
+    /**
+     * The largest number of bytes that compressing <code>len</code> bytes
+     * may produce.
+     */
+    public static int maxCompressedLength(int len) {
+        return len + len / 255 + 16;
+    }
+
+    /**
+     * Compress the given bytes.
+     */
+    public static byte[] compress(byte[] src, int off, int len) {
+        byte[] dst = new byte[maxCompressedLength(len)];
+        int dlen = compress(src, off, len, dst);
+        byte[] res = new byte[dlen];
+        System.arraycopy(dst, 0, res, 0, dlen);
+        return res;
+    }
+
+    /**
+     * Compress the given bytes into <code>dst</code>, which must hold at
+     * least {@link #maxCompressedLength} bytes.
+     *
+     * @return the number of bytes written
+     */
+    public static int compress(byte[] src, int off, int len, byte[] dst) {
+        int end = off + len;
+        int anchor = off;
+        int dp = 0;
+        if (len >= MF_LIMIT + 1) {
+            int[] table = new int[1 << HASH_BITS];
+            int limit = end - MF_LIMIT;
+            int matchLimit = end - LAST_LITERALS;
+            int ip = off;
+            while (ip < limit) {
+                int seq = readInt(src, ip);
+                int h = (seq * -1640531535) >>> (32 - HASH_BITS);
+                // table entries are offset by one so that 0 means empty
+                int ref = table[h] - 1;
+                table[h] = ip + 1;
+                if (ref < off || ip - ref > MAX_DISTANCE || readInt(src, ref) != seq) {
+                    ip++;
+                    continue;
+                }
+
+                int matchLen = MIN_MATCH;
+                while (ip + matchLen < matchLimit && src[ref + matchLen] == src[ip + matchLen])
+                    matchLen++;
+                dp = writeSequence(src, anchor, ip - anchor, ip - ref, matchLen, dst, dp);
+                ip += matchLen;
+                anchor = ip;
+            }
+        }
+
+        // the last literals have no match
+        int litLen = end - anchor;
+        int token = dp++;
+        dp = writeLength(litLen, dst, dp);
+        dst[token] = (byte) (nibble(litLen) << 4);
+        System.arraycopy(src, anchor, dst, dp, litLen);
+        return dp + litLen;
+    }
+
+    private static int writeSequence(byte[] src, int lit, int litLen, int distance, int matchLen,
+        byte[] dst, int dp) {
+        int token = dp++;
+        dp = writeLength(litLen, dst, dp);
+        System.arraycopy(src, lit, dst, dp, litLen);
+        dp += litLen;
+        dst[dp++] = (byte) distance;
+        dst[dp++] = (byte) (distance >>> 8);
+        dp = writeLength(matchLen - MIN_MATCH, dst, dp);
+        dst[token] = (byte) (nibble(litLen) << 4 | nibble(matchLen - MIN_MATCH));
+        return dp;
+    }
+
+    /**
+     * The part of a length that is stored in the sequence token.
+     */
+    private static int nibble(int len) {
+        return Math.min(len, 15);
+    }
+
+    /**
+     * Write the bytes of a length that do not fit in the token.
+     */
+    private static int writeLength(int len, byte[] dst, int dp) {
+        if (len < 15)
+            return dp;
+        len -= 15;
+        while (len >= 255) {
+            dst[dp++] = (byte) 255;
+            len -= 255;
+        }
+        dst[dp++] = (byte) len;
+        return dp;
+    }
+
+    private static int readInt(byte[] b, int i) {
+        return (b[i] & 0xFF) | (b[i + 1] & 0xFF) << 8 | (b[i + 2] & 0xFF) << 16 | (b[i + 3] & 0xFF) << 24;
+    }
+
+    /**
+     * The largest length the given number of compressed bytes can
+     * decompress to. Each byte of a match length adds at most 255 bytes of
+     * output.
+     */
+    public static int maxDecompressedLength(int len) {
+        return (int) Math.min(Integer.MAX_VALUE, len * 255L);
+    }
+
+    /**
+     * Decompress bytes written by {@link #compress}. The given length of the
+     * uncompressed data is checked against the compressed length before it
+     * is allocated, as it may come from an untrusted peer.
+     *
+     * @param rawLen the length of the uncompressed data
+     */
+    public static byte[] decompress(byte[] src, int off, int len, int rawLen) {
+        if (rawLen < 0 || rawLen > maxDecompressedLength(len))
+            throw new StoreException(_loc.get("lz4-bad-length", rawLen, len));
+        byte[] dst = new byte[rawLen];
+        int end = off + len;
+        int sp = off;
+        int dp = 0;
+        try {
+            while (sp < end) {
+                int token = src[sp++] & 0xFF;
+                int litLen = token >>> 4;
+                if (litLen == 15) {
+                    int b;
+                    do {
+                        b = src[sp++] & 0xFF;
+                        litLen += b;
+                    } while (b == 255);
+                }
+                System.arraycopy(src, sp, dst, dp, litLen);
+                sp += litLen;
+                dp += litLen;
+                if (sp >= end)
+                    break;
+
+                int distance = (src[sp++] & 0xFF) | (src[sp++] & 0xFF) << 8;
+                int matchLen = token & 0x0F;
+                if (matchLen == 15) {
+                    int b;
+                    do {
+                        b = src[sp++] & 0xFF;
+                        matchLen += b;
+                    } while (b == 255);
+                }
+                matchLen += MIN_MATCH;
+                int ref = dp - distance;
+                if (distance == 0 || ref < 0 || dp + matchLen > rawLen)
+                    throw new StoreException(_loc.get("lz4-corrupt"));
+                // copy byte by byte, as the match may overlap its output
+                for (int i = 0; i < matchLen; i++)
+                    dst[dp++] = dst[ref + i];
+            }
+        } catch (IndexOutOfBoundsException e) {
+            throw new StoreException(_loc.get("lz4-corrupt"));
+        }
+        if (dp != rawLen)
+            throw new StoreException(_loc.get("lz4-corrupt"));
+        return dst;
+    }
+}
@@ -0,0 +1,927 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.openjpa.util;
+
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.SoftReference;
+import java.util.AbstractCollection;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Lock-striped {@link CacheMap}. Keys are hashed into a fixed number of
+ * segments, each of which keeps its own hard, soft and pinned maps and
+ * its own eviction order. Reads never lock: hard and pinned entries are
+ * served straight from concurrent maps, and unless entries are evicted in
+ * insertion order, accesses are recorded in a small lossy buffer that is
+ * replayed into the segment's eviction queues by whichever thread next
+ * holds the segment lock. Writes only lock the segment of the key being
+ * written.
+ *
+ * The maximum cache and soft reference sizes are divided evenly among the
+ * segments, so the effective limits are approximate and evictions are
+ * chosen per segment rather than globally. Which entry is evicted depends
+ * on the {@link EvictionPolicy}: insertion order, least recent use, or
+ * W-TinyLFU, which keeps a small LRU admission window in front of a
+ * segmented LRU main area and only lets an entry leaving the window
+ * displace a main entry if a {@link FrequencySketch} estimates that it
+ * has been used more often.
+ *
+ * {@link #readLock} is a no-op and {@link #writeLock} only excludes other
+ * callers of {@link #writeLock}; it does not block concurrent
+ * {@link #get}, {@link #put} or {@link #remove} calls. The
+ * {@link #put(Map, Object, Object)} and {@link #remove(Map, Object)} hooks
+ * of the superclass are not used by this implementation.
+ *
+ * @since 4.1.1
+ */
+public class SegmentedCacheMap
+    extends CacheMap {
+
+    /**
+     * Default number of segments.
+     */
+    public static final int DEFAULT_SEGMENTS = 16;
+
+    // size of the per-segment buffer of pending LRU reads; power of two
+    private static final int READ_BUFFER_SIZE = 16;
+    private static final int READ_BUFFER_MASK = READ_BUFFER_SIZE - 1;
+
+    // stands in for the null key, which the backing maps do not allow
+    private static final Object NULL_KEY = new Object();
+
+    // eviction queues; RANDOM and LRU only use WINDOW
+    private static final int WINDOW = 0;
+    private static final int PROBATION = 1;
+    private static final int PROTECTED = 2;
+
+    /**
+     * How entries are chosen for eviction when a segment overflows.
+     */
+    public enum EvictionPolicy {
+        /**
+         * Evict in insertion order. Reads are not tracked.
+         */
+        RANDOM,
+
+        /**
+         * Evict the least recently used entry.
+         */
+        LRU,
+
+        /**
+         * Window TinyLFU: admit entries into the main area based on their
+         * estimated access frequency. Resists scans that would flush an
+         * LRU cache.
+         */
+        TINYLFU
+    }
+
+    private final Segment[] _segments;
+    private final int _segmentMask;
+    private final EvictionPolicy _policy;
+    private final AtomicInteger _pinnedSize = new AtomicInteger();
+    private final ReentrantLock _lock = new ReentrantLock();
+    private volatile int _maxSize;
+    private volatile int _maxSoft = Integer.MAX_VALUE;
+
+    /**
+     * Create a non-LRU map with a size of 1000 and the default number of
+     * segments.
+     */
+    public SegmentedCacheMap() {
+        this(false, 1000);
+    }
+
+    /**
+     * Create a map with the given properties and the default number of
+     * segments.
+     */
+    public SegmentedCacheMap(boolean lru, int max) {
+        this(lru, max, DEFAULT_SEGMENTS);
+    }
+
+    /**
+     * Create a map with the given properties.
+     *
+     * @param lru whether to evict the least recently used entry of a
+     * segment rather than the oldest one
+     * @param max the maximum number of unpinned hard references, or -1 for
+     * no limit
+     * @param segments the number of lock stripes; rounded up to a power of 2
+     */
+    public SegmentedCacheMap(boolean lru, int max, int segments) {
+        this(lru ? EvictionPolicy.LRU : EvictionPolicy.RANDOM, max, segments);
+    }
+
+    /**
+     * Create a map with the given properties.
+     *
+     * @param policy how to choose overflow entries within a segment
+     * @param max the maximum number of unpinned hard references, or -1 for
+     * no limit
+     * @param segments the number of lock stripes; rounded up to a power of 2
+     */
+    public SegmentedCacheMap(EvictionPolicy policy, int max, int segments) {
+        // the superclass maps are never populated
+        super(policy == EvictionPolicy.LRU, 0, 1, .75F, 1);
+        _policy = policy;
+        int count = 1;
+        while (count < segments)
+            count <<= 1;
+        _segments = new Segment[count];
+        for (int i = 0; i < count; i++)
+            _segments[i] = new Segment();
+        _segmentMask = count - 1;
+        setCacheSize(max);
+    }
+
+    /**
+     * The number of segments in this map.
+     */
+    public int getSegmentCount() {
+        return _segments.length;
+    }
+
+    private Segment segmentFor(Object key) {
+        int h = key.hashCode() * 0x9E3779B9;
+        return _segments[(h ^ (h >>> 16)) & _segmentMask];
+    }
+
+    private static Object maskNull(Object key) {
+        return (key == null) ? NULL_KEY : key;
+    }
+
+    private static Object unmaskNull(Object key) {
+        return (key == NULL_KEY) ? null : key;
+    }
+
+    /**
+     * Divide the given total limit among the segments.
+     */
+    private int perSegment(int max) {
+        if (max == Integer.MAX_VALUE || max == 0)
+            return max;
+        return Math.max(1, (max + _segments.length - 1) / _segments.length);
+    }
+
+    @Override
+    public void readLock() {
+    }
+
+    @Override
+    public void readUnlock() {
+    }
+
+    @Override
+    public void writeLock() {
+        _lock.lock();
+    }
+
+    @Override
+    public void writeUnlock() {
+        _lock.unlock();
+    }
+
+    @Override
+    public boolean isLRU() {
+        return _policy == EvictionPolicy.LRU;
+    }
+
+    /**
+     * The eviction policy of this map.
+     */
+    public EvictionPolicy getEvictionPolicy() {
+        return _policy;
+    }
+
+    @Override
+    public void setCacheSize(int size) {
+        _maxSize = (size < 0) ? Integer.MAX_VALUE : size;
+        int max = perSegment(_maxSize);
+        for (Segment seg : _segments) {
+            seg.lock();
+            try {
+                seg.max = max;
+                if (_policy == EvictionPolicy.TINYLFU && max != Integer.MAX_VALUE)
+                    seg.sketch.ensureCapacity(max);
+                seg.evict();
+            } finally {
+                seg.unlock();
+            }
+        }
+    }
+
+    @Override
+    public int getCacheSize() {
+        return (_maxSize == Integer.MAX_VALUE) ? -1 : _maxSize;
+    }
+
+    @Override
+    public void setSoftReferenceSize(int size) {
+        _maxSoft = (size < 0) ? Integer.MAX_VALUE : size;
+        int max = perSegment(_maxSoft);
+        for (Segment seg : _segments) {
+            seg.lock();
+            try {
+                seg.maxSoft = max;
+                seg.trimSoft();
+            } finally {
+                seg.unlock();
+            }
+        }
+    }
+
+    @Override
+    public int getSoftReferenceSize() {
+        return (_maxSoft == Integer.MAX_VALUE) ? -1 : _maxSoft;
+    }
+
+    @Override
+    public Set getPinnedKeys() {
+        Set keys = new HashSet();
+        for (Segment seg : _segments)
+            for (Object key : seg.pinned.keySet())
+                keys.add(unmaskNull(key));
+        return Collections.unmodifiableSet(keys);
+    }
+
+    @Override
+    public boolean pin(Object key) {
+        Object k = maskNull(key);
+        Segment seg = segmentFor(k);
+        seg.lock();
+        try {
+            Node node = seg.pinned.get(k);
+            if (node != null)
+                return node.value != null;
+
+            // pin before removing from the other maps so that concurrent
+            // readers always find the value somewhere
+            Object val = seg.peekUnpinned(k);
+            seg.pinned.put(k, new Node(k, val));
+            seg.removeUnpinned(k);
+            if (val != null) {
+                _pinnedSize.incrementAndGet();
+                return true;
+            }
+            return false;
+        } finally {
+            seg.unlock();
+        }
+    }
+
+    @Override
+    public boolean unpin(Object key) {
+        Object k = maskNull(key);
+        Segment seg = segmentFor(k);
+        seg.lock();
+        try {
+            Node node = seg.pinned.get(k);
+            if (node == null)
+                return false;
+            Object val = node.value;
+            if (val != null && seg.max > 0) {
+                seg.putUnpinned(k, val);
+                entryAdded(key, val);
+            }
+            seg.pinned.remove(k);
+            if (val == null)
+                return false;
+            _pinnedSize.decrementAndGet();
+            seg.evict();
+            return true;
+        } finally {
+            seg.unlock();
+        }
+    }
+
+    @Override
+    public Object get(Object key) {
+        Object k = maskNull(key);
+        Segment seg = segmentFor(k);
+        Node node = seg.hard.get(k);
+        if (node != null) {
+            if (_policy != EvictionPolicy.RANDOM)
+                seg.recordRead(node);
+            return node.value;
+        }
+        node = seg.pinned.get(k);
+        if (node != null)
+            return node.value;
+        if (seg.soft.isEmpty())
+            return null;
+        SoftNode ref = seg.soft.get(k);
+        if (ref == null)
+            return null;
+        Object val = ref.get();
+        if (val != null)
+            seg.promote(ref, val);
+        return val;
+    }
+
+    @Override
+    public Object put(Object key, Object value) {
+        Object k = maskNull(key);
+        Segment seg = segmentFor(k);
+        seg.lock();
+        try {
+            seg.expungeStaleEntries();
+
+            // if the key is pinned, just interact directly with the pinned map
+            Node node = seg.pinned.get(k);
+            Object val;
+            if (node != null) {
+                val = node.value;
+                node.value = value;
+                if (val == null)
+                    _pinnedSize.incrementAndGet();
+                else
+                    entryRemoved(key, val, false);
+                entryAdded(key, value);
+                return val;
+            }
+
+            // if no hard refs, don't put anything
+            if (seg.max == 0)
+                return null;
+
+            val = seg.putUnpinned(k, value);
+            if (val != null)
+                entryRemoved(key, val, false);
+            entryAdded(key, value);
+            seg.evict();
+            return val;
+        } finally {
+            seg.unlock();
+        }
+    }
+
+    /**
+     * If <code>key</code> is pinned into the cache, the pin is
+     * cleared and the object is removed.
+     */
+    @Override
+    public Object remove(Object key) {
+        Object k = maskNull(key);
+        Segment seg = segmentFor(k);
+        seg.lock();
+        try {
+            seg.expungeStaleEntries();
+
+            // re-put pinned keys with null value; we still want key pinned
+            Node node = seg.pinned.get(k);
+            Object val;
+            if (node != null) {
+                val = node.value;
+                node.value = null;
+                if (val != null) {
+                    _pinnedSize.decrementAndGet();
+                    entryRemoved(key, val, false);
+                }
+                return val;
+            }
+
+            val = seg.removeUnpinned(k);
+            if (val != null)
+                entryRemoved(key, val, false);
+            return val;
+        } finally {
+            seg.unlock();
+        }
+    }
+
+    /**
+     * Removes pinned objects as well as unpinned ones.
+     */
+    @Override
+    public void clear() {
+        for (Segment seg : _segments) {
+            seg.lock();
+            try {
+                for (Map.Entry entry : seg.entries()) {
+                    if (seg.pinned.remove(maskNull(entry.getKey())) != null)
+                        _pinnedSize.decrementAndGet();
+                    entryRemoved(entry.getKey(), entry.getValue(), false);
+                }
+                seg.clear();
+            } finally {
+                seg.unlock();
+            }
+        }
+    }
+
+    @Override
+    public int size() {
+        long size = _pinnedSize.get();
+        for (Segment seg : _segments)
+            size += seg.hard.size() + seg.soft.size();
+        return (int) Math.min(size, Integer.MAX_VALUE);
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        Object k = maskNull(key);
+        Segment seg = segmentFor(k);
+        if (seg.hard.containsKey(k))
+            return true;
+        Node node = seg.pinned.get(k);
+        if (node != null)
+            return node.value != null;
+        SoftNode ref = seg.soft.get(k);
+        return ref != null && ref.get() != null;
+    }
+
+    @Override
+    public boolean containsValue(Object val) {
+        for (Segment seg : _segments)
+            for (Map.Entry entry : seg.entries())
+                if (val == null ? entry.getValue() == null : val.equals(entry.getValue()))
+                    return true;
+        return false;
+    }
+
+    @Override
+    public Set keySet() {
+        return new AbstractSet() {
+            @Override
+            public int size() {
+                return SegmentedCacheMap.this.size();
+            }
+
+            @Override
+            public Iterator iterator() {
+                return new EntryIterator(EntryIterator.KEY);
+            }
+        };
+    }
+
+    @Override
+    public Collection values() {
+        return new AbstractCollection() {
+            @Override
+            public int size() {
+                return SegmentedCacheMap.this.size();
+            }
+
+            @Override
+            public Iterator iterator() {
+                return new EntryIterator(EntryIterator.VALUE);
+            }
+        };
+    }
+
+    @Override
+    public Set entrySet() {
+        return new AbstractSet() {
+            @Override
+            public int size() {
+                return SegmentedCacheMap.this.size();
+            }
+
+            @Override
+            public boolean add(Object o) {
+                Map.Entry entry = (Map.Entry) o;
+                put(entry.getKey(), entry.getValue());
+                return true;
+            }
+
+            @Override
+            public Iterator iterator() {
+                return new EntryIterator(EntryIterator.ENTRY);
+            }
+        };
+    }
+
+    @Override
+    public String toString() {
+        return "SegmentedCacheMap:" + _segments.length + ":" + size();
+    }
+
+    /**
+     * Hard reference to a cached value; linked into the recency list of its
+     * segment while it is in the segment's hard map.
+     */
+    private static class Node {
+
+        final Object key;
+        volatile Object value;
+
+        // guarded by the segment lock
+        Node prev;
+        Node next;
+        int queue;
+
+        Node(Object key, Object value) {
+            this.key = key;
+            this.value = value;
+        }
+    }
+
+    /**
+     * Soft reference to an overflow value that remembers its key.
+     */
+    private static class SoftNode
+        extends SoftReference {
+
+        final Object key;
+
+        SoftNode(Object key, Object value, ReferenceQueue queue) {
+            super(value, queue);
+            this.key = key;
+        }
+    }
+
+    /**
+     * One lock stripe. The maps are safe for unlocked reads; every
+     * modification, and all access to the recency list, happens while
+     * holding the segment lock.
+     */
+    private class Segment
+        extends ReentrantLock {
+
+        private static final long serialVersionUID = 1L;
+
+        final ConcurrentHashMap<Object, Node> hard = new ConcurrentHashMap<>();
+        final ConcurrentHashMap<Object, SoftNode> soft = new ConcurrentHashMap<>();
+        final ConcurrentHashMap<Object, Node> pinned = new ConcurrentHashMap<>();
+        final ReferenceQueue queue = new ReferenceQueue();
+
+        // sentinels of the eviction queues; head.next is the oldest entry
+        final Node[] heads = { new Node(null, null), new Node(null, null), new Node(null, null) };
+        final int[] sizes = new int[heads.length];
+        final FrequencySketch sketch = new FrequencySketch();
+
+        final AtomicReferenceArray<Node> reads = new AtomicReferenceArray<>(READ_BUFFER_SIZE);
+        final AtomicInteger readCount = new AtomicInteger();
+
+        volatile int max = Integer.MAX_VALUE;
+        volatile int maxSoft = Integer.MAX_VALUE;
+
+        Segment() {
+            resetQueues();
+        }
+
+        void resetQueues() {
+            for (int i = 0; i < heads.length; i++) {
+                heads[i].prev = heads[i];
+                heads[i].next = heads[i];
+                sizes[i] = 0;
+            }
+        }
+
+        /**
+         * Record an unlocked read of the given node. Once the buffer fills,
+         * the reading thread replays it if the lock is free; otherwise the
+         * reads are replayed by the next writer or overwritten.
+         */
+        void recordRead(Node node) {
+            int idx = readCount.getAndIncrement() & READ_BUFFER_MASK;
+            reads.lazySet(idx, node);
+            if (idx == READ_BUFFER_MASK && tryLock()) {
+                try {
+                    drainReads();
+                } finally {
+                    unlock();
+                }
+            }
+        }
+
+        void drainReads() {
+            for (int i = 0; i < READ_BUFFER_SIZE; i++) {
+                Node node = reads.getAndSet(i, null);
+                if (node != null && node.next != null)
+                    onAccess(node);
+            }
+        }
+
+        void link(Node node, int queue) {
+            Node head = heads[queue];
+            node.queue = queue;
+            node.prev = head.prev;
+            node.next = head;
+            head.prev.next = node;
+            head.prev = node;
+            sizes[queue]++;
+        }
+
+        void unlink(Node node) {
+            if (node.next == null)
+                return;
+            node.prev.next = node.next;
+            node.next.prev = node.prev;
+            node.prev = null;
+            node.next = null;
+            sizes[node.queue]--;
+        }
+
+        /**
+         * Return the oldest entry of the given queue, or null if empty.
+         */
+        Node first(int queue) {
+            Node node = heads[queue].next;
+            return (node == heads[queue]) ? null : node;
+        }
+
+        /**
+         * Link a new entry into the eviction queues.
+         */
+        void onInsert(Node node) {
+            if (_policy == EvictionPolicy.TINYLFU)
+                sketch.increment(node.key);
+            link(node, WINDOW);
+        }
+
+        /**
+         * Update the eviction queues for a read or overwrite of the given
+         * linked entry.
+         */
+        void onAccess(Node node) {
+            switch (_policy) {
+                case LRU:
+                    unlink(node);
+                    link(node, WINDOW);
+                    break;
+                case TINYLFU:
+                    sketch.increment(node.key);
+                    int queue = (node.queue == WINDOW) ? WINDOW : PROTECTED;
+                    unlink(node);
+                    link(node, queue);
+                    // demote the oldest protected entries back to probation
+                    int protectedMax = (max - windowMax()) / 5 * 4;
+                    Node demote;
+                    while (sizes[PROTECTED] > protectedMax && (demote = first(PROTECTED)) != null) {
+                        unlink(demote);
+                        link(demote, PROBATION);
+                    }
+                    break;
+                default:
+            }
+        }
+
+        int windowMax() {
+            return Math.max(1, max / 100);
+        }
+
+        /**
+         * Return the unpinned value for the given key, if any.
+         */
+        Object peekUnpinned(Object key) {
+            Node node = hard.get(key);
+            if (node != null)
+                return node.value;
+            SoftNode ref = soft.get(key);
+            return (ref == null) ? null : ref.get();
+        }
+
+        /**
+         * Place the given value in the hard map, clearing any soft
+         * reference. Returns the value previously mapped.
+         */
+        Object putUnpinned(Object key, Object value) {
+            Node node = hard.get(key);
+            if (node != null) {
+                Object val = node.value;
+                node.value = value;
+                if (_policy != EvictionPolicy.RANDOM)
+                    onAccess(node);
+                return val;
+            }
+            node = new Node(key, value);
+            hard.put(key, node);
+            onInsert(node);
+            SoftNode ref = soft.remove(key);
+            return (ref == null) ? null : ref.get();
+        }
+
+        /**
+         * Remove the given key from the hard and soft maps. Returns the
+         * value removed.
+         */
+        Object removeUnpinned(Object key) {
+            Node node = hard.remove(key);
+            if (node != null) {
+                unlink(node);
+                return node.value;
+            }
+            SoftNode ref = soft.remove(key);
+            return (ref == null) ? null : ref.get();
+        }
+
+        /**
+         * Move a soft value back into the hard map after a read hit.
+         */
+        void promote(SoftNode ref, Object value) {
+            lock();
+            try {
+                if (max == 0 || !soft.remove(ref.key, ref))
+                    return;
+                Node node = new Node(ref.key, value);
+                hard.put(ref.key, node);
+                onInsert(node);
+                evict();
+            } finally {
+                unlock();
+            }
+        }
+
+        /**
+         * Evict hard entries over the segment limit into the soft map.
+         */
+        void evict() {
+            if (hard.size() <= max)
+                return;
+            if (_policy != EvictionPolicy.RANDOM)
+                drainReads();
+            if (_policy == EvictionPolicy.TINYLFU)
+                evictTinyLfu();
+            Node node;
+            while (hard.size() > max && (node = first(WINDOW)) != null)
+                evict(node);
+        }
+
+        /**
+         * Move entries that overflow the admission window into the main
+         * area, each displacing the oldest probationary entry only if it
+         * is estimated to be used more often.
+         */
+        void evictTinyLfu() {
+            // fill the main area without competition until it is full
+            int windowMax = windowMax();
+            Node node;
+            while (sizes[WINDOW] > windowMax && sizes[PROBATION] + sizes[PROTECTED] < max - windowMax
+                && (node = first(WINDOW)) != null) {
+                unlink(node);
+                link(node, PROBATION);
+            }
+
+            while (hard.size() > max) {
+                Node victim = first(PROBATION);
+                if (victim == null)
+                    victim = first(PROTECTED);
+                Node candidate = (sizes[WINDOW] > windowMax) ? first(WINDOW) : null;
+                if (candidate == null) {
+                    if (victim == null)
+                        return;
+                    evict(victim);
+                } else if (victim == null) {
+                    unlink(candidate);
+                    link(candidate, PROBATION);
+                } else if (sketch.frequency(candidate.key) > sketch.frequency(victim.key)) {
+                    evict(victim);
+                    unlink(candidate);
+                    link(candidate, PROBATION);
+                } else
+                    evict(candidate);
+            }
+        }
+
+        void evict(Node node) {
+            unlink(node);
+            hard.remove(node.key, node);
+            overflowRemoved(node.key, node.value);
+        }
+
+        void overflowRemoved(Object key, Object value) {
+            if (value != null && soft.size() < maxSoft)
+                soft.put(key, new SoftNode(key, value, queue));
+            else
+                entryRemoved(unmaskNull(key), value, true);
+        }
+
+        /**
+         * Evict soft entries over the segment's soft limit.
+         */
+        void trimSoft() {
+            expungeStaleEntries();
+            Iterator<SoftNode> itr = soft.values().iterator();
+            while (soft.size() > maxSoft && itr.hasNext()) {
+                SoftNode ref = itr.next();
+                itr.remove();
+                entryRemoved(unmaskNull(ref.key), ref.get(), true);
+            }
+        }
+
+        /**
+         * Drop soft entries whose values have been garbage collected.
+         */
+        void expungeStaleEntries() {
+            SoftNode ref;
+            while ((ref = (SoftNode) queue.poll()) != null)
+                if (soft.remove(ref.key, ref))
+                    entryRemoved(unmaskNull(ref.key), null, true);
+        }
+
+        /**
+         * Snapshot of the live entries of this segment.
+         */
+        List<Map.Entry> entries() {
+            List<Map.Entry> entries = new ArrayList<>(pinned.size() + hard.size() + soft.size());
+            for (Node node : pinned.values())
+                addEntry(entries, node.key, node.value);
+            for (Node node : hard.values())
+                addEntry(entries, node.key, node.value);
+            for (SoftNode ref : soft.values())
+                addEntry(entries, ref.key, ref.get());
+            return entries;
+        }
+
+        private void addEntry(List<Map.Entry> entries, Object key, Object value) {
+            if (value != null)
+                entries.add(new AbstractMap.SimpleImmutableEntry(unmaskNull(key), value));
+        }
+
+        void clear() {
+            hard.clear();
+            soft.clear();
+            pinned.clear();
+            resetQueues();
+            for (int i = 0; i < READ_BUFFER_SIZE; i++)
+                reads.set(i, null);
+            while (queue.poll() != null)
+                ;
+        }
+    }
+
+    /**
+     * Weakly consistent iterator over all segments.
+     */
+    private class EntryIterator
+        implements Iterator {
+
+        public static final int ENTRY = 0;
+        public static final int KEY = 1;
+        public static final int VALUE = 2;
+
+        private final int _type;
+        private int _segment = 0;
+        private Iterator<Map.Entry> _itr = Collections.emptyIterator();
+        private Map.Entry _last;
+
+        public EntryIterator(int type) {
+            _type = type;
+        }
+
+        @Override
+        public boolean hasNext() {
+            while (!_itr.hasNext()) {
+                if (_segment == _segments.length)
+                    return false;
+                _itr = _segments[_segment++].entries().iterator();
+            }
+            return true;
+        }
+
+        @Override
+        public Object next() {
+            if (!hasNext())
+                throw new NoSuchElementException();
+            _last = _itr.next();
+            switch (_type) {
+                case KEY:
+                    return _last.getKey();
+                case VALUE:
+                    return _last.getValue();
+                default:
+                    return _last;
+            }
+        }
+
+        @Override
+        public void remove() {
+            if (_last == null)
+                throw new IllegalStateException();
+            SegmentedCacheMap.this.remove(_last.getKey());
+            _last = null;
+        }
+    }
+}
@@ -0,0 +1,234 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.openjpa.datacache;
+
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+import org.apache.openjpa.conf.OpenJPAConfigurationImpl;
+import org.apache.openjpa.kernel.AbstractPCData;
+import org.apache.openjpa.kernel.BareKernelDerivation;
+import org.apache.openjpa.meta.ClassMetaData;
+import org.apache.openjpa.meta.FieldMetaData;
+import org.apache.openjpa.meta.MetaDataRepository;
+import org.apache.openjpa.meta.NoneMetaDataFactory;
+import org.apache.openjpa.util.BinaryDecoder;
+import org.apache.openjpa.util.BinaryEncoder;
+import org.apache.openjpa.util.Id;
+import org.apache.openjpa.util.LongId;
+import org.apache.openjpa.util.StringId;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+public class DataCachePCDataCodecTest {
+
+    // metadata orders fields by name
+    private static final int COUNT = 0;
+    private static final int CREATED = 1;
+    private static final int HOME = 2;
+    private static final int LOCALE = 3;
+    private static final int NAME = 4;
+    private static final int OWNER = 5;
+    private static final int PRICE = 6;
+    private static final int PROPS = 7;
+    private static final int RELATED = 8;
+    private static final int TAGS = 9;
+
+    private OpenJPAConfigurationImpl _conf;
+    private ClassMetaData _item;
+    private ClassMetaData _address;
+    private DataCachePCDataCodec _codec;
+
+    public static class Item {
+    }
+
+    public static class Address {
+    }
+
+    @Before
+    public void setUp() {
+        BareKernelDerivation.install();
+        _conf = new OpenJPAConfigurationImpl();
+        _conf.setMetaDataFactory(NoneMetaDataFactory.class.getName());
+        MetaDataRepository repos = _conf.getMetaDataRepositoryInstance();
+
+        _address = repos.addMetaData(Address.class);
+        _address.setEmbeddedOnly(true);
+        _address.addDeclaredField("city", String.class);
+
+        _item = repos.addMetaData(Item.class);
+        _item.setIdentityType(ClassMetaData.ID_DATASTORE);
+        _item.addDeclaredField("count", int.class);
+        _item.addDeclaredField("created", Date.class);
+        _item.addDeclaredField("home", Address.class).setEmbedded(true);
+        _item.addDeclaredField("locale", Locale.class);
+        _item.addDeclaredField("name", String.class);
+        _item.addDeclaredField("owner", Item.class);
+        _item.addDeclaredField("price", BigDecimal.class);
+        FieldMetaData props = _item.addDeclaredField("props", Map.class);
+        props.getKey().setDeclaredType(String.class);
+        props.getElement().setDeclaredType(String.class);
+        _item.addDeclaredField("related", List.class).getElement()
+            .setDeclaredType(Item.class);
+        _item.addDeclaredField("tags", List.class).getElement()
+            .setDeclaredType(String.class);
+
+        _codec = new DataCachePCDataCodec(repos, getClass().getClassLoader());
+    }
+
+    @After
+    public void tearDown() {
+        _conf.close();
+    }
+
+    private DataCachePCDataImpl roundTrip(DataCachePCDataImpl data) {
+        BinaryEncoder out = new BinaryEncoder();
+        _codec.encode(data, out);
+        BinaryDecoder in = new BinaryDecoder(out.toByteArray(), getClass().getClassLoader());
+        DataCachePCDataImpl copy = (DataCachePCDataImpl) _codec.decode(in);
+        Assert.assertEquals(0, in.remaining());
+        Assert.assertNotSame(data, copy);
+        return copy;
+    }
+
+    private static List<Object> collectionData(int sequence, Object... elements) {
+        List<Object> data = AbstractPCData.newCollectionData(elements.length, sequence);
+        data.addAll(Arrays.asList(elements));
+        return data;
+    }
+
+    @Test
+    public void testIdentityAndVersion() {
+        DataCachePCDataImpl data = new DataCachePCDataImpl(new Id(Item.class, 7), _item,
+            "items", 12345L);
+        Timestamp version = new Timestamp(1000);
+        version.setNanos(123456789);
+        data.setVersion(version);
+
+        DataCachePCDataImpl copy = roundTrip(data);
+        Assert.assertEquals(data.getId(), copy.getId());
+        Assert.assertEquals(Item.class, copy.getType());
+        Assert.assertEquals("items", copy.getCache());
+        Assert.assertEquals(12345L, copy.getTimeOut());
+        Assert.assertEquals(version, copy.getVersion());
+        Assert.assertEquals(123456789, ((Timestamp) copy.getVersion()).getNanos());
+        for (int i = 0; i < _item.getFields().length; i++)
+            Assert.assertFalse(copy.isLoaded(i));
+    }
+
+    @Test
+    public void testBasicFields() {
+        DataCachePCDataImpl data = new DataCachePCDataImpl(new LongId(Item.class, 1), _item);
+        data.setVersion(3L);
+        data.setData(COUNT, 42);
+        data.setData(CREATED, new Date(5000));
+        data.setData(LOCALE, Locale.CANADA_FRENCH);
+        data.setData(NAME, "gr\u00fc\u00dfe");
+        data.setData(PRICE, new BigDecimal("-12.345"));
+
+        DataCachePCDataImpl copy = roundTrip(data);
+        Assert.assertEquals(3L, copy.getVersion());
+        Assert.assertEquals(42, copy.getData(COUNT));
+        Assert.assertEquals(new Date(5000), copy.getData(CREATED));
+        Assert.assertEquals(Locale.CANADA_FRENCH, copy.getData(LOCALE));
+        Assert.assertEquals("gr\u00fc\u00dfe", copy.getData(NAME));
+        Assert.assertEquals(new BigDecimal("-12.345"), copy.getData(PRICE));
+        Assert.assertFalse(copy.isLoaded(OWNER));
+    }
+
+    @Test
+    public void testRelations() {
+        DataCachePCDataImpl data = new DataCachePCDataImpl(new LongId(Item.class, 1), _item);
+        data.setData(OWNER, new LongId(Item.class, 2));
+        data.setData(RELATED, collectionData(5, new LongId(Item.class, 3),
+            new StringId(Item.class, "four")));
+
+        DataCachePCDataImpl copy = roundTrip(data);
+        Assert.assertEquals(new LongId(Item.class, 2), copy.getData(OWNER));
+        Assert.assertEquals(Item.class, ((LongId) copy.getData(OWNER)).getType());
+        Object related = copy.getData(RELATED);
+        Assert.assertEquals(Arrays.asList(new LongId(Item.class, 3),
+            new StringId(Item.class, "four")), related);
+        Assert.assertEquals(5, AbstractPCData.getCollectionDataSequence(related));
+    }
+
+    @Test
+    public void testEmbedded() {
+        DataCachePCDataImpl home = new DataCachePCDataImpl(new LongId(Address.class, 9),
+            _address, "items");
+        home.setData(0, "Lisbon");
+        DataCachePCDataImpl data = new DataCachePCDataImpl(new LongId(Item.class, 1), _item,
+            "items");
+        data.setData(HOME, home);
+
+        DataCachePCDataImpl copy = roundTrip(data);
+        DataCachePCDataImpl homeCopy = (DataCachePCDataImpl) copy.getData(HOME);
+        Assert.assertEquals(Address.class, homeCopy.getType());
+        Assert.assertEquals("Lisbon", homeCopy.getData(0));
+    }
+
+    @Test
+    public void testSecondClassObjects() {
+        Map<Object, Object> props = new HashMap<>();
+        props.put("color", "red");
+        props.put("size", null);
+        DataCachePCDataImpl data = new DataCachePCDataImpl(new LongId(Item.class, 1), _item);
+        data.setData(PROPS, props);
+        data.setData(TAGS, collectionData(3, "a", null, "c"));
+
+        DataCachePCDataImpl copy = roundTrip(data);
+        Assert.assertEquals(props, copy.getData(PROPS));
+        Object tags = copy.getData(TAGS);
+        Assert.assertEquals(Arrays.asList("a", null, "c"), tags);
+        Assert.assertEquals(3, AbstractPCData.getCollectionDataSequence(tags));
+
+        // empty values
+        data.setData(PROPS, Collections.EMPTY_MAP);
+        data.setData(TAGS, collectionData(0));
+        copy = roundTrip(data);
+        Assert.assertSame(Collections.EMPTY_MAP, copy.getData(PROPS));
+        Assert.assertEquals(Collections.emptyList(), copy.getData(TAGS));
+    }
+
+    @Test
+    public void testNullAndIntermediateValues() {
+        DataCachePCDataImpl data = new DataCachePCDataImpl(new LongId(Item.class, 1), _item);
+        data.setData(NAME, null);
+        data.setData(OWNER, AbstractPCData.NULL);
+        data.setIntermediate(RELATED, "lazy");
+        data.setImplData(COUNT, 17);
+
+        DataCachePCDataImpl copy = roundTrip(data);
+        Assert.assertTrue(copy.isLoaded(NAME));
+        Assert.assertNull(copy.getData(NAME));
+        Assert.assertSame(AbstractPCData.NULL, copy.getData(OWNER));
+        Assert.assertFalse(copy.isLoaded(RELATED));
+        Assert.assertEquals("lazy", copy.getIntermediate(RELATED));
+        Assert.assertEquals(17, copy.getImplData(COUNT));
+    }
+}
@@ -0,0 +1,268 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.openjpa.datacache;
+
+import java.io.IOException;
+import java.io.InvalidObjectException;
+import java.io.ObjectInputStream;
+import java.io.Serializable;
+import java.util.Collections;
+
+import org.apache.openjpa.conf.OpenJPAConfigurationImpl;
+import org.apache.openjpa.event.RemoteCommitEvent;
+import org.apache.openjpa.event.SingleJVMRemoteCommitProvider;
+import org.apache.openjpa.kernel.BareKernelDerivation;
+import org.apache.openjpa.meta.ClassMetaData;
+import org.apache.openjpa.meta.MetaDataRepository;
+import org.apache.openjpa.meta.NoneMetaDataFactory;
+import org.apache.openjpa.util.LongId;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+public class OffHeapDataCacheTest {
+
+    // each entry takes about a third of a slab
+    private static final int SLAB_SIZE = 256;
+    private static final int SLABS = 4;
+
+    private OpenJPAConfigurationImpl _conf;
+    private ClassMetaData _meta;
+    private ClassMetaData _subMeta;
+    private OffHeapDataCache _cache;
+
+    public static class Item {
+    }
+
+    public static class SubItem extends Item {
+    }
+
+    /**
+     * Value that fails to deserialize, optionally running a hook first.
+     */
+    public static class Poison implements Serializable {
+
+        private static final long serialVersionUID = 1L;
+
+        static Runnable hook;
+
+        private void readObject(ObjectInputStream in)
+            throws IOException, ClassNotFoundException {
+            in.defaultReadObject();
+            Runnable run = hook;
+            hook = null;
+            if (run != null)
+                run.run();
+            throw new InvalidObjectException("poison");
+        }
+    }
+
+    @Before
+    public void setUp() {
+        BareKernelDerivation.install();
+        _conf = new OpenJPAConfigurationImpl();
+        _conf.setMetaDataFactory(NoneMetaDataFactory.class.getName());
+        _conf.setRemoteCommitProvider(SingleJVMRemoteCommitProvider.class.getName());
+        MetaDataRepository repos = _conf.getMetaDataRepositoryInstance();
+        _meta = repos.addMetaData(Item.class);
+        _meta.setIdentityType(ClassMetaData.ID_DATASTORE);
+        _meta.addDeclaredField("name", String.class);
+        _subMeta = repos.addMetaData(SubItem.class);
+        _subMeta.setIdentityType(ClassMetaData.ID_DATASTORE);
+        _subMeta.addDeclaredField("name", String.class);
+
+        _cache = new OffHeapDataCache();
+        _cache.setConfiguration(_conf);
+        _cache.setName("offheap");
+        _cache.setSlabSize(SLAB_SIZE);
+        _cache.setMaxMemory(SLAB_SIZE * SLABS);
+        _cache.initialize(null);
+    }
+
+    @After
+    public void tearDown() {
+        Poison.hook = null;
+        _cache.close();
+        _conf.close();
+    }
+
+    private DataCachePCDataImpl newData(long id, String name) {
+        DataCachePCDataImpl data = new DataCachePCDataImpl(new LongId(Item.class, id), _meta,
+            _cache.getName());
+        data.setVersion(id);
+        data.setData(0, name);
+        return data;
+    }
+
+    private static LongId id(long id) {
+        return new LongId(Item.class, id);
+    }
+
+    @Test
+    public void testPutGetRemove() {
+        Assert.assertNull(_cache.put(newData(1, "one")));
+        Assert.assertEquals(1, _cache.getEntryCount());
+        Assert.assertTrue(_cache.getOffHeapBytes() > 0);
+
+        DataCachePCData copy = _cache.get(id(1));
+        Assert.assertEquals("one", copy.getData(0));
+        Assert.assertEquals(1L, copy.getVersion());
+        Assert.assertNotSame(copy, _cache.get(id(1)));
+
+        DataCachePCData old = _cache.put(newData(1, "uno"));
+        Assert.assertEquals("one", old.getData(0));
+        Assert.assertEquals("uno", _cache.get(id(1)).getData(0));
+        Assert.assertEquals(1, _cache.getEntryCount());
+
+        Assert.assertEquals("uno", _cache.remove(id(1)).getData(0));
+        Assert.assertNull(_cache.get(id(1)));
+        Assert.assertEquals(0, _cache.getEntryCount());
+        Assert.assertEquals(0, _cache.getOffHeapBytes());
+    }
+
+    @Test
+    public void testUpdateIfCachedPutsBackChangedCopy() {
+        _cache.put(newData(1, "one"));
+        DataCachePCDataImpl copy = (DataCachePCDataImpl) _cache.get(id(1));
+        copy.clearData(0);
+        Assert.assertEquals("one", _cache.get(id(1)).getData(0));
+
+        _cache.updateIfCached(copy);
+        Assert.assertFalse(_cache.get(id(1)).isLoaded(0));
+        Assert.assertEquals(1, _cache.getEntryCount());
+    }
+
+    @Test
+    public void testUpdateIfCachedSkipsRemovedEntry() {
+        _cache.put(newData(1, "one"));
+        DataCachePCData copy = _cache.get(id(1));
+        _cache.remove(id(1));
+
+        _cache.updateIfCached(copy);
+        Assert.assertNull(_cache.get(id(1)));
+        Assert.assertEquals(0, _cache.getEntryCount());
+    }
+
+    @Test
+    public void testEvictsOldestSlab() {
+        int count = 200;
+        for (int i = 0; i < count; i++)
+            _cache.put(newData(i, "item-" + i));
+
+        Assert.assertEquals(SLAB_SIZE * SLABS, _cache.getAllocatedBytes());
+        Assert.assertTrue(_cache.getOffHeapBytes() <= SLAB_SIZE * SLABS);
+        Assert.assertTrue(_cache.getEntryCount() < count);
+        Assert.assertNull(_cache.get(id(0)));
+        Assert.assertEquals("item-" + (count - 1), _cache.get(id(count - 1)).getData(0));
+    }
+
+    @Test
+    public void testReusesFreedSlabs() {
+        for (int i = 0; i < 6; i++)
+            _cache.put(newData(i, "item-" + i));
+        long allocated = _cache.getAllocatedBytes();
+        Assert.assertTrue(allocated > SLAB_SIZE);
+        Assert.assertTrue(allocated < SLAB_SIZE * SLABS);
+
+        for (int i = 0; i < 6; i++)
+            _cache.remove(id(i));
+        Assert.assertEquals(0, _cache.getOffHeapBytes());
+
+        for (int i = 6; i < 12; i++)
+            _cache.put(newData(i, "item-" + i));
+        Assert.assertEquals(allocated, _cache.getAllocatedBytes());
+        for (int i = 6; i < 12; i++)
+            Assert.assertEquals("item-" + i, _cache.get(id(i)).getData(0));
+
+        _cache.clear();
+        Assert.assertEquals(0, _cache.getEntryCount());
+        Assert.assertEquals(0, _cache.getOffHeapBytes());
+        Assert.assertEquals(allocated, _cache.getAllocatedBytes());
+    }
+
+    @Test
+    public void testPinnedEntriesSurviveEviction() {
+        _cache.put(newData(0, "pinned"));
+        Assert.assertTrue(_cache.pin(id(0)));
+        for (int i = 1; i < 200; i++)
+            _cache.put(newData(i, "item-" + i));
+        Assert.assertEquals("pinned", _cache.get(id(0)).getData(0));
+
+        Assert.assertTrue(_cache.unpin(id(0)));
+        Assert.assertEquals("pinned", _cache.get(id(0)).getData(0));
+    }
+
+    @Test
+    public void testDecodeFailureFreesEntry() {
+        DataCachePCDataImpl data = newData(1, "bad");
+        data.setImplData(new Poison());
+        _cache.put(data);
+        Assert.assertEquals(1, _cache.getEntryCount());
+
+        Assert.assertNull(_cache.get(id(1)));
+        Assert.assertEquals(0, _cache.getEntryCount());
+        Assert.assertEquals(0, _cache.getOffHeapBytes());
+    }
+
+    @Test
+    public void testDecodeFailureKeepsReplacedEntry() {
+        DataCachePCDataImpl data = newData(1, "bad");
+        data.setImplData(new Poison());
+        _cache.put(data);
+
+        // another thread replaces the entry while this one decodes it
+        Poison.hook = () -> _cache.put(newData(1, "good"));
+        Assert.assertNull(_cache.get(id(1)));
+        Assert.assertEquals("good", _cache.get(id(1)).getData(0));
+        Assert.assertEquals(1, _cache.getEntryCount());
+    }
+
+    @Test
+    public void testExtentEventEvictsSubclasses() {
+        _cache.put(newData(1, "item"));
+        DataCachePCDataImpl sub = new DataCachePCDataImpl(new LongId(SubItem.class, 2),
+            _subMeta, _cache.getName());
+        sub.setData(0, "sub");
+        _cache.put(sub);
+        _cache.put(newData(3, "other"));
+
+        // a sender may record the superclass in the ids of subclass instances
+        _cache.afterCommit(new RemoteCommitEvent(RemoteCommitEvent.PAYLOAD_EXTENTS,
+            null, null, Collections.singleton(Item.class.getName()), null));
+        Assert.assertNull(_cache.get(id(1)));
+        Assert.assertNull(_cache.get(new LongId(SubItem.class, 2)));
+        Assert.assertNull(_cache.get(id(3)));
+        Assert.assertEquals(0, _cache.getEntryCount());
+    }
+
+    @Test
+    public void testExtentEventKeepsOtherTypes() {
+        DataCachePCDataImpl sub = new DataCachePCDataImpl(new LongId(SubItem.class, 2),
+            _subMeta, _cache.getName());
+        sub.setData(0, "sub");
+        _cache.put(sub);
+        _cache.put(newData(1, "item"));
+
+        _cache.afterCommit(new RemoteCommitEvent(RemoteCommitEvent.PAYLOAD_EXTENTS,
+            null, null, null, Collections.singleton(SubItem.class.getName())));
+        Assert.assertNull(_cache.get(new LongId(SubItem.class, 2)));
+        Assert.assertEquals("item", _cache.get(id(1)).getData(0));
+    }
+}
@@ -0,0 +1,199 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.openjpa.event;
+
+import java.io.DataOutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.openjpa.lib.log.NoneLogFactory;
+import org.apache.openjpa.util.LongId;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class NIOTCPRemoteCommitProviderTest {
+
+    private static List<Object> ids(int count) {
+        List<Object> oids = new ArrayList<>();
+        for (int i = 0; i < count; i++)
+            oids.add(new LongId(String.class, i));
+        return oids;
+    }
+
+    private static int freePort() throws Exception {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+
+    private static TestProvider newProvider(int port, String addresses) throws Exception {
+        TestProvider provider = new TestProvider();
+        provider.log = NoneLogFactory.NoneLog.getInstance();
+        provider.setPort(port);
+        provider.setAddresses(addresses);
+        provider.endConfiguration();
+        return provider;
+    }
+
+    @Test
+    public void testBroadcast() throws Exception {
+        int port1 = freePort();
+        int port2 = freePort();
+        TestProvider p1 = newProvider(port1, "127.0.0.1:" + port2);
+        TestProvider p2 = newProvider(port2, "127.0.0.1:" + port1);
+        try {
+            for (int i = 0; i < 100; i++)
+                p1.broadcast(new RemoteCommitEvent(RemoteCommitEvent.PAYLOAD_OIDS,
+                    null, null, ids(i), null));
+            p2.broadcast(new RemoteCommitEvent(RemoteCommitEvent.PAYLOAD_EXTENTS,
+                null, null, Collections.singleton("a.B"), null));
+
+            for (int i = 0; i < 100; i++) {
+                RemoteCommitEvent event = p2._events.poll(10, TimeUnit.SECONDS);
+                Assert.assertNotNull(event);
+                Assert.assertEquals(ids(i), new ArrayList<>(event.getUpdatedObjectIds()));
+            }
+            RemoteCommitEvent event = p1._events.poll(10, TimeUnit.SECONDS);
+            Assert.assertNotNull(event);
+            Assert.assertEquals(Collections.singletonList("a.B"), new ArrayList<>(event.getUpdatedTypeNames()));
+            Assert.assertEquals(0, p1.getDroppedEventCount());
+        } finally {
+            p1.close();
+            p2.close();
+        }
+    }
+
+    @Test
+    public void testSlowPeerIsCoalesced() throws Exception {
+        try (ServerSocket slow = new ServerSocket()) {
+            // a peer that accepts but never reads
+            slow.setReceiveBufferSize(4096);
+            slow.bind(new InetSocketAddress("127.0.0.1", 0));
+            TestProvider provider = newProvider(freePort(), "127.0.0.1:" + slow.getLocalPort());
+            provider.setMaxQueueSize(4);
+            provider.setBlockTimeoutMillis(0);
+            RemoteCommitEvent event = new RemoteCommitEvent(RemoteCommitEvent.PAYLOAD_OIDS,
+                null, null, ids(1000), null);
+            // peers are connected on the first event
+            provider.broadcast(event);
+            try (Socket accepted = slow.accept()) {
+                for (int i = 0; i < 2000 && provider.getCoalescedEventCount() == 0; i++)
+                    provider.broadcast(event);
+                Assert.assertTrue(provider.getCoalescedEventCount() > 0);
+                Assert.assertEquals(0, provider.getDroppedEventCount());
+            } finally {
+                provider.close();
+            }
+        }
+    }
+
+    @Test
+    public void testOversizedFrameClosesConnection() throws Exception {
+        int port = freePort();
+        TestProvider provider = newProvider(port, "");
+        provider.setMaxFrameSize(1024);
+        provider._block = new CountDownLatch(1);
+        try (Socket s1 = new Socket(InetAddress.getLoopbackAddress(), port);
+            Socket s2 = new Socket(InetAddress.getLoopbackAddress(), port)) {
+            // the listener blocks on the first event
+            s1.getOutputStream().write(TCPRemoteCommitProvider.newBinaryPacket(1, 1, new byte[4],
+                provider.encodeEvent(new RemoteCommitEvent(RemoteCommitEvent.PAYLOAD_OIDS,
+                    null, null, ids(3), null))));
+            Assert.assertNotNull(provider._events.poll(10, TimeUnit.SECONDS));
+
+            // while the I/O thread still drops a peer that announces a
+            // packet larger than the limit
+            DataOutputStream out = new DataOutputStream(s2.getOutputStream());
+            out.writeInt(TCPRemoteCommitProvider.BINARY_MAGIC);
+            out.writeInt(Integer.MAX_VALUE);
+            out.flush();
+            s2.setSoTimeout(10000);
+            Assert.assertEquals(-1, s2.getInputStream().read());
+        } finally {
+            provider._block.countDown();
+            provider.close();
+        }
+    }
+
+    @Test
+    public void testMerge() {
+        RemoteCommitEventMerger merger = new RemoteCommitEventMerger();
+        Assert.assertTrue(merger.add(new RemoteCommitEvent(RemoteCommitEvent.PAYLOAD_OIDS,
+            null, Collections.singleton("a.B"), ids(3), null)));
+        Assert.assertTrue(merger.add(new RemoteCommitEvent(RemoteCommitEvent.PAYLOAD_OIDS,
+            null, null, ids(5), ids(1))));
+        RemoteCommitEvent event = merger.toEvent();
+        Assert.assertEquals(RemoteCommitEvent.PAYLOAD_OIDS, event.getPayloadType());
+        Assert.assertEquals(ids(5), new ArrayList<>(event.getUpdatedObjectIds()));
+        Assert.assertEquals(ids(1), new ArrayList<>(event.getDeletedObjectIds()));
+        Assert.assertEquals(Collections.singletonList("a.B"), new ArrayList<>(event.getPersistedTypeNames()));
+
+        Assert.assertTrue(merger.add(new RemoteCommitEvent(RemoteCommitEvent.PAYLOAD_EXTENTS,
+            null, null, Collections.singleton("a.C"), null)));
+        event = merger.toEvent();
+        Assert.assertEquals(RemoteCommitEvent.PAYLOAD_EXTENTS, event.getPayloadType());
+        Assert.assertEquals(Arrays.asList(String.class.getName(), "a.C"),
+            new ArrayList<>(event.getUpdatedTypeNames()));
+        Assert.assertEquals(Collections.singletonList(String.class.getName()),
+            new ArrayList<>(event.getDeletedTypeNames()));
+        Assert.assertEquals(3, merger.getEventCount());
+    }
+
+    @Test
+    public void testMergeApplicationIdsIntoExtents() {
+        RemoteCommitEventMerger merger = new RemoteCommitEventMerger();
+        Assert.assertTrue(merger.add(new RemoteCommitEvent(RemoteCommitEvent.PAYLOAD_OIDS,
+            null, null, Collections.singleton("app id"), null)));
+        Assert.assertFalse(merger.add(new RemoteCommitEvent(RemoteCommitEvent.PAYLOAD_EXTENTS,
+            null, null, Collections.singleton("a.C"), null)));
+        Assert.assertEquals(1, merger.getEventCount());
+        Assert.assertEquals(RemoteCommitEvent.PAYLOAD_OIDS, merger.toEvent().getPayloadType());
+    }
+
+    private static class TestProvider extends NIOTCPRemoteCommitProvider {
+
+        private final BlockingQueue<RemoteCommitEvent> _events = new LinkedBlockingQueue<>();
+        private CountDownLatch _block;
+
+        private TestProvider() throws Exception {
+        }
+
+        @Override
+        protected void fireEvent(RemoteCommitEvent event) {
+            _events.add(event);
+            if (_block != null) {
+                try {
+                    _block.await();
+                } catch (InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,135 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.openjpa.event;
+
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectOutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import org.apache.openjpa.util.BinaryEncoder;
+import org.apache.openjpa.util.IntId;
+import org.apache.openjpa.util.LZ4;
+import org.apache.openjpa.util.LongId;
+import org.apache.openjpa.util.StoreException;
+import org.apache.openjpa.util.StringId;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class RemoteCommitEventCodecTest {
+
+    private static List<Object> ids(int count) {
+        List<Object> oids = new ArrayList<>();
+        for (int i = 0; i < count; i++)
+            oids.add(new LongId(String.class, 1000000L + i));
+        return oids;
+    }
+
+    private static RemoteCommitEvent roundTrip(RemoteCommitEvent event, boolean compress) {
+        byte[] bytes = RemoteCommitEventCodec.encode(event, compress);
+        return RemoteCommitEventCodec.decode(bytes, 0, bytes.length, null);
+    }
+
+    @Test
+    public void testOids() {
+        List<Object> deletes = Arrays.asList(new IntId(Integer.class, 3),
+            new StringId(String.class, "x"), "application id");
+        RemoteCommitEvent event = new RemoteCommitEvent(RemoteCommitEvent.PAYLOAD_OIDS_WITH_ADDS,
+            ids(3), Collections.singleton("a.B"), ids(10), deletes);
+
+        RemoteCommitEvent read = roundTrip(event, false);
+        Assert.assertEquals(RemoteCommitEvent.PAYLOAD_OIDS_WITH_ADDS, read.getPayloadType());
+        Assert.assertEquals(ids(3), new ArrayList<>(read.getPersistedObjectIds()));
+        Assert.assertEquals(Collections.singletonList("a.B"), new ArrayList<>(read.getPersistedTypeNames()));
+        Assert.assertEquals(ids(10), new ArrayList<>(read.getUpdatedObjectIds()));
+        Assert.assertEquals(deletes, new ArrayList<>(read.getDeletedObjectIds()));
+    }
+
+    @Test
+    public void testExtents() {
+        RemoteCommitEvent event = new RemoteCommitEvent(RemoteCommitEvent.PAYLOAD_EXTENTS,
+            null, null, Arrays.asList("a.B", "a.C"), null);
+        RemoteCommitEvent read = roundTrip(event, true);
+        Assert.assertEquals(Arrays.asList("a.B", "a.C"), new ArrayList<>(read.getUpdatedTypeNames()));
+        Assert.assertTrue(read.getDeletedTypeNames().isEmpty());
+        Assert.assertTrue(read.getPersistedTypeNames().isEmpty());
+    }
+
+    @Test
+    public void testSmallerThanSerialization() throws Exception {
+        RemoteCommitEvent event = new RemoteCommitEvent(RemoteCommitEvent.PAYLOAD_OIDS,
+            null, null, ids(1000), ids(10));
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+            out.writeObject(event);
+        }
+
+        int binary = RemoteCommitEventCodec.encode(event, false).length;
+        int compressed = RemoteCommitEventCodec.encode(event, true).length;
+        Assert.assertTrue(binary * 4 < bytes.size());
+        Assert.assertTrue(compressed < binary);
+        Assert.assertEquals(ids(1000), new ArrayList<>(roundTrip(event, true).getUpdatedObjectIds()));
+    }
+
+    @Test(expected = StoreException.class)
+    public void testUnknownVersion() {
+        byte[] bytes = RemoteCommitEventCodec.encode(new RemoteCommitEvent(), false);
+        bytes[0] = 99;
+        RemoteCommitEventCodec.decode(bytes, 0, bytes.length, null);
+    }
+
+    @Test
+    public void testForgedDecompressedLength() {
+        // a few bytes that announce a decompressed length of about 2 GB
+        BinaryEncoder out = new BinaryEncoder();
+        out.writeByte(RemoteCommitEventCodec.VERSION);
+        out.writeByte(1);
+        out.writeVarInt(Integer.MAX_VALUE - 8);
+        out.writeInt(0);
+        byte[] bytes = out.toByteArray();
+        try {
+            RemoteCommitEventCodec.decode(bytes, 0, bytes.length, null);
+            Assert.fail("accepted a forged length");
+        } catch (StoreException se) {
+            // expected
+        }
+        try {
+            LZ4.decompress(new byte[4], 0, 4, -1);
+            Assert.fail("accepted a negative length");
+        } catch (StoreException se) {
+            // expected
+        }
+    }
+
+    @Test
+    public void testLZ4() {
+        Random random = new Random(42);
+        for (int len : new int[] { 0, 1, 12, 13, 100, 5000, 70000 }) {
+            byte[] raw = new byte[len];
+            for (int i = 0; i < len; i++)
+                raw[i] = (byte) ((i % 300 < 200) ? i % 7 : random.nextInt());
+            byte[] packed = LZ4.compress(raw, 0, len);
+            Assert.assertTrue(packed.length <= LZ4.maxCompressedLength(len));
+            Assert.assertArrayEquals(raw, LZ4.decompress(packed, 0, packed.length, len));
+        }
+    }
+}
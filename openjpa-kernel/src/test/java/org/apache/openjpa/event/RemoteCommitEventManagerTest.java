@@ -0,0 +1,131 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.openjpa.event;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.openjpa.conf.OpenJPAConfiguration;
+import org.apache.openjpa.lib.log.NoneLogFactory;
+import org.apache.openjpa.util.LongId;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class RemoteCommitEventManagerTest {
+
+    private final BlockingQueue<RemoteCommitEvent> _sent = new LinkedBlockingQueue<>();
+
+    private RemoteCommitEventManager newManager() {
+        final RemoteCommitProvider provider = new AbstractRemoteCommitProvider() {
+            @Override
+            public void broadcast(RemoteCommitEvent event) {
+                _sent.add(event);
+            }
+
+            @Override
+            public void close() {
+            }
+        };
+        OpenJPAConfiguration conf = (OpenJPAConfiguration) Proxy.newProxyInstance(
+            getClass().getClassLoader(), new Class[] { OpenJPAConfiguration.class },
+            (proxy, method, args) -> {
+                if ("getLog".equals(method.getName()))
+                    return NoneLogFactory.NoneLog.getInstance();
+                if ("newRemoteCommitProviderInstance".equals(method.getName()))
+                    return provider;
+                throw new UnsupportedOperationException(method.getName());
+            });
+        return new RemoteCommitEventManager(conf);
+    }
+
+    private static RemoteCommitEvent event(int first, int count) {
+        List<Object> oids = new ArrayList<>();
+        for (int i = first; i < first + count; i++)
+            oids.add(new LongId(String.class, i));
+        return new RemoteCommitEvent(RemoteCommitEvent.PAYLOAD_OIDS, null, null, oids, null);
+    }
+
+    @Test
+    public void testCoalesceWindow() throws Exception {
+        RemoteCommitEventManager mgr = newManager();
+        mgr.setCoalesceWindowMillis(50);
+        for (int i = 0; i < 10; i++)
+            mgr.broadcast(event(i, 2));
+        Assert.assertTrue(_sent.isEmpty());
+
+        RemoteCommitEvent rce = _sent.poll(5, TimeUnit.SECONDS);
+        Assert.assertNotNull(rce);
+        Assert.assertEquals(11, rce.getUpdatedObjectIds().size());
+        Assert.assertNull(_sent.poll(200, TimeUnit.MILLISECONDS));
+        mgr.close();
+    }
+
+    @Test
+    public void testCoalesceMaxEvents() {
+        RemoteCommitEventManager mgr = newManager();
+        mgr.setCoalesceWindowMillis(60000);
+        mgr.setCoalesceMaxEvents(3);
+        for (int i = 0; i < 7; i++)
+            mgr.broadcast(event(i, 1));
+        Assert.assertEquals(2, _sent.size());
+
+        // pending events are sent on close
+        mgr.close();
+        Assert.assertEquals(3, _sent.size());
+    }
+
+    @Test
+    public void testExtentThreshold() {
+        RemoteCommitEventManager mgr = newManager();
+        mgr.setExtentThreshold(100);
+        mgr.broadcast(event(0, 100));
+        mgr.broadcast(event(0, 101));
+        Assert.assertEquals(RemoteCommitEvent.PAYLOAD_OIDS, _sent.poll().getPayloadType());
+        RemoteCommitEvent rce = _sent.poll();
+        Assert.assertEquals(RemoteCommitEvent.PAYLOAD_EXTENTS, rce.getPayloadType());
+        Assert.assertEquals(Collections.singletonList(String.class.getName()),
+            new ArrayList<>(rce.getUpdatedTypeNames()));
+
+        mgr.setCoalesceWindowMillis(60000);
+        for (int i = 0; i < 60; i++)
+            mgr.broadcast(event(i * 2, 2));
+        mgr.close();
+        rce = _sent.poll();
+        Assert.assertEquals(RemoteCommitEvent.PAYLOAD_EXTENTS, rce.getPayloadType());
+    }
+
+    @Test
+    public void testBroadcastAfterCloseIsNotCoalesced() throws Exception {
+        RemoteCommitEventManager mgr = newManager();
+        mgr.setCoalesceWindowMillis(60000);
+        mgr.close();
+
+        mgr.broadcast(event(0, 2));
+        Assert.assertEquals(1, _sent.size());
+        Field timer = RemoteCommitEventManager.class.getDeclaredField("_timer");
+        timer.setAccessible(true);
+        Assert.assertNull(timer.get(mgr));
+    }
+}
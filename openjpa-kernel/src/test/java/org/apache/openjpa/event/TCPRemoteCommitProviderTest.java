@@ -0,0 +1,118 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.openjpa.event;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.lang.reflect.Proxy;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.openjpa.conf.OpenJPAConfiguration;
+import org.apache.openjpa.lib.log.NoneLogFactory;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class TCPRemoteCommitProviderTest {
+
+    private static int freePort() throws Exception {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+
+    @Test
+    public void testCheckFrameLength() throws Exception {
+        TCPRemoteCommitProvider.checkFrameLength(0, 10, "peer");
+        TCPRemoteCommitProvider.checkFrameLength(10, 10, "peer");
+        for (int len : new int[] { -1, 11, Integer.MAX_VALUE }) {
+            try {
+                TCPRemoteCommitProvider.checkFrameLength(len, 10, "peer");
+                Assert.fail("Accepted frame of " + len + " bytes");
+            } catch (IOException ioe) {
+                // expected
+            }
+        }
+    }
+
+    @Test
+    public void testOversizedFrameClosesConnection() throws Exception {
+        int port = freePort();
+        TCPRemoteCommitProvider provider = new TCPRemoteCommitProvider();
+        provider.log = NoneLogFactory.NoneLog.getInstance();
+        provider.setPort(port);
+        provider.setWireFormat(AbstractRemoteCommitProvider.WIRE_FORMAT_BINARY);
+        provider.setNumBroadcastThreads(0);
+        provider.setMaxFrameSize(1024);
+        provider.endConfiguration();
+        BlockingQueue<RemoteCommitEvent> events = listen(provider);
+        try (Socket s = new Socket(InetAddress.getLoopbackAddress(), port)) {
+            // a packet within the limit is delivered
+            byte[] packet = TCPRemoteCommitProvider.newBinaryPacket(1, 1, new byte[4],
+                provider.encodeEvent(new RemoteCommitEvent(RemoteCommitEvent.PAYLOAD_EXTENTS,
+                    null, null, Collections.singleton("a.B"), null)));
+            s.getOutputStream().write(packet);
+            RemoteCommitEvent event = events.poll(10, TimeUnit.SECONDS);
+            Assert.assertNotNull(event);
+            Assert.assertEquals(Collections.singletonList("a.B"),
+                new ArrayList<>(event.getUpdatedTypeNames()));
+
+            // the header of a larger packet is enough to drop the peer
+            DataOutputStream out = new DataOutputStream(s.getOutputStream());
+            out.writeInt(TCPRemoteCommitProvider.BINARY_MAGIC);
+            out.writeInt(Integer.MAX_VALUE);
+            out.flush();
+            s.setSoTimeout(10000);
+            Assert.assertEquals(-1, s.getInputStream().read());
+            Assert.assertTrue(events.isEmpty());
+        } finally {
+            provider.close();
+        }
+    }
+
+    private static BlockingQueue<RemoteCommitEvent> listen(final RemoteCommitProvider provider) {
+        OpenJPAConfiguration conf = (OpenJPAConfiguration) Proxy.newProxyInstance(
+            TCPRemoteCommitProviderTest.class.getClassLoader(), new Class[] { OpenJPAConfiguration.class },
+            (proxy, method, args) -> {
+                if ("getLog".equals(method.getName()))
+                    return NoneLogFactory.NoneLog.getInstance();
+                if ("newRemoteCommitProviderInstance".equals(method.getName()))
+                    return provider;
+                throw new UnsupportedOperationException(method.getName());
+            });
+        final BlockingQueue<RemoteCommitEvent> events = new LinkedBlockingQueue<>();
+        new RemoteCommitEventManager(conf).addListener(new RemoteCommitListener() {
+            @Override
+            public void afterCommit(RemoteCommitEvent event) {
+                events.add(event);
+            }
+
+            @Override
+            public void close() {
+            }
+        });
+        return events;
+    }
+}
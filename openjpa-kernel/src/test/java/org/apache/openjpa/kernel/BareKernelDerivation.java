@@ -0,0 +1,82 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.openjpa.kernel;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+import org.apache.openjpa.conf.OpenJPAProductDerivation;
+import org.apache.openjpa.lib.conf.AbstractProductDerivation;
+import org.apache.openjpa.lib.conf.ProductDerivation;
+import org.apache.openjpa.lib.conf.ProductDerivations;
+
+/**
+ * Product derivation that lets the kernel be configured without any store
+ * or specification module on the classpath. Product derivations are found
+ * once per class loader through a services file, so {@link #install} lists
+ * this class in a services file of its own and makes it visible while the
+ * derivations are loaded, without shipping the file with the tests.
+ */
+public class BareKernelDerivation extends AbstractProductDerivation {
+
+    private static boolean s_installed = false;
+
+    @Override
+    public int getType() {
+        return OpenJPAProductDerivation.TYPE_STORE;
+    }
+
+    /**
+     * Make sure that this derivation is among the loaded derivations. Call
+     * before creating any configuration.
+     */
+    public static synchronized void install() {
+        if (s_installed)
+            return;
+
+        Thread thread = Thread.currentThread();
+        ClassLoader loader = thread.getContextClassLoader();
+        try {
+            // files are deleted on exit in the reverse order of registration
+            File dir = Files.createTempDirectory("openjpa-derivation").toFile();
+            dir.deleteOnExit();
+            File services = new File(dir, "META-INF/services");
+            services.mkdirs();
+            services.getParentFile().deleteOnExit();
+            services.deleteOnExit();
+            File file = new File(services, ProductDerivation.class.getName());
+            Files.write(file.toPath(), BareKernelDerivation.class.getName()
+                .getBytes(StandardCharsets.UTF_8));
+            file.deleteOnExit();
+
+            thread.setContextClassLoader(new URLClassLoader(new URL[] { dir.toURI().toURL() },
+                BareKernelDerivation.class.getClassLoader()));
+            ProductDerivations.getProductDerivations();
+        } catch (IOException ioe) {
+            throw new IllegalStateException(ioe);
+        } finally {
+            thread.setContextClassLoader(loader);
+        }
+        s_installed = true;
+    }
+}
@@ -0,0 +1,142 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.openjpa.kernel;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Random;
+
+import org.apache.openjpa.util.Id;
+import org.apache.openjpa.util.IntId;
+import org.apache.openjpa.util.LongId;
+import org.apache.openjpa.util.StringId;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class PrimitiveIdMapTest {
+
+    static class Base {
+    }
+
+    static class Sub extends Base {
+    }
+
+    static class Sibling extends Base {
+    }
+
+    @Test
+    public void testPutGetRemove() {
+        PrimitiveIdMap<String> map = new PrimitiveIdMap<>();
+        Assert.assertNull(map.put(new LongId(Base.class, 1L), "a"));
+        Assert.assertNull(map.put(new IntId(Base.class, 1), "b"));
+        Assert.assertNull(map.put(new Id(Base.class, 1L), "c"));
+        Assert.assertNull(map.put(new StringId(Base.class, "1"), "d"));
+        Assert.assertEquals(4, map.size());
+
+        Assert.assertEquals("a", map.get(new LongId(Base.class, 1L)));
+        Assert.assertEquals("b", map.get(new IntId(Base.class, 1)));
+        Assert.assertEquals("c", map.get(new Id(Base.class, 1L)));
+        Assert.assertEquals("d", map.get(new StringId(Base.class, "1")));
+        Assert.assertNull(map.get(new LongId(Base.class, 2L)));
+
+        Assert.assertEquals("a", map.put(new LongId(Base.class, 1L), "e"));
+        Assert.assertEquals("e", map.remove(new LongId(Base.class, 1L)));
+        Assert.assertNull(map.remove(new LongId(Base.class, 1L)));
+        Assert.assertFalse(map.containsKey(new LongId(Base.class, 1L)));
+        Assert.assertTrue(map.containsKey(new IntId(Base.class, 1)));
+        Assert.assertEquals(3, map.size());
+
+        map.clear();
+        Assert.assertTrue(map.isEmpty());
+        Assert.assertNull(map.get(new IntId(Base.class, 1)));
+    }
+
+    @Test
+    public void testSubtypeIdsMatchAsInHashMap() {
+        PrimitiveIdMap<String> map = new PrimitiveIdMap<>();
+        map.put(new LongId(Sub.class, 5L), "sub");
+        map.put(new LongId(Sibling.class, 5L), "sibling");
+        Assert.assertEquals(2, map.size());
+
+        // an id of the base type may be for any subtype
+        Assert.assertNotNull(map.get(new LongId(Base.class, 5L)));
+        Assert.assertEquals("sub", map.get(new LongId(Sub.class, 5L)));
+        Assert.assertEquals("sibling", map.get(new LongId(Sibling.class, 5L)));
+        Assert.assertNull(map.get(new LongId(Base.class, 5L, false)));
+
+        Map<Object, String> hash = new HashMap<>();
+        hash.put(new LongId(Base.class, 6L), "base");
+        map.put(new LongId(Base.class, 6L), "base");
+        Assert.assertEquals(hash.get(new LongId(Sub.class, 6L)),
+            map.get(new LongId(Sub.class, 6L)));
+    }
+
+    @Test
+    public void testMatchesHashMap() {
+        PrimitiveIdMap<Integer> map = new PrimitiveIdMap<>();
+        Map<Object, Integer> hash = new HashMap<>();
+        Random random = new Random(42);
+        Class<?>[] types = { Base.class, Sub.class, Sibling.class };
+        for (int i = 0; i < 100000; i++) {
+            long key = random.nextInt(2000);
+            Class<?> type = types[random.nextInt(types.length)];
+            Object oid = random.nextBoolean() ? new LongId(type, key)
+                : new IntId(type, (int) key);
+            switch (random.nextInt(3)) {
+                case 0:
+                    Assert.assertEquals(hash.put(oid, i), map.put(oid, i));
+                    break;
+                case 1:
+                    Assert.assertEquals(hash.remove(oid), map.remove(oid));
+                    break;
+                default:
+                    Assert.assertEquals(hash.get(oid), map.get(oid));
+            }
+        }
+        Assert.assertEquals(hash.size(), map.size());
+        Assert.assertEquals(new HashSet<>(hash.values()),
+            new HashSet<>(map.values()));
+    }
+
+    @Test
+    public void testSerialization() throws Exception {
+        PrimitiveIdMap<String> map = new PrimitiveIdMap<>();
+        for (int i = 0; i < 100; i++)
+            map.put(new LongId(Base.class, i), "v" + i);
+        map.put(new StringId(Base.class, "x"), "x");
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+            out.writeObject(map);
+        }
+        PrimitiveIdMap<String> copy;
+        try (ObjectInputStream in = new ObjectInputStream(
+            new ByteArrayInputStream(bytes.toByteArray()))) {
+            copy = (PrimitiveIdMap<String>) in.readObject();
+        }
+        Assert.assertEquals(101, copy.size());
+        Assert.assertEquals("v42", copy.get(new LongId(Base.class, 42L)));
+        Assert.assertEquals("x", copy.get(new StringId(Base.class, "x")));
+    }
+}
@@ -0,0 +1,598 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.openjpa.kernel;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.openjpa.abstractstore.AbstractStoreBrokerFactory;
+import org.apache.openjpa.abstractstore.AbstractStoreManager;
+import org.apache.openjpa.enhance.FieldConsumer;
+import org.apache.openjpa.enhance.FieldSupplier;
+import org.apache.openjpa.enhance.PCEnhancer;
+import org.apache.openjpa.enhance.PCRegistry;
+import org.apache.openjpa.enhance.PersistenceCapable;
+import org.apache.openjpa.enhance.StateManager;
+import org.apache.openjpa.lib.conf.MapConfigurationProvider;
+import org.apache.openjpa.lib.rop.ListResultObjectProvider;
+import org.apache.openjpa.lib.rop.ResultObjectProvider;
+import org.apache.openjpa.meta.ClassMetaData;
+import org.apache.openjpa.meta.FieldMetaData;
+import org.apache.openjpa.meta.MetaDataRepository;
+import org.apache.openjpa.meta.NoneMetaDataFactory;
+import org.apache.openjpa.util.Id;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests the rollback state kept by {@link SaveFieldManager}, both while the
+ * original values are kept on their own and once they are moved to an image
+ * of the instance. {@link Mixed} has 24 fields, so the values of the first
+ * 3 saved fields are kept on their own.
+ */
+public class SaveFieldManagerTest {
+
+    // metadata orders fields by name
+    private static final int ACTIVE = 0;
+    private static final int COUNT = 1;
+    private static final int CREATED = 2;
+    private static final int NAME = 3;
+    private static final int RATIO = 4;
+    private static final int TAGS = 5;
+    private static final int TOTAL = 6;
+    private static final int LAZY = 23;
+    private static final int FIELDS = 24;
+
+    private static final Class<?>[] TYPES = new Class<?>[FIELDS];
+    static {
+        Arrays.fill(TYPES, int.class);
+        TYPES[TOTAL] = long.class;
+        TYPES[ACTIVE] = boolean.class;
+        TYPES[RATIO] = double.class;
+        TYPES[NAME] = String.class;
+        TYPES[CREATED] = Date.class;
+        TYPES[TAGS] = List.class;
+    }
+
+    private BrokerFactory _factory;
+    private Broker _broker;
+
+    @Before
+    public void setUp() throws Exception {
+        BareKernelDerivation.install();
+        Map<String, Object> props = new HashMap<>();
+        props.put("openjpa.abstractstore.AbstractStoreManager",
+            MemoryStoreManager.class.getName());
+        props.put("openjpa.MetaDataFactory",
+            NoneMetaDataFactory.class.getName());
+        props.put("openjpa.Optimistic", "true");
+        props.put("openjpa.RestoreState", "all");
+        _factory = AbstractStoreBrokerFactory.newInstance(
+            new MapConfigurationProvider(props));
+        // initializing the class registers it, as for an enhanced class
+        Class.forName(Mixed.class.getName());
+        MetaDataRepository repos = _factory.getConfiguration()
+            .getMetaDataRepositoryInstance();
+        ClassMetaData meta = repos.addMetaData(Mixed.class);
+        meta.setIdentityType(ClassMetaData.ID_DATASTORE);
+        for (int i = 0; i < FIELDS; i++) {
+            FieldMetaData fmd = meta.addDeclaredField(name(i), TYPES[i]);
+            if (i == TAGS)
+                fmd.getElement().setDeclaredType(String.class);
+            fmd.setInDefaultFetchGroup(i != LAZY);
+        }
+        _broker = _factory.newBroker();
+    }
+
+    @After
+    public void tearDown() {
+        if (_broker != null) {
+            if (_broker.isActive())
+                _broker.rollback();
+            _broker.close();
+        }
+        if (_factory != null)
+            _factory.close();
+    }
+
+    private static String name(int field) {
+        switch (field) {
+            case COUNT:
+                return "count";
+            case TOTAL:
+                return "total";
+            case ACTIVE:
+                return "active";
+            case RATIO:
+                return "ratio";
+            case NAME:
+                return "name";
+            case CREATED:
+                return "created";
+            case TAGS:
+                return "tags";
+            default:
+                return String.format("x%02d", field);
+        }
+    }
+
+    /**
+     * The value the store loads for the given field.
+     */
+    private static Object stored(int field) {
+        switch (field) {
+            case TOTAL:
+                return 10L;
+            case ACTIVE:
+                return Boolean.TRUE;
+            case RATIO:
+                return 0.5;
+            case NAME:
+                return "stored";
+            case CREATED:
+                return new Date(1000);
+            case TAGS:
+                return new ArrayList<>(Arrays.asList("a", "b"));
+            default:
+                return field;
+        }
+    }
+
+    private Mixed find() {
+        _broker.begin();
+        return (Mixed) _broker.find(new Id(Mixed.class, 1), true, null);
+    }
+
+    private static void assertStored(Mixed pc, int... fields) {
+        for (int field : fields)
+            Assert.assertEquals(name(field), stored(field), pc.get(field));
+    }
+
+    @Test
+    public void testRollbackRestoresSavedValues() {
+        Mixed pc = find();
+        pc.set(TOTAL, 20L);
+        pc.set(CREATED, new Date(2000));
+        pc.set(TAGS, new ArrayList<>(Collections.singletonList("c")));
+        _broker.rollback();
+        assertStored(pc, TOTAL, CREATED, TAGS);
+    }
+
+    @Test
+    public void testRollbackRestoresValuesMutatedInPlace() {
+        Mixed pc = find();
+        ((Date) pc.get(CREATED)).setTime(2000);
+        @SuppressWarnings("unchecked")
+        List<String> tags = (List<String>) pc.get(TAGS);
+        tags.add("c");
+        pc.set(COUNT, 7);
+        _broker.rollback();
+        assertStored(pc, CREATED, TAGS, COUNT);
+    }
+
+    @Test
+    public void testRollbackAfterImageIsCreated() {
+        Mixed pc = find();
+        // the first values are kept on their own
+        pc.set(CREATED, new Date(2000));
+        pc.set(TAGS, new ArrayList<>(Collections.singletonList("c")));
+        pc.set(NAME, "changed");
+        // and moved to the image when more fields are saved
+        pc.set(TOTAL, 20L);
+        pc.set(ACTIVE, false);
+        pc.set(RATIO, 1.5);
+        pc.set(COUNT, 7);
+        _broker.rollback();
+        assertStored(pc, CREATED, TAGS, NAME, TOTAL, ACTIVE, RATIO, COUNT);
+    }
+
+    @Test
+    public void testFieldEqualityUsesSavedValues() {
+        Mixed pc = find();
+        StateManagerImpl sm = (StateManagerImpl) _broker.getStateManager(pc);
+        // the comparison that dirtyCheck makes for instances that are not
+        // enhanced, while the values are kept on their own
+        SaveFieldManager saved = new SaveFieldManager(sm, null, null);
+        saved.saveField(TOTAL);
+        saved.saveField(NAME);
+        Assert.assertTrue(saved.isFieldEqual(TOTAL, sm.fetch(TOTAL)));
+        Assert.assertTrue(saved.isFieldEqual(NAME, sm.fetch(NAME)));
+        Assert.assertFalse(saved.isFieldEqual(COUNT, sm.fetch(COUNT)));
+
+        pc.setQuietly(TOTAL, 20L);
+        pc.setQuietly(NAME, "changed");
+        Assert.assertFalse(saved.isFieldEqual(TOTAL, sm.fetch(TOTAL)));
+        Assert.assertFalse(saved.isFieldEqual(NAME, sm.fetch(NAME)));
+    }
+
+    @Test
+    public void testFieldEqualityAfterImageIsCreated() {
+        Mixed pc = find();
+        StateManagerImpl sm = (StateManagerImpl) _broker.getStateManager(pc);
+        SaveFieldManager saved = new SaveFieldManager(sm, null, null);
+        for (int i = 0; i < 8; i++)
+            if (saved.saveField(i)) {
+                sm.provideField(pc, saved, i);
+                sm.replaceField(saved.getState(), saved, i);
+            }
+        Assert.assertNotNull(saved.getState());
+        Assert.assertTrue(saved.isFieldEqual(NAME, sm.fetch(NAME)));
+        Assert.assertTrue(saved.isFieldEqual(CREATED, sm.fetch(CREATED)));
+        Assert.assertTrue(saved.isFieldEqual(TAGS, sm.fetch(TAGS)));
+
+        pc.setQuietly(NAME, "changed");
+        Assert.assertFalse(saved.isFieldEqual(NAME, sm.fetch(NAME)));
+    }
+
+    @Test
+    public void testRollbackResetsUnloadedField() {
+        Mixed pc = find();
+        StateManagerImpl sm = (StateManagerImpl) _broker.getStateManager(pc);
+        Assert.assertFalse("loaded", sm.getLoaded().get(LAZY));
+        pc.set(LAZY, 5);
+        pc.set(TOTAL, 20L);
+        _broker.rollback();
+        Assert.assertFalse(sm.getLoaded().get(LAZY));
+        Assert.assertEquals(0, pc.peek(LAZY));
+        assertStored(pc, TOTAL);
+    }
+
+    @Test
+    public void testDirtyAndFlushedSetsAreCreatedWhenNeeded()
+        throws Exception {
+        Mixed pc = find();
+        StateManagerImpl sm = (StateManagerImpl) _broker.getStateManager(pc);
+        // deleting and persisting again checks for dirty fields
+        _broker.delete(pc, null);
+        _broker.persist(pc, null);
+        Assert.assertEquals(PCState.PCLEAN, sm.getPCState());
+        Assert.assertNull(getBitSet(sm, "_dirty"));
+        _broker.flush();
+        Assert.assertNull(getBitSet(sm, "_flush"));
+
+        pc.set(COUNT, 7);
+        Assert.assertTrue(getBitSet(sm, "_dirty").get(COUNT));
+        _broker.flush();
+        Assert.assertTrue(getBitSet(sm, "_flush").get(COUNT));
+    }
+
+    private static BitSet getBitSet(StateManagerImpl sm, String name)
+        throws Exception {
+        java.lang.reflect.Field field = StateManagerImpl.class
+            .getDeclaredField(name);
+        field.setAccessible(true);
+        return (BitSet) field.get(sm);
+    }
+
+    /**
+     * Store that loads every instance with the values of {@link #stored}.
+     */
+    public static class MemoryStoreManager extends AbstractStoreManager {
+
+        @Override
+        public boolean initialize(OpenJPAStateManager sm, PCState state,
+            FetchConfiguration fetch, Object edata) {
+            sm.initialize(Mixed.class, state);
+            FieldMetaData[] fmds = sm.getMetaData().getFields();
+            for (int i = 0; i < fmds.length; i++)
+                if (fmds[i].isInDefaultFetchGroup())
+                    sm.store(i, stored(i));
+            return true;
+        }
+
+        @Override
+        public boolean load(OpenJPAStateManager sm, BitSet fields,
+            FetchConfiguration fetch, int lockLevel, Object edata) {
+            for (int i = fields.nextSetBit(0); i >= 0;
+                i = fields.nextSetBit(i + 1))
+                sm.store(i, stored(i));
+            return true;
+        }
+
+        @Override
+        public boolean exists(OpenJPAStateManager sm, Object edata) {
+            return true;
+        }
+
+        @Override
+        public boolean isCached(List<Object> oids, BitSet edata) {
+            return false;
+        }
+
+        @Override
+        public ResultObjectProvider executeExtent(ClassMetaData meta,
+            boolean subclasses, FetchConfiguration fetch) {
+            return new ListResultObjectProvider(Collections.emptyList());
+        }
+
+        @Override
+        protected Collection<Exception> flush(
+            Collection<OpenJPAStateManager> pNew,
+            Collection<OpenJPAStateManager> pNewUpdated,
+            Collection<OpenJPAStateManager> pNewFlushedDeleted,
+            Collection<OpenJPAStateManager> pDirty,
+            Collection<OpenJPAStateManager> pDeleted) {
+            return Collections.emptyList();
+        }
+
+        @Override
+        protected Collection<String> getUnsupportedOptions() {
+            return new HashSet<>();
+        }
+    }
+
+    /**
+     * Persistence capable class with fields of several types, written the
+     * way the enhancer would write it.
+     */
+    public static class Mixed implements PersistenceCapable {
+
+        static {
+            String[] names = new String[FIELDS];
+            byte[] flags = new byte[FIELDS];
+            for (int i = 0; i < FIELDS; i++) {
+                names[i] = name(i);
+                flags[i] = CHECK_READ | CHECK_WRITE | SERIALIZABLE;
+            }
+            PCRegistry.register(Mixed.class, names, TYPES, flags, null,
+                "Mixed", new Mixed());
+        }
+
+        private final Object[] _values = new Object[FIELDS];
+        private transient StateManager _sm;
+
+        public Mixed() {
+            for (int i = 0; i < FIELDS; i++)
+                _values[i] = defaultValue(i);
+        }
+
+        private static Object defaultValue(int field) {
+            Class<?> type = TYPES[field];
+            if (type == int.class)
+                return 0;
+            if (type == long.class)
+                return 0L;
+            if (type == boolean.class)
+                return Boolean.FALSE;
+            if (type == double.class)
+                return 0D;
+            return null;
+        }
+
+        public Object get(int field) {
+            if (_sm != null)
+                _sm.accessingField(field);
+            return _values[field];
+        }
+
+        /**
+         * Return the value of the field without loading it.
+         */
+        public Object peek(int field) {
+            return _values[field];
+        }
+
+        public void set(int field, Object val) {
+            if (_sm == null) {
+                _values[field] = val;
+                return;
+            }
+
+            Object cur = _values[field];
+            int set = OpenJPAStateManager.SET_USER;
+            Class<?> type = TYPES[field];
+            if (type == int.class)
+                _sm.settingIntField(this, field, (Integer) cur, (Integer) val, set);
+            else if (type == long.class)
+                _sm.settingLongField(this, field, (Long) cur, (Long) val, set);
+            else if (type == boolean.class)
+                _sm.settingBooleanField(this, field, (Boolean) cur, (Boolean) val, set);
+            else if (type == double.class)
+                _sm.settingDoubleField(this, field, (Double) cur, (Double) val, set);
+            else if (type == String.class)
+                _sm.settingStringField(this, field, (String) cur, (String) val, set);
+            else
+                _sm.settingObjectField(this, field, cur, val, set);
+        }
+
+        /**
+         * Set the value of the field without telling the state manager,
+         * as an instance that is not enhanced would.
+         */
+        public void setQuietly(int field, Object val) {
+            _values[field] = val;
+        }
+
+        @Override
+        public int pcGetEnhancementContractVersion() {
+            return PCEnhancer.ENHANCER_VERSION;
+        }
+
+        @Override
+        public Object pcGetGenericContext() {
+            return (_sm == null) ? null : _sm.getGenericContext();
+        }
+
+        @Override
+        public StateManager pcGetStateManager() {
+            return _sm;
+        }
+
+        @Override
+        public void pcReplaceStateManager(StateManager sm) {
+            _sm = (_sm == null) ? sm : _sm.replaceStateManager(sm);
+        }
+
+        @Override
+        public void pcProvideField(int field) {
+            Object val = _values[field];
+            Class<?> type = TYPES[field];
+            if (type == int.class)
+                _sm.providedIntField(this, field, (Integer) val);
+            else if (type == long.class)
+                _sm.providedLongField(this, field, (Long) val);
+            else if (type == boolean.class)
+                _sm.providedBooleanField(this, field, (Boolean) val);
+            else if (type == double.class)
+                _sm.providedDoubleField(this, field, (Double) val);
+            else if (type == String.class)
+                _sm.providedStringField(this, field, (String) val);
+            else
+                _sm.providedObjectField(this, field, val);
+        }
+
+        @Override
+        public void pcProvideFields(int[] fields) {
+            for (int field : fields)
+                pcProvideField(field);
+        }
+
+        @Override
+        public void pcReplaceField(int field) {
+            Class<?> type = TYPES[field];
+            if (type == int.class)
+                _values[field] = _sm.replaceIntField(this, field);
+            else if (type == long.class)
+                _values[field] = _sm.replaceLongField(this, field);
+            else if (type == boolean.class)
+                _values[field] = _sm.replaceBooleanField(this, field);
+            else if (type == double.class)
+                _values[field] = _sm.replaceDoubleField(this, field);
+            else if (type == String.class)
+                _values[field] = _sm.replaceStringField(this, field);
+            else
+                _values[field] = _sm.replaceObjectField(this, field);
+        }
+
+        @Override
+        public void pcReplaceFields(int[] fields) {
+            for (int field : fields)
+                pcReplaceField(field);
+        }
+
+        @Override
+        public void pcCopyFields(Object from, int[] fields) {
+            for (int field : fields)
+                _values[field] = ((Mixed) from)._values[field];
+        }
+
+        @Override
+        public void pcDirty(String field) {
+            if (_sm != null)
+                _sm.dirty(field);
+        }
+
+        @Override
+        public Object pcFetchObjectId() {
+            return (_sm == null) ? null : _sm.fetchObjectId();
+        }
+
+        @Override
+        public Object pcGetVersion() {
+            return (_sm == null) ? null : _sm.getVersion();
+        }
+
+        @Override
+        public boolean pcIsDirty() {
+            return _sm != null && _sm.isDirty();
+        }
+
+        @Override
+        public boolean pcIsTransactional() {
+            return _sm != null && _sm.isTransactional();
+        }
+
+        @Override
+        public boolean pcIsPersistent() {
+            return _sm != null && _sm.isPersistent();
+        }
+
+        @Override
+        public boolean pcIsNew() {
+            return _sm != null && _sm.isNew();
+        }
+
+        @Override
+        public boolean pcIsDeleted() {
+            return _sm != null && _sm.isDeleted();
+        }
+
+        @Override
+        public Boolean pcIsDetached() {
+            return (_sm == null) ? null : _sm.isDetached();
+        }
+
+        @Override
+        public PersistenceCapable pcNewInstance(StateManager sm,
+            boolean clear) {
+            Mixed pc = new Mixed();
+            pc._sm = sm;
+            return pc;
+        }
+
+        @Override
+        public PersistenceCapable pcNewInstance(StateManager sm, Object oid,
+            boolean clear) {
+            return pcNewInstance(sm, clear);
+        }
+
+        @Override
+        public Object pcNewObjectIdInstance() {
+            return null;
+        }
+
+        @Override
+        public Object pcNewObjectIdInstance(Object obj) {
+            return null;
+        }
+
+        @Override
+        public void pcCopyKeyFieldsToObjectId(Object oid) {
+        }
+
+        @Override
+        public void pcCopyKeyFieldsToObjectId(FieldSupplier supplier,
+            Object oid) {
+        }
+
+        @Override
+        public void pcCopyKeyFieldsFromObjectId(FieldConsumer consumer,
+            Object oid) {
+        }
+
+        @Override
+        public Object pcGetDetachedState() {
+            return null;
+        }
+
+        @Override
+        public void pcSetDetachedState(Object state) {
+        }
+    }
+}
@@ -0,0 +1,416 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.openjpa.kernel;
+
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.openjpa.abstractstore.AbstractStoreBrokerFactory;
+import org.apache.openjpa.abstractstore.AbstractStoreManager;
+import org.apache.openjpa.enhance.FieldConsumer;
+import org.apache.openjpa.enhance.FieldSupplier;
+import org.apache.openjpa.enhance.PCEnhancer;
+import org.apache.openjpa.enhance.PCRegistry;
+import org.apache.openjpa.enhance.PersistenceCapable;
+import org.apache.openjpa.enhance.StateManager;
+import org.apache.openjpa.lib.conf.MapConfigurationProvider;
+import org.apache.openjpa.lib.rop.ListResultObjectProvider;
+import org.apache.openjpa.lib.rop.ResultObjectProvider;
+import org.apache.openjpa.meta.ClassMetaData;
+import org.apache.openjpa.meta.MetaDataRepository;
+import org.apache.openjpa.meta.NoneMetaDataFactory;
+import org.apache.openjpa.util.Id;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * JMH benchmark measuring the heap that a broker retains per managed
+ * instance of an entity with many fields once the instances are read, once
+ * a field of each is changed in an optimistic transaction, and once the
+ * change is flushed. Each phase is reported as the
+ * <code>bytesPerInstance</code> secondary result. Uses an in-memory store
+ * and a hand-written persistence capable class, so it needs neither a
+ * database nor the enhancer. Run with:
+ * <pre>
+ * mvn test-compile
+ * java -cp target/test-classes:target/classes:&lt;test classpath&gt; \
+ *     org.apache.openjpa.kernel.StateManagerMemoryBenchmark
+ * </pre>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+public class StateManagerMemoryBenchmark {
+
+    private static final int FIELDS = 120;
+
+    public static final String READ = "read";
+    public static final String DIRTY = "dirty";
+    public static final String FLUSHED = "flushed";
+
+    @Param({ "50000" })
+    public int instances;
+
+    @Param({ READ, DIRTY, FLUSHED })
+    public String phase;
+
+    private BrokerFactory _factory;
+
+    /**
+     * The heap retained per instance in the last iteration.
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class Retained {
+
+        public long bytesPerInstance;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            bytesPerInstance = 0;
+        }
+    }
+
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+        BareKernelDerivation.install();
+
+        Map<String, Object> props = new HashMap<>();
+        props.put("openjpa.abstractstore.AbstractStoreManager",
+            MemoryStoreManager.class.getName());
+        props.put("openjpa.MetaDataFactory",
+            NoneMetaDataFactory.class.getName());
+        props.put("openjpa.Optimistic", "true");
+        _factory = AbstractStoreBrokerFactory.newInstance(
+            new MapConfigurationProvider(props));
+        // initializing the class registers it, as for an enhanced class
+        Class.forName(Wide.class.getName());
+        MetaDataRepository repos = _factory.getConfiguration()
+            .getMetaDataRepositoryInstance();
+        ClassMetaData meta = repos.addMetaData(Wide.class);
+        meta.setIdentityType(ClassMetaData.ID_DATASTORE);
+        for (int i = 0; i < FIELDS; i++)
+            meta.addDeclaredField("f" + i, int.class);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        _factory.close();
+    }
+
+    @Benchmark
+    public void retain(Retained retained) {
+        Broker broker = _factory.newBroker();
+        long base = usedHeap();
+        Wide[] pcs = new Wide[instances];
+        broker.begin();
+        for (int i = 0; i < instances; i++)
+            pcs[i] = (Wide) broker.find(new Id(Wide.class, i), true, null);
+        if (!READ.equals(phase)) {
+            for (int i = 0; i < instances; i++)
+                pcs[i].set(7, pcs[i].get(7) + 1);
+            if (FLUSHED.equals(phase))
+                broker.flush();
+        }
+        retained.bytesPerInstance = (usedHeap() - base) / instances;
+
+        broker.rollback();
+        broker.close();
+    }
+
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        long used = Long.MAX_VALUE;
+        for (int i = 0; i < 5; i++) {
+            System.gc();
+            try {
+                Thread.sleep(50);
+            } catch (InterruptedException ie) {
+                Thread.currentThread().interrupt();
+            }
+            used = Math.min(used,
+                runtime.totalMemory() - runtime.freeMemory());
+        }
+        return used;
+    }
+
+    public static void main(String[] args)
+        throws RunnerException {
+        Options opts = new OptionsBuilder()
+            .include(StateManagerMemoryBenchmark.class.getSimpleName())
+            .build();
+        new Runner(opts).run();
+    }
+
+    /**
+     * Store that makes up the state of the instances it loads.
+     */
+    public static class MemoryStoreManager extends AbstractStoreManager {
+
+        @Override
+        public boolean initialize(OpenJPAStateManager sm, PCState state,
+            FetchConfiguration fetch, Object edata) {
+            sm.initialize(Wide.class, state);
+            long id = ((Id) sm.getObjectId()).getId();
+            for (int i = 0; i < FIELDS; i++)
+                sm.storeInt(i, (int) id + i);
+            return true;
+        }
+
+        @Override
+        public boolean load(OpenJPAStateManager sm, BitSet fields,
+            FetchConfiguration fetch, int lockLevel, Object edata) {
+            return true;
+        }
+
+        @Override
+        public boolean exists(OpenJPAStateManager sm, Object edata) {
+            return true;
+        }
+
+        @Override
+        public boolean isCached(List<Object> oids, BitSet edata) {
+            return false;
+        }
+
+        @Override
+        public ResultObjectProvider executeExtent(ClassMetaData meta,
+            boolean subclasses, FetchConfiguration fetch) {
+            return new ListResultObjectProvider(Collections.emptyList());
+        }
+
+        @Override
+        protected Collection<Exception> flush(
+            Collection<OpenJPAStateManager> pNew,
+            Collection<OpenJPAStateManager> pNewUpdated,
+            Collection<OpenJPAStateManager> pNewFlushedDeleted,
+            Collection<OpenJPAStateManager> pDirty,
+            Collection<OpenJPAStateManager> pDeleted) {
+            return Collections.emptyList();
+        }
+
+        @Override
+        protected Collection<String> getUnsupportedOptions() {
+            return new HashSet<>();
+        }
+    }
+
+    /**
+     * Persistence capable class with many int fields, written the way the
+     * enhancer would write it.
+     */
+    public static class Wide implements PersistenceCapable {
+
+        static {
+            String[] names = new String[FIELDS];
+            Class<?>[] types = new Class<?>[FIELDS];
+            byte[] flags = new byte[FIELDS];
+            for (int i = 0; i < FIELDS; i++) {
+                names[i] = "f" + i;
+                types[i] = int.class;
+                flags[i] = CHECK_READ | CHECK_WRITE | SERIALIZABLE;
+            }
+            PCRegistry.register(Wide.class, names, types, flags, null,
+                "Wide", new Wide());
+        }
+
+        private final int[] _fields = new int[FIELDS];
+        private transient StateManager _sm;
+
+        public int get(int field) {
+            if (_sm != null)
+                _sm.accessingField(field);
+            return _fields[field];
+        }
+
+        public void set(int field, int val) {
+            if (_sm == null)
+                _fields[field] = val;
+            else
+                _sm.settingIntField(this, field, _fields[field], val,
+                    OpenJPAStateManager.SET_USER);
+        }
+
+        @Override
+        public int pcGetEnhancementContractVersion() {
+            return PCEnhancer.ENHANCER_VERSION;
+        }
+
+        @Override
+        public Object pcGetGenericContext() {
+            return (_sm == null) ? null : _sm.getGenericContext();
+        }
+
+        @Override
+        public StateManager pcGetStateManager() {
+            return _sm;
+        }
+
+        @Override
+        public void pcReplaceStateManager(StateManager sm) {
+            _sm = (_sm == null) ? sm : _sm.replaceStateManager(sm);
+        }
+
+        @Override
+        public void pcProvideField(int field) {
+            _sm.providedIntField(this, field, _fields[field]);
+        }
+
+        @Override
+        public void pcProvideFields(int[] fields) {
+            for (int field : fields)
+                pcProvideField(field);
+        }
+
+        @Override
+        public void pcReplaceField(int field) {
+            _fields[field] = _sm.replaceIntField(this, field);
+        }
+
+        @Override
+        public void pcReplaceFields(int[] fields) {
+            for (int field : fields)
+                pcReplaceField(field);
+        }
+
+        @Override
+        public void pcCopyFields(Object from, int[] fields) {
+            for (int field : fields)
+                _fields[field] = ((Wide) from)._fields[field];
+        }
+
+        @Override
+        public void pcDirty(String field) {
+            if (_sm != null)
+                _sm.dirty(field);
+        }
+
+        @Override
+        public Object pcFetchObjectId() {
+            return (_sm == null) ? null : _sm.fetchObjectId();
+        }
+
+        @Override
+        public Object pcGetVersion() {
+            return (_sm == null) ? null : _sm.getVersion();
+        }
+
+        @Override
+        public boolean pcIsDirty() {
+            return _sm != null && _sm.isDirty();
+        }
+
+        @Override
+        public boolean pcIsTransactional() {
+            return _sm != null && _sm.isTransactional();
+        }
+
+        @Override
+        public boolean pcIsPersistent() {
+            return _sm != null && _sm.isPersistent();
+        }
+
+        @Override
+        public boolean pcIsNew() {
+            return _sm != null && _sm.isNew();
+        }
+
+        @Override
+        public boolean pcIsDeleted() {
+            return _sm != null && _sm.isDeleted();
+        }
+
+        @Override
+        public Boolean pcIsDetached() {
+            return (_sm == null) ? null : _sm.isDetached();
+        }
+
+        @Override
+        public PersistenceCapable pcNewInstance(StateManager sm,
+            boolean clear) {
+            Wide pc = new Wide();
+            pc._sm = sm;
+            return pc;
+        }
+
+        @Override
+        public PersistenceCapable pcNewInstance(StateManager sm, Object oid,
+            boolean clear) {
+            return pcNewInstance(sm, clear);
+        }
+
+        @Override
+        public Object pcNewObjectIdInstance() {
+            return null;
+        }
+
+        @Override
+        public Object pcNewObjectIdInstance(Object obj) {
+            return null;
+        }
+
+        @Override
+        public void pcCopyKeyFieldsToObjectId(Object oid) {
+        }
+
+        @Override
+        public void pcCopyKeyFieldsToObjectId(FieldSupplier supplier,
+            Object oid) {
+        }
+
+        @Override
+        public void pcCopyKeyFieldsFromObjectId(FieldConsumer consumer,
+            Object oid) {
+        }
+
+        @Override
+        public Object pcGetDetachedState() {
+            return null;
+        }
+
+        @Override
+        public void pcSetDetachedState(Object state) {
+        }
+    }
+}
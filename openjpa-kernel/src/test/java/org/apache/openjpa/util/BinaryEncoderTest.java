@@ -0,0 +1,136 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.openjpa.util;
+
+import java.util.Arrays;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class BinaryEncoderTest {
+
+    private BinaryDecoder decoder(BinaryEncoder out) {
+        return new BinaryDecoder(out.toByteArray(), getClass().getClassLoader());
+    }
+
+    @Test
+    public void testNumbers() {
+        BinaryEncoder out = new BinaryEncoder(1);
+        long[] longs = { 0, 1, -1, 127, 128, Long.MIN_VALUE, Long.MAX_VALUE };
+        for (long l : longs) {
+            out.writeSignedVarLong(l);
+            out.writeLong(l);
+        }
+        out.writeSignedVarInt(Integer.MIN_VALUE);
+        out.writeVarInt(300);
+        out.writeInt(-5);
+
+        BinaryDecoder in = decoder(out);
+        for (long l : longs) {
+            Assert.assertEquals(l, in.readSignedVarLong());
+            Assert.assertEquals(l, in.readLong());
+        }
+        Assert.assertEquals(Integer.MIN_VALUE, in.readSignedVarInt());
+        Assert.assertEquals(300, in.readVarInt());
+        Assert.assertEquals(-5, in.readInt());
+        Assert.assertEquals(0, in.remaining());
+    }
+
+    @Test
+    public void testSmallValuesAreCompact() {
+        BinaryEncoder out = new BinaryEncoder();
+        out.writeSignedVarLong(-3);
+        out.writeVarInt(127);
+        Assert.assertEquals(2, out.size());
+    }
+
+    @Test
+    public void testStringsAndBytes() {
+        BinaryEncoder out = new BinaryEncoder();
+        out.writeString(null);
+        out.writeString("");
+        out.writeString("grüße");
+        out.writeByteArray(new byte[] { 1, 2, 3 });
+
+        BinaryDecoder in = decoder(out);
+        Assert.assertNull(in.readString());
+        Assert.assertEquals("", in.readString());
+        Assert.assertEquals("grüße", in.readString());
+        Assert.assertTrue(Arrays.equals(new byte[] { 1, 2, 3 }, in.readByteArray()));
+    }
+
+    @Test
+    public void testClassesAreInterned() {
+        BinaryEncoder out = new BinaryEncoder();
+        out.writeClass(String.class);
+        int first = out.size();
+        out.writeClass(String.class);
+        out.writeClass(null);
+        Assert.assertEquals(first + 2, out.size());
+
+        BinaryDecoder in = decoder(out);
+        Assert.assertEquals(String.class, in.readClass());
+        Assert.assertEquals(String.class, in.readClass());
+        Assert.assertNull(in.readClass());
+    }
+
+    @Test
+    public void testObjectIds() {
+        Object[] oids = {
+            new LongId(String.class, 42L),
+            new IntId(Integer.class, -7, true),
+            new StringId(String.class, "key"),
+            "app-id",
+            null,
+        };
+        BinaryEncoder out = new BinaryEncoder();
+        for (Object oid : oids)
+            out.writeObjectId(oid);
+
+        BinaryDecoder in = decoder(out);
+        for (Object oid : oids) {
+            Object read = in.readObjectId();
+            Assert.assertEquals(oid, read);
+            if (oid instanceof OpenJPAId)
+                Assert.assertEquals(((OpenJPAId) oid).hasSubclasses(), ((OpenJPAId) read).hasSubclasses());
+        }
+    }
+
+    @Test
+    public void testForgedByteArrayLength() {
+        for (int len : new int[] { Integer.MAX_VALUE - 8, -1 }) {
+            BinaryEncoder out = new BinaryEncoder();
+            out.writeVarInt(len);
+            out.writeInt(0);
+            try {
+                new BinaryDecoder(out.toByteArray(), null).readByteArray();
+                Assert.fail("accepted a forged length of " + len);
+            } catch (StoreException se) {
+                // expected
+            }
+        }
+    }
+
+    @Test(expected = StoreException.class)
+    public void testUnderflow() {
+        BinaryEncoder out = new BinaryEncoder();
+        out.writeInt(1);
+        new BinaryDecoder(out.toByteArray(), 0, 2, null).readInt();
+    }
+}
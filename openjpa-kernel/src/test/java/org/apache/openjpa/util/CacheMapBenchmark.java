@@ -0,0 +1,107 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.openjpa.util;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * JMH benchmark comparing {@link CacheMap} and {@link SegmentedCacheMap}
+ * under a read-mostly workload. Run with:
+ * <pre>
+ * mvn test-compile
+ * java -cp target/test-classes:target/classes:&lt;test classpath&gt; \
+ *     org.apache.openjpa.util.CacheMapBenchmark
+ * </pre>
+ * The main method runs every benchmark at 1, 2, 4, 8, 16, 32 and 64 threads.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CacheMapBenchmark {
+
+    private static final int KEYS = 20000;
+
+    @Param({ "CacheMap", "SegmentedCacheMap" })
+    public String impl;
+
+    @Param({ "false", "true" })
+    public boolean lru;
+
+    /**
+     * Percentage of operations that are writes.
+     */
+    @Param({ "5" })
+    public int writePercent;
+
+    private CacheMap _map;
+    private Object[] _keys;
+
+    @Setup
+    public void setup() {
+        // the cache holds half of the key space so that writes evict
+        _map = "CacheMap".equals(impl)
+            ? new CacheMap(lru, KEYS / 2)
+            : new SegmentedCacheMap(lru, KEYS / 2, 32);
+        _keys = new Object[KEYS];
+        for (int i = 0; i < KEYS; i++) {
+            _keys[i] = new LongId(CacheMapBenchmark.class, i);
+            _map.put(_keys[i], "value" + i);
+        }
+    }
+
+    @Benchmark
+    public Object mixed() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        Object key = _keys[random.nextInt(KEYS)];
+        if (random.nextInt(100) < writePercent)
+            return _map.put(key, key);
+        return _map.get(key);
+    }
+
+    public static void main(String[] args)
+        throws RunnerException {
+        for (int threads = 1; threads <= 64; threads *= 2) {
+            Options opts = new OptionsBuilder()
+                .include(CacheMapBenchmark.class.getSimpleName())
+                .threads(threads)
+                .build();
+            new Runner(opts).run();
+        }
+    }
+}
@@ -0,0 +1,222 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.openjpa.util;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class SegmentedCacheMapTest {
+
+    @Test
+    public void testPutGetRemove() {
+        SegmentedCacheMap map = new SegmentedCacheMap();
+        Assert.assertNull(map.put("a", 1));
+        Assert.assertEquals(1, map.put("a", 2));
+        Assert.assertEquals(2, map.get("a"));
+        Assert.assertNull(map.get(null));
+        Assert.assertTrue(map.containsKey("a"));
+        Assert.assertEquals(1, map.size());
+        Assert.assertEquals(2, map.remove("a"));
+        Assert.assertTrue(map.isEmpty());
+    }
+
+    @Test
+    public void testSegmentCountIsPowerOfTwo() {
+        Assert.assertEquals(8, new SegmentedCacheMap(false, 100, 5).getSegmentCount());
+        Assert.assertEquals(1, new SegmentedCacheMap(false, 100, 0).getSegmentCount());
+    }
+
+    @Test
+    public void testOverflowMovesToSoftMap() {
+        SegmentedCacheMap map = new SegmentedCacheMap(false, 4, 1);
+        for (int i = 0; i < 10; i++)
+            map.put(i, i);
+        Assert.assertEquals(10, map.size());
+        // the oldest entries were moved to soft references
+        Assert.assertEquals(0, map.get(0));
+    }
+
+    @Test
+    public void testLruEvictsLeastRecentlyRead() {
+        final List<Object> expired = new ArrayList<>();
+        SegmentedCacheMap map = new SegmentedCacheMap(true, 3, 1) {
+            @Override
+            protected void entryRemoved(Object key, Object value, boolean exp) {
+                if (exp)
+                    expired.add(key);
+            }
+        };
+        map.setSoftReferenceSize(0);
+        map.put("a", 1);
+        map.put("b", 2);
+        map.put("c", 3);
+        // touch "a" often enough to flush the read buffer
+        for (int i = 0; i < 32; i++)
+            map.get("a");
+        map.put("d", 4);
+        Assert.assertEquals(1, expired.size());
+        Assert.assertEquals("b", expired.get(0));
+        Assert.assertEquals(1, map.get("a"));
+    }
+
+    @Test
+    public void testTinyLfuSurvivesScan() {
+        SegmentedCacheMap map = new SegmentedCacheMap(SegmentedCacheMap.EvictionPolicy.TINYLFU, 100, 1);
+        map.setSoftReferenceSize(0);
+        for (int i = 0; i < 50; i++)
+            map.put("hot" + i, i);
+        for (int round = 0; round < 5; round++)
+            for (int i = 0; i < 50; i++)
+                for (int j = 0; j < 16; j++)
+                    map.get("hot" + i);
+
+        // a scan of keys that are used once
+        for (int i = 0; i < 1000; i++)
+            map.put("scan" + i, i);
+
+        int hot = 0;
+        for (int i = 0; i < 50; i++)
+            if (map.get("hot" + i) != null)
+                hot++;
+        Assert.assertTrue("only " + hot + " hot entries left", hot >= 45);
+        Assert.assertTrue(map.size() <= 100);
+    }
+
+    @Test
+    public void testFrequencySketch() {
+        FrequencySketch sketch = new FrequencySketch();
+        sketch.ensureCapacity(64);
+        for (int i = 0; i < 5; i++)
+            sketch.increment("a");
+        sketch.increment("b");
+        Assert.assertTrue(sketch.frequency("a") >= 5);
+        Assert.assertTrue(sketch.frequency("a") > sketch.frequency("b"));
+        Assert.assertTrue(sketch.frequency("c") <= 1);
+
+        // counters saturate at 15
+        for (int i = 0; i < 100; i++)
+            sketch.increment("a");
+        Assert.assertTrue(sketch.frequency("a") <= 15);
+    }
+
+    @Test
+    public void testPinnedEntriesAreNotEvicted() {
+        SegmentedCacheMap map = new SegmentedCacheMap(false, 2, 1);
+        map.setSoftReferenceSize(0);
+        map.put("pinned", 0);
+        Assert.assertTrue(map.pin("pinned"));
+        for (int i = 0; i < 10; i++)
+            map.put(i, i);
+        Assert.assertEquals(0, map.get("pinned"));
+        Assert.assertTrue(map.getPinnedKeys().contains("pinned"));
+
+        // removing a pinned key keeps the pin
+        Assert.assertEquals(0, map.remove("pinned"));
+        Assert.assertTrue(map.getPinnedKeys().contains("pinned"));
+        Assert.assertFalse(map.containsKey("pinned"));
+        map.put("pinned", 1);
+        Assert.assertTrue(map.unpin("pinned"));
+        Assert.assertFalse(map.getPinnedKeys().contains("pinned"));
+        Assert.assertEquals(1, map.get("pinned"));
+    }
+
+    @Test
+    public void testPinMissingKey() {
+        SegmentedCacheMap map = new SegmentedCacheMap();
+        Assert.assertFalse(map.pin("x"));
+        Assert.assertTrue(map.getPinnedKeys().contains("x"));
+        Assert.assertFalse(map.unpin("x"));
+        Assert.assertTrue(map.getPinnedKeys().isEmpty());
+    }
+
+    @Test
+    public void testClearNotifiesAndUnpins() {
+        final AtomicInteger removed = new AtomicInteger();
+        SegmentedCacheMap map = new SegmentedCacheMap() {
+            @Override
+            protected void entryRemoved(Object key, Object value, boolean exp) {
+                removed.incrementAndGet();
+            }
+        };
+        map.put("a", 1);
+        map.put("b", 2);
+        map.pin("b");
+        map.clear();
+        Assert.assertEquals(2, removed.get());
+        Assert.assertTrue(map.isEmpty());
+        Assert.assertTrue(map.getPinnedKeys().isEmpty());
+    }
+
+    @Test
+    public void testViews() {
+        SegmentedCacheMap map = new SegmentedCacheMap();
+        for (int i = 0; i < 100; i++)
+            map.put(i, "v" + i);
+        map.pin(7);
+        Assert.assertEquals(100, map.keySet().size());
+        Assert.assertTrue(map.keySet().contains(7));
+        Assert.assertTrue(map.values().contains("v7"));
+        Assert.assertTrue(map.containsValue("v99"));
+
+        int count = 0;
+        for (Object key : map.keySet())
+            count++;
+        Assert.assertEquals(100, count);
+        map.entrySet().removeIf(e -> ((Integer) ((Map.Entry) e).getKey()) % 2 == 0);
+        Assert.assertEquals(50, map.size());
+    }
+
+    @Test
+    public void testConcurrentAccess() throws Exception {
+        final SegmentedCacheMap map = new SegmentedCacheMap(true, 500, 8);
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < 8; t++) {
+                final int seed = t;
+                futures.add(executor.submit(() -> {
+                    for (int i = 0; i < 20000; i++) {
+                        Integer key = (i * 31 + seed) % 2000;
+                        if (i % 10 == 0)
+                            map.put(key, key);
+                        else {
+                            Object val = map.get(key);
+                            if (val != null)
+                                Assert.assertEquals(key, val);
+                        }
+                    }
+                }));
+            }
+            // rethrows any failure of a worker on the test thread
+            for (Future<?> future : futures)
+                future.get();
+        } finally {
+            executor.shutdownNow();
+        }
+        Assert.assertTrue(map.size() <= 2000);
+    }
+}
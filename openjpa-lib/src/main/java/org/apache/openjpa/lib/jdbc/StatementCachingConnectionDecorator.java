@@ -0,0 +1,363 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.openjpa.lib.jdbc;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Connection decorator that keeps the prepared statements of each connection
+ * open once they are closed, and hands them out again when the same SQL is
+ * prepared with the same result set type and concurrency. Use it when the
+ * connections come from a pool that does not cache statements itself.
+ * Understands the following properties:
+ * <ul>
+ * <li>MaxStatements: the number of idle statements kept per connection,
+ * of which the least recently used are closed first. Defaults to 50;
+ * 0 disables the cache.</li>
+ * </ul>
+ * Closing a cached statement clears its parameters, batch and warnings,
+ * closes its current result set and restores the limits that were set on
+ * it. Closing the connection closes its idle statements. Statements that
+ * ask for generated keys or a result set holdability are not cached.
+ *
+ * @since 4.1.1
+ */
+public class StatementCachingConnectionDecorator
+    implements ConnectionDecorator {
+
+    private int _maxStatements = 50;
+    private final AtomicLong _hits = new AtomicLong();
+    private final AtomicLong _misses = new AtomicLong();
+
+    /**
+     * The number of idle prepared statements kept per connection.
+     * Defaults to 50.
+     */
+    public int getMaxStatements() {
+        return _maxStatements;
+    }
+
+    /**
+     * The number of idle prepared statements kept per connection.
+     * Use 0 to disable the cache.
+     */
+    public void setMaxStatements(int max) {
+        _maxStatements = max;
+    }
+
+    /**
+     * The number of statements that were handed out from the cache.
+     */
+    public long getHits() {
+        return _hits.get();
+    }
+
+    /**
+     * The number of statements that were prepared by the decorated
+     * connections because none was cached.
+     */
+    public long getMisses() {
+        return _misses.get();
+    }
+
+    /**
+     * Reset the hit and miss counters.
+     */
+    public void resetStatistics() {
+        _hits.set(0);
+        _misses.set(0);
+    }
+
+    @Override
+    public Connection decorate(Connection conn) {
+        if (_maxStatements <= 0)
+            return conn;
+        return new StatementCachingConnection(conn);
+    }
+
+    /**
+     * The key of a cached statement.
+     */
+    private static class StatementKey {
+
+        private final String _sql;
+        private final int _type;
+        private final int _concur;
+
+        StatementKey(String sql, int type, int concur) {
+            _sql = sql;
+            _type = type;
+            _concur = concur;
+        }
+
+        @Override
+        public int hashCode() {
+            return (_sql.hashCode() * 31 + _type) * 31 + _concur;
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            if (other == this)
+                return true;
+            if (!(other instanceof StatementKey))
+                return false;
+            StatementKey key = (StatementKey) other;
+            return _type == key._type && _concur == key._concur
+                && _sql.equals(key._sql);
+        }
+    }
+
+    /**
+     * Connection that caches its prepared statements.
+     */
+    public class StatementCachingConnection extends DelegatingConnection {
+
+        // idle statements in least recently used order
+        private final Map<StatementKey, CachedPreparedStatement> _idle;
+        private boolean _closed = false;
+
+        public StatementCachingConnection(Connection conn) {
+            super(conn);
+            _idle = new LinkedHashMap<>(16, 0.75f, true);
+        }
+
+        /**
+         * The number of idle statements this connection keeps.
+         */
+        public synchronized int getCachedStatementCount() {
+            return _idle.size();
+        }
+
+        @Override
+        protected PreparedStatement prepareStatement(String sql, boolean wrap)
+            throws SQLException {
+            return prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY,
+                ResultSet.CONCUR_READ_ONLY, wrap);
+        }
+
+        @Override
+        protected PreparedStatement prepareStatement(String sql, int type,
+            int concur, boolean wrap) throws SQLException {
+            StatementKey key = new StatementKey(sql, type, concur);
+            CachedPreparedStatement stmnt;
+            synchronized (this) {
+                stmnt = _idle.remove(key);
+            }
+            if (stmnt != null)
+                _hits.incrementAndGet();
+            else {
+                _misses.incrementAndGet();
+                stmnt = new CachedPreparedStatement(super.prepareStatement(sql,
+                    type, concur, false), this, key);
+            }
+            stmnt.checkout();
+            if (wrap)
+                return new DelegatingPreparedStatement(stmnt, this);
+            return stmnt;
+        }
+
+        /**
+         * Take back the given statement once it is closed, closing it if
+         * this connection is closed or the same statement is already idle.
+         */
+        void checkin(CachedPreparedStatement stmnt) throws SQLException {
+            List<CachedPreparedStatement> evicted = null;
+            synchronized (this) {
+                if (!_closed && !_idle.containsKey(stmnt.getKey())) {
+                    _idle.put(stmnt.getKey(), stmnt);
+                    stmnt = null;
+                    if (_idle.size() > _maxStatements) {
+                        evicted = new ArrayList<>();
+                        for (Iterator<CachedPreparedStatement> itr =
+                            _idle.values().iterator();
+                            _idle.size() > _maxStatements;) {
+                            evicted.add(itr.next());
+                            itr.remove();
+                        }
+                    }
+                }
+            }
+            if (stmnt != null)
+                stmnt.closeDelegate();
+            if (evicted != null)
+                for (CachedPreparedStatement idle : evicted)
+                    idle.closeDelegate();
+        }
+
+        @Override
+        public void close() throws SQLException {
+            List<CachedPreparedStatement> idle;
+            synchronized (this) {
+                _closed = true;
+                idle = new ArrayList<>(_idle.values());
+                _idle.clear();
+            }
+            try {
+                for (CachedPreparedStatement stmnt : idle)
+                    stmnt.closeDelegate();
+            } finally {
+                super.close();
+            }
+        }
+    }
+
+    /**
+     * Prepared statement that returns to the cache of its connection when
+     * closed.
+     */
+    private static class CachedPreparedStatement
+        extends DelegatingPreparedStatement {
+
+        private final StatementCachingConnection _conn;
+        private final StatementKey _key;
+        private boolean _open = false;
+        private boolean _batched = false;
+
+        // limits to restore before the statement is reused
+        private Integer _maxRows = null;
+        private Integer _fetchSize = null;
+        private Integer _fetchDirection = null;
+        private Integer _queryTimeout = null;
+        private Integer _maxFieldSize = null;
+
+        CachedPreparedStatement(PreparedStatement stmnt,
+            StatementCachingConnection conn, StatementKey key) {
+            super(stmnt, conn);
+            _conn = conn;
+            _key = key;
+        }
+
+        StatementKey getKey() {
+            return _key;
+        }
+
+        void checkout() {
+            _open = true;
+        }
+
+        void closeDelegate() throws SQLException {
+            getDelegate().close();
+        }
+
+        @Override
+        public void close() throws SQLException {
+            if (!_open)
+                return;
+            _open = false;
+            try {
+                reset();
+            } catch (SQLException se) {
+                closeDelegate();
+                return;
+            }
+            _conn.checkin(this);
+        }
+
+        @Override
+        public boolean isClosed() throws SQLException {
+            return !_open || super.isClosed();
+        }
+
+        /**
+         * Clear the state the last use left on the statement.
+         */
+        private void reset() throws SQLException {
+            PreparedStatement stmnt = getDelegate();
+            ResultSet rs = stmnt.getResultSet();
+            if (rs != null)
+                rs.close();
+            stmnt.clearParameters();
+            if (_batched) {
+                stmnt.clearBatch();
+                _batched = false;
+            }
+            stmnt.clearWarnings();
+            if (_maxRows != null) {
+                stmnt.setMaxRows(_maxRows);
+                _maxRows = null;
+            }
+            if (_fetchSize != null) {
+                stmnt.setFetchSize(_fetchSize);
+                _fetchSize = null;
+            }
+            if (_fetchDirection != null) {
+                stmnt.setFetchDirection(_fetchDirection);
+                _fetchDirection = null;
+            }
+            if (_queryTimeout != null) {
+                stmnt.setQueryTimeout(_queryTimeout);
+                _queryTimeout = null;
+            }
+            if (_maxFieldSize != null) {
+                stmnt.setMaxFieldSize(_maxFieldSize);
+                _maxFieldSize = null;
+            }
+        }
+
+        @Override
+        public void addBatch() throws SQLException {
+            _batched = true;
+            super.addBatch();
+        }
+
+        @Override
+        public void setMaxRows(int max) throws SQLException {
+            if (_maxRows == null)
+                _maxRows = getDelegate().getMaxRows();
+            super.setMaxRows(max);
+        }
+
+        @Override
+        public void setFetchSize(int size) throws SQLException {
+            if (_fetchSize == null)
+                _fetchSize = getDelegate().getFetchSize();
+            super.setFetchSize(size);
+        }
+
+        @Override
+        public void setFetchDirection(int direction) throws SQLException {
+            if (_fetchDirection == null)
+                _fetchDirection = getDelegate().getFetchDirection();
+            super.setFetchDirection(direction);
+        }
+
+        @Override
+        public void setQueryTimeout(int timeout) throws SQLException {
+            if (_queryTimeout == null)
+                _queryTimeout = getDelegate().getQueryTimeout();
+            super.setQueryTimeout(timeout);
+        }
+
+        @Override
+        public void setMaxFieldSize(int max) throws SQLException {
+            if (_maxFieldSize == null)
+                _maxFieldSize = getDelegate().getMaxFieldSize();
+            super.setMaxFieldSize(max);
+        }
+    }
+}
@@ -0,0 +1,209 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.openjpa.lib.jdbc;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+public class StatementCachingConnectionDecoratorTest {
+
+    private static final String URL =
+        "jdbc:derby:memory:StatementCachingConnectionDecoratorTest;create=true";
+    private static final String SELECT = "SELECT ID FROM SCTEST WHERE ID < ?";
+
+    private Connection _raw;
+    private CountingConnection _counting;
+
+    @Before
+    public void setUp() throws SQLException {
+        _raw = DriverManager.getConnection(URL);
+        try (Statement stmnt = _raw.createStatement()) {
+            try {
+                stmnt.execute("DROP TABLE SCTEST");
+            } catch (SQLException se) {
+                // does not exist yet
+            }
+            stmnt.execute("CREATE TABLE SCTEST (ID INTEGER)");
+            for (int i = 0; i < 10; i++)
+                stmnt.execute("INSERT INTO SCTEST VALUES (" + i + ")");
+        }
+        _counting = new CountingConnection(_raw);
+    }
+
+    @After
+    public void tearDown() throws SQLException {
+        if (!_raw.isClosed())
+            _raw.close();
+    }
+
+    @Test
+    public void testRepeatedSelectIsPreparedOnce() throws SQLException {
+        StatementCachingConnectionDecorator decorator =
+            new StatementCachingConnectionDecorator();
+        Connection conn = decorator.decorate(_counting);
+        for (int i = 0; i < 20; i++)
+            Assert.assertEquals(5, count(conn, 5));
+        Assert.assertEquals(1, _counting.prepares);
+        Assert.assertEquals(1, decorator.getMisses());
+        Assert.assertEquals(19, decorator.getHits());
+    }
+
+    @Test
+    public void testDisabledCachePreparesEachTime() throws SQLException {
+        StatementCachingConnectionDecorator decorator =
+            new StatementCachingConnectionDecorator();
+        decorator.setMaxStatements(0);
+        Connection conn = decorator.decorate(_counting);
+        Assert.assertSame(_counting, conn);
+        for (int i = 0; i < 20; i++)
+            Assert.assertEquals(5, count(conn, 5));
+        Assert.assertEquals(20, _counting.prepares);
+    }
+
+    @Test
+    public void testResultSetTypeIsPartOfKey() throws SQLException {
+        StatementCachingConnectionDecorator decorator =
+            new StatementCachingConnectionDecorator();
+        Connection conn = decorator.decorate(_counting);
+        conn.prepareStatement(SELECT).close();
+        conn.prepareStatement(SELECT, ResultSet.TYPE_SCROLL_INSENSITIVE,
+            ResultSet.CONCUR_READ_ONLY).close();
+        conn.prepareStatement(SELECT, ResultSet.TYPE_FORWARD_ONLY,
+            ResultSet.CONCUR_READ_ONLY).close();
+        Assert.assertEquals(2, _counting.prepares);
+        Assert.assertEquals(1, decorator.getHits());
+    }
+
+    @Test
+    public void testLeastRecentlyUsedStatementIsClosed() throws SQLException {
+        StatementCachingConnectionDecorator decorator =
+            new StatementCachingConnectionDecorator();
+        decorator.setMaxStatements(2);
+        StatementCachingConnectionDecorator.StatementCachingConnection conn =
+            (StatementCachingConnectionDecorator.StatementCachingConnection)
+                decorator.decorate(_counting);
+        PreparedStatement stmnt = conn.prepareStatement(SELECT);
+        PreparedStatement first = unwrap(stmnt);
+        stmnt.close();
+        conn.prepareStatement("SELECT ID FROM SCTEST").close();
+        conn.prepareStatement(SELECT).close();
+        conn.prepareStatement("SELECT COUNT(*) FROM SCTEST").close();
+        Assert.assertEquals(2, conn.getCachedStatementCount());
+        Assert.assertEquals(3, _counting.prepares);
+
+        // the plain select was used least recently
+        conn.prepareStatement(SELECT).close();
+        Assert.assertEquals(3, _counting.prepares);
+        conn.prepareStatement("SELECT ID FROM SCTEST").close();
+        Assert.assertEquals(4, _counting.prepares);
+        Assert.assertFalse(first.isClosed());
+    }
+
+    @Test
+    public void testStatementIsResetWhenReused() throws SQLException {
+        StatementCachingConnectionDecorator decorator =
+            new StatementCachingConnectionDecorator();
+        Connection conn = decorator.decorate(_counting);
+        PreparedStatement stmnt = conn.prepareStatement(SELECT);
+        stmnt.setMaxRows(2);
+        stmnt.setInt(1, 5);
+        ResultSet rs = stmnt.executeQuery();
+        int rows = 0;
+        while (rs.next())
+            rows++;
+        Assert.assertEquals(2, rows);
+        stmnt.close();
+        Assert.assertTrue(stmnt.isClosed());
+
+        stmnt = conn.prepareStatement(SELECT);
+        Assert.assertEquals(0, stmnt.getMaxRows());
+        Assert.assertEquals(1, _counting.prepares);
+        stmnt.close();
+    }
+
+    @Test
+    public void testClosingConnectionClosesStatements() throws SQLException {
+        StatementCachingConnectionDecorator decorator =
+            new StatementCachingConnectionDecorator();
+        Connection conn = decorator.decorate(_counting);
+        PreparedStatement stmnt = conn.prepareStatement(SELECT);
+        PreparedStatement driver = unwrap(stmnt);
+        stmnt.close();
+        Assert.assertFalse(driver.isClosed());
+        conn.close();
+        Assert.assertTrue(driver.isClosed());
+        Assert.assertTrue(_raw.isClosed());
+    }
+
+    private static int count(Connection conn, int max) throws SQLException {
+        try (PreparedStatement stmnt = conn.prepareStatement(SELECT)) {
+            stmnt.setInt(1, max);
+            try (ResultSet rs = stmnt.executeQuery()) {
+                int rows = 0;
+                while (rs.next())
+                    rows++;
+                return rows;
+            }
+        }
+    }
+
+    /**
+     * Return the driver statement under the given decorated one.
+     */
+    private static PreparedStatement unwrap(PreparedStatement stmnt) {
+        while (stmnt instanceof DelegatingPreparedStatement)
+            stmnt = ((DelegatingPreparedStatement) stmnt).getDelegate();
+        return stmnt;
+    }
+
+    /**
+     * Counts the statements the driver prepares.
+     */
+    private static class CountingConnection extends DelegatingConnection {
+
+        int prepares = 0;
+
+        CountingConnection(Connection conn) {
+            super(conn);
+        }
+
+        @Override
+        protected PreparedStatement prepareStatement(String sql, int type,
+            int concur, boolean wrap) throws SQLException {
+            prepares++;
+            return super.prepareStatement(sql, type, concur, wrap);
+        }
+
+        @Override
+        protected PreparedStatement prepareStatement(String sql, boolean wrap)
+            throws SQLException {
+            prepares++;
+            return super.prepareStatement(sql, wrap);
+        }
+    }
+}
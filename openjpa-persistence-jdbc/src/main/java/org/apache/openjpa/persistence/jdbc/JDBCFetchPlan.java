@@ -116,6 +116,44 @@ public interface JDBCFetchPlan
      */
     JDBCFetchPlan setIsolation(IsolationLevel level);
 
+    /**
+     * The number of eager parallel selects of a query that may run at the
+     * same time, each on a connection of its own. This overrides the
+     * persistence-unit-wide <code>openjpa.jdbc.EagerParallelism</code> value.
+     *
+     * @since 4.1.1
+     */
+    int getEagerParallelism();
+
+    /**
+     * The number of eager parallel selects of a query that may run at the
+     * same time, each on a connection of its own. This overrides the
+     * persistence-unit-wide <code>openjpa.jdbc.EagerParallelism</code> value.
+     *
+     * @since 4.1.1
+     */
+    JDBCFetchPlan setEagerParallelism(int parallelism);
+
+    /**
+     * The number of instances of the same type whose unloaded to-one
+     * relation is loaded by a single select when the relation of one of
+     * them is first accessed. This overrides the persistence-unit-wide
+     * <code>openjpa.jdbc.RelationBatchSize</code> value.
+     *
+     * @since 4.1.1
+     */
+    int getRelationBatchSize();
+
+    /**
+     * The number of instances of the same type whose unloaded to-one
+     * relation is loaded by a single select when the relation of one of
+     * them is first accessed. This overrides the persistence-unit-wide
+     * <code>openjpa.jdbc.RelationBatchSize</code> value.
+     *
+     * @since 4.1.1
+     */
+    JDBCFetchPlan setRelationBatchSize(int size);
+
 
     // covariant type support for return vals
 
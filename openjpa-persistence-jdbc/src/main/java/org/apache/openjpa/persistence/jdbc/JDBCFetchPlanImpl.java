@@ -205,6 +205,28 @@ public class JDBCFetchPlanImpl
         return this;
     }
 
+    @Override
+    public int getEagerParallelism() {
+        return _fetch.getEagerParallelism();
+    }
+
+    @Override
+    public JDBCFetchPlanImpl setEagerParallelism(int parallelism) {
+        _fetch.setEagerParallelism(parallelism);
+        return this;
+    }
+
+    @Override
+    public int getRelationBatchSize() {
+        return _fetch.getRelationBatchSize();
+    }
+
+    @Override
+    public JDBCFetchPlanImpl setRelationBatchSize(int size) {
+        _fetch.setRelationBatchSize(size);
+        return this;
+    }
+
     @Override
     public JDBCFetchPlan setJoinSyntax(int syntax) {
         _fetch.setJoinSyntax(syntax);
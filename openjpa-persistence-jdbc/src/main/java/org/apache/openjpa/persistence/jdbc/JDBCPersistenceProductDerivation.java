@@ -126,10 +126,12 @@ public class JDBCPersistenceProductDerivation
     private static Set<String> _hints = new HashSet<>();
     static {
         _hints.add("openjpa.FetchPlan.EagerFetchMode");
+        _hints.add("openjpa.FetchPlan.EagerParallelism");
         _hints.add("openjpa.FetchPlan.FetchDirection");
         _hints.add("openjpa.FetchPlan.Isolation");
         _hints.add("openjpa.FetchPlan.JoinSyntax");
         _hints.add("openjpa.FetchPlan.LRSSize");
+        _hints.add("openjpa.FetchPlan.RelationBatchSize");
         _hints.add("openjpa.FetchPlan.ResultSetType");
         _hints.add("openjpa.FetchPlan.SubclassFetchMode");
 
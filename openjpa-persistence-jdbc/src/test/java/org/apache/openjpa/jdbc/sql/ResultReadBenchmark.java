@@ -0,0 +1,177 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.openjpa.jdbc.sql;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.TypedQuery;
+
+import org.apache.openjpa.persistence.OpenJPAEntityManagerFactorySPI;
+import org.apache.openjpa.persistence.PersistenceProviderImpl;
+import org.apache.openjpa.persistence.PersistenceUnitInfoImpl;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * JMH benchmark reading {@link ScannedRow} instances, a wide entity with int,
+ * long, double and string columns and an eager to-one relation, through
+ * queries of a page of rows each. Each operation reads every row once. Run
+ * with the <code>test-h2</code> profile to read from an in-memory H2
+ * database, or else from an in-memory Derby database:
+ * <pre>
+ * mvn -Ptest-h2 test-compile
+ * java -cp target/test-classes:target/classes:&lt;test classpath&gt; \
+ *     org.apache.openjpa.jdbc.sql.ResultReadBenchmark -prof gc
+ * </pre>
+ * The <code>gc.alloc.rate.norm</code> result of the <code>gc</code>
+ * profiler divided by the number of rows gives the bytes allocated per row
+ * read. Arguments are passed to the JMH runner. The database is set through
+ * the <code>openjpa.ConnectionDriverName</code> and
+ * <code>openjpa.ConnectionURL</code> system properties.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+public class ResultReadBenchmark {
+
+    private static final String H2_DRIVER = "org.h2.Driver";
+    private static final int GROUPS = 100;
+    private static final int PAGE = 10000;
+
+    @Param({ "1000000" })
+    public int rows;
+
+    private OpenJPAEntityManagerFactorySPI _emf;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        PersistenceUnitInfoImpl pui = new PersistenceUnitInfoImpl();
+        pui.setPersistenceUnitName(getClass().getSimpleName());
+        pui.setExcludeUnlistedClasses(true);
+        pui.addManagedClassName(ScannedGroup.class.getName());
+        pui.addManagedClassName(ScannedRow.class.getName());
+
+        Map<String, Object> map = new HashMap<>();
+        map.put("openjpa.ConnectionDriverName", System.getProperty(
+            "openjpa.ConnectionDriverName", isH2() ? H2_DRIVER
+                : "org.apache.derby.jdbc.EmbeddedDriver"));
+        map.put("openjpa.ConnectionURL", System.getProperty(
+            "openjpa.ConnectionURL", isH2()
+                ? "jdbc:h2:mem:ResultReadBenchmark;DB_CLOSE_DELAY=-1"
+                : "jdbc:derby:memory:ResultReadBenchmark;create=true"));
+        map.put("openjpa.jdbc.SynchronizeMappings",
+            "buildSchema(ForeignKeys=true,SchemaAction='drop,add')");
+        map.put("openjpa.RuntimeUnenhancedClasses", "supported");
+        map.put("openjpa.Log", "DefaultLevel=WARN");
+        _emf = (OpenJPAEntityManagerFactorySPI) new PersistenceProviderImpl()
+            .createContainerEntityManagerFactory(pui, map);
+        populate();
+    }
+
+    private static boolean isH2() {
+        try {
+            Class.forName(H2_DRIVER);
+            return true;
+        } catch (ClassNotFoundException e) {
+            return false;
+        }
+    }
+
+    private void populate() {
+        EntityManager em = _emf.createEntityManager();
+        try {
+            ScannedGroup[] groups = new ScannedGroup[GROUPS];
+            em.getTransaction().begin();
+            for (int i = 0; i < GROUPS; i++) {
+                groups[i] = new ScannedGroup(i, "group-" + i);
+                em.persist(groups[i]);
+            }
+            em.getTransaction().commit();
+
+            for (int first = 0; first < rows; first += PAGE) {
+                em.getTransaction().begin();
+                for (int id = first; id < Math.min(rows, first + PAGE); id++)
+                    em.persist(new ScannedRow(id, em.getReference(
+                        ScannedGroup.class, (long) (id % GROUPS))));
+                em.getTransaction().commit();
+                em.clear();
+            }
+        } finally {
+            em.close();
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        _emf.close();
+    }
+
+    @Benchmark
+    public void read(Blackhole bh) {
+        EntityManager em = _emf.createEntityManager();
+        try {
+            TypedQuery<ScannedRow> q = em.createQuery("select r from "
+                + "ScannedRow r where r.id >= :first and r.id < :last",
+                ScannedRow.class);
+            for (long first = 0; first < rows; first += PAGE) {
+                List<ScannedRow> page = q.setParameter("first", first)
+                    .setParameter("last", first + PAGE).getResultList();
+                for (ScannedRow row : page)
+                    bh.consume(row.checksum());
+                em.clear();
+            }
+        } finally {
+            em.close();
+        }
+    }
+
+    public static void main(String[] args)
+        throws CommandLineOptionException, RunnerException {
+        Options opts = new OptionsBuilder()
+            .parent(new CommandLineOptions(args))
+            .include(ResultReadBenchmark.class.getSimpleName())
+            .build();
+        new Runner(opts).run();
+    }
+}
@@ -0,0 +1,115 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.openjpa.jdbc.sql;
+
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.ManyToOne;
+
+/**
+ * Wide entity with primitive, string and to-one columns, read by
+ * {@link ResultReadBenchmark}.
+ */
+@Entity
+public class ScannedRow {
+
+    @Id
+    private long id;
+
+    @ManyToOne
+    private ScannedGroup owner;
+
+    private int i0;
+    private int i1;
+    private int i2;
+    private int i3;
+    private int i4;
+    private int i5;
+    private int i6;
+    private int i7;
+
+    private long l0;
+    private long l1;
+    private long l2;
+    private long l3;
+    private long l4;
+    private long l5;
+    private long l6;
+    private long l7;
+
+    private double d0;
+    private double d1;
+    private double d2;
+    private double d3;
+
+    private String s0;
+    private String s1;
+    private String s2;
+
+    public ScannedRow() {
+    }
+
+    public ScannedRow(long id, ScannedGroup owner) {
+        this.id = id;
+        this.owner = owner;
+        i0 = (int) id;
+        i1 = (int) id + 1;
+        i2 = (int) id + 2;
+        i3 = (int) id + 3;
+        i4 = (int) id + 4;
+        i5 = (int) id + 5;
+        i6 = (int) id + 6;
+        i7 = (int) id + 7;
+        l0 = id;
+        l1 = id * 2;
+        l2 = id * 3;
+        l3 = id * 4;
+        l4 = id * 5;
+        l5 = id * 6;
+        l6 = id * 7;
+        l7 = id * 8;
+        d0 = id / 2.0;
+        d1 = id / 3.0;
+        d2 = id / 4.0;
+        d3 = id / 5.0;
+        s0 = "row-" + id + "-0";
+        s1 = "row-" + id + "-1";
+        s2 = "row-" + id + "-2";
+    }
+
+    public long getId() {
+        return id;
+    }
+
+    public ScannedGroup getOwner() {
+        return owner;
+    }
+
+    /**
+     * Combine every column, so that reading it cannot be skipped.
+     */
+    public long checksum() {
+        long sum = id + owner.getId();
+        sum += i0 + i1 + i2 + i3 + i4 + i5 + i6 + i7;
+        sum += l0 + l1 + l2 + l3 + l4 + l5 + l6 + l7;
+        sum += (long) (d0 + d1 + d2 + d3);
+        sum += s0.length() + s1.length() + s2.length();
+        return sum;
+    }
+}
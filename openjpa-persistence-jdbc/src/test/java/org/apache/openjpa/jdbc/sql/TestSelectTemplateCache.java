@@ -0,0 +1,321 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.openjpa.jdbc.sql;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.LockModeType;
+import jakarta.persistence.Query;
+
+import org.apache.openjpa.jdbc.conf.JDBCConfiguration;
+import org.apache.openjpa.jdbc.kernel.JDBCFetchConfiguration;
+import org.apache.openjpa.kernel.QueryHints;
+import org.apache.openjpa.lib.jdbc.AbstractJDBCListener;
+import org.apache.openjpa.lib.jdbc.JDBCEvent;
+import org.apache.openjpa.persistence.OpenJPAEntityManagerFactorySPI;
+import org.apache.openjpa.persistence.test.SingleEMFTestCase;
+
+/**
+ * Tests that selects rendered from the template of their shape have the same
+ * SQL and results as selects rendered by the dictionary, including locking
+ * clauses, ranges and the select hints and clauses that dictionaries derive
+ * from the fetch configuration and the select.
+ */
+public class TestSelectTemplateCache extends SingleEMFTestCase {
+
+    private static final int ITEMS = 20;
+    private static final String HINT = "/*+ FIRST_ROWS */";
+
+    private OpenJPAEntityManagerFactorySPI cached;
+
+    @Override
+    public void setUp() throws Exception {
+        // queries are rendered each time rather than reused as prepared SQL
+        super.setUp(TemplateItem.class,
+            "openjpa.jdbc.QuerySQLCache", "false",
+            "openjpa.jdbc.DBDictionary", TemplateDictionary.class.getName()
+                + "(selectTemplateCacheSize=0)",
+            "openjpa.jdbc.JDBCListeners", SQLRecorder.class.getName());
+        cached = createEMF(TemplateItem.class,
+            "openjpa.ConnectionURL", "jdbc:derby:memory:TestSelectTemplateCached;create=true",
+            "openjpa.jdbc.QuerySQLCache", "false",
+            "openjpa.jdbc.DBDictionary", TemplateDictionary.class.getName()
+                + "(selectTemplateCacheSize=100)",
+            "openjpa.jdbc.JDBCListeners", SQLRecorder.class.getName());
+        assertNull(getDictionary(emf).getSelectTemplateCache());
+        assertNotNull(getDictionary(cached).getSelectTemplateCache());
+
+        Object[] items = new Object[ITEMS];
+        for (int i = 0; i < ITEMS; i++)
+            items[i] = new TemplateItem(i + 1, "item-" + (i + 1), i % 7);
+        persist(items);
+        EntityManager em = cached.createEntityManager();
+        em.getTransaction().begin();
+        for (int i = 0; i < ITEMS; i++)
+            em.persist(new TemplateItem(i + 1, "item-" + (i + 1), i % 7));
+        em.getTransaction().commit();
+        em.close();
+    }
+
+    @Override
+    public void tearDown() throws Exception {
+        cached.close();
+        super.tearDown();
+    }
+
+    private static DBDictionary getDictionary(OpenJPAEntityManagerFactorySPI factory) {
+        return ((JDBCConfiguration) factory.getConfiguration())
+            .getDBDictionaryInstance();
+    }
+
+    /**
+     * The work of a test on an entity manager, returning what it read.
+     */
+    private interface Work {
+        List<Object> run(EntityManager em);
+    }
+
+    /**
+     * Run the given work on the factory that renders every select and on
+     * the one that reuses templates, and assert that they execute the same
+     * SQL and read the same results. The work runs twice on the factory with
+     * templates, so that the second run is rendered from templates.
+     */
+    private void assertSameSQL(Work work) {
+        List<String> expectedSQL = new ArrayList<>();
+        List<Object> expected = run(emf, work, expectedSQL);
+
+        SelectTemplateCache templates = getDictionary(cached).getSelectTemplateCache();
+        List<String> sql = new ArrayList<>();
+        assertEquals(expected, run(cached, work, sql));
+        assertEquals(expectedSQL, sql);
+        int size = templates.size();
+        assertTrue(size > 0);
+
+        sql.clear();
+        assertEquals(expected, run(cached, work, sql));
+        assertEquals(expectedSQL, sql);
+        assertEquals(size, templates.size());
+    }
+
+    private static List<Object> run(OpenJPAEntityManagerFactorySPI factory, Work work,
+        List<String> sql) {
+        EntityManager em = factory.createEntityManager();
+        try {
+            SQLRecorder.SQL.clear();
+            List<Object> results = work.run(em);
+            for (String stmnt : SQLRecorder.SQL)
+                if (stmnt.startsWith("SELECT"))
+                    sql.add(stmnt);
+            return results;
+        } finally {
+            if (em.getTransaction().isActive())
+                em.getTransaction().rollback();
+            em.close();
+            SQLRecorder.SQL.clear();
+        }
+    }
+
+    private static List<Object> describe(List<?> items) {
+        List<Object> results = new ArrayList<>();
+        for (Object item : items)
+            results.add(describe((TemplateItem) item));
+        return results;
+    }
+
+    private static String describe(TemplateItem item) {
+        return (item == null) ? null : item.getId() + ":" + item.getName();
+    }
+
+    public void testFindBindsEachIdentity() {
+        assertSameSQL(em -> {
+            List<Object> results = new ArrayList<>();
+            for (long id = 1; id <= ITEMS + 2; id++)
+                results.add(describe(em.find(TemplateItem.class, id)));
+            return results;
+        });
+    }
+
+    public void testLockingClause() {
+        assertSameSQL(em -> {
+            List<Object> results = new ArrayList<>();
+            em.getTransaction().begin();
+            results.add(describe(em.find(TemplateItem.class, 1L)));
+            results.add(describe(em.find(TemplateItem.class, 2L,
+                LockModeType.PESSIMISTIC_WRITE)));
+            results.add(describe(em.find(TemplateItem.class, 3L,
+                LockModeType.PESSIMISTIC_WRITE)));
+            results.add(describe(em.find(TemplateItem.class, 4L)));
+            results.add(describe(em.createQuery("select i from TemplateItem i "
+                + "where i.rank = 2 order by i.id").setLockMode(LockModeType.PESSIMISTIC_WRITE)
+                .getResultList()));
+            results.add(describe(em.createQuery("select i from TemplateItem i "
+                + "where i.rank = 2 order by i.id").getResultList()));
+            em.getTransaction().commit();
+            return results;
+        });
+        List<String> sql = new ArrayList<>();
+        run(cached, em -> {
+            em.getTransaction().begin();
+            em.find(TemplateItem.class, 5L, LockModeType.PESSIMISTIC_WRITE);
+            em.find(TemplateItem.class, 6L);
+            return null;
+        }, sql);
+        DBDictionary dict = getDictionary(cached);
+        assertEquals(2, sql.size());
+        assertTrue(sql.get(0), sql.get(0).contains(dict.forUpdateClause));
+        assertFalse(sql.get(1), sql.get(1).contains(dict.forUpdateClause));
+    }
+
+    public void testRanges() {
+        String jpql = "select i from TemplateItem i where i.rank > 1 order by i.id";
+        assertSameSQL(em -> {
+            List<Object> results = new ArrayList<>();
+            int[][] ranges = { { 0, 3 }, { 2, 3 }, { 2, 5 }, { 0, 3 }, { 4, 0 }, { 0, 0 } };
+            for (int[] range : ranges) {
+                Query q = em.createQuery(jpql);
+                if (range[0] > 0)
+                    q.setFirstResult(range[0]);
+                if (range[1] > 0)
+                    q.setMaxResults(range[1]);
+                results.add(describe(q.getResultList()));
+            }
+            return results;
+        });
+    }
+
+    public void testLeastRecentShapesAreEvicted() {
+        // each range is a shape of its own
+        String jpql = "select i from TemplateItem i where i.rank > 1 order by i.id";
+        SelectTemplateCache templates = getDictionary(cached).getSelectTemplateCache();
+        int shapes = 300;
+        run(cached, em -> {
+            for (int first = 1; first <= shapes; first++)
+                em.createQuery(jpql).setFirstResult(first).getResultList();
+            return null;
+        }, new ArrayList<>());
+        int size = templates.size();
+        assertTrue(String.valueOf(size), size > 0 && size < shapes / 2);
+
+        // the most recent shape is kept and reused
+        List<String> sql = new ArrayList<>();
+        List<Object> results = run(cached, em -> describe(em.createQuery(jpql)
+            .setFirstResult(shapes).getResultList()), sql);
+        assertEquals(Collections.emptyList(), results);
+        assertEquals(1, sql.size());
+        assertEquals(size, templates.size());
+    }
+
+    public void testOptimizeClause() {
+        // the clause follows the expected number of results of the select
+        String jpql = "select i from TemplateItem i where i.rank > 1 order by i.id";
+        assertSameSQL(em -> {
+            List<Object> results = new ArrayList<>();
+            for (int count : new int[]{ 3, 5, 0, 3 }) {
+                Query q = em.createQuery(jpql);
+                if (count > 0)
+                    q.setHint(QueryHints.HINT_RESULT_COUNT, count);
+                results.add(describe(q.getResultList()));
+            }
+            results.add(describe(em.find(TemplateItem.class, 7L)));
+            return results;
+        });
+        List<String> sql = new ArrayList<>();
+        run(cached, em -> {
+            em.createQuery(jpql).setHint(QueryHints.HINT_RESULT_COUNT, 3).getResultList();
+            em.createQuery(jpql).setHint(QueryHints.HINT_RESULT_COUNT, 5).getResultList();
+            em.createQuery(jpql).getResultList();
+            em.find(TemplateItem.class, 8L);
+            return null;
+        }, sql);
+        assertEquals(4, sql.size());
+        assertTrue(sql.get(0), sql.get(0).contains("optimize for 3 rows"));
+        assertTrue(sql.get(1), sql.get(1).contains("optimize for 5 rows"));
+        assertFalse(sql.get(2), sql.get(2).contains("optimize for"));
+        assertTrue(sql.get(3), sql.get(3).contains("optimize for 1 rows"));
+    }
+
+    public void testSelectHint() {
+        String jpql = "select i from TemplateItem i where i.rank < 3 order by i.name";
+        assertSameSQL(em -> {
+            List<Object> results = new ArrayList<>();
+            results.add(describe(em.createQuery(jpql).getResultList()));
+            results.add(describe(em.createQuery(jpql)
+                .setHint(TemplateDictionary.SELECT_HINT, HINT).getResultList()));
+            results.add(describe(em.createQuery(jpql).getResultList()));
+            results.add(describe(em.createQuery(jpql)
+                .setHint(TemplateDictionary.SELECT_HINT, HINT).getResultList()));
+            return results;
+        });
+        List<String> sql = new ArrayList<>();
+        run(cached, em -> {
+            em.createQuery(jpql).getResultList();
+            em.createQuery(jpql).setHint(TemplateDictionary.SELECT_HINT, HINT)
+                .getResultList();
+            return null;
+        }, sql);
+        assertEquals(2, sql.size());
+        assertFalse(sql.get(0), sql.get(0).contains(HINT));
+        assertTrue(sql.get(1), sql.get(1).startsWith("SELECT " + HINT));
+    }
+
+    /**
+     * A dictionary that, like those of Oracle and MySQL, adds a hint from the
+     * fetch configuration after the SELECT keyword and, like that of DB2, adds
+     * an optimize clause for the expected number of results of the select.
+     * Both are rendered as comments so that Derby runs the statements.
+     */
+    public static class TemplateDictionary extends DerbyDictionary {
+
+        public static final String SELECT_HINT = OracleDictionary.SELECT_HINT;
+
+        @Override
+        public String getSelectOperation(JDBCFetchConfiguration fetch) {
+            Object hint = fetch == null ? null : fetch.getHint(SELECT_HINT);
+            return (hint == null) ? "SELECT" : "SELECT " + hint;
+        }
+
+        @Override
+        protected String getForUpdateClause(JDBCFetchConfiguration fetch,
+            boolean isForUpdate, Select sel) {
+            String clause = super.getForUpdateClause(fetch, isForUpdate, sel);
+            if (sel == null || sel.getExpectedResultCount() <= 0)
+                return clause;
+            String optimize = "/* optimize for " + sel.getExpectedResultCount()
+                + " rows */";
+            return (clause == null) ? optimize : clause + " " + optimize;
+        }
+    }
+
+    /**
+     * Records the SQL of the statements executed.
+     */
+    public static class SQLRecorder extends AbstractJDBCListener {
+
+        static final List<String> SQL = Collections.synchronizedList(new ArrayList<>());
+
+        @Override
+        public void beforeExecuteStatement(JDBCEvent event) {
+            SQL.add(event.getSQL());
+        }
+    }
+}
@@ -0,0 +1,162 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.openjpa.persistence.batch;
+
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.SQLException;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceException;
+
+import org.apache.openjpa.jdbc.sql.BulkInsert;
+import org.apache.openjpa.jdbc.sql.DerbyDictionary;
+import org.apache.openjpa.persistence.test.SingleEMFTestCase;
+
+/**
+ * Tests inserts through the text format of {@link BulkInsert}, which the
+ * Derby dictionary binds back to a batch of the insert statement.
+ */
+public class TestBulkInsert extends SingleEMFTestCase {
+
+    private static final int THRESHOLD = 5;
+
+    @Override
+    public void setUp() throws Exception {
+        CountingDictionary.reset();
+        super.setUp(BulkItem.class,
+            "openjpa.jdbc.DBDictionary", CountingDictionary.class.getName()
+                + "(batchLimit=3,bulkInsertThreshold=" + THRESHOLD + ")");
+    }
+
+    private BulkItem find(long id) {
+        EntityManager em = emf.createEntityManager();
+        try {
+            return em.find(BulkItem.class, id);
+        } finally {
+            em.close();
+        }
+    }
+
+    private long count() {
+        EntityManager em = emf.createEntityManager();
+        try {
+            return em.createQuery("select count(i) from BulkItem i", Long.class)
+                .getSingleResult();
+        } finally {
+            em.close();
+        }
+    }
+
+    public void testInsertsRows() {
+        BulkItem[] items = new BulkItem[10];
+        for (int i = 0; i < items.length; i++)
+            items[i] = new BulkItem(i, "item-" + i, i, new BigDecimal(i + ".25"), i % 2 == 0);
+        persist((Object[]) items);
+
+        assertEquals(1, CountingDictionary.calls);
+        assertEquals(items.length, CountingDictionary.rows);
+        assertEquals(items.length, count());
+        BulkItem item = find(7);
+        assertEquals("item-7", item.getName());
+        assertEquals(Integer.valueOf(7), item.getAmount());
+        assertEquals(new BigDecimal("7.25"), item.getPrice().setScale(2));
+        assertFalse(item.isActive());
+        assertTrue(find(8).isActive());
+    }
+
+    public void testSmallBatchesAreNotBulkLoaded() {
+        persist(new BulkItem(1, "one", 1, null, true),
+            new BulkItem(2, "two", 2, null, false));
+        assertEquals(0, CountingDictionary.calls);
+        assertEquals(2, count());
+    }
+
+    public void testNulls() {
+        BulkItem[] items = new BulkItem[THRESHOLD];
+        for (int i = 0; i < items.length; i++)
+            items[i] = new BulkItem(i, null, null, null, false);
+        // the text of a null value, given as a string
+        items[1] = new BulkItem(1, BulkInsert.NULL, null, null, true);
+        persist((Object[]) items);
+
+        assertEquals(1, CountingDictionary.calls);
+        BulkItem item = find(0);
+        assertNull(item.getName());
+        assertNull(item.getAmount());
+        assertNull(item.getPrice());
+        assertEquals(BulkInsert.NULL, find(1).getName());
+    }
+
+    public void testEscapedText() {
+        String[] names = {
+            "tab\there", "line\nbreak", "carriage\rreturn", "back\\slash",
+            "trailing\\", "'single' and \"double\" quotes", "comma, separated",
+            "\\t not a tab", "",
+        };
+        BulkItem[] items = new BulkItem[names.length];
+        for (int i = 0; i < names.length; i++)
+            items[i] = new BulkItem(i, names[i], i, null, false);
+        persist((Object[]) items);
+
+        assertEquals(1, CountingDictionary.calls);
+        for (int i = 0; i < names.length; i++)
+            assertEquals(names[i], find(i).getName());
+    }
+
+    public void testFailureRollsBack() {
+        persist(new BulkItem(3, "existing", 3, null, false));
+        BulkItem[] items = new BulkItem[THRESHOLD];
+        for (int i = 0; i < items.length; i++)
+            items[i] = new BulkItem(i, "item-" + i, i, null, false);
+        try {
+            persist((Object[]) items);
+            fail("duplicate key inserted");
+        } catch (PersistenceException pe) {
+            // expected
+        }
+
+        assertEquals(1, CountingDictionary.calls);
+        assertEquals(1, count());
+        assertEquals("existing", find(3).getName());
+    }
+
+    /**
+     * Derby dictionary that counts its bulk loads.
+     */
+    public static class CountingDictionary extends DerbyDictionary {
+
+        static int calls;
+        static long rows;
+
+        static void reset() {
+            calls = 0;
+            rows = 0;
+        }
+
+        @Override
+        public long bulkInsert(Connection conn, BulkInsert bulk)
+            throws SQLException {
+            calls++;
+            long count = super.bulkInsert(conn, bulk);
+            rows += count;
+            return count;
+        }
+    }
+}
@@ -0,0 +1,232 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.openjpa.persistence.batch;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import jakarta.persistence.EntityManager;
+
+import org.apache.openjpa.lib.jdbc.AbstractJDBCListener;
+import org.apache.openjpa.lib.jdbc.JDBCEvent;
+import org.apache.openjpa.persistence.test.SingleEMFTestCase;
+
+/**
+ * Tests that grouping the rows of a flush by table keeps every
+ * row after the rows it references, when inserts and deletes of parents and
+ * children are interleaved in a way that breaks the foreign keys if the rows
+ * are flushed in the order they were changed.
+ */
+public class TestGroupedFlush extends SingleEMFTestCase {
+
+    private static final int DEPTS = 4;
+    private static final int EMPS = 3;
+
+    @Override
+    public void setUp() throws Exception {
+        SQLRecorder.SQL.clear();
+        super.setUp(FlushDept.class, FlushEmp.class, FlushTask.class,
+            "openjpa.jdbc.UpdateManager", "batching-constraint(GroupRowsByTable=true)",
+            "openjpa.jdbc.MappingDefaults",
+                "ForeignKeyDeleteAction=restrict,JoinForeignKeyDeleteAction=restrict",
+            "openjpa.jdbc.JDBCListeners", SQLRecorder.class.getName());
+        EntityManager em = emf.createEntityManager();
+        em.getTransaction().begin();
+        newDepts(em, 0);
+        em.getTransaction().commit();
+        em.close();
+    }
+
+    /**
+     * Persist departments, employees and tasks with identities from the given
+     * base, each child before its parent and the tables interleaved.
+     */
+    private static void newDepts(EntityManager em, int base) {
+        for (int d = 0; d < DEPTS; d++) {
+            FlushDept dept = new FlushDept(base + d, "dept-" + (base + d));
+            for (int e = 0; e < EMPS; e++) {
+                long id = base + d * EMPS + e;
+                FlushEmp emp = new FlushEmp(id, dept);
+                em.persist(new FlushTask(id, emp));
+                em.persist(emp);
+            }
+            em.persist(dept);
+        }
+    }
+
+    private long count(EntityManager em, Class<?> cls) {
+        return em.createQuery("select count(x) from " + cls.getSimpleName() + " x",
+            Long.class).getSingleResult();
+    }
+
+    /**
+     * The indexes of the first and last statements with the given prefix.
+     */
+    private static int[] span(List<String> sql, String prefix) {
+        int first = -1;
+        int last = -1;
+        for (int i = 0; i < sql.size(); i++) {
+            if (sql.get(i).startsWith(prefix)) {
+                if (first == -1)
+                    first = i;
+                last = i;
+            }
+        }
+        return new int[]{ first, last };
+    }
+
+    public void testInsertsFollowReferencedRows() {
+        List<String> sql = new ArrayList<>(SQLRecorder.SQL);
+        int[] depts = span(sql, "INSERT INTO FlushDept");
+        int[] emps = span(sql, "INSERT INTO FlushEmp");
+        int[] tasks = span(sql, "INSERT INTO FlushTask");
+        assertTrue(sql.toString(), depts[0] != -1 && depts[1] < emps[0]);
+        assertTrue(sql.toString(), emps[1] < tasks[0]);
+
+        EntityManager em = emf.createEntityManager();
+        assertEquals(DEPTS, count(em, FlushDept.class));
+        assertEquals(DEPTS * EMPS, count(em, FlushEmp.class));
+        assertEquals(DEPTS * EMPS, count(em, FlushTask.class));
+        FlushTask task = em.find(FlushTask.class, (long) EMPS + 1);
+        assertEquals(1, task.getEmp().getDept().getId());
+        em.close();
+    }
+
+    public void testInterleavedInsertsAndDeletes() {
+        int base = 100;
+        EntityManager em = emf.createEntityManager();
+        em.getTransaction().begin();
+        // remove the first departments before their employees and tasks,
+        // alternating with inserts of new ones
+        for (int d = 0; d < DEPTS / 2; d++) {
+            FlushDept dept = em.find(FlushDept.class, (long) d);
+            em.remove(dept);
+            for (int e = 0; e < EMPS; e++) {
+                long id = d * EMPS + e;
+                FlushEmp emp = em.find(FlushEmp.class, id);
+                em.remove(emp);
+                FlushDept added = new FlushDept(base + id, "added-" + id);
+                em.persist(new FlushEmp(base + id, added));
+                em.remove(em.find(FlushTask.class, id));
+                em.persist(added);
+            }
+        }
+        // move an employee to a new department and remove its old one
+        FlushDept moved = new FlushDept(base * 2, "moved");
+        FlushEmp emp = em.find(FlushEmp.class, (long) (DEPTS - 1) * EMPS);
+        FlushDept old = emp.getDept();
+        emp.setDept(moved);
+        em.persist(moved);
+        for (int e = 1; e < EMPS; e++) {
+            long id = (DEPTS - 1) * EMPS + e;
+            em.remove(em.find(FlushTask.class, id));
+            em.remove(em.find(FlushEmp.class, id));
+        }
+        em.remove(em.find(FlushTask.class, (long) (DEPTS - 1) * EMPS));
+        em.remove(old);
+        em.getTransaction().commit();
+        em.close();
+
+        em = emf.createEntityManager();
+        int removed = DEPTS / 2 * EMPS;
+        assertEquals(DEPTS - DEPTS / 2 - 1 + removed + 1, count(em, FlushDept.class));
+        assertEquals(DEPTS * EMPS - removed + removed - (EMPS - 1),
+            count(em, FlushEmp.class));
+        assertEquals(DEPTS * EMPS - removed - EMPS, count(em, FlushTask.class));
+        assertNull(em.find(FlushDept.class, 0L));
+        assertNull(em.find(FlushDept.class, (long) DEPTS - 1));
+        assertEquals(base * 2, em.find(FlushEmp.class, (long) (DEPTS - 1) * EMPS)
+            .getDept().getId());
+        assertEquals(base + 1, em.find(FlushEmp.class, (long) base + 1).getDept().getId());
+        em.close();
+    }
+
+    public void testChildrenMovedBeforeParentDeleted() {
+        EntityManager em = emf.createEntityManager();
+        em.getTransaction().begin();
+        // delete a department first, then point its employees elsewhere and
+        // replace it under the same name in a new row
+        FlushDept gone = em.find(FlushDept.class, 0L);
+        em.remove(gone);
+        FlushDept replacement = new FlushDept(50, gone.getName());
+        for (int e = 0; e < EMPS; e++)
+            em.find(FlushEmp.class, (long) e).setDept(replacement);
+        em.persist(replacement);
+        em.getTransaction().commit();
+        em.close();
+
+        em = emf.createEntityManager();
+        assertNull(em.find(FlushDept.class, 0L));
+        for (int e = 0; e < EMPS; e++)
+            assertEquals(50, em.find(FlushEmp.class, (long) e).getDept().getId());
+        em.close();
+    }
+
+    public void testCrossReferencedTables() {
+        // each department is managed by an employee of the one before it, so
+        // the departments and employees alternate down the chain
+        int base = 200;
+        int length = 4;
+        EntityManager em = emf.createEntityManager();
+        em.getTransaction().begin();
+        List<Object> chain = new ArrayList<>();
+        FlushEmp manager = null;
+        for (int i = 0; i < length; i++) {
+            FlushDept dept = new FlushDept(base + i, "chain-" + i);
+            dept.setManager(manager);
+            manager = new FlushEmp(base + i, dept);
+            chain.add(dept);
+            chain.add(manager);
+        }
+        Collections.reverse(chain);
+        for (Object pc : chain)
+            em.persist(pc);
+        em.getTransaction().commit();
+        em.close();
+
+        em = emf.createEntityManager();
+        for (int i = 1; i < length; i++)
+            assertEquals(base + i - 1, em.find(FlushDept.class, (long) base + i)
+                .getManager().getId());
+        em.getTransaction().begin();
+        // remove the chain from its head, the reverse of the needed order
+        for (int i = 0; i < length; i++) {
+            em.remove(em.find(FlushDept.class, (long) base + i));
+            em.remove(em.find(FlushEmp.class, (long) base + i));
+        }
+        em.getTransaction().commit();
+        assertNull(em.find(FlushDept.class, (long) base));
+        assertEquals(DEPTS, count(em, FlushDept.class));
+        em.close();
+    }
+
+    /**
+     * Records the SQL of the statements executed.
+     */
+    public static class SQLRecorder extends AbstractJDBCListener {
+
+        static final List<String> SQL = Collections.synchronizedList(new ArrayList<>());
+
+        @Override
+        public void beforeExecuteStatement(JDBCEvent event) {
+            SQL.add(event.getSQL());
+        }
+    }
+}
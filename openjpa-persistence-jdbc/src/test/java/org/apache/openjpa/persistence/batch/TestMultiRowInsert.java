@@ -0,0 +1,239 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.openjpa.persistence.batch;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import jakarta.persistence.EntityManager;
+
+import org.apache.openjpa.jdbc.kernel.BatchingConstraintUpdateManager;
+import org.apache.openjpa.jdbc.kernel.BatchingPreparedStatementManagerImpl;
+import org.apache.openjpa.jdbc.kernel.JDBCStore;
+import org.apache.openjpa.jdbc.kernel.PreparedStatementManager;
+import org.apache.openjpa.jdbc.sql.RowImpl;
+import org.apache.openjpa.persistence.test.SingleEMFTestCase;
+import org.apache.openjpa.util.ExceptionInfo;
+
+/**
+ * Tests that batches of inserts are sent as statements that list the values
+ * of several rows, that the update counts of those statements are checked,
+ * that tables with auto-assigned keys are inserted a row at a time, and that
+ * a batch that fails part way through is rolled back.
+ */
+public class TestMultiRowInsert extends SingleEMFTestCase {
+
+    @Override
+    public void setUp() throws Exception {
+        setUp(3, 0);
+    }
+
+    private void setUp(int batchLimit, int maxParameters) throws Exception {
+        CountingUpdateManager.reset();
+        super.setUp(BulkItem.class, IdentityItem.class,
+            "openjpa.jdbc.DBDictionary", "derby(batchLimit=" + batchLimit
+                + (maxParameters > 0 ? ",maxParametersPerStatement=" + maxParameters : "")
+                + ")",
+            "openjpa.jdbc.UpdateManager", CountingUpdateManager.class.getName()
+                + "(MultiRowInsert=true)");
+    }
+
+    private static BulkItem[] newItems(int count) {
+        BulkItem[] items = new BulkItem[count];
+        for (int i = 0; i < count; i++)
+            items[i] = new BulkItem(i, "item-" + i, i, null, i % 2 == 0);
+        return items;
+    }
+
+    private long count(Class<?> type) {
+        EntityManager em = emf.createEntityManager();
+        try {
+            return em.createQuery("select count(i) from " + type.getSimpleName()
+                + " i", Long.class).getSingleResult();
+        } finally {
+            em.close();
+        }
+    }
+
+    /**
+     * The number of rows whose values are listed in each insert statement.
+     */
+    private static List<Integer> getRowsPerStatement() {
+        List<Integer> rows = new ArrayList<>();
+        for (String sql : CountingUpdateManager.SQL)
+            rows.add(sql.split("\\), \\(").length);
+        return rows;
+    }
+
+    public void testUpdateCounts() {
+        BulkItem[] items = newItems(7);
+        persist((Object[]) items);
+
+        assertEquals(List.of(3, 3, 1), getRowsPerStatement());
+        assertEquals(List.of(3, 3, 1), CountingUpdateManager.COUNTS);
+        assertEquals(7, count(BulkItem.class));
+        EntityManager em = emf.createEntityManager();
+        try {
+            for (BulkItem item : items) {
+                BulkItem found = em.find(BulkItem.class, item.getId());
+                assertEquals(item.getName(), found.getName());
+                assertEquals(item.getAmount(), found.getAmount());
+                assertEquals(item.isActive(), found.isActive());
+            }
+        } finally {
+            em.close();
+        }
+    }
+
+    public void testParameterLimit() throws Exception {
+        emf.close();
+        // five columns of ten parameters leave two rows a statement
+        setUp(3, 10);
+        persist((Object[]) newItems(7));
+        assertEquals(List.of(2, 2, 2, 1), getRowsPerStatement());
+        assertEquals(7, count(BulkItem.class));
+    }
+
+    public void testWrongUpdateCountFails() {
+        CountingUpdateManager.reported = 2;
+        try {
+            persist((Object[]) newItems(3));
+            fail("Expected a wrong update count to fail the flush");
+        } catch (RuntimeException e) {
+            // expected
+        }
+        CountingUpdateManager.reported = null;
+        assertEquals(0, count(BulkItem.class));
+
+        // drivers may not report the count
+        CountingUpdateManager.reported = Statement.SUCCESS_NO_INFO;
+        persist((Object[]) newItems(3));
+        CountingUpdateManager.reported = null;
+        assertEquals(3, count(BulkItem.class));
+    }
+
+    public void testAutoAssignedKeysInsertRowByRow() {
+        IdentityItem[] items = new IdentityItem[5];
+        for (int i = 0; i < items.length; i++)
+            items[i] = new IdentityItem("identity-" + i);
+        persist((Object[]) items);
+
+        assertEquals(List.of(1, 1, 1, 1, 1), getRowsPerStatement());
+        assertEquals(List.of(1, 1, 1, 1, 1), CountingUpdateManager.COUNTS);
+        Set<Long> ids = new HashSet<>();
+        EntityManager em = emf.createEntityManager();
+        try {
+            for (IdentityItem item : items) {
+                assertTrue(ids.add(item.getId()));
+                assertEquals(item.getName(),
+                    em.find(IdentityItem.class, item.getId()).getName());
+            }
+        } finally {
+            em.close();
+        }
+    }
+
+    public void testFailurePartWayRollsBack() {
+        persist(new BulkItem(4, "existing", 4, null, false));
+        CountingUpdateManager.reset();
+        try {
+            persist((Object[]) newItems(7));
+            fail("Expected the duplicate key to fail the flush");
+        } catch (RuntimeException e) {
+            // the statement of the second three rows fails after the first
+            assertNull(getFailedObject(e));
+        }
+        assertEquals(List.of(3), CountingUpdateManager.COUNTS);
+        assertEquals(2, CountingUpdateManager.SQL.size());
+        assertEquals(1, count(BulkItem.class));
+    }
+
+    public void testFailedRowIsReported() throws Exception {
+        emf.close();
+        // one row a statement identifies the row that failed
+        setUp(3, 5);
+        persist(new BulkItem(4, "existing", 4, null, false));
+        CountingUpdateManager.reset();
+        BulkItem[] items = newItems(7);
+        try {
+            persist((Object[]) items);
+            fail("Expected the duplicate key to fail the flush");
+        } catch (RuntimeException e) {
+            Object failed = getFailedObject(e);
+            assertNotNull(e.toString(), failed);
+            assertEquals(4, ((BulkItem) failed).getId());
+        }
+        assertEquals(List.of(1, 1, 1, 1), CountingUpdateManager.COUNTS);
+        assertEquals(1, count(BulkItem.class));
+    }
+
+    private static Object getFailedObject(Throwable t) {
+        for (; t != null; t = t.getCause())
+            if (t instanceof ExceptionInfo
+                && ((ExceptionInfo) t).getFailedObject() instanceof BulkItem)
+                return ((ExceptionInfo) t).getFailedObject();
+        return null;
+    }
+
+    /**
+     * Update manager that records the SQL and update counts of the
+     * statements that insert rows, and that may report another count.
+     */
+    public static class CountingUpdateManager
+        extends BatchingConstraintUpdateManager {
+
+        static final List<String> SQL = Collections.synchronizedList(new ArrayList<>());
+        static final List<Integer> COUNTS = Collections.synchronizedList(new ArrayList<>());
+        static volatile Integer reported;
+
+        static void reset() {
+            SQL.clear();
+            COUNTS.clear();
+            reported = null;
+        }
+
+        @Override
+        protected PreparedStatementManager newPreparedStatementManager(
+            JDBCStore store, Connection conn) {
+            BatchingPreparedStatementManagerImpl psMgr =
+                new BatchingPreparedStatementManagerImpl(store, conn,
+                    dict.getBatchLimit()) {
+                @Override
+                protected int executeUpdate(PreparedStatement stmnt,
+                    String sql, RowImpl row) throws SQLException {
+                    if (sql.startsWith("INSERT"))
+                        SQL.add(sql);
+                    int count = super.executeUpdate(stmnt, sql, row);
+                    if (sql.startsWith("INSERT"))
+                        COUNTS.add(count);
+                    return (reported != null) ? reported : count;
+                }
+            };
+            psMgr.setMultiRowInsert(isMultiRowInsert());
+            return psMgr;
+        }
+    }
+}
@@ -0,0 +1,39 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.openjpa.persistence.identity;
+
+import jakarta.persistence.Entity;
+
+@Entity
+public class LongLeaf extends LongNode {
+
+    private int depth;
+
+    public LongLeaf() {
+    }
+
+    public LongLeaf(long id, String name, LongNode parent, LongNode link, int depth) {
+        super(id, name, parent, link);
+        this.depth = depth;
+    }
+
+    public int getDepth() {
+        return depth;
+    }
+}
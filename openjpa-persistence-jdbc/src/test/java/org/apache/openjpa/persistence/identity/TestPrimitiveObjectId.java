@@ -0,0 +1,220 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.openjpa.persistence.identity;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import jakarta.persistence.EntityManager;
+
+import org.apache.openjpa.enhance.PersistenceCapable;
+import org.apache.openjpa.kernel.OpenJPAStateManager;
+import org.apache.openjpa.persistence.test.SingleEMFTestCase;
+import org.apache.openjpa.util.IntId;
+import org.apache.openjpa.util.LongId;
+import org.apache.openjpa.util.OpenJPAId;
+
+/**
+ * Tests finding and loading entities whose oids are created straight from
+ * the value of a single int or long key column, including subclasses found
+ * through a relation to their base class, null foreign keys and keys of 0.
+ */
+public class TestPrimitiveObjectId extends SingleEMFTestCase {
+
+    private final List<IntNode> ints = new ArrayList<>();
+    private final List<LongNode> longs = new ArrayList<>();
+
+    @Override
+    public void setUp() throws Exception {
+        super.setUp(IntNode.class, IntLeaf.class, LongNode.class,
+            LongLeaf.class);
+        IntNode root = new IntNode(0, "root", null, null);
+        IntNode leaf = new IntLeaf(-7, "leaf", root, null, 1);
+        IntNode node = new IntNode(Integer.MAX_VALUE, "node", leaf, leaf);
+        ints.add(root);
+        ints.add(leaf);
+        ints.add(node);
+        ints.add(new IntLeaf(42, "deep", node, root, 2));
+
+        LongNode lroot = new LongNode(0, "root", null, null);
+        LongNode lleaf = new LongLeaf(Long.MIN_VALUE + 1, "leaf", lroot, null, 1);
+        LongNode lnode = new LongNode(Long.MAX_VALUE, "node", lleaf, lleaf);
+        longs.add(lroot);
+        longs.add(lleaf);
+        longs.add(lnode);
+        longs.add(new LongLeaf(5000000000L, "deep", lnode, lroot, 2));
+
+        List<Object> pcs = new ArrayList<>(ints);
+        pcs.addAll(longs);
+        persist(pcs.toArray());
+    }
+
+    private static String describe(IntNode node) {
+        if (node == null)
+            return "null";
+        String desc = node.getClass().getSimpleName() + ":" + node.getId()
+            + ":" + node.getName();
+        if (node instanceof IntLeaf)
+            desc += ":" + ((IntLeaf) node).getDepth();
+        return desc + " parent=" + describeRef(node.getParent())
+            + " link=" + describeRef(node.getLink());
+    }
+
+    private static String describeRef(IntNode node) {
+        return (node == null) ? "null"
+            : node.getClass().getSimpleName() + ":" + node.getId();
+    }
+
+    private static String describe(LongNode node) {
+        if (node == null)
+            return "null";
+        String desc = node.getClass().getSimpleName() + ":" + node.getId()
+            + ":" + node.getName();
+        if (node instanceof LongLeaf)
+            desc += ":" + ((LongLeaf) node).getDepth();
+        return desc + " parent=" + describeRef(node.getParent())
+            + " link=" + describeRef(node.getLink());
+    }
+
+    private static String describeRef(LongNode node) {
+        return (node == null) ? "null"
+            : node.getClass().getSimpleName() + ":" + node.getId();
+    }
+
+    private static Object getObjectId(Object pc) {
+        return ((OpenJPAStateManager) ((PersistenceCapable) pc)
+            .pcGetStateManager()).getObjectId();
+    }
+
+    public void testFindIntKeys() {
+        for (IntNode expected : ints) {
+            EntityManager em = emf.createEntityManager();
+            try {
+                IntNode found = em.find(IntNode.class, expected.getId());
+                assertEquals(describe(expected), describe(found));
+                assertEquals(IntId.class, getObjectId(found).getClass());
+            } finally {
+                em.close();
+            }
+        }
+
+        EntityManager em = emf.createEntityManager();
+        try {
+            assertNull(em.find(IntLeaf.class, Integer.MAX_VALUE));
+            assertNull(em.find(IntNode.class, 1));
+            assertEquals(describe(ints.get(1)),
+                describe(em.find(IntLeaf.class, -7)));
+        } finally {
+            em.close();
+        }
+    }
+
+    public void testFindLongKeys() {
+        for (LongNode expected : longs) {
+            EntityManager em = emf.createEntityManager();
+            try {
+                LongNode found = em.find(LongNode.class, expected.getId());
+                assertEquals(describe(expected), describe(found));
+                assertEquals(LongId.class, getObjectId(found).getClass());
+            } finally {
+                em.close();
+            }
+        }
+
+        EntityManager em = emf.createEntityManager();
+        try {
+            assertNull(em.find(LongLeaf.class, Long.MAX_VALUE));
+            assertNull(em.find(LongNode.class, 1L));
+            assertEquals(describe(longs.get(1)),
+                describe(em.find(LongLeaf.class, Long.MIN_VALUE + 1)));
+        } finally {
+            em.close();
+        }
+    }
+
+    public void testQueryIntKeys() {
+        EntityManager em = emf.createEntityManager();
+        try {
+            List<String> expected = new ArrayList<>();
+            for (IntNode node : ints)
+                expected.add(describe(node));
+            expected.sort(null);
+            List<String> actual = new ArrayList<>();
+            for (IntNode node : em.createQuery("select n from IntNode n",
+                IntNode.class).getResultList()) {
+                actual.add(describe(node));
+                // the oid names the subclass read from the discriminator
+                assertEquals(node.getClass(),
+                    ((OpenJPAId) getObjectId(node)).getType());
+            }
+            actual.sort(null);
+            assertEquals(expected, actual);
+
+            // the related nodes are read through the foreign key columns
+            List<IntNode> children = em.createQuery("select n from IntNode n "
+                + "where n.parent is not null order by n.id", IntNode.class)
+                .getResultList();
+            assertEquals(3, children.size());
+            assertSame(em.find(IntNode.class, 0), children.get(0).getParent());
+            assertEquals(IntNode.class, children.get(1).getParent().getClass());
+            assertTrue(children.get(2).getParent() instanceof IntLeaf);
+            assertEquals(1, em.createQuery("select n.parent from IntNode n "
+                + "where n.id = 42", IntNode.class).getResultList().size());
+            assertEquals(2, em.createQuery("select n from IntLeaf n",
+                IntNode.class).getResultList().size());
+        } finally {
+            em.close();
+        }
+    }
+
+    public void testQueryLongKeys() {
+        EntityManager em = emf.createEntityManager();
+        try {
+            List<String> expected = new ArrayList<>();
+            for (LongNode node : longs)
+                expected.add(describe(node));
+            expected.sort(null);
+            List<String> actual = new ArrayList<>();
+            for (LongNode node : em.createQuery("select n from LongNode n",
+                LongNode.class).getResultList()) {
+                actual.add(describe(node));
+                // the oid names the subclass read from the discriminator
+                assertEquals(node.getClass(),
+                    ((OpenJPAId) getObjectId(node)).getType());
+            }
+            actual.sort(null);
+            assertEquals(expected, actual);
+
+            List<LongNode> children = em.createQuery("select n from LongNode n "
+                + "where n.parent is not null order by n.id", LongNode.class)
+                .getResultList();
+            assertEquals(3, children.size());
+            assertTrue(children.get(0).getParent() instanceof LongNode);
+            assertTrue(children.get(2).getParent() instanceof LongLeaf);
+            LongNode parent = em.createQuery("select n.parent from LongNode n "
+                + "where n.id = 5000000000", LongNode.class).getSingleResult();
+            assertEquals(Long.MAX_VALUE, parent.getId());
+            assertTrue(parent.getLink() instanceof LongLeaf);
+            assertEquals(2, em.createQuery("select n from LongLeaf n",
+                LongNode.class).getResultList().size());
+        } finally {
+            em.close();
+        }
+    }
+}
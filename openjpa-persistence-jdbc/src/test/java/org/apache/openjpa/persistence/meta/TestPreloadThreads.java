@@ -0,0 +1,171 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.openjpa.persistence.meta;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.apache.openjpa.jdbc.meta.ClassMapping;
+import org.apache.openjpa.jdbc.meta.FieldMapping;
+import org.apache.openjpa.jdbc.meta.ValueMapping;
+import org.apache.openjpa.jdbc.schema.Column;
+import org.apache.openjpa.lib.log.LogFactoryImpl;
+import org.apache.openjpa.meta.ClassMetaData;
+import org.apache.openjpa.meta.MetaDataRepository;
+import org.apache.openjpa.persistence.OpenJPAEntityManagerFactorySPI;
+import org.apache.openjpa.persistence.batch.BulkItem;
+import org.apache.openjpa.persistence.batch.FlushDept;
+import org.apache.openjpa.persistence.batch.FlushEmp;
+import org.apache.openjpa.persistence.batch.FlushTask;
+import org.apache.openjpa.persistence.batch.IdentityItem;
+import org.apache.openjpa.persistence.query.KeysetGroup;
+import org.apache.openjpa.persistence.query.KeysetItem;
+import org.apache.openjpa.persistence.query.StreamedItem;
+import org.apache.openjpa.persistence.relations.BatchOwner;
+import org.apache.openjpa.persistence.relations.BatchRelated;
+import org.apache.openjpa.persistence.relations.EagerOwner;
+import org.apache.openjpa.persistence.relations.EagerPart;
+import org.apache.openjpa.persistence.relations.EagerTag;
+import org.apache.openjpa.persistence.sequence.SeqItem;
+import org.apache.openjpa.persistence.test.SingleEMFTestCase;
+
+/**
+ * Tests that preloading the metadata repository with the classes read on
+ * several threads resolves the same metadata and mappings as preloading it
+ * on one thread.
+ */
+public class TestPreloadThreads extends SingleEMFTestCase {
+
+    private static final Class<?>[] TYPES = {
+        BulkItem.class, IdentityItem.class, FlushDept.class, FlushEmp.class,
+        FlushTask.class, KeysetGroup.class, KeysetItem.class,
+        StreamedItem.class, BatchOwner.class, BatchRelated.class,
+        EagerOwner.class, EagerPart.class, EagerTag.class, SeqItem.class,
+    };
+
+    @Override
+    public void setUp() {
+        RecordingLogFactory.MESSAGES.clear();
+    }
+
+    /**
+     * Create a factory that preloads its metadata on the given number of
+     * threads, and describe the metadata of each of its classes.
+     */
+    private Map<String, String> preload(int threads) {
+        List<Object> props = new ArrayList<>(Arrays.asList((Object[]) TYPES));
+        props.addAll(Arrays.asList(
+            "openjpa.MetaDataRepository", "Preload=true,PreloadThreads=" + threads,
+            "openjpa.Log", RecordingLogFactory.class.getName()
+                + "(DefaultLevel=WARN,MetaData=INFO)"));
+        OpenJPAEntityManagerFactorySPI factory = createEMF(props.toArray());
+        try {
+            MetaDataRepository repos = factory.getConfiguration()
+                .getMetaDataRepositoryInstance();
+            assertEquals(threads, repos.getPreloadThreads());
+            Map<String, String> descriptions = new TreeMap<>();
+            for (ClassMetaData meta : repos.getMetaDatas())
+                descriptions.put(meta.getDescribedType().getName(),
+                    describe((ClassMapping) meta));
+            return descriptions;
+        } finally {
+            factory.close();
+        }
+    }
+
+    private static String describe(ClassMapping mapping) {
+        StringBuilder buf = new StringBuilder();
+        buf.append(mapping.getTable()).append(' ')
+            .append(mapping.getIdentityType()).append(' ')
+            .append(mapping.getObjectIdType()).append(' ')
+            .append(Arrays.toString(mapping.getPrimaryKeyColumns())).append(' ')
+            .append(mapping.getStrategy().getClass().getName()).append(' ')
+            .append(mapping.getVersion().getStrategy().getClass().getName());
+        for (FieldMapping field : mapping.getFieldMappings()) {
+            buf.append("\n  ").append(field.getIndex()).append(' ')
+                .append(field.getName()).append(' ')
+                .append(field.getDeclaredType().getName()).append(' ')
+                .append(field.getTypeCode()).append(' ')
+                .append(field.isPrimaryKey()).append(' ')
+                .append(field.getStrategy().getClass().getName()).append(' ')
+                .append(columns(field.getColumns())).append(' ')
+                .append(field.getMappedBy()).append(' ')
+                .append(field.isInDefaultFetchGroup()).append(' ')
+                .append(field.getEagerFetchMode()).append(' ');
+            describe(buf, field.getElementMapping());
+            describe(buf, field.getKeyMapping());
+            describe(buf, field);
+        }
+        return buf.toString();
+    }
+
+    private static void describe(StringBuilder buf, ValueMapping value) {
+        buf.append('[').append(value.getDeclaredType())
+            .append(' ').append(value.getTypeMetaData() == null ? null
+                : value.getTypeMetaData().getDescribedType().getName())
+            .append(' ').append(columns(value.getColumns()))
+            .append(' ').append(value.getJoinDirection()).append(']');
+    }
+
+    private static String columns(Column[] cols) {
+        List<String> names = new ArrayList<>();
+        for (Column col : cols)
+            names.add(col.getTable() + "." + col.getIdentifier() + ":"
+                + col.getType());
+        return names.toString();
+    }
+
+    public void testSameMetaDataAsSerialPreload() {
+        Map<String, String> serial = preload(1);
+        assertEquals(TYPES.length, serial.size());
+        assertTrue(RecordingLogFactory.MESSAGES.toString(),
+            RecordingLogFactory.MESSAGES.stream().anyMatch(m -> m.contains("on 1 threads")));
+
+        RecordingLogFactory.MESSAGES.clear();
+        Map<String, String> concurrent = preload(4);
+        assertTrue(RecordingLogFactory.MESSAGES.toString(),
+            RecordingLogFactory.MESSAGES.stream().anyMatch(m -> m.contains("on 4 threads")));
+        assertEquals(serial.keySet(), concurrent.keySet());
+        for (String type : serial.keySet())
+            assertEquals(type, serial.get(type), concurrent.get(type));
+    }
+
+    /**
+     * Log factory that records the messages it logs.
+     */
+    public static class RecordingLogFactory extends LogFactoryImpl {
+
+        static final List<String> MESSAGES = Collections.synchronizedList(new ArrayList<>());
+
+        @Override
+        protected LogImpl newLogImpl() {
+            return new LogImpl() {
+                @Override
+                protected void log(short level, String message, Throwable t) {
+                    MESSAGES.add(message);
+                    super.log(level, message, t);
+                }
+            };
+        }
+    }
+}
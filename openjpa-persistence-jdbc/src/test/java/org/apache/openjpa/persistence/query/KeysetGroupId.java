@@ -0,0 +1,54 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.openjpa.persistence.query;
+
+import java.io.Serializable;
+import java.util.Objects;
+
+public class KeysetGroupId implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    public String region;
+
+    public int number;
+
+    public KeysetGroupId() {
+    }
+
+    public KeysetGroupId(String region, int number) {
+        this.region = region;
+        this.number = number;
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        if (other == this)
+            return true;
+        if (!(other instanceof KeysetGroupId))
+            return false;
+        KeysetGroupId id = (KeysetGroupId) other;
+        return number == id.number && Objects.equals(region, id.region);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(region, number);
+    }
+}
@@ -0,0 +1,354 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.openjpa.persistence.query;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.Query;
+
+import org.apache.openjpa.jdbc.sql.DerbyDictionary;
+import org.apache.openjpa.lib.jdbc.AbstractJDBCListener;
+import org.apache.openjpa.lib.jdbc.JDBCEvent;
+import org.apache.openjpa.persistence.OpenJPAEntityManagerFactorySPI;
+import org.apache.openjpa.persistence.OpenJPAQuery;
+import org.apache.openjpa.persistence.test.SingleEMFTestCase;
+
+/**
+ * Tests that queries paged by keyset return the results that follow the
+ * given ordering values, in every direction and at every page boundary, and
+ * that queries that can not be paged by keyset are rejected.
+ */
+public class TestKeysetPaging extends SingleEMFTestCase {
+
+    private static final int ITEMS = 30;
+
+    private static final Comparator<KeysetItem> BY_ID =
+        Comparator.comparingLong(KeysetItem::getId);
+    private static final Comparator<KeysetItem> BY_CATEGORY_RANK =
+        Comparator.comparing(KeysetItem::getCategory)
+            .thenComparingInt(KeysetItem::getRank);
+
+    private List<KeysetItem> items;
+    private EntityManager em;
+
+    @Override
+    public void setUp() throws Exception {
+        super.setUp(KeysetItem.class, KeysetGroup.class,
+            "openjpa.jdbc.JDBCListeners", SQLRecorder.class.getName());
+        KeysetGroup[] groups = { new KeysetGroup("north", 1),
+            new KeysetGroup("south", 2) };
+        items = new ArrayList<>();
+        for (int i = 0; i < ITEMS; i++)
+            items.add(new KeysetItem(i, "c" + (i % 3), i / 3,
+                (i % 4 == 0) ? null : groups[i % 2]));
+        List<Object> pcs = new ArrayList<>(items);
+        pcs.addAll(Arrays.asList(groups));
+        persist(pcs.toArray());
+        em = emf.createEntityManager();
+        SQLRecorder.SQL.clear();
+    }
+
+    @Override
+    public void tearDown() throws Exception {
+        em.close();
+        super.tearDown();
+    }
+
+    /**
+     * Return the ids of the items in the given order that follow the given
+     * item in that order.
+     */
+    private List<Long> after(Comparator<KeysetItem> order, KeysetItem last) {
+        List<KeysetItem> sorted = new ArrayList<>(items);
+        sorted.sort(order);
+        List<Long> ids = new ArrayList<>();
+        for (KeysetItem item : sorted)
+            if (last == null || order.compare(item, last) > 0)
+                ids.add(item.getId());
+        return ids;
+    }
+
+    private static List<Long> ids(List<?> results) {
+        List<Long> ids = new ArrayList<>();
+        for (Object result : results)
+            ids.add(((KeysetItem) result).getId());
+        return ids;
+    }
+
+    private List<String> getSelects() {
+        List<String> selects = new ArrayList<>();
+        for (String sql : SQLRecorder.SQL)
+            if (sql.startsWith("SELECT") && sql.contains("KeysetItem"))
+                selects.add(sql);
+        SQLRecorder.SQL.clear();
+        return selects;
+    }
+
+    public void testSingleOrdering() {
+        List<?> results = em.createQuery("select i from KeysetItem i order by i.id")
+            .setHint(OpenJPAQuery.HINT_KEYSET_AFTER, 12L).getResultList();
+        assertEquals(after(BY_ID, items.get(12)), ids(results));
+        List<String> selects = getSelects();
+        assertEquals(1, selects.size());
+        assertFalse(selects.get(0), selects.get(0).contains(" OR "));
+    }
+
+    public void testExpandedPredicate() {
+        KeysetItem last = items.get(13);
+        List<?> results = em.createQuery("select i from KeysetItem i "
+            + "order by i.category, i.rank")
+            .setHint(OpenJPAQuery.HINT_KEYSET_AFTER,
+                new Object[]{ last.getCategory(), last.getRank() })
+            .getResultList();
+        assertEquals(after(BY_CATEGORY_RANK, last), ids(results));
+        List<String> selects = getSelects();
+        assertEquals(1, selects.size());
+        assertTrue(selects.get(0), selects.get(0).contains(" OR ("));
+
+        // the key may also be given as a list
+        results = em.createQuery("select i from KeysetItem i "
+            + "order by i.category, i.rank")
+            .setHint(OpenJPAQuery.HINT_KEYSET_AFTER,
+                Arrays.asList(last.getCategory(), last.getRank()))
+            .getResultList();
+        assertEquals(after(BY_CATEGORY_RANK, last), ids(results));
+    }
+
+    public void testMixedDirections() {
+        KeysetItem last = items.get(16);
+        Object[] key = { last.getCategory(), last.getRank() };
+        List<?> results = em.createQuery("select i from KeysetItem i "
+            + "order by i.category desc, i.rank")
+            .setHint(OpenJPAQuery.HINT_KEYSET_AFTER, key).getResultList();
+        assertEquals(after(Comparator.comparing(KeysetItem::getCategory)
+            .reversed().thenComparingInt(KeysetItem::getRank), last),
+            ids(results));
+
+        results = em.createQuery("select i from KeysetItem i "
+            + "order by i.category, i.rank desc")
+            .setHint(OpenJPAQuery.HINT_KEYSET_AFTER, key).getResultList();
+        assertEquals(after(Comparator.comparing(KeysetItem::getCategory)
+            .thenComparing(Comparator.comparingInt(KeysetItem::getRank)
+            .reversed()), last), ids(results));
+
+        results = em.createQuery("select i from KeysetItem i "
+            + "order by i.category desc, i.rank desc")
+            .setHint(OpenJPAQuery.HINT_KEYSET_AFTER, key).getResultList();
+        assertEquals(after(BY_CATEGORY_RANK.reversed(), last), ids(results));
+    }
+
+    public void testKeyWithRange() {
+        KeysetItem last = items.get(7);
+        List<Long> expected = after(BY_CATEGORY_RANK, last);
+        List<?> results = em.createQuery("select i from KeysetItem i "
+            + "order by i.category, i.rank")
+            .setHint(OpenJPAQuery.HINT_KEYSET_AFTER,
+                new Object[]{ last.getCategory(), last.getRank() })
+            .setFirstResult(2).setMaxResults(5).getResultList();
+        assertEquals(expected.subList(2, 7), ids(results));
+    }
+
+    public void testRowValueComparison() {
+        OpenJPAEntityManagerFactorySPI rowValues = createEMF(KeysetItem.class,
+            KeysetGroup.class,
+            "openjpa.jdbc.SynchronizeMappings", "false",
+            "openjpa.jdbc.DBDictionary", RowValueDictionary.class.getName(),
+            "openjpa.jdbc.JDBCListeners", SQLRecorder.class.getName());
+        EntityManager rowEm = rowValues.createEntityManager();
+        try {
+            KeysetItem last = items.get(13);
+            Object[] key = { last.getCategory(), last.getRank() };
+
+            // directions that differ can not be compared as a row
+            SQLRecorder.SQL.clear();
+            List<?> results = rowEm.createQuery("select i from KeysetItem i "
+                + "order by i.category, i.rank desc")
+                .setHint(OpenJPAQuery.HINT_KEYSET_AFTER, key).getResultList();
+            assertEquals(after(Comparator.comparing(KeysetItem::getCategory)
+                .thenComparing(Comparator.comparingInt(KeysetItem::getRank)
+                .reversed()), last), ids(results));
+            List<String> selects = getSelects();
+            assertEquals(1, selects.size());
+            assertTrue(selects.get(0), selects.get(0).contains(" OR ("));
+
+            // Derby itself does not compare rows, so only the SQL is checked
+            assertEquals(") > (?, ?))", renderRowValue(rowEm,
+                "order by i.category, i.rank", key));
+            assertEquals(") < (?, ?))", renderRowValue(rowEm,
+                "order by i.category desc, i.rank desc", key));
+        } finally {
+            rowEm.close();
+            rowValues.close();
+        }
+    }
+
+    /**
+     * Return the end of the row comparison in the SQL that the given ordering
+     * renders for the given key.
+     */
+    private String renderRowValue(EntityManager rowEm, String ordering,
+        Object[] key) {
+        SQLRecorder.SQL.clear();
+        try {
+            rowEm.createQuery("select i from KeysetItem i " + ordering)
+                .setHint(OpenJPAQuery.HINT_KEYSET_AFTER, key).getResultList();
+        } catch (RuntimeException e) {
+            // expected
+        }
+        List<String> selects = getSelects();
+        assertEquals(1, selects.size());
+        String sql = selects.get(0);
+        assertFalse(sql, sql.contains(" OR "));
+        int end = sql.indexOf("(?, ?))");
+        assertTrue(sql, end > 0);
+        return sql.substring(end - 4, end + 7);
+    }
+
+    public void testPageBoundaries() {
+        List<Long> expected = after(BY_CATEGORY_RANK, null);
+        for (int pageSize : new int[]{ 1, 7, 10, 29, 30, 31 }) {
+            List<?> results = em.createQuery("select i from KeysetItem i "
+                + "order by i.category, i.rank")
+                .setHint(OpenJPAQuery.HINT_KEYSET_PAGE_SIZE, pageSize)
+                .getResultList();
+            assertEquals("page size " + pageSize, expected, ids(results));
+
+            // a full last page is followed by an empty one
+            int pages = ITEMS / pageSize + 1;
+            if (ITEMS % pageSize != 0)
+                pages = (ITEMS + pageSize - 1) / pageSize;
+            assertEquals("page size " + pageSize, pages, getSelects().size());
+            em.clear();
+        }
+    }
+
+    public void testPagesWithRangeAndKey() {
+        List<Long> expected = after(BY_CATEGORY_RANK, null);
+        List<?> results = em.createQuery("select i from KeysetItem i "
+            + "order by i.category, i.rank")
+            .setHint(OpenJPAQuery.HINT_KEYSET_PAGE_SIZE, 5)
+            .setFirstResult(4).setMaxResults(13).getResultList();
+        assertEquals(expected.subList(4, 17), ids(results));
+        // pages of 5, 5 and 3 read the range without an empty page
+        assertEquals(3, getSelects().size());
+
+        results = em.createQuery("select i from KeysetItem i "
+            + "order by i.category, i.rank")
+            .setHint(OpenJPAQuery.HINT_KEYSET_PAGE_SIZE, 10)
+            .setFirstResult(4).getResultList();
+        assertEquals(expected.subList(4, ITEMS), ids(results));
+        assertEquals(3, getSelects().size());
+
+        KeysetItem last = items.get(10);
+        results = em.createQuery("select i from KeysetItem i "
+            + "order by i.category desc, i.rank")
+            .setHint(OpenJPAQuery.HINT_KEYSET_PAGE_SIZE, 4)
+            .setHint(OpenJPAQuery.HINT_KEYSET_AFTER,
+                new Object[]{ last.getCategory(), last.getRank() })
+            .getResultList();
+        assertEquals(after(Comparator.comparing(KeysetItem::getCategory)
+            .reversed().thenComparingInt(KeysetItem::getRank), last),
+            ids(results));
+    }
+
+    public void testNullKey() {
+        assertRejected(em.createQuery("select i from KeysetItem i "
+            + "order by i.category, i.rank")
+            .setHint(OpenJPAQuery.HINT_KEYSET_AFTER, Arrays.asList("c1", null)),
+            "has a null value");
+    }
+
+    public void testWrongKeyLength() {
+        assertRejected(em.createQuery("select i from KeysetItem i "
+            + "order by i.category, i.rank")
+            .setHint(OpenJPAQuery.HINT_KEYSET_AFTER, "c1"),
+            "does not have a value for each of the 2 ORDER BY items");
+        assertRejected(em.createQuery("select i from KeysetItem i "
+            + "order by i.id")
+            .setHint(OpenJPAQuery.HINT_KEYSET_AFTER, new Object[]{ 1L, 2L }),
+            "does not have a value for each of the 1 ORDER BY items");
+    }
+
+    public void testMultiColumnOrdering() {
+        assertRejected(em.createQuery("select i from KeysetItem i "
+            + "order by i.group")
+            .setHint(OpenJPAQuery.HINT_KEYSET_AFTER,
+                em.find(KeysetGroup.class, new KeysetGroupId("north", 1))),
+            "spans more than one column");
+    }
+
+    public void testUnorderedAndGroupedQueries() {
+        assertRejected(em.createQuery("select i from KeysetItem i")
+            .setHint(OpenJPAQuery.HINT_KEYSET_AFTER, 1L),
+            "has no ORDER BY clause");
+        assertRejected(em.createQuery("select i from KeysetItem i")
+            .setHint(OpenJPAQuery.HINT_KEYSET_PAGE_SIZE, 5),
+            "has no ORDER BY clause");
+        assertRejected(em.createQuery("select i.category, count(i) "
+            + "from KeysetItem i group by i.category order by i.category")
+            .setHint(OpenJPAQuery.HINT_KEYSET_AFTER, "c0"),
+            "has grouping or aggregates");
+        try {
+            em.createQuery("select i from KeysetItem i order by i.id")
+                .setHint(OpenJPAQuery.HINT_KEYSET_PAGE_SIZE, 0);
+            fail("Expected the page size to be rejected");
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+    }
+
+    private static void assertRejected(Query q, String message) {
+        try {
+            q.getResultList();
+            fail("Expected keyset paging to be rejected");
+        } catch (RuntimeException e) {
+            String msg = e.getMessage();
+            assertTrue(msg, msg.contains("can not page by keyset"));
+            assertTrue(msg, msg.contains(message));
+        }
+    }
+
+    /**
+     * A Derby dictionary that renders row value comparisons.
+     */
+    public static class RowValueDictionary extends DerbyDictionary {
+
+        public RowValueDictionary() {
+            supportsRowValueComparison = true;
+        }
+    }
+
+    /**
+     * Records the SQL of the statements that are prepared.
+     */
+    public static class SQLRecorder extends AbstractJDBCListener {
+
+        static final List<String> SQL = Collections.synchronizedList(new ArrayList<>());
+
+        @Override
+        public void beforePrepareStatement(JDBCEvent event) {
+            SQL.add(event.getSQL());
+        }
+    }
+}
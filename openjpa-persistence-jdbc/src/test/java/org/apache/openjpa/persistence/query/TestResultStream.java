@@ -0,0 +1,114 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.openjpa.persistence.query;
+
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.TypedQuery;
+
+import org.apache.openjpa.kernel.QueryHints;
+import org.apache.openjpa.persistence.OpenJPAPersistence;
+import org.apache.openjpa.persistence.test.SingleEMFTestCase;
+
+/**
+ * Tests that query result streams keep their results managed unless
+ * detaching is requested through a query hint, and that instances managed
+ * before the query are never detached by the stream.
+ */
+public class TestResultStream extends SingleEMFTestCase {
+
+    private static final int COUNT = 20;
+
+    private EntityManager em;
+
+    @Override
+    public void setUp() throws Exception {
+        super.setUp(StreamedItem.class);
+        StreamedItem[] items = new StreamedItem[COUNT];
+        for (int i = 0; i < COUNT; i++)
+            items[i] = new StreamedItem(i, "item-" + i);
+        persist((Object[]) items);
+        em = emf.createEntityManager();
+    }
+
+    @Override
+    public void tearDown() throws Exception {
+        em.close();
+        super.tearDown();
+    }
+
+    private TypedQuery<StreamedItem> newQuery() {
+        return em.createQuery("select i from StreamedItem i order by i.id",
+            StreamedItem.class);
+    }
+
+    private int getManagedCount() {
+        return OpenJPAPersistence.cast(em).getManagedObjects().size();
+    }
+
+    public void testResultsStayManagedWithoutHints() {
+        StreamedItem first = em.find(StreamedItem.class, 0L);
+        List<StreamedItem> results;
+        try (Stream<StreamedItem> stream = newQuery().getResultStream()) {
+            results = stream.collect(Collectors.toList());
+        }
+
+        assertEquals(COUNT, results.size());
+        assertSame(first, results.get(0));
+        for (StreamedItem item : results)
+            assertTrue(em.contains(item));
+        assertEquals(COUNT, getManagedCount());
+    }
+
+    public void testStreamedResultsStayManagedWithoutDetachHint() {
+        TypedQuery<StreamedItem> q = newQuery();
+        q.setHint(QueryHints.HINT_STREAM_RESULTS, true);
+        List<StreamedItem> results;
+        try (Stream<StreamedItem> stream = q.getResultStream()) {
+            results = stream.collect(Collectors.toList());
+        }
+
+        assertEquals(COUNT, results.size());
+        for (int i = 0; i < COUNT; i++) {
+            assertEquals(i, results.get(i).getId());
+            assertTrue(em.contains(results.get(i)));
+        }
+    }
+
+    public void testStreamDetachesOnlyTheResultsItLoaded() {
+        StreamedItem first = em.find(StreamedItem.class, 0L);
+        TypedQuery<StreamedItem> q = newQuery();
+        q.setHint(QueryHints.HINT_STREAM_RESULTS, true);
+        q.setHint(QueryHints.HINT_DETACH_STREAMED_RESULTS, true);
+        List<StreamedItem> results;
+        try (Stream<StreamedItem> stream = q.getResultStream()) {
+            results = stream.collect(Collectors.toList());
+        }
+
+        assertEquals(COUNT, results.size());
+        assertSame(first, results.get(0));
+        assertTrue(em.contains(first));
+        for (int i = 1; i < COUNT; i++)
+            assertFalse(em.contains(results.get(i)));
+        assertEquals(1, getManagedCount());
+    }
+}
@@ -0,0 +1,168 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.openjpa.persistence.relations;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+
+import jakarta.persistence.EntityManager;
+
+import org.apache.openjpa.jdbc.conf.JDBCConfiguration;
+import org.apache.openjpa.lib.jdbc.AbstractJDBCListener;
+import org.apache.openjpa.lib.jdbc.JDBCEvent;
+import org.apache.openjpa.persistence.OpenJPAEntityManager;
+import org.apache.openjpa.persistence.OpenJPAPersistence;
+import org.apache.openjpa.persistence.jdbc.JDBCFetchPlan;
+import org.apache.openjpa.persistence.test.SingleEMFTestCase;
+
+/**
+ * Tests that the eager parallel selects of a query read the same data when
+ * they run at the same time on connections of their own as when they run one
+ * after another, and that they run one after another in a data store
+ * transaction.
+ */
+public class TestParallelEagerSelects extends SingleEMFTestCase {
+
+    private static final int OWNERS = 6;
+
+    @Override
+    public void setUp() throws Exception {
+        ThreadRecorder.THREADS.clear();
+        super.setUp(EagerOwner.class, EagerPart.class, EagerTag.class,
+            "openjpa.jdbc.JDBCListeners", ThreadRecorder.class.getName());
+        List<Object> pcs = new ArrayList<>();
+        for (int o = 0; o < OWNERS; o++) {
+            EagerOwner owner = new EagerOwner(o, "owner-" + o);
+            pcs.add(owner);
+            for (int p = 0; p < o; p++)
+                pcs.add(new EagerPart(o * 10 + p, "part-" + o + "-" + p, owner));
+            for (int t = 0; t < OWNERS - o; t++)
+                pcs.add(new EagerTag(o * 10 + t, "tag-" + o + "-" + t, owner));
+        }
+        persist(pcs.toArray());
+    }
+
+    /**
+     * Read all owners with the given parallelism and describe them with
+     * their parts and tags.
+     */
+    private static List<String> readOwners(EntityManager em, int parallelism) {
+        ((JDBCFetchPlan) OpenJPAPersistence.cast(em).getFetchPlan())
+            .setEagerParallelism(parallelism);
+        ThreadRecorder.THREADS.clear();
+        List<EagerOwner> owners = em.createQuery(
+            "select o from EagerOwner o order by o.id", EagerOwner.class).getResultList();
+        List<String> descriptions = new ArrayList<>();
+        for (EagerOwner owner : owners) {
+            Set<String> parts = new TreeSet<>();
+            for (EagerPart part : owner.getParts())
+                parts.add(part.getName());
+            Set<String> tags = new TreeSet<>();
+            for (EagerTag tag : owner.getTags())
+                tags.add(tag.getName());
+            descriptions.add(owner.getName() + parts + tags);
+        }
+        return descriptions;
+    }
+
+    private static boolean usedEagerThreads() {
+        for (String thread : ThreadRecorder.THREADS)
+            if (thread.startsWith("openjpa-eager-select-"))
+                return true;
+        return false;
+    }
+
+    public void testParallelMatchesSequential() {
+        EntityManager em = emf.createEntityManager();
+        List<String> sequential = readOwners(em, 1);
+        assertFalse(usedEagerThreads());
+        em.close();
+        assertEquals(OWNERS, sequential.size());
+        assertEquals("owner-2[part-2-0, part-2-1][tag-2-0, tag-2-1, tag-2-2, tag-2-3]",
+            sequential.get(2));
+
+        em = emf.createEntityManager();
+        List<String> parallel = readOwners(em, 3);
+        assertTrue(ThreadRecorder.THREADS.toString(), usedEagerThreads());
+        em.close();
+        assertEquals(sequential, parallel);
+    }
+
+    public void testSequentialInDataStoreTransaction() {
+        OpenJPAEntityManager em = OpenJPAPersistence.cast(emf.createEntityManager());
+        em.setOptimistic(false);
+        em.getTransaction().begin();
+        List<String> inTransaction;
+        try {
+            inTransaction = readOwners(em, 3);
+            assertFalse(ThreadRecorder.THREADS.toString(), usedEagerThreads());
+        } finally {
+            em.getTransaction().rollback();
+        }
+
+        // only the connection of the transaction sees the flushed tag
+        em.setOptimistic(true);
+        em.getTransaction().begin();
+        try {
+            em.persist(new EagerTag(99, "tag-flushed", em.find(EagerOwner.class, 0L)));
+            em.flush();
+            em.clear();
+            List<String> flushed = readOwners(em, 3);
+            assertFalse(ThreadRecorder.THREADS.toString(), usedEagerThreads());
+            assertTrue(flushed.get(0), flushed.get(0).contains("tag-flushed"));
+        } finally {
+            em.getTransaction().rollback();
+        }
+        em.close();
+
+        em = OpenJPAPersistence.cast(emf.createEntityManager());
+        assertEquals(inTransaction, readOwners(em, 3));
+        assertTrue(usedEagerThreads());
+        em.close();
+    }
+
+    public void testExecutorStopsWithFactory() {
+        EntityManager em = emf.createEntityManager();
+        readOwners(em, 3);
+        em.close();
+        ExecutorService executor = ((JDBCConfiguration) emf.getConfiguration())
+            .getEagerSelectExecutor();
+        assertFalse(executor.isShutdown());
+        emf.close();
+        assertTrue(executor.isShutdown());
+    }
+
+    /**
+     * Records the threads that execute statements.
+     */
+    public static class ThreadRecorder extends AbstractJDBCListener {
+
+        static final Set<String> THREADS = Collections.newSetFromMap(new ConcurrentHashMap<>());
+
+        @Override
+        public void beforeExecuteStatement(JDBCEvent event) {
+            THREADS.add(Thread.currentThread().getName());
+        }
+    }
+}
@@ -0,0 +1,136 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.openjpa.persistence.relations;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import jakarta.persistence.EntityManager;
+
+import org.apache.openjpa.lib.jdbc.AbstractJDBCListener;
+import org.apache.openjpa.lib.jdbc.JDBCEvent;
+import org.apache.openjpa.persistence.OpenJPAPersistence;
+import org.apache.openjpa.persistence.jdbc.JDBCFetchPlan;
+import org.apache.openjpa.persistence.test.SingleEMFTestCase;
+
+/**
+ * Tests that lazy to-one relations of several instances are loaded with
+ * one select per batch.
+ */
+public class TestRelationBatch extends SingleEMFTestCase {
+
+    private static final int OWNERS = 12;
+    private static final int UNRELATED = 40;
+
+    private EntityManager em;
+
+    @Override
+    public void setUp() throws Exception {
+        super.setUp(BatchOwner.class, BatchRelated.class,
+            "openjpa.jdbc.JDBCListeners", SelectCounter.class.getName());
+        Object[] pcs = new Object[OWNERS * 2 + UNRELATED];
+        for (int i = 0; i < OWNERS; i++) {
+            BatchRelated related = new BatchRelated(i, "related-" + i);
+            pcs[2 * i] = related;
+            pcs[2 * i + 1] = new BatchOwner(i, related);
+        }
+        for (int i = 0; i < UNRELATED; i++)
+            pcs[OWNERS * 2 + i] = new BatchRelated(OWNERS + i, "unrelated-" + i);
+        persist(pcs);
+        em = emf.createEntityManager();
+    }
+
+    @Override
+    public void tearDown() throws Exception {
+        em.close();
+        super.tearDown();
+    }
+
+    /**
+     * Read the owners and their relations, returning the number of selects.
+     */
+    private int walkRelations(int batchSize) {
+        ((JDBCFetchPlan) OpenJPAPersistence.cast(em).getFetchPlan())
+            .setRelationBatchSize(batchSize);
+        // manage instances of other types that the batch scan must skip
+        em.createQuery("select r from BatchRelated r where r.id >= :id",
+            BatchRelated.class).setParameter("id", (long) OWNERS).getResultList();
+
+        SelectCounter.COUNT.set(0);
+        List<BatchOwner> owners = em.createQuery(
+            "select o from BatchOwner o order by o.id", BatchOwner.class)
+            .getResultList();
+        assertEquals(OWNERS, owners.size());
+        for (BatchOwner owner : owners)
+            assertEquals("related-" + owner.getId(),
+                owner.getRelated().getName());
+        return SelectCounter.COUNT.get();
+    }
+
+    public void testUnbatched() {
+        assertEquals(1 + OWNERS, walkRelations(1));
+    }
+
+    public void testBatched() {
+        // the owners, then the related instances in batches of five
+        assertEquals(1 + 3, walkRelations(5));
+    }
+
+    public void testBatchCoversAllOwners() {
+        assertEquals(1 + 1, walkRelations(OWNERS));
+    }
+
+    public void testNullRelationsDoNotTakeBatchPlaces() {
+        Object[] pcs = new Object[UNRELATED];
+        for (int i = 0; i < UNRELATED; i++)
+            pcs[i] = new BatchOwner(100 + i, null);
+        persist(pcs);
+        ((JDBCFetchPlan) OpenJPAPersistence.cast(em).getFetchPlan())
+            .setRelationBatchSize(5);
+
+        SelectCounter.COUNT.set(0);
+        List<BatchOwner> owners = em.createQuery(
+            "select o from BatchOwner o order by o.id", BatchOwner.class)
+            .getResultList();
+        assertEquals(OWNERS + UNRELATED, owners.size());
+        for (BatchOwner owner : owners) {
+            if (owner.getId() < OWNERS)
+                assertEquals("related-" + owner.getId(),
+                    owner.getRelated().getName());
+            else
+                assertNull(owner.getRelated());
+        }
+        assertEquals(1 + 3, SelectCounter.COUNT.get());
+    }
+
+    /**
+     * Counts the selects that are executed.
+     */
+    public static class SelectCounter extends AbstractJDBCListener {
+
+        static final AtomicInteger COUNT = new AtomicInteger();
+
+        @Override
+        public void beforeExecuteStatement(JDBCEvent event) {
+            String sql = event.getSQL();
+            if (sql != null && sql.trim().toUpperCase().startsWith("SELECT"))
+                COUNT.incrementAndGet();
+        }
+    }
+}
@@ -0,0 +1,214 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.openjpa.persistence.sequence;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import jakarta.persistence.EntityManager;
+
+import org.apache.openjpa.jdbc.conf.JDBCConfiguration;
+import org.apache.openjpa.jdbc.kernel.TableJDBCSeq;
+import org.apache.openjpa.jdbc.meta.ClassMapping;
+import org.apache.openjpa.kernel.Broker;
+import org.apache.openjpa.persistence.JPAFacadeHelper;
+import org.apache.openjpa.persistence.OpenJPAEntityManagerFactorySPI;
+import org.apache.openjpa.persistence.test.SingleEMFTestCase;
+
+/**
+ * Tests that several table sequences that preallocate blocks of values from
+ * the same sequence table hand out unique values when used from many threads
+ * at once, and that no block they allocate is lost.
+ */
+public class TestPreallocatedSequence extends SingleEMFTestCase {
+
+    private static final String URL =
+        "jdbc:derby:memory:TestPreallocatedSequence;create=true";
+    private static final int ALLOCATE = 10;
+    private static final int INSTANCES = 3;
+    private static final int THREADS = 4;
+    private static final int DRAWS = 400;
+
+    private final List<OpenJPAEntityManagerFactorySPI> factories = new ArrayList<>();
+
+    @Override
+    public void setUp() throws Exception {
+        super.setUp(SeqItem.class, "openjpa.ConnectionURL", URL);
+    }
+
+    @Override
+    public void tearDown() throws Exception {
+        for (OpenJPAEntityManagerFactorySPI factory : factories)
+            if (factory.isOpen())
+                factory.close();
+        super.tearDown();
+    }
+
+    /**
+     * Create factories on the database of the test, each with a sequence of
+     * its own on the same sequence table.
+     */
+    private void createFactories(String sequence) {
+        for (int i = 0; i < INSTANCES; i++) {
+            factories.add(createEMF(SeqItem.class,
+                "openjpa.ConnectionURL", URL,
+                "openjpa.jdbc.SynchronizeMappings", "false",
+                "openjpa.Sequence", sequence));
+        }
+    }
+
+    private static TableJDBCSeq getSequence(OpenJPAEntityManagerFactorySPI factory) {
+        return (TableJDBCSeq) factory.getConfiguration().getSequenceInstance();
+    }
+
+    /**
+     * The next value the sequence table would hand out.
+     */
+    private static long getTableValue() throws Exception {
+        try (Connection conn = DriverManager.getConnection(URL);
+            Statement stmnt = conn.createStatement();
+            ResultSet rs = stmnt.executeQuery("SELECT SEQUENCE_VALUE FROM "
+                + TableJDBCSeq.DEFAULT_TABLE)) {
+            assertTrue(rs.next());
+            return rs.getLong(1);
+        }
+    }
+
+    /**
+     * Draw values from the sequence of each factory on several threads at
+     * once, and return all of them.
+     */
+    private List<Long> draw() throws Exception {
+        ExecutorService pool = Executors.newFixedThreadPool(INSTANCES * THREADS);
+        try {
+            List<Future<List<Long>>> futures = new ArrayList<>();
+            for (final OpenJPAEntityManagerFactorySPI factory : factories) {
+                final ClassMapping mapping = ((JDBCConfiguration) factory.getConfiguration())
+                    .getMappingRepositoryInstance().getMapping(SeqItem.class, null, true);
+                for (int t = 0; t < THREADS; t++) {
+                    futures.add(pool.submit(new Callable<List<Long>>() {
+                        @Override
+                        public List<Long> call() {
+                            EntityManager em = factory.createEntityManager();
+                            try {
+                                Broker broker = JPAFacadeHelper.toBroker(em);
+                                TableJDBCSeq seq = getSequence(factory);
+                                List<Long> values = new ArrayList<>(DRAWS);
+                                for (int i = 0; i < DRAWS; i++)
+                                    values.add(((Number) seq.next(broker, mapping)).longValue());
+                                return values;
+                            } finally {
+                                em.close();
+                            }
+                        }
+                    }));
+                }
+            }
+            List<Long> values = new ArrayList<>();
+            for (Future<List<Long>> future : futures)
+                values.addAll(future.get());
+            return values;
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    /**
+     * Assert that the given values are unique, and that all values the
+     * sequence table allocated were drawn except at most the current and the
+     * preallocated block of each sequence.
+     */
+    private void assertUnique(List<Long> values, int maxBlock) throws Exception {
+        Set<Long> unique = new HashSet<>(values);
+        assertEquals(values.size(), unique.size());
+
+        long tableValue = getTableValue();
+        long min = Long.MAX_VALUE;
+        for (long value : values) {
+            assertTrue(value + " >= " + tableValue, value < tableValue);
+            min = Math.min(min, value);
+        }
+        long allocated = tableValue - min;
+        long unused = allocated - values.size();
+        assertTrue("unused " + unused + " of " + allocated,
+            unused >= 0 && unused <= (long) INSTANCES * 2 * maxBlock);
+    }
+
+    public void testConcurrentPreallocatingSequences() throws Exception {
+        createFactories("table(Allocate=" + ALLOCATE + ",Preallocate=true,LowWaterMark=50)");
+        for (OpenJPAEntityManagerFactorySPI factory : factories)
+            assertTrue(getSequence(factory).getPreallocate());
+        List<Long> values = draw();
+        assertEquals(INSTANCES * THREADS * DRAWS, values.size());
+        assertUnique(values, ALLOCATE);
+    }
+
+    public void testConcurrentTunedSequences() throws Exception {
+        int max = ALLOCATE * 20;
+        createFactories("table(Allocate=" + ALLOCATE + ",MaxAllocate=" + max
+            + ",Preallocate=true,LowWaterMark=30)");
+        assertUnique(draw(), max);
+    }
+
+    public void testConcurrentPersists() throws Exception {
+        createFactories("table(Allocate=" + ALLOCATE + ",Preallocate=true)");
+        ExecutorService pool = Executors.newFixedThreadPool(INSTANCES * THREADS);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (final OpenJPAEntityManagerFactorySPI factory : factories) {
+                for (int t = 0; t < THREADS; t++) {
+                    futures.add(pool.submit(() -> {
+                        EntityManager em = factory.createEntityManager();
+                        try {
+                            for (int i = 0; i < 5; i++) {
+                                em.getTransaction().begin();
+                                for (int j = 0; j < 7; j++)
+                                    em.persist(new SeqItem("item"));
+                                em.getTransaction().commit();
+                            }
+                        } finally {
+                            em.close();
+                        }
+                    }));
+                }
+            }
+            // a duplicate identity fails the insert of its transaction
+            for (Future<?> future : futures)
+                future.get();
+        } finally {
+            pool.shutdown();
+        }
+        EntityManager em = emf.createEntityManager();
+        assertEquals((long) INSTANCES * THREADS * 5 * 7, (long) em.createQuery(
+            "select count(i) from SeqItem i", Long.class).getSingleResult());
+        assertEquals((long) INSTANCES * THREADS * 5 * 7, (long) em.createQuery(
+            "select count(distinct i.id) from SeqItem i", Long.class).getSingleResult());
+        em.close();
+    }
+}
@@ -0,0 +1,109 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.openjpa.persistence.test;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import jakarta.persistence.EntityManager;
+
+import junit.framework.TestCase;
+
+import org.apache.openjpa.persistence.OpenJPAEntityManagerFactorySPI;
+import org.apache.openjpa.persistence.PersistenceProviderImpl;
+import org.apache.openjpa.persistence.PersistenceUnitInfoImpl;
+
+/**
+ * Base test case that creates a single entity manager factory for the
+ * entity classes and properties given to {@link #setUp(Object...)}. The
+ * tables of the entities are dropped and created again for each test.
+ * Unless the connection is configured through system properties, the
+ * factory connects to an in-memory Derby database.
+ */
+public abstract class SingleEMFTestCase extends TestCase {
+
+    protected OpenJPAEntityManagerFactorySPI emf;
+
+    /**
+     * Create the factory. The arguments are entity classes and pairs of
+     * property names and values.
+     */
+    protected void setUp(Object... props) throws Exception {
+        super.setUp();
+        emf = createEMF(props);
+    }
+
+    /**
+     * Create a factory for the given entity classes and pairs of property
+     * names and values, with the same defaults as {@link #emf}. The caller
+     * closes it.
+     */
+    protected OpenJPAEntityManagerFactorySPI createEMF(Object... props) {
+        PersistenceUnitInfoImpl pui = new PersistenceUnitInfoImpl();
+        pui.setPersistenceUnitName(getClass().getSimpleName());
+        pui.setExcludeUnlistedClasses(true);
+
+        Map<String, Object> map = new HashMap<>();
+        if (System.getProperty("openjpa.ConnectionURL") == null) {
+            map.put("openjpa.ConnectionDriverName",
+                "org.apache.derby.jdbc.EmbeddedDriver");
+            map.put("openjpa.ConnectionURL", "jdbc:derby:memory:"
+                + getClass().getSimpleName() + ";create=true");
+        }
+        map.put("openjpa.jdbc.SynchronizeMappings",
+            "buildSchema(ForeignKeys=true,SchemaAction='drop,add')");
+        map.put("openjpa.RuntimeUnenhancedClasses", "supported");
+        map.put("openjpa.Log", "DefaultLevel=WARN");
+        for (int i = 0; i < props.length; i++) {
+            if (props[i] instanceof Class)
+                pui.addManagedClassName(((Class<?>) props[i]).getName());
+            else
+                map.put((String) props[i], props[++i]);
+        }
+
+        OpenJPAEntityManagerFactorySPI factory = (OpenJPAEntityManagerFactorySPI)
+            new PersistenceProviderImpl().createContainerEntityManagerFactory(pui, map);
+        // create the tables now rather than in the first test transaction
+        factory.createEntityManager().close();
+        return factory;
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        if (emf != null && emf.isOpen())
+            emf.close();
+        emf = null;
+        super.tearDown();
+    }
+
+    /**
+     * Persist the given instances in a transaction of their own.
+     */
+    protected void persist(Object... pcs) {
+        EntityManager em = emf.createEntityManager();
+        try {
+            em.getTransaction().begin();
+            for (Object pc : pcs)
+                em.persist(pc);
+            em.getTransaction().commit();
+        } finally {
+            em.close();
+        }
+    }
+}
@@ -175,9 +175,23 @@ public class HintHandler  {
         } else if (QueryHints.HINT_IGNORE_PREPARED_QUERY.equals(key)) {
             plan.setHint(key, Filters.convert(value, Boolean.class));
             owner.ignorePreparedQuery();
+        } else if (QueryHints.HINT_KEYSET_AFTER.equals(key)) {
+            // the key is part of the SQL of the query
+            plan.setHint(key, value);
+            owner.ignorePreparedQuery();
+        } else if (QueryHints.HINT_KEYSET_PAGE_SIZE.equals(key)) {
+            int v = (Integer) Filters.convert(value, Integer.class);
+            if (v < 1) {
+                throw new IllegalArgumentException(_loc.get("bad-query-hint-value", key, value).toString());
+            }
+            plan.setHint(key, v);
+            owner.ignorePreparedQuery();
         } else if (QueryHints.HINT_USE_LITERAL_IN_SQL.equals(key)) {
             Boolean convertedValue = (Boolean)Filters.convert(value, Boolean.class);
             plan.setHint(key, convertedValue);
+        } else if (QueryHints.HINT_STREAM_RESULTS.equals(key)
+            || QueryHints.HINT_DETACH_STREAMED_RESULTS.equals(key)) {
+            plan.setHint(key, Filters.convert(value, Boolean.class));
         } else { // default
             plan.setHint(key, value);
         }
@@ -48,6 +48,22 @@ public interface OpenJPAQuery<X> extends TypedQuery<X> {
      */
     String HINT_RESULT_COUNT = QueryHints.HINT_RESULT_COUNT;
 
+    /**
+     * Hint key for specifying the ordering values of the last result of the
+     * previous page, so that the query returns the results that follow it.
+     *
+     * @since 4.1.1
+     */
+    String HINT_KEYSET_AFTER = QueryHints.HINT_KEYSET_AFTER;
+
+    /**
+     * Hint key for specifying the size of the pages in which the results
+     * are read by their ordering values rather than by row offsets.
+     *
+     * @since 4.1.1
+     */
+    String HINT_KEYSET_PAGE_SIZE = QueryHints.HINT_KEYSET_PAGE_SIZE;
+
     /**
      * The owning entity manager.
      */
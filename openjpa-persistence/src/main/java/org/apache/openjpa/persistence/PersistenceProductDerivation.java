@@ -136,15 +136,19 @@ public class PersistenceProductDerivation
         _hints.add("openjpa.FetchPlan.WriteLockMode");
         _hints.add(QueryHints.HINT_AGGREGATE_LISTENER);
         _hints.add(QueryHints.HINT_AGGREGATE_LISTENERS);
+        _hints.add(QueryHints.HINT_DETACH_STREAMED_RESULTS);
         _hints.add(QueryHints.HINT_FILTER_LISTENER);
         _hints.add(QueryHints.HINT_FILTER_LISTENERS);
         _hints.add(QueryHints.HINT_IGNORE_FINDER);
         _hints.add(QueryHints.HINT_IGNORE_PREPARED_QUERY);
         _hints.add(QueryHints.HINT_INVALIDATE_FINDER);
         _hints.add(QueryHints.HINT_INVALIDATE_PREPARED_QUERY);
+        _hints.add(QueryHints.HINT_KEYSET_AFTER);
+        _hints.add(QueryHints.HINT_KEYSET_PAGE_SIZE);
         _hints.add(QueryHints.HINT_PARAM_MARKER_IN_QUERY);
         _hints.add(QueryHints.HINT_RECACHE_FINDER);
         _hints.add(QueryHints.HINT_RESULT_COUNT);
+        _hints.add(QueryHints.HINT_STREAM_RESULTS);
         _hints.add(QueryHints.HINT_SUBCLASSES);
         _hints.add(QueryHints.HINT_RELAX_BIND_PARAM_TYPE_CHECK);
         _hints.add(QueryHints.HINT_USE_LITERAL_IN_SQL);
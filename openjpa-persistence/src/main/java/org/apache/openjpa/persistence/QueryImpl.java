@@ -26,7 +26,11 @@ import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.Spliterator;
+import java.util.Spliterators;
 import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 import jakarta.persistence.FlushModeType;
 import jakarta.persistence.LockModeType;
@@ -71,6 +75,15 @@ import org.apache.openjpa.util.UserException;
 public class QueryImpl<X> extends AbstractQuery<X> implements Serializable {
     private static final long serialVersionUID = 1L;
     private static final Localizer _loc = Localizer.forPackage(QueryImpl.class);
+
+    /**
+     * The number of rows a result stream reads at a time when the fetch batch
+     * size is not positive.
+     *
+     * @since 4.1.1
+     */
+    public static final int STREAM_FETCH_SIZE = 1000;
+
 	private transient FetchPlan _fetch;
 
 	private String _id;
@@ -331,6 +344,55 @@ public class QueryImpl<X> extends AbstractQuery<X> implements Serializable {
 		}
 	}
 
+    /**
+     * Stream the results of the query. By default, the stream reads the
+     * result list and its results stay managed. If the
+     * {@link QueryHints#HINT_STREAM_RESULTS} hint is set, the results are
+     * read through a forward-only cursor on the server, a fetch batch of
+     * rows at a time, or {@link #STREAM_FETCH_SIZE} rows if the fetch batch
+     * size is not positive. If the
+     * {@link QueryHints#HINT_DETACH_STREAMED_RESULTS} hint is also set, each
+     * result that has not been changed and was not managed before the query
+     * was executed is detached once the stream has moved past it, so that
+     * memory does not grow with the number of results. A streamed result
+     * stream should be closed if it is not read to its end.
+     *
+     * @since 4.1.1
+     */
+    @Override
+    public Stream<X> getResultStream() {
+        _em.assertNotCloseInvoked();
+        FetchConfiguration fetch = _query.getFetchConfiguration();
+        if (!isHintSet(fetch, QueryHints.HINT_STREAM_RESULTS))
+            return getResultList().stream();
+
+        Broker broker = null;
+        Set<Object> managed = null;
+        if (isHintSet(fetch, QueryHints.HINT_DETACH_STREAMED_RESULTS)) {
+            broker = _em.getBroker();
+            managed = ResultStreamIterator.getManagedObjects(broker);
+        }
+        int batch = fetch.getFetchBatchSize();
+        List<X> results;
+        try {
+            if (batch <= 0)
+                fetch.setFetchBatchSize(STREAM_FETCH_SIZE);
+            results = getResultList();
+        } finally {
+            // the query may have been replaced on execution
+            _query.getFetchConfiguration().setFetchBatchSize(batch);
+        }
+
+        ResultStreamIterator<X> itr = new ResultStreamIterator<>(results,
+            broker, _em, managed);
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(itr,
+            Spliterator.ORDERED), false).onClose(itr::close);
+    }
+
+    private static boolean isHintSet(FetchConfiguration fetch, String key) {
+        return Boolean.parseBoolean(String.valueOf(fetch.getHint(key)));
+    }
+
 	/**
 	 * Execute a query that returns a single result.
 	 */
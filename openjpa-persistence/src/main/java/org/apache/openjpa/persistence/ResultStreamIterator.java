@@ -0,0 +1,135 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.openjpa.persistence;
+
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+import org.apache.openjpa.kernel.Broker;
+import org.apache.openjpa.kernel.OpCallbacks;
+import org.apache.openjpa.kernel.OpenJPAStateManager;
+import org.apache.openjpa.lib.rop.ResultList;
+
+/**
+ * Iterates over the results of a streamed query, optionally detaching each
+ * result once the next one is read so that the persistence context does not
+ * hold on to the results that have been read. Results that were managed
+ * before the query was executed and results that have been changed stay
+ * managed. The results are closed when the last one has been read or
+ * the iterator is closed.
+ *
+ * @since 4.1.1
+ */
+class ResultStreamIterator<X> implements Iterator<X>, AutoCloseable {
+
+    private final List<X> _results;
+    private final Iterator<X> _itr;
+    private final Broker _broker;
+    private final OpCallbacks _call;
+    private final Set<Object> _managed;
+    private Object _last = null;
+    private boolean _closed = false;
+
+    /**
+     * Constructor.
+     *
+     * @param results the results of the query
+     * @param broker the broker that manages the results, or null to leave
+     * the results managed
+     * @param call the callbacks of detaching the results
+     * @param managed the instances managed before the query was executed,
+     * or null if the results stay managed
+     */
+    ResultStreamIterator(List<X> results, Broker broker, OpCallbacks call,
+        Set<Object> managed) {
+        _results = results;
+        _itr = results.iterator();
+        _broker = broker;
+        _call = call;
+        _managed = managed;
+    }
+
+    /**
+     * Return the instances the given broker manages, by identity.
+     */
+    static Set<Object> getManagedObjects(Broker broker) {
+        Set<Object> managed = Collections.newSetFromMap(new IdentityHashMap<>());
+        managed.addAll(broker.getManagedObjects());
+        return managed;
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (_closed)
+            return false;
+        if (_itr.hasNext())
+            return true;
+        close();
+        return false;
+    }
+
+    @Override
+    public X next() {
+        if (!hasNext())
+            throw new NoSuchElementException();
+        release();
+        X result = _itr.next();
+        _last = result;
+        return result;
+    }
+
+    @Override
+    public void close() {
+        if (_closed)
+            return;
+        _closed = true;
+        release();
+        if (_results instanceof ResultList)
+            ((ResultList<?>) _results).close();
+    }
+
+    /**
+     * Detach the last result read.
+     */
+    private void release() {
+        Object last = _last;
+        _last = null;
+        if (last == null || _broker == null || _broker.isClosed())
+            return;
+        if (last instanceof Object[]) {
+            for (Object val : (Object[]) last)
+                release(val);
+        } else
+            release(last);
+    }
+
+    private void release(Object val) {
+        if (val == null || _managed.contains(val))
+            return;
+        OpenJPAStateManager sm = _broker.getStateManager(val);
+        if (sm == null || sm.isNew() || sm.isDeleted() || sm.isDirty()
+            || sm.isDetached())
+            return;
+        _broker.detach(val, _call);
+    }
+}
@@ -0,0 +1,311 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.openjpa.slice;
+
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.apache.openjpa.enhance.PersistenceCapable;
+import org.apache.openjpa.kernel.OpenJPAStateManager;
+import org.apache.openjpa.kernel.StoreContext;
+import org.apache.openjpa.lib.util.Localizer;
+import org.apache.openjpa.lib.util.StringUtil;
+import org.apache.openjpa.meta.ClassMetaData;
+import org.apache.openjpa.meta.FieldMetaData;
+import org.apache.openjpa.meta.ValueStrategies;
+import org.apache.openjpa.util.ApplicationIds;
+import org.apache.openjpa.util.Id;
+import org.apache.openjpa.util.ImplHelper;
+import org.apache.openjpa.util.UserException;
+
+/**
+ * Distributes instances to slices by a consistent hash of their primary key,
+ * and routes finders to the single slice that stores the given primary key.
+ * Configured by <code>openjpa.slice.DistributionPolicy=hash</code> and
+ * <code>openjpa.slice.FinderTargetPolicy=hash</code>.
+ *
+ * Each slice owns <code>VirtualNodes</code> points on a ring of 64-bit hash
+ * values, and a primary key is stored in the slice that owns the first point
+ * at or after the hash of the key. The points of a slice depend only on its
+ * name, so adding or removing a slice moves only the keys between the points
+ * of that slice and their predecessors, about one in every <em>n</em> keys for
+ * <em>n</em> slices, while all other keys stay where they are. The keys that
+ * move are relocated by the {@link org.apache.openjpa.slice.jdbc.SliceRebalancer}.
+ *
+ * Only the root instance of a persist operation is distributed by its key;
+ * related instances persisted by cascade are stored in the slice of their
+ * root. A finder can therefore be routed by key only for the types whose
+ * instances are placed by their own key. The <code>Types</code> property
+ * lists those types; by default all types are routed by key.
+ *
+ * An instance whose key is generated by the database when it is inserted can
+ * not be placed by its key. For keys generated by a sequence, the slice is
+ * decided once the key has been assigned.
+ *
+ * @since 4.1.1
+ */
+public class ConsistentHashPolicy implements DistributionPolicy, FinderTargetPolicy {
+
+    private static final Localizer _loc = Localizer.forPackage(ConsistentHashPolicy.class);
+
+    private static final long FNV_OFFSET = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    private int _nodes = 128;
+    private Set<String> _types = Collections.emptySet();
+    private final Map<List<String>, Ring> _rings = new ConcurrentHashMap<>();
+    private final Map<Class<?>, Boolean> _hashed = new ConcurrentHashMap<>();
+
+    /**
+     * The number of points each slice owns on the hash ring.
+     */
+    public int getVirtualNodes() {
+        return _nodes;
+    }
+
+    /**
+     * The number of points each slice owns on the hash ring. More points
+     * spread the keys more evenly across slices. Defaults to 128.
+     */
+    public void setVirtualNodes(int nodes) {
+        if (nodes < 1)
+            throw new UserException(_loc.get("bad-virtual-nodes", nodes));
+        _nodes = nodes;
+        _rings.clear();
+    }
+
+    /**
+     * The comma-separated names of the types that are placed by their own
+     * primary key, or null if all types are.
+     */
+    public String getTypes() {
+        return _types.isEmpty() ? null : StringUtil.join(_types.toArray(new String[_types.size()]), ",");
+    }
+
+    /**
+     * The comma-separated names of the types that are placed by their own
+     * primary key. Subclasses of a listed type are placed by key as well.
+     * Finders for other types are sent to all slices. By default, all types
+     * are placed by key.
+     */
+    public void setTypes(String types) {
+        Set<String> names = new HashSet<>();
+        if (!StringUtil.isEmpty(types)) {
+            for (String name : StringUtil.split(types, ",", 0))
+                if (!StringUtil.isEmpty(name.trim()))
+                    names.add(name.trim());
+        }
+        _types = names;
+        _hashed.clear();
+    }
+
+    /**
+     * Affirms if the instances of the given type are placed by their own
+     * primary key.
+     */
+    public boolean isHashed(Class<?> cls) {
+        if (_types.isEmpty())
+            return true;
+        return _hashed.computeIfAbsent(cls, c -> {
+            for (Class<?> t = c; t != null; t = t.getSuperclass())
+                if (_types.contains(t.getName()))
+                    return true;
+            return false;
+        });
+    }
+
+    /**
+     * Gets the slice of the given instance from the hash of its primary key,
+     * or null if its key is not yet assigned.
+     */
+    @Override
+    public String distribute(Object pc, List<String> slices, Object context) {
+        StoreContext ctx = (StoreContext) context;
+        PersistenceCapable p = ImplHelper.toPersistenceCapable(pc, ctx.getConfiguration());
+        ClassMetaData meta = ctx.getConfiguration().getMetaDataRepositoryInstance()
+            .getMetaData(ImplHelper.getManagedInstance(p).getClass(), ctx.getClassLoader(), true);
+        Object[] key = getPrimaryKey(p, meta, ctx);
+        if (key != null)
+            return getSlice(key, slices);
+        // the key may be assigned later, but it must be known by the flush
+        if (ctx.getStateManager(pc) != null && !meta.isEmbeddedOnly())
+            throw new UserException(_loc.get("hash-no-key", pc, meta));
+        return null;
+    }
+
+    /**
+     * Gets the slice that stores the given primary key, or null to look into
+     * all slices if the given type is not placed by its key.
+     */
+    @Override
+    public String[] getTargets(Class<?> cls, Object oid, List<String> slices, Object context) {
+        if (oid == null || !isHashed(cls))
+            return null;
+        StoreContext ctx = (StoreContext) context;
+        ClassMetaData meta = ctx.getConfiguration().getMetaDataRepositoryInstance()
+            .getMetaData(cls, ctx.getClassLoader(), false);
+        if (meta == null)
+            return null;
+        Object[] key;
+        if (meta.getIdentityType() == ClassMetaData.ID_APPLICATION && !meta.isOpenJPAIdentity())
+            key = ApplicationIds.toPKValues(oid, meta);
+        else
+            key = new Object[]{ oid };
+        for (Object value : key)
+            if (value == null)
+                return null;
+        return new String[]{ getSlice(key, slices) };
+    }
+
+    /**
+     * Gets the values of the primary key of the given instance, or null if
+     * they are not yet assigned.
+     */
+    private Object[] getPrimaryKey(PersistenceCapable pc, ClassMetaData meta, StoreContext ctx) {
+        if (meta.getIdentityType() != ClassMetaData.ID_APPLICATION) {
+            OpenJPAStateManager sm = ctx.getStateManager(pc);
+            Object oid = (sm == null) ? null : sm.getObjectId();
+            if (!(oid instanceof Id))
+                return null;
+            return new Object[]{ ((Id) oid).getId() };
+        }
+
+        Object[] key = ApplicationIds.toPKValues(ApplicationIds.create(pc, meta), meta);
+        FieldMetaData[] pks = meta.getPrimaryKeyFields();
+        for (int i = 0; i < key.length; i++) {
+            if (key[i] == null)
+                return null;
+            if (i < pks.length && pks[i].getValueStrategy() != ValueStrategies.NONE
+                && isDefault(key[i]))
+                return null;
+        }
+        return key;
+    }
+
+    private static boolean isDefault(Object value) {
+        return (value instanceof Number && ((Number) value).longValue() == 0)
+            || (value instanceof String && ((String) value).isEmpty());
+    }
+
+    /**
+     * Gets the slice, out of the given slices, that stores the given values of
+     * a primary key.
+     */
+    public String getSlice(Object[] key, List<String> slices) {
+        Ring ring = _rings.get(slices);
+        if (ring == null) {
+            List<String> copy = Collections.unmodifiableList(new ArrayList<>(slices));
+            ring = new Ring(copy, _nodes);
+            _rings.put(copy, ring);
+        }
+        return ring.locate(hash(toString(key)));
+    }
+
+    /**
+     * Gets a stable string form of the given values of a primary key. Values
+     * that denote the same key in different types, such as an
+     * <code>Integer</code> field read back as a <code>Long</code> column or a
+     * <code>java.util.Date</code> read back as a <code>Timestamp</code>, have
+     * the same form.
+     */
+    static String toString(Object[] key) {
+        StringBuilder buf = new StringBuilder();
+        for (int i = 0; i < key.length; i++) {
+            if (i > 0)
+                buf.append('\u0000');
+            Object value = key[i];
+            if (value instanceof Date)
+                buf.append(((Date) value).getTime());
+            else if (value instanceof Calendar)
+                buf.append(((Calendar) value).getTimeInMillis());
+            else if (value instanceof BigDecimal)
+                buf.append(((BigDecimal) value).stripTrailingZeros().toPlainString());
+            else if (value instanceof Double || value instanceof Float)
+                buf.append(BigDecimal.valueOf(((Number) value).doubleValue())
+                    .stripTrailingZeros().toPlainString());
+            else
+                buf.append(value);
+        }
+        return buf.toString();
+    }
+
+    /**
+     * A 64-bit FNV-1a hash of the UTF-8 bytes of the given string, with the
+     * bits mixed so that similar strings fall far apart on the ring.
+     */
+    static long hash(String s) {
+        long h = FNV_OFFSET;
+        for (byte b : s.getBytes(StandardCharsets.UTF_8)) {
+            h ^= (b & 0xff);
+            h *= FNV_PRIME;
+        }
+        h ^= (h >>> 33);
+        h *= 0xff51afd7ed558ccdL;
+        h ^= (h >>> 33);
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= (h >>> 33);
+        return h;
+    }
+
+    /**
+     * The points of a set of slices, sorted by hash value.
+     */
+    private static class Ring {
+        private final long[] _points;
+        private final String[] _owners;
+
+        Ring(List<String> slices, int nodes) {
+            if (slices.isEmpty())
+                throw new UserException(_loc.get("hash-no-slice"));
+            // sort by name so that equal points are owned regardless of order
+            List<String> names = new ArrayList<>(new HashSet<>(slices));
+            Collections.sort(names);
+            long[][] points = new long[names.size() * nodes][];
+            int n = 0;
+            for (int s = 0; s < names.size(); s++)
+                for (int v = 0; v < nodes; v++)
+                    points[n++] = new long[]{ hash(names.get(s) + "#" + v), s };
+            Arrays.sort(points, (a, b) -> (a[0] != b[0]) ? Long.compare(a[0], b[0])
+                : Long.compare(a[1], b[1]));
+            _points = new long[n];
+            _owners = new String[n];
+            for (int i = 0; i < n; i++) {
+                _points[i] = points[i][0];
+                _owners[i] = names.get((int) points[i][1]);
+            }
+        }
+
+        String locate(long hash) {
+            int idx = Arrays.binarySearch(_points, hash);
+            if (idx < 0)
+                idx = -idx - 1;
+            return _owners[(idx == _points.length) ? 0 : idx];
+        }
+    }
+}
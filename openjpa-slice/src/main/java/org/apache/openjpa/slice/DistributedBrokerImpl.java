@@ -85,9 +85,9 @@ public class DistributedBrokerImpl extends FinalizingBrokerImpl implements Distr
         boolean replicated = SliceImplHelper.isReplicated(pc, getConfiguration());
         if (getOperatingSet().isEmpty() && !SliceImplHelper.isSliceAssigned(sm)) {
             info = SliceImplHelper.getSlicesByPolicy(pc, getConfiguration(), this);
-            if (info != null) {
-                _rootSlice = info.getSlices()[0];
-            }
+            // a root whose slice is decided at flush must not leave the
+            // slice of the previous root to its cascaded instances
+            _rootSlice = (info != null) ? info.getSlices()[0] : null;
         }
         if (sm == null) {
             sm = super.persist(pc, id, explicit, call);
@@ -176,4 +176,26 @@ public interface DistributedConfiguration extends OpenJPAConfiguration {
      */
     void setFinderTargetPolicy(String policy);
 
+    /**
+     * Gets the executor that runs operations in parallel on each slice.
+     *
+     * @since 4.1.1
+     */
+    SliceExecutor getExecutorInstance();
+
+    /**
+     * Gets the executor, as a plugin string, that runs operations in parallel
+     * on each slice.
+     *
+     * @since 4.1.1
+     */
+    String getExecutor();
+
+    /**
+     * Sets the executor, from the given plugin string, that runs operations
+     * in parallel on each slice.
+     *
+     * @since 4.1.1
+     */
+    void setExecutor(String executor);
 }
@@ -0,0 +1,398 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.openjpa.slice;
+
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Queue;
+import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.apache.openjpa.conf.OpenJPAConfiguration;
+import org.apache.openjpa.lib.conf.Configurable;
+import org.apache.openjpa.lib.conf.Configuration;
+import org.apache.openjpa.lib.log.Log;
+import org.apache.openjpa.lib.util.Closeable;
+import org.apache.openjpa.lib.util.Localizer;
+import org.apache.openjpa.util.UserException;
+
+/**
+ * Executes the operations that Slice runs in parallel on each slice, such as
+ * the per-slice parts of a query or of a flush. Configured by the
+ * <code>openjpa.slice.Executor</code> property.
+ *
+ * The <code>Mode</code> property selects the threads that run the operations:
+ * <ul>
+ * <li><code>cached</code>: an unbounded pool of platform threads shared by
+ * all persistence units. This is the default.</li>
+ * <li><code>bounded</code>: a pool of at most <code>MaxThreads</code>
+ * platform threads. Operations wait in a queue when all threads are busy.</li>
+ * <li><code>virtual</code>: a new virtual thread for each operation. Requires
+ * Java 21 or later; on earlier versions the <code>cached</code> mode is used.
+ * </li>
+ * </ul>
+ * In all modes, <code>MaxConcurrencyPerSlice</code> bounds the number of
+ * operations that run at the same time on each slice, so that a burst of
+ * work does not exhaust the connections of a slice.
+ *
+ * The executor records, for each slice, how long operations waited before
+ * they started and how long they took from submission to completion.
+ *
+ * @since 4.1.1
+ */
+public class SliceExecutor implements Configurable, Closeable {
+
+    private static final Localizer _loc = Localizer.forPackage(SliceExecutor.class);
+
+    public static final String MODE_CACHED = "cached";
+    public static final String MODE_BOUNDED = "bounded";
+    public static final String MODE_VIRTUAL = "virtual";
+
+    private String _mode = MODE_CACHED;
+    private int _maxThreads = 64;
+    private int _maxPerSlice = 0;
+    private Log _log;
+    private ExecutorService _pool;
+    private boolean _shared = false;
+    private final ConcurrentMap<String, SliceQueue> _queues = new ConcurrentHashMap<>();
+    private final ThreadLocal<String> _running = new ThreadLocal<>();
+    private final ConcurrentMap<String, Statistics> _stats = new ConcurrentHashMap<>();
+
+    /**
+     * The kind of threads that run slice operations: <code>cached</code>,
+     * <code>bounded</code> or <code>virtual</code>.
+     */
+    public String getMode() {
+        return _mode;
+    }
+
+    /**
+     * The kind of threads that run slice operations: <code>cached</code>,
+     * <code>bounded</code> or <code>virtual</code>. Defaults to
+     * <code>cached</code>.
+     */
+    public void setMode(String mode) {
+        if (MODE_CACHED.equalsIgnoreCase(mode))
+            _mode = MODE_CACHED;
+        else if (MODE_BOUNDED.equalsIgnoreCase(mode))
+            _mode = MODE_BOUNDED;
+        else if (MODE_VIRTUAL.equalsIgnoreCase(mode))
+            _mode = MODE_VIRTUAL;
+        else
+            throw new UserException(_loc.get("bad-executor-mode", mode));
+    }
+
+    /**
+     * The number of threads of the <code>bounded</code> mode.
+     */
+    public int getMaxThreads() {
+        return _maxThreads;
+    }
+
+    /**
+     * The number of threads of the <code>bounded</code> mode. Defaults to 64.
+     */
+    public void setMaxThreads(int max) {
+        _maxThreads = Math.max(1, max);
+    }
+
+    /**
+     * The maximum number of operations that run at the same time on each
+     * slice, or 0 for no limit.
+     */
+    public int getMaxConcurrencyPerSlice() {
+        return _maxPerSlice;
+    }
+
+    /**
+     * The maximum number of operations that run at the same time on each
+     * slice, or 0 for no limit. Defaults to 0.
+     */
+    public void setMaxConcurrencyPerSlice(int max) {
+        _maxPerSlice = Math.max(0, max);
+    }
+
+    @Override
+    public void setConfiguration(Configuration conf) {
+        _log = conf.getLog(OpenJPAConfiguration.LOG_RUNTIME);
+    }
+
+    @Override
+    public void startConfiguration() {
+    }
+
+    @Override
+    public void endConfiguration() {
+    }
+
+    /**
+     * Submit an operation to run on the given slice.
+     *
+     * When the slice already runs as many operations as
+     * <code>MaxConcurrencyPerSlice</code> allows, the operation waits in a
+     * queue of the slice and is handed to a thread only when one of them
+     * completes, so that a busy slice does not hold the threads that
+     * operations on other slices need. An operation submitted by an
+     * operation that runs on the same slice shares the place of its parent
+     * and is not queued, otherwise a parent that waits for it would never
+     * complete.
+     *
+     * @param slice the name of the slice the operation works on
+     */
+    public <T> Future<T> submit(final String slice, final Callable<T> task) {
+        final long submitted = System.nanoTime();
+        final Statistics stats = getStatistics(slice);
+        FutureTask<T> future = new FutureTask<>(new Callable<T>() {
+            @Override
+            public T call() throws Exception {
+                long started = System.nanoTime();
+                boolean child = SliceThread.setChild(true);
+                String parent = _running.get();
+                _running.set(slice);
+                try {
+                    return task.call();
+                } finally {
+                    if (parent == null)
+                        _running.remove();
+                    else
+                        _running.set(parent);
+                    SliceThread.setChild(child);
+                    stats.record(started - submitted, System.nanoTime() - submitted);
+                }
+            }
+        });
+        SliceQueue queue = getQueue(slice);
+        if (queue == null || slice.equals(_running.get()))
+            getPool().execute(future);
+        else
+            queue.offer(future);
+        return future;
+    }
+
+    private SliceQueue getQueue(String slice) {
+        if (_maxPerSlice <= 0)
+            return null;
+        return _queues.computeIfAbsent(slice, s -> new SliceQueue(_maxPerSlice));
+    }
+
+    private Statistics getStatistics(String slice) {
+        return _stats.computeIfAbsent(slice, s -> new Statistics());
+    }
+
+    /**
+     * The statistics of the operations run so far, by slice name.
+     */
+    public Map<String, Statistics> getStatistics() {
+        return Collections.unmodifiableMap(new TreeMap<>(_stats));
+    }
+
+    /**
+     * Clear the statistics of all slices.
+     */
+    public void resetStatistics() {
+        _stats.clear();
+    }
+
+    private synchronized ExecutorService getPool() {
+        if (_pool == null) {
+            if (MODE_VIRTUAL.equals(_mode))
+                _pool = newVirtualThreadPool();
+            else if (MODE_BOUNDED.equals(_mode)) {
+                ThreadPoolExecutor pool = new ThreadPoolExecutor(_maxThreads, _maxThreads,
+                    60, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), new SliceThread.SliceThreadFactory());
+                pool.allowCoreThreadTimeOut(true);
+                _pool = pool;
+            }
+            if (_pool == null) {
+                _pool = SliceThread.getPool();
+                _shared = true;
+            }
+        }
+        return _pool;
+    }
+
+    /**
+     * Create an executor that starts a virtual thread for each task, or
+     * return null if this JVM has no virtual threads.
+     */
+    private ExecutorService newVirtualThreadPool() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor")
+                .invoke(null);
+        } catch (ReflectiveOperationException e) {
+            if (_log != null && _log.isWarnEnabled())
+                _log.warn(_loc.get("no-virtual-threads", System.getProperty("java.version")));
+            return null;
+        }
+    }
+
+    /**
+     * Shut down the threads of this executor, unless they are shared.
+     */
+    @Override
+    public synchronized void close() {
+        if (_pool != null && !_shared)
+            _pool.shutdown();
+        _pool = null;
+    }
+
+    /**
+     * The operations of a slice that wait for one of the operations running
+     * on the slice to complete.
+     */
+    private class SliceQueue {
+
+        private final int _max;
+        private final Queue<Runnable> _waiting = new ArrayDeque<>();
+        private int _active;
+
+        SliceQueue(int max) {
+            _max = max;
+        }
+
+        /**
+         * Hand the given operation to a thread if the slice runs fewer
+         * operations than its limit, or else keep it until one completes.
+         */
+        void offer(Runnable op) {
+            synchronized (this) {
+                if (_active >= _max) {
+                    _waiting.add(op);
+                    return;
+                }
+                _active++;
+            }
+            dispatch(op);
+        }
+
+        private void dispatch(final Runnable op) {
+            try {
+                getPool().execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        try {
+                            op.run();
+                        } finally {
+                            next();
+                        }
+                    }
+                });
+            } catch (RuntimeException e) {
+                if (op instanceof Future)
+                    ((Future<?>) op).cancel(false);
+                next();
+                throw e;
+            }
+        }
+
+        /**
+         * Give the place of a completed operation to the next waiting one.
+         */
+        private void next() {
+            Runnable op;
+            synchronized (this) {
+                op = _waiting.poll();
+                if (op == null) {
+                    _active--;
+                    return;
+                }
+            }
+            dispatch(op);
+        }
+    }
+
+    /**
+     * Timings of the operations run on a slice.
+     */
+    public static class Statistics {
+
+        private final LongAdder _count = new LongAdder();
+        private final LongAdder _wait = new LongAdder();
+        private final LongAdder _latency = new LongAdder();
+        private final AtomicLong _maxWait = new AtomicLong();
+        private final AtomicLong _maxLatency = new AtomicLong();
+
+        void record(long waitNanos, long latencyNanos) {
+            _count.increment();
+            _wait.add(waitNanos);
+            _latency.add(latencyNanos);
+            _maxWait.accumulateAndGet(waitNanos, Math::max);
+            _maxLatency.accumulateAndGet(latencyNanos, Math::max);
+        }
+
+        /**
+         * The number of operations run.
+         */
+        public long getCount() {
+            return _count.sum();
+        }
+
+        /**
+         * The average time, in milliseconds, that operations waited for a
+         * thread and for the concurrency limit of the slice.
+         */
+        public double getAverageWaitMillis() {
+            long count = getCount();
+            return (count == 0) ? 0 : _wait.sum() / 1e6 / count;
+        }
+
+        /**
+         * The longest time, in milliseconds, that an operation waited.
+         */
+        public double getMaxWaitMillis() {
+            return _maxWait.get() / 1e6;
+        }
+
+        /**
+         * The average time, in milliseconds, from the submission of an
+         * operation to its completion.
+         */
+        public double getAverageLatencyMillis() {
+            long count = getCount();
+            return (count == 0) ? 0 : _latency.sum() / 1e6 / count;
+        }
+
+        /**
+         * The longest time, in milliseconds, from the submission of an
+         * operation to its completion.
+         */
+        public double getMaxLatencyMillis() {
+            return _maxLatency.get() / 1e6;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("count=%d wait(avg/max)=%.3f/%.3fms latency(avg/max)=%.3f/%.3fms",
+                getCount(), getAverageWaitMillis(), getMaxWaitMillis(),
+                getAverageLatencyMillis(), getMaxLatencyMillis());
+        }
+    }
+}
@@ -31,6 +31,7 @@ import java.util.concurrent.ThreadFactory;
 public class SliceThread extends Thread {
     private final Thread _parent;
     private static ExecutorService _pool;
+    private static final ThreadLocal<Boolean> _child = new ThreadLocal<>();
 
     public SliceThread(String name, Thread parent, Runnable r) {
         super(r, name);
@@ -63,7 +64,34 @@ public class SliceThread extends Thread {
         return _pool;
     }
 
-    private static class SliceThreadFactory implements ThreadFactory {
+    /**
+     * Affirms if the current thread executes an operation on behalf of a
+     * parent thread, either as a <em>slice</em> thread or as a thread of a
+     * {@link SliceExecutor} that is not a <em>slice</em> thread, such as a
+     * virtual thread.
+     *
+     * @since 4.1.1
+     */
+    public static boolean isSliceThread() {
+        return Thread.currentThread() instanceof SliceThread
+            || Boolean.TRUE.equals(_child.get());
+    }
+
+    /**
+     * Marks the current thread as executing on behalf of a parent thread.
+     *
+     * @return the previous mark
+     */
+    static boolean setChild(boolean child) {
+        boolean prev = Boolean.TRUE.equals(_child.get());
+        if (child)
+            _child.set(Boolean.TRUE);
+        else
+            _child.remove();
+        return prev;
+    }
+
+    static class SliceThreadFactory implements ThreadFactory {
         int n = 0;
         @Override
         public Thread newThread(Runnable r) {
@@ -51,6 +51,7 @@ import org.apache.openjpa.lib.util.J2DoPrivHelper;
 import org.apache.openjpa.lib.util.Localizer;
 import org.apache.openjpa.meta.ClassMetaData;
 import org.apache.openjpa.meta.MetaDataRepository;
+import org.apache.openjpa.slice.ConsistentHashPolicy;
 import org.apache.openjpa.slice.DistributedBrokerImpl;
 import org.apache.openjpa.slice.DistributionPolicy;
 import org.apache.openjpa.slice.FinderTargetPolicy;
@@ -58,6 +59,7 @@ import org.apache.openjpa.slice.ProductDerivation;
 import org.apache.openjpa.slice.QueryTargetPolicy;
 import org.apache.openjpa.slice.ReplicationPolicy;
 import org.apache.openjpa.slice.Slice;
+import org.apache.openjpa.slice.SliceExecutor;
 import org.apache.openjpa.util.UserException;
 
 /**
@@ -84,8 +86,10 @@ public class DistributedJDBCConfigurationImpl extends JDBCConfigurationImpl
     public PluginValue queryTargetPolicyPlugin;
     public PluginValue finderTargetPolicyPlugin;
     public StringListValue replicatedTypesPlugin;
+    public PluginValue executorPlugin;
 
     private ReplicatedTypeRepository _replicationRepos;
+    private volatile SliceExecutor _executor;
 
     public static final String DOT = ".";
     public static final String REGEX_DOT = "\\.";
@@ -103,6 +107,7 @@ public class DistributedJDBCConfigurationImpl extends JDBCConfigurationImpl
 
         distributionPolicyPlugin = addPlugin(PREFIX_SLICE + "DistributionPolicy", true);
         distributionPolicyPlugin.setAlias("random", DistributionPolicy.Default.class.getName());
+        distributionPolicyPlugin.setAlias("hash", ConsistentHashPolicy.class.getName());
         distributionPolicyPlugin.setDefault("random");
         distributionPolicyPlugin.setString("random");
         distributionPolicyPlugin.setDynamic(true);
@@ -117,8 +122,14 @@ public class DistributedJDBCConfigurationImpl extends JDBCConfigurationImpl
         queryTargetPolicyPlugin.setDynamic(true);
 
         finderTargetPolicyPlugin = addPlugin(PREFIX_SLICE + "FinderTargetPolicy", true);
+        finderTargetPolicyPlugin.setAlias("hash", ConsistentHashPolicy.class.getName());
         finderTargetPolicyPlugin.setDynamic(true);
 
+        executorPlugin = addPlugin(PREFIX_SLICE + "Executor", true);
+        executorPlugin.setAlias("default", SliceExecutor.class.getName());
+        executorPlugin.setDefault("default");
+        executorPlugin.setString("default");
+
         replicatedTypesPlugin = new StringListValue(PREFIX_SLICE + "ReplicatedTypes");
         addValue(replicatedTypesPlugin);
 
@@ -326,6 +337,39 @@ public class DistributedJDBCConfigurationImpl extends JDBCConfigurationImpl
         finderTargetPolicyPlugin.setString(policy);
     }
 
+    /**
+     * Gets the executor, creating it on first use. Only the creation locks
+     * this configuration, because every distributed query and flush asks
+     * for the executor.
+     */
+    @Override
+    public SliceExecutor getExecutorInstance() {
+        SliceExecutor executor = _executor;
+        if (executor == null) {
+            synchronized (this) {
+                executor = _executor;
+                if (executor == null) {
+                    if (executorPlugin.get() == null)
+                        executorPlugin.instantiate(SliceExecutor.class, this, true);
+                    executor = (SliceExecutor) executorPlugin.get();
+                    _executor = executor;
+                }
+            }
+        }
+        return executor;
+    }
+
+    @Override
+    public String getExecutor() {
+        return executorPlugin.getString();
+    }
+
+    @Override
+    public synchronized void setExecutor(String executor) {
+        executorPlugin.setString(executor);
+        _executor = null;
+    }
+
     @Override
     public DistributedDataSource getConnectionFactory() {
         if (virtualDataSource == null) {
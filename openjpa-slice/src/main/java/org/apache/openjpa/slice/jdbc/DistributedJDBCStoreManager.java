@@ -29,7 +29,6 @@ import java.util.List;
 import java.util.Map;
 import java.util.concurrent.Callable;
 import java.util.concurrent.ExecutionException;
-import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Future;
 
 import org.apache.openjpa.enhance.PersistenceCapable;
@@ -56,10 +55,10 @@ import org.apache.openjpa.meta.FieldMetaData;
 import org.apache.openjpa.slice.DistributedConfiguration;
 import org.apache.openjpa.slice.DistributedStoreManager;
 import org.apache.openjpa.slice.Slice;
+import org.apache.openjpa.slice.SliceExecutor;
 import org.apache.openjpa.slice.SliceImplHelper;
 import org.apache.openjpa.slice.SliceInfo;
 import org.apache.openjpa.slice.SlicePersistence;
-import org.apache.openjpa.slice.SliceThread;
 import org.apache.openjpa.util.InternalException;
 import org.apache.openjpa.util.StoreException;
 
@@ -270,7 +269,7 @@ class DistributedJDBCStoreManager extends JDBCStoreManager
         Map<String, StateManagerSet> subsets = bin(sms, null);
         Collection<StateManagerSet> remaining =
             new ArrayList<>(subsets.values());
-        ExecutorService threadPool = SliceThread.getPool();
+        SliceExecutor threadPool = _conf.getExecutorInstance();
         for (SliceStoreManager slice : _slices) {
             StateManagerSet subset = subsets.get(slice.getName());
             if (subset.isEmpty())
@@ -281,7 +280,7 @@ class DistributedJDBCStoreManager extends JDBCStoreManager
                 remaining.remove(subset);
                 rollbackVersion(subset.getReplicated(), oldVersions, remaining);
             } else {
-                futures.add(threadPool.submit(new Flusher(slice, subset)));
+                futures.add(threadPool.submit(slice.getName(), new Flusher(slice, subset)));
             }
         }
         for (Future<Collection> future : futures) {
@@ -455,7 +454,7 @@ class DistributedJDBCStoreManager extends JDBCStoreManager
         if (QueryLanguages.LANG_SQL.equals(language)) {
             DistributedSQLStoreQuery ret = new DistributedSQLStoreQuery(this);
             for (SliceStoreManager slice : _slices) {
-                ret.add(slice.newQuery(language));
+                ret.add(slice, slice.newQuery(language));
             }
             return ret;
         }
@@ -466,7 +465,7 @@ class DistributedJDBCStoreManager extends JDBCStoreManager
 
         DistributedStoreQuery ret = new DistributedStoreQuery(this, parser);
         for (SliceStoreManager slice : _slices) {
-            ret.add(slice.newQuery(language));
+            ret.add(slice, slice.newQuery(language));
         }
         return ret;
     }
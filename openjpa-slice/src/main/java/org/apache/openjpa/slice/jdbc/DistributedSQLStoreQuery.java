@@ -19,26 +19,24 @@
 package org.apache.openjpa.slice.jdbc;
 
 import java.util.ArrayList;
-import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutionException;
-import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Future;
 
 import org.apache.openjpa.jdbc.kernel.JDBCStore;
 import org.apache.openjpa.jdbc.kernel.SQLStoreQuery;
 import org.apache.openjpa.kernel.FetchConfiguration;
-import org.apache.openjpa.kernel.OrderingMergedResultObjectProvider;
 import org.apache.openjpa.kernel.QueryContext;
-import org.apache.openjpa.kernel.StoreManager;
 import org.apache.openjpa.kernel.StoreQuery;
 import org.apache.openjpa.lib.rop.MergedResultObjectProvider;
 import org.apache.openjpa.lib.rop.RangeResultObjectProvider;
 import org.apache.openjpa.lib.rop.ResultObjectProvider;
 import org.apache.openjpa.meta.ClassMetaData;
 import org.apache.openjpa.slice.DistributedConfiguration;
-import org.apache.openjpa.slice.SliceThread;
+import org.apache.openjpa.slice.SliceExecutor;
 import org.apache.openjpa.util.StoreException;
 
 /**
@@ -49,13 +47,16 @@ import org.apache.openjpa.util.StoreException;
  */
 class DistributedSQLStoreQuery extends SQLStoreQuery {
     private static final long serialVersionUID = 1L;
+    // the slices and their queries, in the same order
+    private List<SliceStoreManager> _slices = new ArrayList<>();
     private List<StoreQuery> _queries = new ArrayList<>();
 
 	public DistributedSQLStoreQuery(JDBCStore store) {
 		super(store);
 	}
 
-	void add(StoreQuery q) {
+	void add(SliceStoreManager slice, StoreQuery q) {
+		_slices.add(slice);
 		_queries.add(q);
 	}
 
@@ -67,10 +68,10 @@ class DistributedSQLStoreQuery extends SQLStoreQuery {
     public Executor newDataStoreExecutor(ClassMetaData meta, boolean subs) {
 		boolean parallel = !getContext().getStoreContext().getBroker()
 			.getMultithreaded();
-        ParallelExecutor ex = new ParallelExecutor(this, meta, parallel);
-		for (StoreQuery q : _queries) {
-			ex.addExecutor(q.newDataStoreExecutor(meta, subs));
-		}
+        ParallelExecutor ex = new ParallelExecutor(this, meta, subs, parallel);
+		for (int i = 0; i < _queries.size(); i++)
+			ex.addExecutor(_slices.get(i).getName(),
+				_queries.get(i).newDataStoreExecutor(meta, subs));
 		return ex;
 	}
 
@@ -89,16 +90,34 @@ class DistributedSQLStoreQuery extends SQLStoreQuery {
 	 */
 	public static class ParallelExecutor extends
 			SQLStoreQuery.SQLExecutor {
-		private List<Executor> executors = new ArrayList<>();
+		// the executors of the slice queries by the name of their slice
+		private Map<String, Executor> executors = new ConcurrentHashMap<>();
 		private DistributedSQLStoreQuery owner = null;
+		private final ClassMetaData meta;
+		private final boolean subs;
 
-        public ParallelExecutor(DistributedSQLStoreQuery dsq, ClassMetaData meta, boolean p) {
+        public ParallelExecutor(DistributedSQLStoreQuery dsq, ClassMetaData meta,
+            boolean subs, boolean p) {
 			super(dsq, meta);
 			owner = dsq;
+			this.meta = meta;
+			this.subs = subs;
+		}
+
+		public void addExecutor(String slice, Executor ex) {
+			executors.put(slice, ex);
 		}
 
-		public void addExecutor(Executor ex) {
-			executors.add(ex);
+		/**
+		 * Gets the executor for the slice query at the given index of the
+		 * given query. Executors are found by the name of their slice, as the
+		 * slices of the query being executed are not those of the query that
+		 * created this executor. A slice added since then gets an executor of
+		 * its own.
+		 */
+		private Executor getExecutor(DistributedSQLStoreQuery dsq, int i) {
+			return executors.computeIfAbsent(dsq._slices.get(i).getName(),
+				slice -> dsq._queries.get(i).newDataStoreExecutor(meta, subs));
 		}
 
 		/**
@@ -108,34 +127,38 @@ class DistributedSQLStoreQuery extends SQLStoreQuery {
 		@Override
         public ResultObjectProvider executeQuery(StoreQuery q,
 				final Object[] params, final Range range) {
+			DistributedSQLStoreQuery dsq = getOwner(q);
 			List<Future<ResultObjectProvider>> futures =
 				new ArrayList<>();
             final List<Executor> usedExecutors = new ArrayList<>();
 			final List<ResultObjectProvider> rops =
 				new ArrayList<>();
-			List<SliceStoreManager> targets = findTargets();
+			List<SliceStoreManager> targets = findTargets(dsq);
 			QueryContext ctx = q.getContext();
 			boolean isReplicated = containsReplicated(ctx);
-            ExecutorService threadPool = SliceThread.getPool();
-			for (int i = 0; i < owner._queries.size(); i++) {
+            SliceExecutor threadPool = dsq.getDistributedStore().getConfiguration()
+                .getExecutorInstance();
+            // each slice returns its results up to the end of the range, as
+            // any of them may fall in the range once merged
+            Range sliceRange = new Range(0L, range.end);
+            sliceRange.lrs = range.lrs;
+			for (int i = 0; i < dsq._queries.size(); i++) {
                 // if replicated, then execute only on single slice
 				if (isReplicated && !usedExecutors.isEmpty()) {
 					break;
 				}
-                StoreManager sm = owner.getDistributedStore().getSlice(i);
-				if (!targets.contains(sm))
-					continue;
-				StoreQuery query = owner._queries.get(i);
-				Executor executor = executors.get(i);
+                SliceStoreManager sm = dsq._slices.get(i);
 				if (!targets.contains(sm))
 					continue;
+				StoreQuery query = dsq._queries.get(i);
+				Executor executor = getExecutor(dsq, i);
 				usedExecutors.add(executor);
                 QueryExecutor call = new QueryExecutor();
                 call.executor = executor;
                 call.query = query;
                 call.params = params;
-                call.range = range;
-                futures.add(threadPool.submit(call));
+                call.range = sliceRange;
+                futures.add(threadPool.submit(sm.getName(), call));
 			}
 			for (Future<ResultObjectProvider> future : futures) {
 				try {
@@ -153,20 +176,20 @@ class DistributedSQLStoreQuery extends SQLStoreQuery {
 			boolean[] ascending = getAscending(q);
 			boolean isAscending = ascending.length > 0;
 			boolean isAggregate = ctx.isAggregate();
-			boolean hasRange = ctx.getEndRange() != Long.MAX_VALUE;
+			boolean hasRange = range.start != 0L || range.end != Long.MAX_VALUE;
 			if (isAggregate) {
 				result = new UniqueResultObjectProvider(tmp, q,
 						getQueryExpressions());
 			} else if (isAscending) {
-                result = new OrderingMergedResultObjectProvider(tmp, ascending,
+                result = new OrderedMergedResultObjectProvider(tmp, ascending,
                     usedExecutors.toArray(new Executor[usedExecutors.size()]),
-					q, params);
+					q, params, range.end);
 			} else {
 				result = new MergedResultObjectProvider(tmp);
 			}
 			if (hasRange) {
                 result = new RangeResultObjectProvider(result,
-                        ctx.getStartRange(), ctx.getEndRange());
+                        range.start, range.end);
 			}
 			return result;
 		}
@@ -192,18 +215,17 @@ class DistributedSQLStoreQuery extends SQLStoreQuery {
 
 		@Override
         public Number executeDelete(StoreQuery q, Object[] params) {
-			Iterator<StoreQuery> qs = owner._queries.iterator();
-			List<Future<Number>> futures = null;
+			DistributedSQLStoreQuery dsq = getOwner(q);
+			List<Future<Number>> futures = new ArrayList<>();
 			int result = 0;
-            ExecutorService threadPool = SliceThread.getPool();
-			for (Executor ex : executors) {
-				if (futures == null)
-                    futures = new ArrayList<>();
+            SliceExecutor threadPool = dsq.getDistributedStore().getConfiguration()
+                .getExecutorInstance();
+			for (int i = 0; i < dsq._queries.size(); i++) {
 				DeleteExecutor call = new DeleteExecutor();
-				call.executor = ex;
-				call.query = qs.next();
+				call.executor = getExecutor(dsq, i);
+				call.query = dsq._queries.get(i);
 				call.params = params;
-				futures.add(threadPool.submit(call));
+				futures.add(threadPool.submit(dsq._slices.get(i).getName(), call));
 			}
 			for (Future<Number> future : futures) {
 				try {
@@ -221,18 +243,17 @@ class DistributedSQLStoreQuery extends SQLStoreQuery {
 
 		@Override
         public Number executeUpdate(StoreQuery q, Object[] params) {
-			Iterator<StoreQuery> qs = owner._queries.iterator();
-			List<Future<Number>> futures = null;
+			DistributedSQLStoreQuery dsq = getOwner(q);
+			List<Future<Number>> futures = new ArrayList<>();
 			int result = 0;
-            ExecutorService threadPool = SliceThread.getPool();
-			for (Executor ex : executors) {
-				if (futures == null)
-                    futures = new ArrayList<>();
+            SliceExecutor threadPool = dsq.getDistributedStore().getConfiguration()
+                .getExecutorInstance();
+			for (int i = 0; i < dsq._queries.size(); i++) {
 				UpdateExecutor call = new UpdateExecutor();
-				call.executor = ex;
-				call.query = qs.next();
+				call.executor = getExecutor(dsq, i);
+				call.query = dsq._queries.get(i);
 				call.params = params;
-				futures.add(threadPool.submit(call));
+				futures.add(threadPool.submit(dsq._slices.get(i).getName(), call));
 			}
 			for (Future<Number> future : futures) {
 				try {
@@ -247,10 +268,19 @@ class DistributedSQLStoreQuery extends SQLStoreQuery {
 			return result;
 		}
 
-		List<SliceStoreManager> findTargets() {
-			FetchConfiguration fetch = owner.getContext()
-					.getFetchConfiguration();
-			return owner.getDistributedStore().getTargets(fetch);
+		/**
+		 * Gets the query being executed. This executor is cached with the
+		 * compilation of the query and shared by all queries of the same
+		 * string, so the slice queries and the targets of the query that
+		 * created it are not those of the query being executed.
+		 */
+		private DistributedSQLStoreQuery getOwner(StoreQuery q) {
+			return (q instanceof DistributedSQLStoreQuery) ? (DistributedSQLStoreQuery) q : owner;
+		}
+
+		List<SliceStoreManager> findTargets(DistributedSQLStoreQuery dsq) {
+			FetchConfiguration fetch = dsq.getContext().getFetchConfiguration();
+			return dsq.getDistributedStore().getTargets(fetch);
 		}
 
 	}
@@ -19,28 +19,30 @@
 package org.apache.openjpa.slice.jdbc;
 
 import java.util.ArrayList;
-import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutionException;
-import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Future;
 
 import org.apache.openjpa.jdbc.kernel.JDBCStore;
 import org.apache.openjpa.jdbc.kernel.JDBCStoreQuery;
+import org.apache.openjpa.jdbc.kernel.exps.JDBCExpressionFactory;
+import org.apache.openjpa.jdbc.meta.ClassMapping;
 import org.apache.openjpa.kernel.ExpressionStoreQuery;
 import org.apache.openjpa.kernel.FetchConfiguration;
-import org.apache.openjpa.kernel.OrderingMergedResultObjectProvider;
 import org.apache.openjpa.kernel.QueryContext;
-import org.apache.openjpa.kernel.StoreManager;
+import org.apache.openjpa.kernel.QueryOperations;
 import org.apache.openjpa.kernel.StoreQuery;
 import org.apache.openjpa.kernel.exps.ExpressionParser;
+import org.apache.openjpa.kernel.exps.QueryExpressions;
 import org.apache.openjpa.lib.rop.MergedResultObjectProvider;
 import org.apache.openjpa.lib.rop.RangeResultObjectProvider;
 import org.apache.openjpa.lib.rop.ResultObjectProvider;
 import org.apache.openjpa.meta.ClassMetaData;
 import org.apache.openjpa.slice.DistributedConfiguration;
-import org.apache.openjpa.slice.SliceThread;
+import org.apache.openjpa.slice.SliceExecutor;
 import org.apache.openjpa.util.StoreException;
 
 /**
@@ -51,6 +53,8 @@ import org.apache.openjpa.util.StoreException;
  */
 class DistributedStoreQuery extends JDBCStoreQuery {
     private static final long serialVersionUID = 1L;
+    // the slices and their queries, in the same order
+    private List<SliceStoreManager> _slices = new ArrayList<>();
     private List<StoreQuery> _queries = new ArrayList<>();
 	private ExpressionParser _parser;
 
@@ -59,7 +63,8 @@ class DistributedStoreQuery extends JDBCStoreQuery {
 		_parser = parser;
 	}
 
-	void add(StoreQuery q) {
+	void add(SliceStoreManager slice, StoreQuery q) {
+		_slices.add(slice);
 		_queries.add(q);
 	}
 
@@ -73,12 +78,26 @@ class DistributedStoreQuery extends JDBCStoreQuery {
 			.getMultithreaded();
         ParallelExecutor ex = new ParallelExecutor(this, meta, subs, _parser,
 			ctx.getCompilation(), parallel);
-		for (StoreQuery q : _queries) {
-			ex.addExecutor(q.newDataStoreExecutor(meta, subs));
-		}
+		for (int i = 0; i < _queries.size(); i++)
+			ex.addExecutor(_slices.get(i).getName(),
+				newSliceExecutor(_queries.get(i), meta, subs));
 		return ex;
 	}
 
+	/**
+	 * Creates the executor of the given slice query.
+	 */
+	static Executor newSliceExecutor(StoreQuery q, ClassMetaData meta, boolean subs) {
+		Executor child = q.newDataStoreExecutor(meta, subs);
+		// each slice computes partial aggregates for the merge
+		for (QueryExpressions exps : child.getQueryExpressions()) {
+			if (exps.operation == QueryOperations.OP_SELECT
+				&& (exps.isAggregate() || exps.grouping.length > 0))
+				PartialAggregates.split(exps, new JDBCExpressionFactory((ClassMapping) meta));
+		}
+		return child;
+	}
+
 	@Override
     public void setContext(QueryContext ctx) {
 		super.setContext(ctx);
@@ -95,18 +114,35 @@ class DistributedStoreQuery extends JDBCStoreQuery {
 	public static class ParallelExecutor extends
 			ExpressionStoreQuery.DataStoreExecutor {
         private static final long serialVersionUID = 1L;
-        private List<Executor> executors = new ArrayList<>();
+		// the executors of the slice queries by the name of their slice
+        private Map<String, Executor> executors = new ConcurrentHashMap<>();
 		private DistributedStoreQuery owner = null;
+		private final ClassMetaData meta;
+		private final boolean subs;
 
         public ParallelExecutor(DistributedStoreQuery dsq, ClassMetaData meta,
                 boolean subclasses, ExpressionParser parser, Object parsed,
 				boolean parallel) {
 			super(dsq, meta, subclasses, parser, parsed);
 			owner = dsq;
+			this.meta = meta;
+			this.subs = subclasses;
 		}
 
-		public void addExecutor(Executor ex) {
-			executors.add(ex);
+		public void addExecutor(String slice, Executor ex) {
+			executors.put(slice, ex);
+		}
+
+		/**
+		 * Gets the executor for the slice query at the given index of the
+		 * given query. Executors are found by the name of their slice, as the
+		 * slices of the query being executed are not those of the query that
+		 * created this executor. A slice added since then gets an executor of
+		 * its own.
+		 */
+		private Executor getExecutor(DistributedStoreQuery dsq, int i) {
+			return executors.computeIfAbsent(dsq._slices.get(i).getName(),
+				slice -> newSliceExecutor(dsq._queries.get(i), meta, subs));
 		}
 
 		/**
@@ -116,29 +152,40 @@ class DistributedStoreQuery extends JDBCStoreQuery {
 		@Override
         public ResultObjectProvider executeQuery(StoreQuery q,
 				final Object[] params, final Range range) {
+			DistributedStoreQuery dsq = getOwner(q);
 			List<Future<ResultObjectProvider>> futures = new ArrayList<>();
             final List<Executor> usedExecutors = new ArrayList<>();
 			final List<ResultObjectProvider> rops = new ArrayList<>();
-			List<SliceStoreManager> targets = findTargets();
+			List<SliceStoreManager> targets = findTargets(dsq);
 			QueryContext ctx = q.getContext();
 			boolean isReplicated = containsReplicated(ctx);
-            ExecutorService threadPool = SliceThread.getPool();
+			QueryExpressions exps = getQueryExpressions()[0];
+			boolean isAggregate = ctx.isAggregate();
+			boolean isGrouped = exps.grouping.length > 0;
+            SliceExecutor threadPool = dsq.getDistributedStore().getConfiguration()
+                .getExecutorInstance();
+            // each slice returns its results up to the end of the range, as
+            // any of them may fall in the range once merged; the partial
+            // aggregates of all groups are needed to merge any group
+            Range sliceRange = (isAggregate || isGrouped) ? new Range()
+                : new Range(0L, range.end);
+            sliceRange.lrs = range.lrs;
 
-			for (int i = 0; i < owner._queries.size(); i++) {
+			for (int i = 0; i < dsq._queries.size(); i++) {
                 // if replicated, then execute only on single slice
 				if (isReplicated && !usedExecutors.isEmpty()) {
 					break;
 				}
-                StoreManager sm = owner.getDistributedStore().getSlice(i);
+                SliceStoreManager sm = dsq._slices.get(i);
 				if (!targets.contains(sm))
 					continue;
                 QueryExecutor call = new QueryExecutor();
-                call.executor = executors.get(i);
-                call.query = owner._queries.get(i);
+                call.executor = getExecutor(dsq, i);
+                call.query = dsq._queries.get(i);
                 call.params = params;
-                call.range = range;
+                call.range = sliceRange;
 				usedExecutors.add(call.executor);
-                futures.add(threadPool.submit(call));
+                futures.add(threadPool.submit(sm.getName(), call));
 			}
 			for (Future<ResultObjectProvider> future : futures) {
 				try {
@@ -154,19 +201,20 @@ class DistributedStoreQuery extends JDBCStoreQuery {
 			ResultObjectProvider result = null;
 			boolean[] ascending = getAscending(q);
 			boolean isAscending = ascending.length > 0;
-			boolean isAggregate = ctx.isAggregate();
-			boolean hasRange = ctx.getEndRange() != Long.MAX_VALUE;
-			if (isAggregate) {
+			boolean hasRange = range.start != 0L || range.end != Long.MAX_VALUE;
+			if (isGrouped) {
+				result = new GroupingResultObjectProvider(tmp, exps, ascending, this, q, params);
+			} else if (isAggregate) {
 				result = new UniqueResultObjectProvider(tmp, q,	getQueryExpressions());
 			} else if (isAscending) {
-                result = new OrderingMergedResultObjectProvider(tmp, ascending,
+                result = new OrderedMergedResultObjectProvider(tmp, ascending,
                     usedExecutors.toArray(new Executor[usedExecutors.size()]),
-					q, params);
+					q, params, range.end);
 			} else {
 				result = new MergedResultObjectProvider(tmp);
 			}
 			if (hasRange) {
-                result = new RangeResultObjectProvider(result, ctx.getStartRange(), ctx.getEndRange());
+                result = new RangeResultObjectProvider(result, range.start, range.end);
 			}
 			return result;
 		}
@@ -192,20 +240,22 @@ class DistributedStoreQuery extends JDBCStoreQuery {
 
 		@Override
         public Number executeDelete(StoreQuery q, Object[] params) {
+			DistributedStoreQuery dsq = getOwner(q);
 			List<Future<Number>> futures = new ArrayList<>();
 			int result = 0;
-            ExecutorService threadPool = SliceThread.getPool();
-			List<SliceStoreManager> targets = findTargets();
-			for (int i = 0; i < owner._queries.size(); i++) {
-                StoreManager sm = owner.getDistributedStore().getSlice(i);
+            SliceExecutor threadPool = dsq.getDistributedStore().getConfiguration()
+                .getExecutorInstance();
+			List<SliceStoreManager> targets = findTargets(dsq);
+			for (int i = 0; i < dsq._queries.size(); i++) {
+                SliceStoreManager sm = dsq._slices.get(i);
 				if (!targets.contains(sm))
 					continue;
 
 				DeleteExecutor call = new DeleteExecutor();
-				call.executor = executors.get(i);
-				call.query = owner._queries.get(i);
+				call.executor = getExecutor(dsq, i);
+				call.query = dsq._queries.get(i);
 				call.params = params;
-				futures.add(threadPool.submit(call));
+				futures.add(threadPool.submit(sm.getName(), call));
 			}
 			for (Future<Number> future : futures) {
 				try {
@@ -223,18 +273,17 @@ class DistributedStoreQuery extends JDBCStoreQuery {
 
 		@Override
         public Number executeUpdate(StoreQuery q, Object[] params) {
-			Iterator<StoreQuery> qs = owner._queries.iterator();
-			List<Future<Number>> futures = null;
+			DistributedStoreQuery dsq = getOwner(q);
+			List<Future<Number>> futures = new ArrayList<>();
 			int result = 0;
-            ExecutorService threadPool = SliceThread.getPool();
-			for (Executor ex : executors) {
-				if (futures == null)
-                    futures = new ArrayList<>();
+            SliceExecutor threadPool = dsq.getDistributedStore().getConfiguration()
+                .getExecutorInstance();
+			for (int i = 0; i < dsq._queries.size(); i++) {
 				UpdateExecutor call = new UpdateExecutor();
-				call.executor = ex;
-				call.query = qs.next();
+				call.executor = getExecutor(dsq, i);
+				call.query = dsq._queries.get(i);
 				call.params = params;
-				futures.add(threadPool.submit(call));
+				futures.add(threadPool.submit(dsq._slices.get(i).getName(), call));
 			}
 			for (Future<Number> future : futures) {
 				try {
@@ -249,9 +298,19 @@ class DistributedStoreQuery extends JDBCStoreQuery {
 			return result;
 		}
 
-		List<SliceStoreManager> findTargets() {
-  		    FetchConfiguration fetch = owner.getContext().getFetchConfiguration();
-			return owner.getDistributedStore().getTargets(fetch);
+		/**
+		 * Gets the query being executed. This executor is cached with the
+		 * compilation of the query and shared by all queries of the same
+		 * string, so the slice queries and the targets of the query that
+		 * created it are not those of the query being executed.
+		 */
+		private DistributedStoreQuery getOwner(StoreQuery q) {
+			return (q instanceof DistributedStoreQuery) ? (DistributedStoreQuery) q : owner;
+		}
+
+		List<SliceStoreManager> findTargets(DistributedStoreQuery dsq) {
+			FetchConfiguration fetch = dsq.getContext().getFetchConfiguration();
+			return dsq.getDistributedStore().getTargets(fetch);
 		}
 
 	}
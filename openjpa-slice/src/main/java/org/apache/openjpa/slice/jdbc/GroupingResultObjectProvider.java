@@ -0,0 +1,177 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.openjpa.slice.jdbc;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.openjpa.kernel.StoreQuery;
+import org.apache.openjpa.kernel.exps.QueryExpressions;
+import org.apache.openjpa.lib.rop.ResultObjectProvider;
+import org.apache.openjpa.lib.util.Localizer;
+import org.apache.openjpa.util.InternalException;
+
+/**
+ * Merges the partial aggregates of a grouped query from different slices.
+ *
+ * Each slice computes the aggregates of its own groups. The rows of all slices
+ * are merged by group in a hash table, and the merged groups are then sorted
+ * by the ordering of the query, if any.
+ *
+ * @see PartialAggregates
+ * @since 4.1.1
+ */
+public class GroupingResultObjectProvider implements ResultObjectProvider {
+    private static final Localizer _loc =
+        Localizer.forPackage(GroupingResultObjectProvider.class);
+
+    private final ResultObjectProvider[] _rops;
+    private final QueryExpressions _exps;
+    private final StoreQuery.Executor _exec;
+    private final StoreQuery _query;
+    private final Object[] _params;
+    private final boolean[] _asc;
+    private List<Object[]> _rows;
+    private int _idx = -1;
+    private boolean _opened;
+
+    /**
+     * Constructor.
+     *
+     * @param rops the partial aggregates of each slice
+     * @param exps the expressions of the query
+     * @param asc the direction of each ordering of the query
+     * @param exec the executor used to extract ordering values
+     */
+    public GroupingResultObjectProvider(ResultObjectProvider[] rops,
+        QueryExpressions exps, boolean[] asc, StoreQuery.Executor exec,
+        StoreQuery q, Object[] params) {
+        _rops = rops;
+        _exps = exps;
+        _asc = asc;
+        _exec = exec;
+        _query = q;
+        _params = params;
+    }
+
+    @Override
+    public boolean supportsRandomAccess() {
+        return true;
+    }
+
+    @Override
+    public void open() throws Exception {
+        for (ResultObjectProvider rop : _rops)
+            rop.open();
+        _opened = true;
+    }
+
+    /**
+     * Read all rows of all slices and merge them by group.
+     */
+    private List<Object[]> getRows() throws Exception {
+        if (_rows != null)
+            return _rows;
+        if (!_opened)
+            throw new InternalException(_loc.get("not-open"));
+
+        PartialAggregates aggregates = new PartialAggregates(_exps);
+        Map<List<Object>, Object[]> groups = new LinkedHashMap<>();
+        for (ResultObjectProvider rop : _rops) {
+            while (rop.next()) {
+                Object[] row = (Object[]) rop.getResultObject();
+                Object[] acc = groups.computeIfAbsent(aggregates.getGroup(row),
+                    k -> aggregates.newAccumulator());
+                aggregates.add(acc, row);
+            }
+        }
+
+        List<Object[]> rows = new ArrayList<>(groups.size());
+        for (Object[] acc : groups.values())
+            rows.add(aggregates.finish(acc));
+        if (_asc.length > 0)
+            sort(rows);
+        _rows = rows;
+        return _rows;
+    }
+
+    private void sort(List<Object[]> rows) {
+        final Map<Object[], Object[]> orders = new IdentityHashMap<>();
+        for (Object[] row : rows) {
+            Object[] order = new Object[_asc.length];
+            for (int i = 0; i < _asc.length; i++)
+                order[i] = _exec.getOrderingValue(_query, _params, row, i);
+            orders.put(row, order);
+        }
+        rows.sort((r1, r2) -> {
+            Object[] o1 = orders.get(r1);
+            Object[] o2 = orders.get(r2);
+            for (int i = 0; i < _asc.length; i++) {
+                int cmp = OrderedMergedResultObjectProvider.compare(o1[i], o2[i], _asc[i]);
+                if (cmp != 0)
+                    return cmp;
+            }
+            return 0;
+        });
+    }
+
+    @Override
+    public boolean next() throws Exception {
+        return ++_idx < getRows().size();
+    }
+
+    @Override
+    public boolean absolute(int pos) throws Exception {
+        _idx = pos;
+        return pos >= 0 && pos < getRows().size();
+    }
+
+    @Override
+    public Object getResultObject() throws Exception {
+        List<Object[]> rows = getRows();
+        return (_idx >= 0 && _idx < rows.size()) ? rows.get(_idx) : null;
+    }
+
+    @Override
+    public int size() throws Exception {
+        return getRows().size();
+    }
+
+    @Override
+    public void reset() throws Exception {
+        _idx = -1;
+    }
+
+    @Override
+    public void close() throws Exception {
+        _opened = false;
+        _rows = null;
+        _idx = -1;
+        for (ResultObjectProvider rop : _rops)
+            rop.close();
+    }
+
+    @Override
+    public void handleCheckedException(Exception e) {
+        _rops[0].handleCheckedException(e);
+    }
+}
@@ -0,0 +1,269 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.openjpa.slice.jdbc;
+
+import java.util.PriorityQueue;
+
+import org.apache.openjpa.kernel.StoreQuery;
+import org.apache.openjpa.lib.rop.ResultObjectProvider;
+
+/**
+ * Merges the ordered results of a query from different slices into a single
+ * ordered result.
+ *
+ * The next result of each slice waits in a heap ordered by the ordering values
+ * of the query, so each result costs a logarithmic number of comparisons in
+ * the number of slices. A slice is advanced only when its waiting result is
+ * consumed, and all slices are closed as soon as the given number of results
+ * has been consumed. Together with a range of <code>[0, limit)</code> pushed
+ * down to each slice, a query for the first N results reads at most N results
+ * from each slice and stops reading a slice once its results are no longer
+ * needed.
+ *
+ * @since 4.1.1
+ */
+public class OrderedMergedResultObjectProvider implements ResultObjectProvider {
+    private final ResultObjectProvider[] _rops;
+    private final StoreQuery.Executor[] _execs;
+    private final StoreQuery _query;
+    private final Object[] _params;
+    private final boolean[] _asc;
+    private final long _limit;
+    private final boolean[] _open;
+    private final PriorityQueue<Head> _heap;
+    private Object _cur;
+    private int _last = -1;
+    private long _count;
+    private boolean _released;
+    private int _size = -1;
+
+    /**
+     * Constructor.
+     *
+     * @param rops the ordered results of each slice
+     * @param asc the direction of each ordering of the query
+     * @param execs the executor of each slice, used to extract ordering values
+     * @param limit the number of results after which no more results are
+     * read, or <code>Long.MAX_VALUE</code> for no limit
+     */
+    public OrderedMergedResultObjectProvider(ResultObjectProvider[] rops,
+        boolean[] asc, StoreQuery.Executor[] execs, StoreQuery q,
+        Object[] params, long limit) {
+        _rops = rops;
+        _asc = asc;
+        _execs = execs;
+        _query = q;
+        _params = params;
+        _limit = limit;
+        _open = new boolean[rops.length];
+        _heap = new PriorityQueue<>(Math.max(1, rops.length));
+    }
+
+    @Override
+    public boolean supportsRandomAccess() {
+        return false;
+    }
+
+    @Override
+    public void open() throws Exception {
+        for (int i = 0; i < _rops.length; i++) {
+            _rops[i].open();
+            _open[i] = true;
+            advance(i);
+        }
+    }
+
+    /**
+     * Read the next result of the given slice into the heap, or close the
+     * slice if it has no more results.
+     */
+    private void advance(int idx) throws Exception {
+        if (!_open[idx])
+            return;
+        ResultObjectProvider rop = _rops[idx];
+        if (rop.next()) {
+            Object val = rop.getResultObject();
+            _heap.add(new Head(idx, val, getOrderingValue(val, idx)));
+        } else {
+            _open[idx] = false;
+            rop.close();
+        }
+    }
+
+    private Object getOrderingValue(Object val, int idx) {
+        StoreQuery.Executor exec = _execs[idx];
+        if (_asc.length == 1)
+            return exec.getOrderingValue(_query, _params, val, 0);
+
+        Object[] ret = new Object[_asc.length];
+        for (int i = 0; i < _asc.length; i++)
+            ret[i] = exec.getOrderingValue(_query, _params, val, i);
+        return ret;
+    }
+
+    @Override
+    public boolean next() throws Exception {
+        if (_count >= _limit) {
+            _cur = null;
+            return false;
+        }
+        // the slice of the last result is advanced only now, so that no
+        // slice is read further than the results consumed require
+        if (_last != -1) {
+            advance(_last);
+            _last = -1;
+        }
+        Head head = _heap.poll();
+        if (head == null) {
+            _cur = null;
+            return false;
+        }
+        _cur = head.value;
+        _last = head.idx;
+        // the caller may stop at the limit without asking for more
+        if (++_count >= _limit)
+            release();
+        return true;
+    }
+
+    /**
+     * Close all slices once the result is complete.
+     */
+    private void release() throws Exception {
+        _heap.clear();
+        _last = -1;
+        Exception err = null;
+        for (int i = 0; i < _rops.length; i++) {
+            if (!_open[i])
+                continue;
+            _open[i] = false;
+            _released = true;
+            try {
+                _rops[i].close();
+            } catch (Exception e) {
+                if (err == null)
+                    err = e;
+            }
+        }
+        if (err != null)
+            throw err;
+    }
+
+    @Override
+    public Object getResultObject() throws Exception {
+        return _cur;
+    }
+
+    @Override
+    public boolean absolute(int pos) throws Exception {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public int size() throws Exception {
+        if (_size != -1)
+            return _size;
+        if (_released)
+            return Integer.MAX_VALUE;
+
+        long total = 0;
+        for (int i = 0; i < _rops.length; i++) {
+            if (!_open[i])
+                return Integer.MAX_VALUE;
+            int size = _rops[i].size();
+            if (size == Integer.MAX_VALUE)
+                return size;
+            total += size;
+        }
+        _size = (int) Math.min(Math.min(total, _limit), Integer.MAX_VALUE);
+        return _size;
+    }
+
+    @Override
+    public void reset() throws Exception {
+        _heap.clear();
+        _cur = null;
+        _last = -1;
+        _count = 0;
+        for (int i = 0; i < _rops.length; i++) {
+            if (_open[i])
+                _rops[i].reset();
+            else
+                _rops[i].open();
+            _open[i] = true;
+            advance(i);
+        }
+    }
+
+    @Override
+    public void close() throws Exception {
+        _cur = null;
+        release();
+    }
+
+    @Override
+    public void handleCheckedException(Exception e) {
+        if (_rops.length == 0)
+            throw new RuntimeException(e);
+        _rops[0].handleCheckedException(e);
+    }
+
+    /**
+     * The waiting result of a slice.
+     */
+    private class Head implements Comparable<Head> {
+        final int idx;
+        final Object value;
+        final Object order;
+
+        Head(int idx, Object value, Object order) {
+            this.idx = idx;
+            this.value = value;
+            this.order = order;
+        }
+
+        @Override
+        public int compareTo(Head other) {
+            int cmp;
+            if (_asc.length == 1)
+                cmp = compare(order, other.order, _asc[0]);
+            else {
+                Object[] arr1 = (Object[]) order;
+                Object[] arr2 = (Object[]) other.order;
+                cmp = 0;
+                for (int i = 0; i < _asc.length && cmp == 0; i++)
+                    cmp = compare(arr1[i], arr2[i], _asc[i]);
+            }
+            // equal values come in slice order
+            return (cmp != 0) ? cmp : Integer.compare(idx, other.idx);
+        }
+    }
+
+    @SuppressWarnings({ "rawtypes", "unchecked" })
+    static int compare(Object o1, Object o2, boolean asc) {
+        if (o1 == null && o2 == null)
+            return 0;
+        if (o1 == null)
+            return (asc) ? 1 : -1;
+        if (o2 == null)
+            return (asc) ? -1 : 1;
+        int cmp = ((Comparable) o1).compareTo(o2);
+        return (asc) ? cmp : -cmp;
+    }
+}
@@ -0,0 +1,314 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.openjpa.slice.jdbc;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.apache.openjpa.kernel.Filters;
+import org.apache.openjpa.kernel.exps.AbstractExpressionVisitor;
+import org.apache.openjpa.kernel.exps.Expression;
+import org.apache.openjpa.kernel.exps.ExpressionFactory;
+import org.apache.openjpa.kernel.exps.QueryExpressions;
+import org.apache.openjpa.kernel.exps.Value;
+import org.apache.openjpa.lib.util.Localizer;
+import org.apache.openjpa.util.UserException;
+
+/**
+ * Splits the aggregate projections of a query into partial aggregates that
+ * each slice computes, and merges the partial aggregates of the slices into
+ * the result of the query.
+ *
+ * <code>COUNT</code>, <code>SUM</code>, <code>MIN</code> and <code>MAX</code>
+ * are merged from their own values on each slice. <code>AVG</code> is computed
+ * on each slice as the <code>SUM</code> of its argument, and the
+ * <code>COUNT</code> of its argument is added after the projections of the
+ * query. The values of the <code>GROUP BY</code> clause are added last, so
+ * that the partial aggregates of a group can be merged even if the query does
+ * not select the values it groups by.
+ *
+ * A <code>HAVING</code> clause that filters groups by an aggregate is not
+ * supported, as each slice would filter its own part of a group.
+ *
+ * @since 4.1.1
+ */
+final class PartialAggregates {
+    private static final Localizer _loc =
+        Localizer.forPackage(PartialAggregates.class);
+
+    private static final int NONE = 0;
+    private static final int COUNT = 1;
+    private static final int SUM = 2;
+    private static final int MIN = 3;
+    private static final int MAX = 4;
+    private static final int AVG = 5;
+    private static final int DISTINCT = 6;
+
+    private final Value[] _values;
+    private final int[] _ops;
+    private final int[] _counts;
+    private final int _width;
+    private final int _groups;
+
+    /**
+     * Prepare to merge the partial aggregates of the given query, as split
+     * by {@link #split}.
+     */
+    PartialAggregates(QueryExpressions exps) {
+        _values = exps.projections;
+        _ops = new int[_values.length];
+        _counts = new int[_values.length];
+        int width = _values.length;
+        for (int i = 0; i < _values.length; i++) {
+            _ops[i] = getOperation(_values[i]);
+            if ((_ops[i] == COUNT || _ops[i] == SUM || _ops[i] == AVG)
+                && isDistinct(_values[i]))
+                _ops[i] = DISTINCT;
+            else if (_ops[i] == AVG && getArgument(_values[i]) == null)
+                _ops[i] = DISTINCT;
+            _counts[i] = (_ops[i] == AVG) ? width++ : -1;
+        }
+        _width = width;
+        _groups = exps.grouping.length;
+    }
+
+    /**
+     * Rewrite the given expressions of the query of a slice to compute partial
+     * aggregates.
+     */
+    static void split(QueryExpressions exps, ExpressionFactory factory) {
+        if (exps.having != null && hasAggregate(exps.having))
+            throw new UserException(_loc.get("having-unsupported"));
+        Value[] projections = exps.projections;
+        List<Value> added = new ArrayList<>();
+        for (int i = 0; i < projections.length; i++) {
+            if (getOperation(projections[i]) != AVG || isDistinct(projections[i]))
+                continue;
+            Value arg = getArgument(projections[i]);
+            if (arg == null)
+                continue;
+            projections[i] = factory.sum(arg);
+            added.add(factory.count(arg));
+        }
+        added.addAll(Arrays.asList(exps.grouping));
+        if (added.isEmpty())
+            return;
+
+        int len = projections.length;
+        exps.projections = Arrays.copyOf(projections, len + added.size());
+        exps.projectionClauses = Arrays.copyOf(exps.projectionClauses, len + added.size());
+        exps.projectionAliases = Arrays.copyOf(exps.projectionAliases, len + added.size());
+        for (int i = 0; i < added.size(); i++) {
+            exps.projections[len + i] = added.get(i);
+            exps.projectionClauses[len + i] = "";
+            exps.projectionAliases[len + i] = "";
+        }
+    }
+
+    private static int getOperation(Value v) {
+        if (!v.isAggregate())
+            return NONE;
+        String op = v.getClass().getSimpleName();
+        switch (op) {
+            case "Count":
+                return COUNT;
+            case "Sum":
+                return SUM;
+            case "Min":
+                return MIN;
+            case "Max":
+                return MAX;
+            case "Avg":
+                return AVG;
+            default:
+                throw new UnsupportedOperationException
+                    (_loc.get("aggregate-unsupported", op).toString());
+        }
+    }
+
+    /**
+     * Affirms if the given expression uses an aggregate.
+     */
+    private static boolean hasAggregate(Expression exp) {
+        final boolean[] found = new boolean[1];
+        exp.acceptVisit(new AbstractExpressionVisitor() {
+            @Override
+            public void enter(Value val) {
+                if (val.isAggregate())
+                    found[0] = true;
+            }
+        });
+        return found[0];
+    }
+
+    /**
+     * Affirms if the given aggregate is computed over distinct values, so
+     * that it can not be merged from the aggregates of different slices.
+     */
+    private static boolean isDistinct(Value aggregate) {
+        Value arg = getArgument(aggregate);
+        return arg != null && "Distinct".equals(arg.getClass().getSimpleName());
+    }
+
+    /**
+     * Gets the argument of the given aggregate.
+     */
+    private static Value getArgument(Value aggregate) {
+        final Value[] arg = new Value[1];
+        aggregate.acceptVisit(new AbstractExpressionVisitor() {
+            private int _depth = 0;
+
+            @Override
+            public void enter(Value val) {
+                if (++_depth == 2 && arg[0] == null)
+                    arg[0] = val;
+            }
+
+            @Override
+            public void exit(Value val) {
+                _depth--;
+            }
+        });
+        return arg[0];
+    }
+
+    /**
+     * Gets the values a row of a slice is grouped by.
+     */
+    List<Object> getGroup(Object[] row) {
+        return Arrays.asList(Arrays.copyOfRange(row, _width, _width + _groups));
+    }
+
+    /**
+     * Creates the holder of the values merged from the rows of the slices.
+     */
+    Object[] newAccumulator() {
+        return new Object[_width];
+    }
+
+    /**
+     * Merges the given row of a slice into the given holder.
+     */
+    void add(Object[] acc, Object[] row) {
+        for (int i = 0; i < _values.length; i++) {
+            switch (_ops[i]) {
+                case COUNT:
+                    acc[i] = count(acc[i], row[i]);
+                    break;
+                case SUM:
+                    acc[i] = sum(acc[i], row[i]);
+                    break;
+                case MIN:
+                    acc[i] = min(acc[i], row[i]);
+                    break;
+                case MAX:
+                    acc[i] = max(acc[i], row[i]);
+                    break;
+                case AVG:
+                    acc[i] = sum(acc[i], row[i]);
+                    acc[_counts[i]] = count(acc[_counts[i]], row[_counts[i]]);
+                    break;
+                case DISTINCT:
+                    // only the aggregate of a single slice is known
+                    if (acc[i] != null && row[i] != null)
+                        throw new UnsupportedOperationException(_loc.get
+                            ("aggregate-unsupported", _values[i].getClass()
+                            .getSimpleName().toUpperCase() + "(DISTINCT)").toString());
+                    if (row[i] != null)
+                        acc[i] = row[i];
+                    break;
+                default:
+                    acc[i] = row[i];
+            }
+        }
+    }
+
+    /**
+     * Gets the result row from the given holder.
+     */
+    Object[] finish(Object[] acc) {
+        Object[] result = new Object[_values.length];
+        for (int i = 0; i < _values.length; i++) {
+            Object val = acc[i];
+            if (_ops[i] == AVG) {
+                Number count = (Number) acc[_counts[i]];
+                val = (val == null || count == null || count.longValue() == 0) ? null
+                    : ((Number) val).doubleValue() / count.longValue();
+            }
+            result[i] = Filters.convert(val, _values[i].getType());
+        }
+        return result;
+    }
+
+    static Object count(Object current, Object other) {
+        if (current == null)
+            return other;
+        if (other == null)
+            return current;
+        return ((Number) current).longValue() + ((Number) other).longValue();
+    }
+
+    static Object sum(Object current, Object other) {
+        if (current == null)
+            return other;
+        if (other == null)
+            return current;
+        if (current instanceof Number) {
+            return ((Number) current).doubleValue() + ((Number) other).doubleValue();
+        }
+        throw new UnsupportedOperationException(_loc.get("aggregate-unsupported-on-type",
+            "SUM()", current.getClass().getName()).toString());
+    }
+
+    static Object max(Object current, Object other) {
+        if (current == null)
+            return other;
+        if (other == null)
+            return current;
+        if (current instanceof Number) {
+            return Math.max(((Number) current).doubleValue(), ((Number) other).doubleValue());
+        }
+        if (current instanceof Comparable) {
+            return compare(current, other) > 0 ? current : other;
+        }
+        throw new UnsupportedOperationException(_loc.get("aggregate-unsupported-on-type",
+            "MAX()", current.getClass().getName()).toString());
+    }
+
+    static Object min(Object current, Object other) {
+        if (current == null)
+            return other;
+        if (other == null)
+            return current;
+        if (current instanceof Number) {
+            return Math.min(((Number) current).doubleValue(), ((Number) other).doubleValue());
+        }
+        if (current instanceof Comparable) {
+            return compare(current, other) < 0 ? current : other;
+        }
+        throw new UnsupportedOperationException(_loc.get("aggregate-unsupported-on-type",
+            "MIN()", current.getClass().getName()).toString());
+    }
+
+    @SuppressWarnings({ "rawtypes", "unchecked" })
+    private static int compare(Object o1, Object o2) {
+        return ((Comparable) o1).compareTo(o2);
+    }
+}
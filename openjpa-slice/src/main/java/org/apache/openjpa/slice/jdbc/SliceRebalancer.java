@@ -0,0 +1,532 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.openjpa.slice.jdbc;
+
+import java.sql.Blob;
+import java.sql.Clob;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import javax.sql.DataSource;
+
+import org.apache.openjpa.conf.OpenJPAConfiguration;
+import org.apache.openjpa.jdbc.conf.JDBCConfiguration;
+import org.apache.openjpa.jdbc.meta.ClassMapping;
+import org.apache.openjpa.jdbc.meta.FieldMapping;
+import org.apache.openjpa.jdbc.meta.MappingRepository;
+import org.apache.openjpa.jdbc.schema.Column;
+import org.apache.openjpa.jdbc.schema.ForeignKey;
+import org.apache.openjpa.jdbc.schema.Table;
+import org.apache.openjpa.jdbc.sql.DBDictionary;
+import org.apache.openjpa.jdbc.sql.SQLExceptions;
+import org.apache.openjpa.lib.conf.Configurations;
+import org.apache.openjpa.lib.log.Log;
+import org.apache.openjpa.lib.util.Localizer;
+import org.apache.openjpa.lib.util.Options;
+import org.apache.openjpa.lib.util.StringUtil;
+import org.apache.openjpa.meta.ClassMetaData;
+import org.apache.openjpa.meta.JavaTypes;
+import org.apache.openjpa.slice.ConsistentHashPolicy;
+import org.apache.openjpa.slice.DistributionPolicy;
+import org.apache.openjpa.slice.Slice;
+import org.apache.openjpa.util.UserException;
+
+/**
+ * Moves the rows of the types placed by {@link ConsistentHashPolicy} to the
+ * slices their primary keys belong to, after slices have been added to or
+ * removed from <code>openjpa.slice.Names</code>.
+ *
+ * The primary keys of each slice are read and hashed onto the active slices,
+ * less the slices being retired. Only the rows whose slice changes are moved,
+ * in batches: a batch is first copied into its new slice and committed there,
+ * then deleted from its old slice. A batch that failed after its copy was
+ * committed is copied again when the tool is run again, so the tool can be
+ * run repeatedly until it moves no more rows.
+ *
+ * The rows of a type are the rows of its table, of the tables of its
+ * subclasses joined to that table, and of its secondary and join tables. Rows
+ * of other types that are related to a moved instance are not moved, so the
+ * tool suits types whose instances are not the root of a cascaded graph of
+ * other types, or that are listed together with such types in the
+ * <code>Types</code> property of the policy.
+ *
+ * The tool does not coordinate with running applications: the types being
+ * rebalanced must not be written while it runs.
+ *
+ * @since 4.1.1
+ */
+public class SliceRebalancer {
+    private static final Localizer _loc = Localizer.forPackage(SliceRebalancer.class);
+
+    private final DistributedJDBCConfiguration _conf;
+    private final ConsistentHashPolicy _policy;
+    private final Log _log;
+    private int _batchSize = 500;
+    private final Set<String> _retired = new LinkedHashSet<>();
+    private final Map<String, Connection> _conns = new HashMap<>();
+
+    public SliceRebalancer(DistributedJDBCConfiguration conf) {
+        DistributionPolicy policy = conf.getDistributionPolicyInstance();
+        if (!(policy instanceof ConsistentHashPolicy))
+            throw new UserException(_loc.get("rebalance-no-hash",
+                (policy == null) ? null : policy.getClass().getName()));
+        _conf = conf;
+        _policy = (ConsistentHashPolicy) policy;
+        _log = conf.getLog(OpenJPAConfiguration.LOG_RUNTIME);
+    }
+
+    /**
+     * The number of rows moved in one transaction.
+     */
+    public int getBatchSize() {
+        return _batchSize;
+    }
+
+    /**
+     * The number of rows moved in one transaction. Defaults to 500.
+     */
+    public void setBatchSize(int size) {
+        _batchSize = Math.max(1, size);
+    }
+
+    /**
+     * The names of the slices being retired.
+     */
+    public String[] getRetiredSlices() {
+        return _retired.toArray(new String[_retired.size()]);
+    }
+
+    /**
+     * The names of active slices that are emptied of their rows, so that they
+     * can be removed from <code>openjpa.slice.Names</code> once the tool has
+     * run.
+     */
+    public void setRetiredSlices(String... slices) {
+        _retired.clear();
+        if (slices != null)
+            for (String slice : slices)
+                if (!StringUtil.isEmpty(slice.trim()))
+                    _retired.add(slice.trim());
+    }
+
+    /**
+     * Move the rows of the given types, or of all types placed by key if none
+     * is given, to their slices.
+     *
+     * @return the number of instances moved
+     */
+    public long rebalance(Class<?>... types) {
+        List<String> sources = _conf.getActiveSliceNames();
+        List<String> targets = new ArrayList<>(sources);
+        for (String slice : _retired) {
+            if (!targets.remove(slice))
+                throw new UserException(_loc.get("rebalance-bad-retired", slice, sources));
+        }
+        if (targets.isEmpty())
+            throw new UserException(_loc.get("rebalance-no-target", sources));
+
+        long start = System.currentTimeMillis();
+        long moved = 0;
+        try {
+            for (Unit unit : getUnits(types))
+                for (String source : sources)
+                    moved += rebalance(unit, source, targets);
+        } finally {
+            close();
+        }
+        if (_log.isInfoEnabled())
+            _log.info(_loc.get("rebalance-done", moved, targets,
+                System.currentTimeMillis() - start));
+        return moved;
+    }
+
+    /**
+     * Move the misplaced rows of the given unit out of the given slice.
+     */
+    private long rebalance(Unit unit, String source, List<String> targets) {
+        Map<String, List<Object[]>> misplaced = new LinkedHashMap<>();
+        DBDictionary dict = getDictionary(source);
+        String sql = "SELECT " + toColumnList(unit.keys, dict) + " FROM "
+            + dict.getFullName(unit.base, false);
+        try (PreparedStatement stmnt = getConnection(source).prepareStatement(sql)) {
+            stmnt.setFetchSize(_batchSize);
+            try (ResultSet rs = stmnt.executeQuery()) {
+                while (rs.next()) {
+                    Object[] key = new Object[unit.keys.length];
+                    for (int i = 0; i < key.length; i++)
+                        key[i] = rs.getObject(i + 1);
+                    String target = _policy.getSlice(key, targets);
+                    if (!target.equals(source))
+                        misplaced.computeIfAbsent(target, t -> new ArrayList<>()).add(key);
+                }
+            }
+            getConnection(source).commit();
+        } catch (SQLException se) {
+            throw SQLExceptions.getStore(se, dict);
+        }
+
+        long moved = 0;
+        for (Map.Entry<String, List<Object[]>> entry : misplaced.entrySet()) {
+            List<Object[]> keys = entry.getValue();
+            for (int i = 0; i < keys.size(); i += _batchSize) {
+                List<Object[]> batch = keys.subList(i, Math.min(keys.size(), i + _batchSize));
+                move(unit, source, entry.getKey(), batch);
+                moved += batch.size();
+            }
+            if (_log.isInfoEnabled())
+                _log.info(_loc.get("rebalance-move", new Object[]{ keys.size(),
+                    unit.mapping.getDescribedType().getName(), source, entry.getKey() }));
+        }
+        return moved;
+    }
+
+    /**
+     * Copy the rows of the given keys into the target slice, then delete them
+     * from the source slice.
+     */
+    private void move(Unit unit, String source, String target, List<Object[]> keys) {
+        Connection from = getConnection(source);
+        Connection to = getConnection(target);
+        DBDictionary dict = getDictionary(target);
+        try {
+            // rows left over by an earlier run that failed midway
+            delete(to, unit, keys, dict);
+            for (Map.Entry<Table, Column[]> entry : unit.tables.entrySet())
+                copy(from, to, entry.getKey(), entry.getValue(), keys, dict);
+            to.commit();
+        } catch (SQLException se) {
+            rollback(to);
+            throw SQLExceptions.getStore(se, dict);
+        }
+        dict = getDictionary(source);
+        try {
+            delete(from, unit, keys, dict);
+            from.commit();
+        } catch (SQLException se) {
+            rollback(from);
+            throw SQLExceptions.getStore(se, dict);
+        }
+    }
+
+    private void copy(Connection from, Connection to, Table table, Column[] keyCols,
+        List<Object[]> keys, DBDictionary dict) throws SQLException {
+        Column[] cols = table.getColumns();
+        String list = toColumnList(cols, dict);
+        String name = dict.getFullName(table, false);
+        String select = "SELECT " + list + " FROM " + name + " WHERE "
+            + toCondition(keyCols, keys.size(), dict);
+        char[] params = new char[cols.length * 2 - 1];
+        Arrays.fill(params, '?');
+        for (int i = 1; i < params.length; i += 2)
+            params[i] = ',';
+        String insert = "INSERT INTO " + name + " (" + list + ") VALUES ("
+            + new String(params) + ")";
+
+        try (PreparedStatement read = from.prepareStatement(select);
+            PreparedStatement write = to.prepareStatement(insert)) {
+            setKeys(read, keys);
+            try (ResultSet rs = read.executeQuery()) {
+                while (rs.next()) {
+                    for (int i = 0; i < cols.length; i++) {
+                        Object val = rs.getObject(i + 1);
+                        if (val instanceof Blob)
+                            val = ((Blob) val).getBytes(1, (int) ((Blob) val).length());
+                        else if (val instanceof Clob)
+                            val = ((Clob) val).getSubString(1, (int) ((Clob) val).length());
+                        if (val == null)
+                            write.setNull(i + 1, cols[i].getType());
+                        else
+                            write.setObject(i + 1, val);
+                    }
+                    write.addBatch();
+                }
+            }
+            write.executeBatch();
+        }
+    }
+
+    /**
+     * Delete the rows of the given keys, dependent tables first.
+     */
+    private void delete(Connection conn, Unit unit, List<Object[]> keys, DBDictionary dict)
+        throws SQLException {
+        List<Table> tables = new ArrayList<>(unit.tables.keySet());
+        for (int i = tables.size() - 1; i >= 0; i--) {
+            Table table = tables.get(i);
+            String sql = "DELETE FROM " + dict.getFullName(table, false) + " WHERE "
+                + toCondition(unit.tables.get(table), keys.size(), dict);
+            try (PreparedStatement stmnt = conn.prepareStatement(sql)) {
+                setKeys(stmnt, keys);
+                stmnt.executeUpdate();
+            }
+        }
+    }
+
+    private static String toColumnList(Column[] cols, DBDictionary dict) {
+        StringBuilder buf = new StringBuilder();
+        for (int i = 0; i < cols.length; i++) {
+            if (i > 0)
+                buf.append(", ");
+            buf.append(dict.getColumnDBName(cols[i]));
+        }
+        return buf.toString();
+    }
+
+    /**
+     * A condition that selects the given number of keys.
+     */
+    private static String toCondition(Column[] cols, int count, DBDictionary dict) {
+        StringBuilder buf = new StringBuilder();
+        if (cols.length == 1) {
+            buf.append(dict.getColumnDBName(cols[0])).append(" IN (");
+            for (int i = 0; i < count; i++)
+                buf.append((i > 0) ? ", ?" : "?");
+            return buf.append(")").toString();
+        }
+        for (int i = 0; i < count; i++) {
+            buf.append((i > 0) ? " OR (" : "(");
+            for (int j = 0; j < cols.length; j++) {
+                if (j > 0)
+                    buf.append(" AND ");
+                buf.append(dict.getColumnDBName(cols[j])).append(" = ?");
+            }
+            buf.append(")");
+        }
+        return buf.toString();
+    }
+
+    private static void setKeys(PreparedStatement stmnt, List<Object[]> keys)
+        throws SQLException {
+        int idx = 1;
+        for (Object[] key : keys)
+            for (Object val : key)
+                stmnt.setObject(idx++, val);
+    }
+
+    /**
+     * Gets the units of storage of the given types, or of all types placed by
+     * key.
+     */
+    private Collection<Unit> getUnits(Class<?>... types) {
+        MappingRepository repos = _conf.getMappingRepositoryInstance();
+        ClassLoader loader = _conf.getClassResolverInstance().getClassLoader(getClass(), null);
+        Collection<Class<?>> classes = (types == null || types.length == 0)
+            ? repos.loadPersistentTypes(false, loader) : Arrays.asList(types);
+
+        Set<ClassMapping> roots = new LinkedHashSet<>();
+        for (Class<?> cls : classes) {
+            ClassMapping mapping = repos.getMapping(cls, loader, true);
+            if (mapping.isEmbeddedOnly() || _conf.isReplicated(cls) || !_policy.isHashed(cls))
+                continue;
+            while (mapping.getJoinablePCSuperclassMapping() != null)
+                mapping = mapping.getJoinablePCSuperclassMapping();
+            if (mapping.getTable() != null)
+                roots.add(mapping);
+        }
+        List<Unit> units = new ArrayList<>(roots.size());
+        for (ClassMapping root : roots)
+            units.add(new Unit(root));
+        return units;
+    }
+
+    private Connection getConnection(String slice) {
+        Connection conn = _conns.get(slice);
+        if (conn != null)
+            return conn;
+        Slice s = _conf.getSlice(slice);
+        JDBCConfiguration conf = (JDBCConfiguration) s.getConfiguration();
+        try {
+            DataSource ds = (_conf instanceof DistributedJDBCConfigurationImpl)
+                ? ((DistributedJDBCConfigurationImpl) _conf).createDataSource(s)
+                : conf.getDataSource(null);
+            conn = ds.getConnection(conf.getConnectionUserName(), conf.getConnectionPassword());
+            conn.setAutoCommit(false);
+        } catch (SQLException se) {
+            throw SQLExceptions.getStore(se, conf.getDBDictionaryInstance());
+        } catch (Exception e) {
+            throw new UserException(_loc.get("slice-connect-known-error", slice,
+                conf.getConnectionURL(), e), e);
+        }
+        _conns.put(slice, conn);
+        return conn;
+    }
+
+    private DBDictionary getDictionary(String slice) {
+        return ((JDBCConfiguration) _conf.getSlice(slice).getConfiguration())
+            .getDBDictionaryInstance();
+    }
+
+    private static void rollback(Connection conn) {
+        try {
+            conn.rollback();
+        } catch (SQLException se) {
+            // the original failure is reported
+        }
+    }
+
+    private void close() {
+        for (Connection conn : _conns.values()) {
+            try {
+                conn.close();
+            } catch (SQLException se) {
+                // ignore
+            }
+        }
+        _conns.clear();
+    }
+
+    /**
+     * The tables that store the instances of a class hierarchy that share a
+     * primary key, with the columns of each table that hold the primary key.
+     */
+    private static class Unit {
+        final ClassMapping mapping;
+        final Table base;
+        final Column[] keys;
+        // in the order rows are inserted
+        final Map<Table, Column[]> tables = new LinkedHashMap<>();
+        private final Map<Column, Integer> _index = new HashMap<>();
+
+        Unit(ClassMapping root) {
+            mapping = root;
+            base = root.getTable();
+            keys = root.getPrimaryKeyColumns();
+            if (root.getIdentityType() == ClassMetaData.ID_APPLICATION) {
+                FieldMapping[] pks = root.getPrimaryKeyFieldMappings();
+                for (FieldMapping pk : pks)
+                    if (pk.getColumns().length != 1 || pk.getTypeCode() == JavaTypes.PC
+                        || pk.getTypeCode() == JavaTypes.OID)
+                        throw new UserException(_loc.get("rebalance-bad-key", root, pk));
+            }
+            if (keys.length == 0)
+                throw new UserException(_loc.get("rebalance-bad-key", root, null));
+            for (int i = 0; i < keys.length; i++)
+                _index.put(keys[i], i);
+            tables.put(base, keys);
+            add(root);
+        }
+
+        private void add(ClassMapping mapping) {
+            if (mapping.getTable() != null && !tables.containsKey(mapping.getTable()))
+                add(mapping.getTable(), mapping.getJoinForeignKey(), mapping);
+            for (FieldMapping fm : mapping.getDefinedFieldMappings()) {
+                if (fm.getMappedBy() != null || fm.getJoinForeignKey() == null
+                    || fm.getTable() == null || tables.containsKey(fm.getTable()))
+                    continue;
+                add(fm.getTable(), fm.getJoinForeignKey(), fm);
+            }
+            for (ClassMapping sub : mapping.getJoinablePCSubclassMappings())
+                if (sub.getJoinablePCSuperclassMapping() == mapping)
+                    add(sub);
+        }
+
+        /**
+         * Add a table whose rows join to the primary key by the given foreign
+         * key.
+         */
+        private void add(Table table, ForeignKey fk, Object owner) {
+            Column[] cols = (fk == null) ? null : fk.getColumns();
+            if (cols == null || cols.length != keys.length)
+                throw new UserException(_loc.get("rebalance-bad-table", table, owner));
+            Column[] pks = fk.getPrimaryKeyColumns();
+            Column[] aligned = new Column[keys.length];
+            for (int i = 0; i < cols.length; i++) {
+                Integer idx = _index.get(pks[i]);
+                if (idx == null)
+                    throw new UserException(_loc.get("rebalance-bad-table", table, owner));
+                aligned[idx] = cols[i];
+            }
+            for (int i = 0; i < cols.length; i++)
+                _index.put(cols[i], _index.get(pks[i]));
+            tables.put(table, aligned);
+        }
+    }
+
+    /**
+     * Usage: java org.apache.openjpa.slice.jdbc.SliceRebalancer [option]*
+     * [class name]*
+     * <br>
+     * Where the following options are recognized.
+     * <ul>
+     * <li><i>-properties/-p &lt;properties file or resource&gt;</i>: The
+     * path or resource name of the persistence unit that configures the
+     * slices.</li>
+     * <li><i>-retire/-r &lt;slice names&gt;</i>: The comma-separated names of
+     * the slices to empty.</li>
+     * <li><i>-batchSize/-b &lt;number&gt;</i>: The number of rows moved in
+     * one transaction.</li>
+     * </ul>
+     * The rows of the given classes, or of all classes placed by key if none is
+     * given, are moved.
+     */
+    public static void main(String[] args) throws Exception {
+        Options opts = new Options();
+        final String[] arguments = opts.setFromCmdLine(args);
+        boolean ret = Configurations.runAgainstAllAnchors(opts,
+            new Configurations.Runnable() {
+            @Override
+            public boolean run(Options opts) throws Exception {
+                DistributedJDBCConfiguration conf = new DistributedJDBCConfigurationImpl();
+                try {
+                    return SliceRebalancer.run(conf, arguments, opts);
+                } finally {
+                    conf.close();
+                }
+            }
+        });
+        if (!ret) {
+            // START - ALLOW PRINT STATEMENTS
+            System.out.println(_loc.get("rebalance-usage"));
+            // STOP - ALLOW PRINT STATEMENTS
+        }
+    }
+
+    /**
+     * Run the tool. Returns false if invalid options were given.
+     */
+    public static boolean run(DistributedJDBCConfiguration conf, String[] args, Options opts)
+        throws Exception {
+        String retire = opts.removeProperty("retire", "r", null);
+        int batch = opts.removeIntProperty("batchSize", "b", 500);
+        Configurations.populateConfiguration(conf, opts);
+
+        ClassLoader loader = conf.getClassResolverInstance().getClassLoader(SliceRebalancer.class, null);
+        Class<?>[] types = new Class<?>[args.length];
+        for (int i = 0; i < args.length; i++)
+            types[i] = Class.forName(args[i], true, loader);
+
+        SliceRebalancer tool = new SliceRebalancer(conf);
+        tool.setBatchSize(batch);
+        if (retire != null)
+            tool.setRetiredSlices(StringUtil.split(retire, ",", 0));
+        tool.rebalance(types);
+        return true;
+    }
+}
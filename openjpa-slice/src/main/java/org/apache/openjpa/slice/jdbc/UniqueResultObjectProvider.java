@@ -18,12 +18,8 @@
  */
 package org.apache.openjpa.slice.jdbc;
 
-import java.util.Date;
-
-import org.apache.openjpa.kernel.Filters;
 import org.apache.openjpa.kernel.StoreQuery;
 import org.apache.openjpa.kernel.exps.QueryExpressions;
-import org.apache.openjpa.kernel.exps.Value;
 import org.apache.openjpa.lib.rop.ResultObjectProvider;
 import org.apache.openjpa.lib.util.Localizer;
 import org.apache.openjpa.util.InternalException;
@@ -41,11 +37,6 @@ public class UniqueResultObjectProvider implements ResultObjectProvider {
     private Object _single;
     private boolean _opened;
 
-    private static final String COUNT = "Count";
-    private static final String MAX   = "Max";
-    private static final String MIN   = "Min";
-    private static final String SUM   = "Sum";
-
     private static final Localizer _loc =
         Localizer.forPackage(UniqueResultObjectProvider.class);
 
@@ -89,105 +80,16 @@ public class UniqueResultObjectProvider implements ResultObjectProvider {
         if (_single != null)
             return false;
 
-        Value[] values = _exps[0].projections;
-        Object[] single = new Object[values.length];
-        for (int i=0; i<values.length; i++) {
-            Value v = values[i];
-            boolean isAggregate = v.isAggregate();
-
-            String op = v.getClass().getSimpleName();
-            for (ResultObjectProvider rop:_rops) {
-                if (i == 0)
-                	rop.next();
-                Object[] row = (Object[]) rop.getResultObject();
-                if (isAggregate) {
-                    if (COUNT.equals(op)) {
-                        single[i] = count(single[i], row[i]);
-                    } else if (MAX.equals(op)) {
-                        single[i] = max(single[i], row[i]);
-                    } else if (MIN.equals(op)) {
-                        single[i] = min(single[i], row[i]);
-                    } else if (SUM.equals(op)) {
-                        single[i] = sum(single[i], row[i]);
-                    } else {
-                        throw new UnsupportedOperationException
-                            (_loc.get("aggregate-unsupported", op).toString());
-                    }
-                } else {
-                    single[i] = row[i];
-                }
-                single[i] = Filters.convert(single[i], v.getType());
-            }
+        PartialAggregates aggregates = new PartialAggregates(_exps[0]);
+        Object[] acc = aggregates.newAccumulator();
+        for (ResultObjectProvider rop:_rops) {
+            if (rop.next())
+                aggregates.add(acc, (Object[]) rop.getResultObject());
         }
-        _single = single;
+        _single = aggregates.finish(acc);
         return true;
     }
 
-    Object count(Object current, Object other) {
-        if (current == null)
-            return other;
-        if (other == null)
-        	return current;
-        return ((Number)current).longValue() + ((Number)other).longValue();
-    }
-
-    Object max(Object current, Object other) {
-        if (current == null)
-            return other;
-        if (other == null)
-        	return current;
-        if (current instanceof Number) {
-        	return Math.max(((Number)current).doubleValue(),
-                ((Number)other).doubleValue());
-        }
-        if (current instanceof String) {
-        	return  ((String)current).compareTo((String)other) > 0 ? current : other;
-        }
-        if (current instanceof Date) {
-        	return ((Date)current).compareTo((Date)other) > 0 ? current : other;
-        }
-        if (current instanceof Character) {
-        	return ((Character)current).compareTo((Character)other) > 0 ? current : other;
-        }
-        throw new UnsupportedOperationException(_loc.get("aggregate-unsupported-on-type",
-        		"MAX()", (current == null ? other : current).getClass().getName()).toString());
-    }
-
-    Object min(Object current, Object other) {
-        if (current == null)
-            return other;
-        if (other == null)
-        	return current;
-        if (current instanceof Number) {
-	        return Math.min(((Number)current).doubleValue(),
-	                ((Number)other).doubleValue());
-        }
-        if (current instanceof String) {
-        	return ((String)current).compareTo((String)other) < 0 ? current : other;
-        }
-        if (current instanceof Date) {
-        	return ((Date)current).compareTo((Date)other) < 0 ? current : other;
-        }
-        if (current instanceof Character) {
-        	return ((Character)current).compareTo((Character)other) < 0 ? current : other;
-        }
-        throw new UnsupportedOperationException(_loc.get("aggregate-unsupported-on-type",
-        		"MIN()", (current == null ? other : current).getClass().getName()).toString());
-    }
-
-    Object sum(Object current, Object other) {
-        if (current == null)
-            return other;
-        if (other == null)
-        	return current;
-        if (current instanceof Number) {
-        	return (((Number)current).doubleValue() +
-                ((Number)other).doubleValue());
-        }
-        throw new UnsupportedOperationException(_loc.get("aggregate-unsupported-on-type",
-        		"SUM()", (current == null ? other : current).getClass().getName()).toString());
-    }
-
     @Override
     public void open() throws Exception {
         for (ResultObjectProvider rop:_rops)
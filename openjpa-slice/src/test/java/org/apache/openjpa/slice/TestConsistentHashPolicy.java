@@ -0,0 +1,155 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.openjpa.slice;
+
+import java.sql.Timestamp;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import junit.framework.TestCase;
+
+import org.apache.openjpa.util.UserException;
+
+/**
+ * Tests the placement of primary keys on the hash ring of
+ * {@link ConsistentHashPolicy}.
+ */
+public class TestConsistentHashPolicy extends TestCase {
+
+    private static final int KEYS = 20000;
+
+    private static final List<String> FOUR = Arrays.asList("One", "Two", "Three", "Four");
+    private static final List<String> FIVE = Arrays.asList("One", "Two", "Three", "Four",
+        "Five");
+
+    private ConsistentHashPolicy policy;
+
+    @Override
+    public void setUp() {
+        policy = new ConsistentHashPolicy();
+    }
+
+    private static Object[] key(long id) {
+        return new Object[]{ id };
+    }
+
+    private Map<String, Integer> countBySlice(ConsistentHashPolicy policy,
+        List<String> slices) {
+        Map<String, Integer> counts = new HashMap<>();
+        for (String slice : slices)
+            counts.put(slice, 0);
+        for (long id = 0; id < KEYS; id++)
+            counts.merge(policy.getSlice(key(id), slices), 1, Integer::sum);
+        return counts;
+    }
+
+    public void testMappingIsStable() {
+        ConsistentHashPolicy other = new ConsistentHashPolicy();
+        List<String> reversed = Arrays.asList("Four", "Three", "Two", "One");
+        for (long id = 0; id < 1000; id++) {
+            String slice = policy.getSlice(key(id), FOUR);
+            assertTrue(FOUR.contains(slice));
+            assertEquals(slice, policy.getSlice(key(id), FOUR));
+            assertEquals(slice, other.getSlice(key(id), FOUR));
+            assertEquals(slice, policy.getSlice(key(id), reversed));
+        }
+    }
+
+    public void testEquivalentKeysShareSlice() {
+        for (int id = 0; id < 100; id++)
+            assertEquals(policy.getSlice(new Object[]{ (long) id }, FOUR),
+                policy.getSlice(new Object[]{ id }, FOUR));
+        java.util.Date date = new java.util.Date(1234567890L);
+        assertEquals(policy.getSlice(new Object[]{ date }, FOUR),
+            policy.getSlice(new Object[]{ new Timestamp(date.getTime()) }, FOUR));
+        assertEquals(policy.getSlice(new Object[]{ new java.math.BigDecimal("1.50") }, FOUR),
+            policy.getSlice(new Object[]{ 1.5d }, FOUR));
+    }
+
+    public void testAddingSliceMovesOnlyItsShare() {
+        int moved = 0;
+        for (long id = 0; id < KEYS; id++) {
+            String before = policy.getSlice(key(id), FOUR);
+            String after = policy.getSlice(key(id), FIVE);
+            if (!before.equals(after)) {
+                assertEquals("Five", after);
+                moved++;
+            }
+        }
+        assertShare(moved, KEYS / 5);
+    }
+
+    public void testRemovingSliceMovesOnlyItsKeys() {
+        int moved = 0;
+        for (long id = 0; id < KEYS; id++) {
+            String before = policy.getSlice(key(id), FIVE);
+            String after = policy.getSlice(key(id), FOUR);
+            if (before.equals("Five"))
+                moved++;
+            else
+                assertEquals(before, after);
+        }
+        assertShare(moved, KEYS / 5);
+    }
+
+    public void testVirtualNodesSpreadKeys() {
+        for (int count : countBySlice(policy, FIVE).values())
+            assertShare(count, KEYS / 5);
+
+        // a single point per slice leaves arcs of very different lengths
+        ConsistentHashPolicy single = new ConsistentHashPolicy();
+        single.setVirtualNodes(1);
+        Map<String, Integer> counts = countBySlice(single, FIVE);
+        int min = KEYS;
+        int max = 0;
+        for (int count : counts.values()) {
+            min = Math.min(min, count);
+            max = Math.max(max, count);
+        }
+        assertTrue(counts.toString(), max > 2 * min);
+    }
+
+    public void testVirtualNodesChangeRing() {
+        policy.getSlice(key(1), FIVE);
+        policy.setVirtualNodes(1);
+        ConsistentHashPolicy single = new ConsistentHashPolicy();
+        single.setVirtualNodes(1);
+        for (long id = 0; id < 1000; id++)
+            assertEquals(single.getSlice(key(id), FIVE), policy.getSlice(key(id), FIVE));
+    }
+
+    public void testBadVirtualNodes() {
+        try {
+            policy.setVirtualNodes(0);
+            fail("accepted no virtual nodes");
+        } catch (UserException ue) {
+            // expected
+        }
+    }
+
+    /**
+     * Assert that the given count is within a quarter of the expected count.
+     */
+    private static void assertShare(int count, int expected) {
+        assertTrue(count + " of " + expected, count > expected * 3 / 4);
+        assertTrue(count + " of " + expected, count < expected * 5 / 4);
+    }
+}
@@ -0,0 +1,206 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.openjpa.slice;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import junit.framework.TestCase;
+
+import org.apache.openjpa.util.UserException;
+
+/**
+ * Tests the modes, the per-slice concurrency limit and the statistics of
+ * {@link SliceExecutor}.
+ */
+public class TestSliceExecutor extends TestCase {
+
+    private static final long TIMEOUT = 10;
+
+    private SliceExecutor executor;
+
+    @Override
+    public void setUp() {
+        executor = new SliceExecutor();
+    }
+
+    @Override
+    public void tearDown() {
+        executor.close();
+    }
+
+    private void assertRunsOnSliceThreads() throws Exception {
+        List<Future<Boolean>> futures = new ArrayList<>();
+        for (int i = 0; i < 10; i++)
+            futures.add(executor.submit("S" + (i % 3), SliceThread::isSliceThread));
+        for (Future<Boolean> future : futures)
+            assertTrue(future.get(TIMEOUT, TimeUnit.SECONDS));
+        assertFalse(SliceThread.isSliceThread());
+    }
+
+    public void testCachedMode() throws Exception {
+        assertEquals(SliceExecutor.MODE_CACHED, executor.getMode());
+        assertRunsOnSliceThreads();
+    }
+
+    public void testBoundedMode() throws Exception {
+        executor.setMode("Bounded");
+        executor.setMaxThreads(2);
+        assertEquals(SliceExecutor.MODE_BOUNDED, executor.getMode());
+
+        final AtomicInteger running = new AtomicInteger();
+        final AtomicInteger peak = new AtomicInteger();
+        final CountDownLatch release = new CountDownLatch(1);
+        List<Future<Object>> futures = new ArrayList<>();
+        for (int i = 0; i < 6; i++) {
+            futures.add(executor.submit("S" + i, () -> {
+                peak.accumulateAndGet(running.incrementAndGet(), Math::max);
+                release.await(TIMEOUT, TimeUnit.SECONDS);
+                running.decrementAndGet();
+                return null;
+            }));
+        }
+        Thread.sleep(200);
+        release.countDown();
+        for (Future<Object> future : futures)
+            future.get(TIMEOUT, TimeUnit.SECONDS);
+        assertEquals(2, peak.get());
+        assertRunsOnSliceThreads();
+    }
+
+    public void testVirtualMode() throws Exception {
+        executor.setMode(SliceExecutor.MODE_VIRTUAL);
+        assertEquals(SliceExecutor.MODE_VIRTUAL, executor.getMode());
+        assertRunsOnSliceThreads();
+    }
+
+    public void testUnknownModeIsRejected() {
+        try {
+            executor.setMode("pooled");
+            fail("Expected UserException");
+        } catch (UserException e) {
+            assertEquals(SliceExecutor.MODE_CACHED, executor.getMode());
+        }
+    }
+
+    public void testConcurrencyPerSliceIsBounded() throws Exception {
+        executor.setMaxConcurrencyPerSlice(2);
+        final AtomicInteger running = new AtomicInteger();
+        final AtomicInteger peak = new AtomicInteger();
+        List<Future<Object>> futures = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            futures.add(executor.submit("S", () -> {
+                peak.accumulateAndGet(running.incrementAndGet(), Math::max);
+                Thread.sleep(10);
+                running.decrementAndGet();
+                return null;
+            }));
+        }
+        for (Future<Object> future : futures)
+            future.get(TIMEOUT, TimeUnit.SECONDS);
+        assertEquals(2, peak.get());
+        assertEquals(20, executor.getStatistics().get("S").getCount());
+    }
+
+    /**
+     * Operations that wait for a busy slice must not hold the threads that
+     * operations on other slices need.
+     */
+    public void testBusySliceDoesNotHoldThreads() throws Exception {
+        executor.setMode(SliceExecutor.MODE_BOUNDED);
+        executor.setMaxThreads(2);
+        executor.setMaxConcurrencyPerSlice(1);
+
+        final CountDownLatch release = new CountDownLatch(1);
+        List<Future<Object>> busy = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            busy.add(executor.submit("Busy", () -> {
+                release.await(TIMEOUT, TimeUnit.SECONDS);
+                return null;
+            }));
+        }
+        Future<String> other = executor.submit("Other", () -> "done");
+        try {
+            assertEquals("done", other.get(TIMEOUT, TimeUnit.SECONDS));
+        } finally {
+            release.countDown();
+        }
+        for (Future<Object> future : busy)
+            future.get(TIMEOUT, TimeUnit.SECONDS);
+    }
+
+    public void testNestedOperationOnSameSliceDoesNotDeadlock() throws Exception {
+        executor.setMode(SliceExecutor.MODE_BOUNDED);
+        executor.setMaxConcurrencyPerSlice(1);
+        Future<String> parent = executor.submit("S",
+            () -> executor.submit("S", () -> "child").get(TIMEOUT, TimeUnit.SECONDS));
+        assertEquals("child", parent.get(TIMEOUT, TimeUnit.SECONDS));
+    }
+
+    public void testFailedOperationReleasesItsPlace() throws Exception {
+        executor.setMaxConcurrencyPerSlice(1);
+        Future<Object> failed = executor.submit("S", () -> {
+            throw new IllegalStateException();
+        });
+        try {
+            failed.get(TIMEOUT, TimeUnit.SECONDS);
+            fail("Expected ExecutionException");
+        } catch (java.util.concurrent.ExecutionException e) {
+            assertTrue(e.getCause() instanceof IllegalStateException);
+        }
+        assertEquals("next", executor.submit("S", () -> "next").get(TIMEOUT, TimeUnit.SECONDS));
+    }
+
+    public void testStatistics() throws Exception {
+        List<Future<Object>> futures = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            futures.add(executor.submit((i < 3) ? "One" : "Two", () -> {
+                Thread.sleep(5);
+                return null;
+            }));
+        }
+        for (Future<Object> future : futures)
+            future.get(TIMEOUT, TimeUnit.SECONDS);
+
+        Map<String, SliceExecutor.Statistics> stats = executor.getStatistics();
+        assertEquals("[One, Two]", stats.keySet().toString());
+        assertEquals(3, stats.get("One").getCount());
+        assertEquals(2, stats.get("Two").getCount());
+        for (SliceExecutor.Statistics s : stats.values()) {
+            assertTrue(s.getAverageLatencyMillis() >= 5);
+            assertTrue(s.getMaxLatencyMillis() >= s.getAverageLatencyMillis());
+            assertTrue(s.getMaxWaitMillis() >= s.getAverageWaitMillis());
+            assertTrue(s.getAverageWaitMillis() <= s.getAverageLatencyMillis());
+        }
+        try {
+            stats.clear();
+            fail("Expected UnsupportedOperationException");
+        } catch (UnsupportedOperationException e) {
+            // statistics are read only
+        }
+
+        executor.resetStatistics();
+        assertTrue(executor.getStatistics().isEmpty());
+    }
+}
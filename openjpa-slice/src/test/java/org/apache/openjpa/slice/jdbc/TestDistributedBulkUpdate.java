@@ -0,0 +1,111 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.openjpa.slice.jdbc;
+
+import java.util.Arrays;
+import java.util.List;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.Query;
+
+import org.apache.openjpa.persistence.test.SingleEMFTestCase;
+import org.apache.openjpa.slice.ConsistentHashPolicy;
+import org.apache.openjpa.slice.SlicePersistence;
+
+/**
+ * Tests that bulk updates and deletes run on each slice once and add up the
+ * rows changed by every slice.
+ */
+public class TestDistributedBulkUpdate extends SingleEMFTestCase {
+
+    private static final int ITEMS = 60;
+    private static final List<String> SLICES = Arrays.asList("One", "Two", "Three");
+
+    private EntityManager em;
+
+    @Override
+    public void setUp() throws Exception {
+        super.setUp(HashedItem.class,
+            "openjpa.BrokerFactory", "slice",
+            "openjpa.slice.DistributionPolicy", "hash",
+            "openjpa.slice.Names", String.join(",", SLICES),
+            "openjpa.slice.One.ConnectionURL", "jdbc:derby:memory:bulkOne;create=true",
+            "openjpa.slice.Two.ConnectionURL", "jdbc:derby:memory:bulkTwo;create=true",
+            "openjpa.slice.Three.ConnectionURL", "jdbc:derby:memory:bulkThree;create=true");
+        Object[] items = new Object[ITEMS];
+        for (int i = 0; i < ITEMS; i++)
+            items[i] = new HashedItem(i + 1, "item");
+        persist(items);
+        em = emf.createEntityManager();
+    }
+
+    @Override
+    public void tearDown() throws Exception {
+        em.close();
+        super.tearDown();
+    }
+
+    private int countInSlice(String slice) {
+        ConsistentHashPolicy policy = new ConsistentHashPolicy();
+        int count = 0;
+        for (long id = 1; id <= ITEMS; id++)
+            if (slice.equals(policy.getSlice(new Object[]{ id }, SLICES)))
+                count++;
+        return count;
+    }
+
+    private long count(String name) {
+        return em.createQuery("select count(i) from HashedItem i where i.name = :name",
+            Long.class).setParameter("name", name).getSingleResult();
+    }
+
+    private int execute(Query q, String... targets) {
+        if (targets.length > 0)
+            q.setHint(SlicePersistence.HINT_TARGET, targets);
+        em.getTransaction().begin();
+        int count = q.executeUpdate();
+        em.getTransaction().commit();
+        return count;
+    }
+
+    public void testNativeUpdate() {
+        String sql = "UPDATE HashedItem SET name = 'native'";
+        assertEquals(ITEMS, execute(em.createNativeQuery(sql)));
+        assertEquals(ITEMS, count("native"));
+        // the cached executor of the same query runs again on every slice
+        assertEquals(ITEMS, execute(em.createNativeQuery(sql)));
+    }
+
+    public void testNativeDelete() {
+        assertEquals(ITEMS, execute(em.createNativeQuery("DELETE FROM HashedItem")));
+        assertEquals(0, count("item"));
+    }
+
+    public void testUpdate() {
+        assertEquals(ITEMS, execute(em.createQuery(
+            "update HashedItem i set i.name = 'jpql'")));
+        assertEquals(ITEMS, count("jpql"));
+    }
+
+    public void testDeleteTargetsSlice() {
+        int deleted = execute(em.createQuery("delete from HashedItem i"), "Two");
+        assertEquals(countInSlice("Two"), deleted);
+        assertEquals(ITEMS - deleted, count("item"));
+    }
+}
@@ -0,0 +1,195 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.openjpa.slice.jdbc;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
+import jakarta.persistence.Query;
+
+import org.apache.openjpa.persistence.OpenJPAEntityManagerFactorySPI;
+import org.apache.openjpa.persistence.test.SingleEMFTestCase;
+import org.apache.openjpa.slice.ConsistentHashPolicy;
+
+/**
+ * Tests that ordered queries with a range return the same results on the
+ * slices as on a single database, when the results of the slices are merged
+ * in order and each slice is only asked for the results up to the end of the
+ * range.
+ */
+public class TestOrderedMerge extends SingleEMFTestCase {
+
+    private static final String[] CATEGORIES = { "a", "b", "c", "d" };
+    private static final List<String> SLICES = Arrays.asList("One", "Two", "Three");
+    // slice One holds only a few of the smallest identities
+    private static final int[] QUOTAS = { 3, 25, 25 };
+    private static final int ITEMS = 53;
+
+    private OpenJPAEntityManagerFactorySPI single;
+    private EntityManager em;
+    private EntityManager singleEm;
+
+    @Override
+    public void setUp() throws Exception {
+        super.setUp(GroupedItem.class,
+            "openjpa.BrokerFactory", "slice",
+            "openjpa.slice.DistributionPolicy", "hash",
+            "openjpa.slice.Names", String.join(",", SLICES),
+            "openjpa.slice.One.ConnectionURL", "jdbc:derby:memory:orderOne;create=true",
+            "openjpa.slice.Two.ConnectionURL", "jdbc:derby:memory:orderTwo;create=true",
+            "openjpa.slice.Three.ConnectionURL", "jdbc:derby:memory:orderThree;create=true");
+        single = createEMF(GroupedItem.class,
+            "openjpa.ConnectionURL", "jdbc:derby:memory:orderSingle;create=true");
+        persist(newItems().toArray());
+        persist(single, newItems());
+        em = emf.createEntityManager();
+        singleEm = single.createEntityManager();
+    }
+
+    @Override
+    public void tearDown() throws Exception {
+        em.close();
+        singleEm.close();
+        single.close();
+        super.tearDown();
+    }
+
+    private static List<GroupedItem> newItems() {
+        List<GroupedItem> items = new ArrayList<>();
+        Map<String, Integer> counts = new HashMap<>();
+        for (long id = 1; items.size() < ITEMS; id++) {
+            String slice = sliceOf(id);
+            int count = counts.merge(slice, 1, Integer::sum);
+            if (count <= QUOTAS[SLICES.indexOf(slice)])
+                items.add(new GroupedItem(id, CATEGORIES[(int) (id % CATEGORIES.length)],
+                    (int) (id * 7 % 23)));
+        }
+        return items;
+    }
+
+    private static String sliceOf(long id) {
+        return new ConsistentHashPolicy().getSlice(new Object[]{ id }, SLICES);
+    }
+
+    private static void persist(EntityManagerFactory factory, List<?> pcs) {
+        EntityManager em = factory.createEntityManager();
+        em.getTransaction().begin();
+        for (Object pc : pcs)
+            em.persist(pc);
+        em.getTransaction().commit();
+        em.close();
+    }
+
+    private static List<Object> getResults(EntityManager em, String jpql,
+        int first, int max) {
+        Query q = em.createQuery(jpql);
+        if (first > 0)
+            q.setFirstResult(first);
+        if (max > 0)
+            q.setMaxResults(max);
+        List<Object> results = new ArrayList<>();
+        for (Object result : q.getResultList()) {
+            if (result instanceof GroupedItem)
+                results.add(((GroupedItem) result).getId());
+            else if (result instanceof Object[])
+                results.add(Arrays.asList((Object[]) result));
+            else
+                results.add(result);
+        }
+        return results;
+    }
+
+    /**
+     * Assert that the given range of the given query has the same results in
+     * the same order on the slices as on a single database.
+     */
+    private List<Object> assertSameResults(String jpql, int first, int max) {
+        List<Object> expected = getResults(singleEm, jpql, first, max);
+        List<Object> actual = getResults(em, jpql, first, max);
+        assertEquals(jpql + " [" + first + ", " + max + "]", expected, actual);
+        return actual;
+    }
+
+    /**
+     * Assert the same results for ranges that start on, inside and past the
+     * results of each slice.
+     */
+    private void assertSameRanges(String jpql) {
+        assertEquals(ITEMS, assertSameResults(jpql, 0, 0).size());
+        assertEquals(10, assertSameResults(jpql, 0, 10).size());
+        assertEquals(1, assertSameResults(jpql, 0, 1).size());
+        assertEquals(10, assertSameResults(jpql, 5, 10).size());
+        assertEquals(15, assertSameResults(jpql, 20, 15).size());
+        assertEquals(ITEMS - 30, assertSameResults(jpql, 30, 0).size());
+        assertEquals(ITEMS - 45, assertSameResults(jpql, 45, 20).size());
+        assertEquals(0, assertSameResults(jpql, ITEMS + 5, 5).size());
+    }
+
+    public void testSlicesHoldDifferentCounts() {
+        Map<String, Integer> counts = new HashMap<>();
+        for (GroupedItem item : newItems())
+            counts.merge(sliceOf(item.getId()), 1, Integer::sum);
+        for (int i = 0; i < SLICES.size(); i++)
+            assertEquals(SLICES.get(i), QUOTAS[i], (int) counts.get(SLICES.get(i)));
+    }
+
+    public void testAscending() {
+        assertSameRanges("select i from GroupedItem i order by i.amount, i.id");
+    }
+
+    public void testDescending() {
+        assertSameRanges("select i from GroupedItem i order by i.amount desc, i.id desc");
+    }
+
+    public void testMixedDirections() {
+        assertSameRanges("select i.category, i.amount, i.id from GroupedItem i "
+            + "order by i.category, i.amount desc, i.id");
+        assertSameRanges("select i from GroupedItem i "
+            + "order by i.category desc, i.amount, i.id desc");
+    }
+
+    public void testSliceRunsOutFirst() {
+        // the rows of slice One come first and are used up after 3 results
+        String jpql = "select i from GroupedItem i order by i.id";
+        assertSameRanges(jpql);
+        assertEquals(5, assertSameResults(jpql, 2, 5).size());
+        assertEquals(5, assertSameResults(jpql, 4, 5).size());
+    }
+
+    public void testSliceRunsOutLast() {
+        // the rows of slice One come last, past the offset of most ranges
+        String jpql = "select i.id, i.category from GroupedItem i order by i.id desc";
+        assertSameRanges(jpql);
+        assertEquals(3, assertSameResults(jpql, ITEMS - 3, 10).size());
+    }
+
+    public void testFilteredToFewerThanOffset() {
+        String jpql = "select i from GroupedItem i where i.category = 'a' "
+            + "order by i.amount desc, i.id";
+        int count = assertSameResults(jpql, 0, 0).size();
+        assertTrue(count > 5);
+        assertEquals(count - 5, assertSameResults(jpql, 5, 100).size());
+        assertEquals(0, assertSameResults(jpql, count, 3).size());
+    }
+}
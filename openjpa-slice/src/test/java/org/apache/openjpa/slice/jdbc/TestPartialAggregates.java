@@ -0,0 +1,212 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.openjpa.slice.jdbc;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
+import jakarta.persistence.Query;
+
+import org.apache.openjpa.persistence.OpenJPAEntityManagerFactorySPI;
+import org.apache.openjpa.persistence.test.SingleEMFTestCase;
+import org.apache.openjpa.slice.ConsistentHashPolicy;
+
+/**
+ * Tests that the partial aggregates and groups of the slices are merged into
+ * the result the same query has on a single database.
+ */
+public class TestPartialAggregates extends SingleEMFTestCase {
+
+    private static final int ITEMS = 60;
+    private static final String[] CATEGORIES = { "a", "b", "c", "d" };
+    // a group that only exists on one slice
+    private static final String SOLO = "solo";
+    private static final String SOLO_SLICE = "Two";
+    private static final List<String> SLICES = Arrays.asList("One", "Two", "Three");
+
+    private OpenJPAEntityManagerFactorySPI single;
+    private EntityManager em;
+    private EntityManager singleEm;
+
+    @Override
+    public void setUp() throws Exception {
+        super.setUp(GroupedItem.class,
+            "openjpa.BrokerFactory", "slice",
+            "openjpa.slice.DistributionPolicy", "hash",
+            "openjpa.slice.Names", String.join(",", SLICES),
+            "openjpa.slice.One.ConnectionURL", "jdbc:derby:memory:aggOne;create=true",
+            "openjpa.slice.Two.ConnectionURL", "jdbc:derby:memory:aggTwo;create=true",
+            "openjpa.slice.Three.ConnectionURL", "jdbc:derby:memory:aggThree;create=true");
+        single = createEMF(GroupedItem.class,
+            "openjpa.ConnectionURL", "jdbc:derby:memory:aggSingle;create=true");
+        persist(newItems().toArray());
+        persist(single, newItems());
+        em = emf.createEntityManager();
+        singleEm = single.createEntityManager();
+    }
+
+    @Override
+    public void tearDown() throws Exception {
+        em.close();
+        singleEm.close();
+        single.close();
+        super.tearDown();
+    }
+
+    private static List<GroupedItem> newItems() {
+        List<GroupedItem> items = new ArrayList<>();
+        for (int i = 1; i <= ITEMS; i++)
+            items.add(new GroupedItem(i, CATEGORIES[i % CATEGORIES.length], i * 7 % 23));
+        for (long id = ITEMS + 1; items.size() < ITEMS + 3; id++)
+            if (SOLO_SLICE.equals(sliceOf(id)))
+                items.add(new GroupedItem(id, SOLO, (int) id));
+        return items;
+    }
+
+    private static String sliceOf(long id) {
+        return new ConsistentHashPolicy().getSlice(new Object[]{ id }, SLICES);
+    }
+
+    private static void persist(EntityManagerFactory factory, List<?> pcs) {
+        EntityManager em = factory.createEntityManager();
+        em.getTransaction().begin();
+        for (Object pc : pcs)
+            em.persist(pc);
+        em.getTransaction().commit();
+        em.close();
+    }
+
+    private static List<List<Object>> getRows(EntityManager em, String jpql,
+        int first, int max) {
+        Query q = em.createQuery(jpql);
+        if (first > 0)
+            q.setFirstResult(first);
+        if (max > 0)
+            q.setMaxResults(max);
+        List<List<Object>> rows = new ArrayList<>();
+        for (Object row : q.getResultList())
+            rows.add((row instanceof Object[]) ? Arrays.asList((Object[]) row)
+                : Arrays.asList(row));
+        return rows;
+    }
+
+    /**
+     * Assert that the given query has the same rows on the slices as on a
+     * single database, in the same order if the query is ordered.
+     */
+    private List<List<Object>> assertSameRows(String jpql, int first, int max) {
+        List<List<Object>> expected = getRows(singleEm, jpql, first, max);
+        List<List<Object>> actual = getRows(em, jpql, first, max);
+        if (!jpql.contains("order by")) {
+            expected.sort(Comparator.comparing(Object::toString));
+            actual.sort(Comparator.comparing(Object::toString));
+        }
+        assertEquals(jpql, expected, actual);
+        return actual;
+    }
+
+    private List<List<Object>> assertSameRows(String jpql) {
+        return assertSameRows(jpql, 0, 0);
+    }
+
+    public void testItemsOnEverySlice() {
+        List<String> used = new ArrayList<>();
+        for (GroupedItem item : newItems())
+            used.add(sliceOf(item.getId()));
+        assertTrue(used.containsAll(SLICES));
+    }
+
+    public void testCountSumMinMax() {
+        List<List<Object>> rows = assertSameRows("select count(i), sum(i.amount), "
+            + "min(i.amount), max(i.amount) from GroupedItem i");
+        assertEquals((long) ITEMS + 3, rows.get(0).get(0));
+    }
+
+    public void testAvg() {
+        // each slice computes SUM and COUNT in place of AVG
+        assertSameRows("select avg(i.amount), count(i) from GroupedItem i");
+        assertSameRows("select avg(i.amount) from GroupedItem i where i.id > 10");
+    }
+
+    public void testCountAndSumByGroup() {
+        List<List<Object>> rows = assertSameRows("select i.category, count(i), "
+            + "sum(i.amount) from GroupedItem i group by i.category");
+        assertEquals(CATEGORIES.length + 1, rows.size());
+    }
+
+    public void testAvgByGroupWithoutGroupingValue() {
+        // the grouping value is not selected, but each slice returns it
+        List<List<Object>> rows = assertSameRows("select avg(i.amount), count(i), "
+            + "min(i.amount) from GroupedItem i group by i.category");
+        assertEquals(CATEGORIES.length + 1, rows.size());
+    }
+
+    public void testGroupOrderedWithRange() {
+        String jpql = "select i.category, count(i), avg(i.amount) from GroupedItem i "
+            + "group by i.category order by i.category desc";
+        assertEquals(2, assertSameRows(jpql, 1, 2).size());
+        assertEquals(CATEGORIES.length, assertSameRows(jpql, 1, 0).size());
+        // past the last group
+        assertTrue(assertSameRows(jpql, CATEGORIES.length + 1, 2).isEmpty());
+
+        assertSameRows("select i.category, sum(i.amount) from GroupedItem i "
+            + "group by i.category order by i.category", 2, 2);
+    }
+
+    public void testGroupOnOneSlice() {
+        List<List<Object>> rows = assertSameRows("select i.category, count(i), "
+            + "sum(i.amount), avg(i.amount) from GroupedItem i where i.amount > 0 "
+            + "group by i.category having i.category = '" + SOLO + "'");
+        assertEquals(1, rows.size());
+        assertEquals(3L, rows.get(0).get(1));
+        assertSameRows("select i.category, max(i.amount) from GroupedItem i "
+            + "where i.id > " + ITEMS / 2 + " group by i.category");
+    }
+
+    public void testCountDistinctUnsupported() {
+        try {
+            em.createQuery("select count(distinct i.category) from GroupedItem i")
+                .getSingleResult();
+            fail("COUNT(DISTINCT) over several slices must fail");
+        } catch (RuntimeException e) {
+            assertMessage(e, "COUNT(DISTINCT)");
+        }
+    }
+
+    public void testHavingOnAggregateUnsupported() {
+        try {
+            getRows(em, "select i.category, count(i) from GroupedItem i "
+                + "group by i.category having count(i) > 1", 0, 0);
+            fail("HAVING on an aggregate must fail");
+        } catch (RuntimeException e) {
+            assertMessage(e, "HAVING");
+        }
+    }
+
+    private static void assertMessage(Throwable t, String text) {
+        for (Throwable cause = t; cause != null; cause = cause.getCause())
+            if (cause.getMessage() != null && cause.getMessage().contains(text))
+                return;
+        fail("No message with " + text + " in " + t);
+    }
+}
@@ -0,0 +1,163 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.openjpa.slice.jdbc;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import jakarta.persistence.EntityManager;
+
+import org.apache.openjpa.slice.ConsistentHashPolicy;
+import org.apache.openjpa.persistence.test.SingleEMFTestCase;
+
+/**
+ * Tests that {@link SliceRebalancer} moves the rows whose slice changes when
+ * slices are added or retired, and only those rows.
+ */
+public class TestSliceRebalancer extends SingleEMFTestCase {
+
+    private static final int ITEMS = 300;
+
+    private final ConsistentHashPolicy policy = new ConsistentHashPolicy();
+
+    private String getURL(String slice) {
+        return "jdbc:derby:memory:" + getName() + slice + ";create=true";
+    }
+
+    /**
+     * Create the factory for the given slices, keeping the rows of earlier
+     * factories.
+     */
+    private void setUpSlices(boolean drop, String... slices) throws Exception {
+        if (emf != null)
+            tearDown();
+        List<Object> props = new ArrayList<>(Arrays.asList(HashedItem.class,
+            "openjpa.BrokerFactory", "slice",
+            "openjpa.slice.DistributionPolicy", "hash",
+            "openjpa.slice.FinderTargetPolicy", "hash",
+            "openjpa.slice.Names", String.join(",", slices),
+            "openjpa.jdbc.SynchronizeMappings", "buildSchema(ForeignKeys=true,SchemaAction='"
+                + (drop ? "drop,add" : "add") + "')"));
+        for (String slice : slices) {
+            props.add("openjpa.slice." + slice + ".ConnectionURL");
+            props.add(getURL(slice));
+        }
+        setUp(props.toArray());
+    }
+
+    /**
+     * Read the ids of the items stored in each of the given slices.
+     */
+    private Map<String, List<Long>> readSlices(String... slices)
+        throws SQLException {
+        Map<String, List<Long>> ids = new HashMap<>();
+        for (String slice : slices) {
+            List<Long> list = new ArrayList<>();
+            try (Connection conn = DriverManager.getConnection(getURL(slice));
+                Statement stmnt = conn.createStatement();
+                ResultSet rs = stmnt.executeQuery("SELECT id FROM HashedItem")) {
+                while (rs.next())
+                    list.add(rs.getLong(1));
+            }
+            ids.put(slice, list);
+        }
+        return ids;
+    }
+
+    /**
+     * Assert that each item is stored once, in the slice the policy places
+     * it in.
+     */
+    private void assertPlaced(Map<String, List<Long>> ids, String... slices) {
+        int count = 0;
+        for (Map.Entry<String, List<Long>> entry : ids.entrySet()) {
+            for (long id : entry.getValue())
+                assertEquals("item " + id, policy.getSlice(new Object[]{ id },
+                    Arrays.asList(slices)), entry.getKey());
+            count += entry.getValue().size();
+        }
+        assertEquals(ITEMS, count);
+    }
+
+    private SliceRebalancer newRebalancer() {
+        return new SliceRebalancer((DistributedJDBCConfiguration) emf.getConfiguration());
+    }
+
+    @Override
+    public void setUp() throws Exception {
+        setUpSlices(true, "One", "Two");
+        Object[] items = new Object[ITEMS];
+        for (int i = 0; i < ITEMS; i++)
+            items[i] = new HashedItem(i + 1, "item-" + (i + 1));
+        persist(items);
+        assertPlaced(readSlices("One", "Two"), "One", "Two");
+    }
+
+    public void testAddSlice() throws Exception {
+        setUpSlices(false, "One", "Two", "Three");
+        long moved = newRebalancer().rebalance(HashedItem.class);
+
+        Map<String, List<Long>> ids = readSlices("One", "Two", "Three");
+        assertPlaced(ids, "One", "Two", "Three");
+        // only the keys of the new slice move
+        assertEquals(ids.get("Three").size(), moved);
+        assertTrue(String.valueOf(moved), moved > ITEMS / 6 && moved < ITEMS / 2);
+        assertEquals(0, newRebalancer().rebalance(HashedItem.class));
+
+        EntityManager em = emf.createEntityManager();
+        try {
+            for (long id = 1; id <= ITEMS; id += 7)
+                assertEquals("item-" + id, em.find(HashedItem.class, id).getName());
+        } finally {
+            em.close();
+        }
+    }
+
+    public void testRetireSlice() throws Exception {
+        setUpSlices(false, "One", "Two", "Three");
+        newRebalancer().rebalance(HashedItem.class);
+        int retired = readSlices("Three").get("Three").size();
+
+        SliceRebalancer rebalancer = newRebalancer();
+        rebalancer.setRetiredSlices("Three");
+        assertEquals(retired, rebalancer.rebalance());
+
+        Map<String, List<Long>> ids = readSlices("One", "Two", "Three");
+        assertTrue(ids.get("Three").isEmpty());
+        assertPlaced(ids, "One", "Two");
+    }
+
+    public void testBatches() throws Exception {
+        setUpSlices(false, "One", "Two", "Three");
+        SliceRebalancer rebalancer = newRebalancer();
+        rebalancer.setBatchSize(7);
+        long moved = rebalancer.rebalance(HashedItem.class);
+        Map<String, List<Long>> ids = readSlices("One", "Two", "Three");
+        assertPlaced(ids, "One", "Two", "Three");
+        assertEquals(ids.get("Three").size(), moved);
+    }
+}